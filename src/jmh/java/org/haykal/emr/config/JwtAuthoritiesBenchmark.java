@@ -0,0 +1,89 @@
+package org.haykal.emr.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keycloak role mapping of {@link SecurityConfig#jwtGrantedAuthoritiesConverter()}, i.e. the work a
+ * verified token cache miss pays for. {@code staff} is a front desk token with the realm defaults
+ * and one application role; {@code admin} carries many realm and client roles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthoritiesBenchmark {
+
+    @Param({"staff", "admin"})
+    private String user;
+
+    private Converter<Jwt, Collection<GrantedAuthority>> converter;
+    private Jwt jwt;
+
+    @Setup
+    public void setUp() {
+        converter = new SecurityConfig().jwtGrantedAuthoritiesConverter();
+
+        List<String> realmRoles = new ArrayList<>(List.of("default-roles-emr", "offline_access", "uma_authorization", "staff"));
+        List<String> clientRoles = new ArrayList<>(List.of("patient-read", "patient-write"));
+        if (user.equals("admin")) {
+            realmRoles.addAll(List.of("admin", "monitoring", "doctor", "nurse", "lab", "radiology", "billing"));
+            clientRoles.addAll(List.of("facility-admin", "service-admin", "export", "duplicate-review", "audit-read"));
+        }
+        Instant issuedAt = Instant.now();
+        jwt = Jwt.withTokenValue("benchmark")
+                .header("alg", "RS256")
+                .header("typ", "JWT")
+                .header("kid", "8Ldq0Rk4cQp0X1pUuX6QhQYwqQ1mD3d3s2m4Z1f2a3c")
+                .issuer("http://localhost:8081/realms/emr")
+                .subject(UUID.randomUUID().toString())
+                .audience(List.of("account", "emr-backend"))
+                .issuedAt(issuedAt)
+                .expiresAt(issuedAt.plusSeconds(300))
+                .jti(UUID.randomUUID().toString())
+                .claim("typ", "Bearer")
+                .claim("azp", "emr-frontend")
+                .claim("sid", UUID.randomUUID().toString())
+                .claim("acr", "1")
+                .claim("allowed-origins", List.of("http://localhost:3000"))
+                .claim("realm_access", Map.of("roles", realmRoles))
+                .claim("resource_access", Map.of(
+                        "emr-backend", Map.of("roles", clientRoles),
+                        "account", Map.of("roles", List.of("manage-account", "manage-account-links", "view-profile"))))
+                .claim("scope", "openid profile email")
+                .claim("email_verified", true)
+                .claim("name", "Dana Reyes")
+                .claim("preferred_username", "dreyes")
+                .claim("given_name", "Dana")
+                .claim("family_name", "Reyes")
+                .claim("email", "dreyes@clinic.example")
+                .build();
+    }
+
+    @Benchmark
+    public Collection<GrantedAuthority> convert() {
+        return converter.convert(jwt);
+    }
+}
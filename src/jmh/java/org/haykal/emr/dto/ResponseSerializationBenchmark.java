@@ -0,0 +1,80 @@
+package org.haykal.emr.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a patient list response as the controllers return it, with an object
+ * mapper set up the way Spring Boot configures the MVC one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private ApiResponse<PageResponse<PatientDTO>> response;
+
+    @Setup
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writer();
+
+        List<PatientDTO> patients = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            PatientDTO dto = new PatientDTO();
+            dto.setId(1_000_000L + i);
+            dto.setMrn(String.format("WEST%06d", i));
+            dto.setFirstName("First" + i);
+            dto.setLastName("Okonkwo-Lindqvist");
+            dto.setGender(i % 2 == 0 ? "FEMALE" : "MALE");
+            dto.setDateOfBirth(LocalDate.of(1940, 1, 1).plusDays(i * 211L));
+            dto.setEmail("patient" + i + "@example.com");
+            dto.setPhone("+1212555" + (1000 + i));
+            dto.setAddress("Apt " + i + ", 88 Elm Street");
+            dto.setCity("Queens");
+            dto.setState("NY");
+            dto.setZipCode("11101");
+            dto.setInsuranceProvider("Acme Health");
+            dto.setInsurancePolicyNumber("AH-" + (20_000_000 + i));
+            dto.setInsuranceGroupNumber("GRP-5521");
+            dto.setFacilityId(3L);
+            dto.setFacilityName("West Community Clinic");
+            patients.add(dto);
+        }
+        response = ApiResponse.success(PageResponse.of(new PageImpl<>(patients, PageRequest.of(0, pageSize), 12_345)));
+    }
+
+    @Benchmark
+    public byte[] patientPage() throws JsonProcessingException {
+        return writer.writeValueAsBytes(response);
+    }
+}
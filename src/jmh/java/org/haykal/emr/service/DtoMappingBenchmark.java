@@ -0,0 +1,113 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.FacilityDTO;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.entity.Facility;
+import org.haykal.emr.entity.Gender;
+import org.haykal.emr.entity.Patient;
+import org.haykal.emr.entity.ServiceCategory;
+import org.haykal.emr.entity.ServiceType;
+import org.haykal.emr.repository.PatientSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity and projection to DTO mapping of the patient and facility services, and MRN formatting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private Patient patient;
+    private PatientSummary summary;
+    private Facility facility;
+    private long mrnNumber;
+
+    @Setup
+    public void setUp() {
+        Set<ServiceType> services = new HashSet<>();
+        ServiceCategory[] categories = ServiceCategory.values();
+        for (long id = 1; id <= 17; id++) {
+            services.add(ServiceType.builder()
+                    .id(id)
+                    .code("SVC" + id)
+                    .name("Service " + id)
+                    .description("Description of service " + id)
+                    .category(categories[(int) (id % categories.length)])
+                    .build());
+        }
+        facility = Facility.builder()
+                .id(3L)
+                .code("WEST")
+                .name("West Community Clinic")
+                .address("12 Harbor Road")
+                .city("Queens")
+                .state("NY")
+                .zipCode("11101")
+                .phone("+12125550100")
+                .email("west@clinic.example")
+                .active(true)
+                .availableServices(services)
+                .build();
+        patient = Patient.builder()
+                .id(1_234_567L)
+                .mrn("WEST001234")
+                .firstName("Margaret")
+                .lastName("Okonkwo-Lindqvist")
+                .gender(Gender.FEMALE)
+                .dateOfBirth(LocalDate.of(1961, 4, 17))
+                .email("margaret.ol@example.com")
+                .phone("+12125550199")
+                .address("Apt 4B, 88 Elm Street")
+                .city("Queens")
+                .state("NY")
+                .zipCode("11101")
+                .insuranceProvider("Acme Health")
+                .insurancePolicyNumber("AH-20394857")
+                .insuranceGroupNumber("GRP-5521")
+                .facility(facility)
+                .build();
+        summary = new PatientSummary(patient.getId(), patient.getMrn(), patient.getFirstName(), patient.getLastName(),
+                patient.getGender(), patient.getDateOfBirth(), patient.getEmail(), patient.getPhone(),
+                patient.getAddress(), patient.getCity(), patient.getState(), patient.getZipCode(),
+                patient.getInsuranceProvider(), patient.getInsurancePolicyNumber(), patient.getInsuranceGroupNumber(),
+                facility.getId(), facility.getName());
+    }
+
+    @Benchmark
+    public PatientDTO patientEntityToDto() {
+        return PatientManagementService.toDTO(patient);
+    }
+
+    @Benchmark
+    public PatientDTO patientSummaryToDto() {
+        return PatientManagementService.toDTO(summary);
+    }
+
+    @Benchmark
+    public FacilityDTO facilityToDto() {
+        return FacilityService.toDTO(facility);
+    }
+
+    @Benchmark
+    public String mrnFormat() {
+        return MrnAllocator.format("WEST", ++mrnNumber);
+    }
+}
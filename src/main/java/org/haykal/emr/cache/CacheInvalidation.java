@@ -0,0 +1,20 @@
+package org.haykal.emr.cache;
+
+/**
+ * Message telling every node to drop a cached entry.
+ *
+ * @param cache name of the cache, see the constants below
+ * @param key   id of the changed entry, or {@code null} to drop the whole cache
+ */
+public record CacheInvalidation(String cache, Long key) {
+    public static final String FACILITIES = "facilities";
+    public static final String SERVICE_TYPES = "service-types";
+
+    public static CacheInvalidation of(String cache, Long key) {
+        return new CacheInvalidation(cache, key);
+    }
+
+    public static CacheInvalidation all(String cache) {
+        return new CacheInvalidation(cache, null);
+    }
+}
@@ -0,0 +1,17 @@
+package org.haykal.emr.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Fan-out channel for cache invalidations between application nodes.
+ * <p>
+ * The default {@link LocalCacheInvalidationBus} only reaches the current JVM; a deployment with
+ * several nodes registers its own {@code @Primary} bean (Redis pub/sub, PostgreSQL LISTEN/NOTIFY,
+ * ...) that also delivers {@link #publish published} invalidations back to the local subscribers.
+ */
+public interface CacheInvalidationBus {
+
+    void publish(CacheInvalidation invalidation);
+
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
@@ -0,0 +1,162 @@
+package org.haykal.emr.cache;
+
+import org.haykal.emr.dto.FacilityDTO;
+import org.haykal.emr.dto.ServiceTypeDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of the facility catalog served by the public {@code /facilities} endpoints.
+ * <p>
+ * Entries are immutable snapshots, and every read maps them to fresh DTOs, so a caller that
+ * changes what it was handed cannot change what other requests see.
+ * Writers call {@link #invalidateAfterCommit(Long)}; the invalidation goes through the
+ * {@link CacheInvalidationBus} once the transaction commits, which is also how other nodes learn
+ * about the change.
+ */
+@Slf4j
+@Component
+public class FacilityCatalogCache {
+    private final CacheInvalidationBus invalidationBus;
+    private final ConcurrentMap<Long, FacilitySnapshot> facilities = new ConcurrentHashMap<>();
+    private final AtomicReference<List<FacilitySnapshot>> activeFacilities = new AtomicReference<>();
+
+    // Bumped on every invalidation before the entries are dropped. A load stores its snapshot and
+    // then re-checks the generation: an invalidation that raced with the load either shows up in
+    // the re-check, and the load withdraws its own entry, or drops the entry itself afterwards.
+    private final AtomicLong generation = new AtomicLong();
+
+    public FacilityCatalogCache(CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    public FacilityDTO getFacility(Long id, Function<Long, FacilityDTO> loader) {
+        FacilitySnapshot cached = facilities.get(id);
+        if (cached != null) {
+            return cached.toDTO();
+        }
+
+        long loadedAt = generation.get();
+        FacilitySnapshot loaded = FacilitySnapshot.of(loader.apply(id));
+        facilities.put(id, loaded);
+        if (generation.get() != loadedAt) {
+            facilities.remove(id, loaded);
+        }
+        return loaded.toDTO();
+    }
+
+    public List<FacilityDTO> getActiveFacilities(Supplier<List<FacilityDTO>> loader) {
+        List<FacilitySnapshot> cached = activeFacilities.get();
+        if (cached != null) {
+            return toDTOs(cached);
+        }
+
+        long loadedAt = generation.get();
+        List<FacilitySnapshot> loaded = loader.get().stream()
+                .map(FacilitySnapshot::of)
+                .toList();
+        activeFacilities.set(loaded);
+        if (generation.get() != loadedAt) {
+            activeFacilities.compareAndSet(loaded, null);
+        }
+        return toDTOs(loaded);
+    }
+
+    // Publishes the invalidation once the surrounding transaction commits, or right away without one
+    public void invalidateAfterCommit(Long facilityId) {
+        CacheInvalidation invalidation = CacheInvalidation.of(CacheInvalidation.FACILITIES, facilityId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidationBus.publish(invalidation);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidationBus.publish(invalidation);
+            }
+        });
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (!CacheInvalidation.FACILITIES.equals(invalidation.cache())) {
+            return;
+        }
+        generation.incrementAndGet();
+        if (invalidation.key() == null) {
+            facilities.clear();
+        } else {
+            facilities.remove(invalidation.key());
+        }
+        // Any facility change may add, drop or alter an entry of the active list
+        activeFacilities.set(null);
+        log.debug("Facility cache invalidated for key {}", invalidation.key());
+    }
+
+    private static List<FacilityDTO> toDTOs(List<FacilitySnapshot> snapshots) {
+        return snapshots.stream().map(FacilitySnapshot::toDTO).toList();
+    }
+
+    private record FacilitySnapshot(Long id, String code, String name, String address, String city, String state,
+                                    String zipCode, String phone, String email, boolean active,
+                                    Set<ServiceTypeSnapshot> availableServices) {
+
+        static FacilitySnapshot of(FacilityDTO source) {
+            return new FacilitySnapshot(source.getId(), source.getCode(), source.getName(), source.getAddress(),
+                    source.getCity(), source.getState(), source.getZipCode(), source.getPhone(), source.getEmail(),
+                    source.isActive(), source.getAvailableServices() == null
+                            ? Set.of()
+                            : source.getAvailableServices().stream()
+                                    .map(ServiceTypeSnapshot::of)
+                                    .collect(Collectors.toUnmodifiableSet()));
+        }
+
+        FacilityDTO toDTO() {
+            FacilityDTO dto = new FacilityDTO();
+            dto.setId(id);
+            dto.setCode(code);
+            dto.setName(name);
+            dto.setAddress(address);
+            dto.setCity(city);
+            dto.setState(state);
+            dto.setZipCode(zipCode);
+            dto.setPhone(phone);
+            dto.setEmail(email);
+            dto.setActive(active);
+            dto.setAvailableServices(availableServices.stream()
+                    .map(ServiceTypeSnapshot::toDTO)
+                    .collect(Collectors.toUnmodifiableSet()));
+            return dto;
+        }
+    }
+
+    private record ServiceTypeSnapshot(Long id, String code, String name, String description, String category) {
+
+        static ServiceTypeSnapshot of(ServiceTypeDTO source) {
+            return new ServiceTypeSnapshot(source.getId(), source.getCode(), source.getName(),
+                    source.getDescription(), source.getCategory());
+        }
+
+        ServiceTypeDTO toDTO() {
+            ServiceTypeDTO dto = new ServiceTypeDTO();
+            dto.setId(id);
+            dto.setCode(code);
+            dto.setName(name);
+            dto.setDescription(description);
+            dto.setCategory(category);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.haykal.emr.config;
+
+import org.haykal.emr.cache.CacheInvalidationBus;
+import org.haykal.emr.cache.LocalCacheInvalidationBus;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    // Single-node default. Multi-node deployments declare their shared bus @Primary: a missing-bean
+    // condition in a user configuration depends on the order the configurations are processed in.
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus() {
+        return new LocalCacheInvalidationBus();
+    }
+}
@@ -0,0 +1,37 @@
+package org.haykal.emr.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.haykal.emr.limit.AdaptiveConcurrencyLimiter;
+import org.haykal.emr.limit.ConcurrencyLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// Off unless enabled: on the platform thread pool Tomcat's thread cap already bounds concurrency,
+// and application.properties turns it on together with virtual threads
+@Configuration
+@ConditionalOnProperty(name = "app.limiter.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    // Reads may use the whole pool and writes half of it, so a burst of writes cannot starve
+    // reads of connections and neither class queues far beyond what the pool can serve
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${app.limiter.max-wait:50ms}") Duration maxWait,
+            @Value("${app.limiter.retry-after:1}") long retryAfterSeconds,
+            ObjectMapper objectMapper) {
+        AdaptiveConcurrencyLimiter reads = new AdaptiveConcurrencyLimiter("read", 1, poolSize, maxWait);
+        AdaptiveConcurrencyLimiter writes = new AdaptiveConcurrencyLimiter("write", 1, Math.max(1, poolSize / 2), maxWait);
+
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(reads, writes, retryAfterSeconds, objectMapper));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+}
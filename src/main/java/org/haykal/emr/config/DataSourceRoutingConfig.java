@@ -0,0 +1,82 @@
+package org.haykal.emr.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.haykal.emr.routing.ReadWriteRoutingDataSource;
+import org.haykal.emr.routing.ReadYourWritesTracker;
+import org.haykal.emr.routing.ReplicaPool;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Replaces the auto-configured pool with a primary/replica router; see ReadWriteRoutingDataSource
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    // A replica that is down should cost a read a couple of seconds at most before it fails over
+    private static final Duration REPLICA_CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    // Replicas share the primary's credentials and pool size; they do not block startup when down.
+    // They are not beans, so their pool metrics (hikaricp.*, tagged by pool name) are bound here.
+    @Bean(destroyMethod = "close")
+    public ReplicaPool replicaPool(DataSourceProperties properties,
+                                   HikariDataSource primaryDataSource,
+                                   ObjectProvider<MeterRegistry> meterRegistry,
+                                   @Value("${app.datasource.routing.replica-urls:}") List<String> replicaUrls,
+                                   @Value("${app.datasource.routing.replica-lag-query:}") String lagQuery,
+                                   @Value("${app.datasource.routing.read-your-writes:5s}") Duration readYourWrites) {
+        List<ReplicaPool.Replica> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(properties.determineUsername());
+            replica.setPassword(properties.determinePassword());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+            replica.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT.toMillis());
+            replica.setInitializationFailTimeout(-1);
+            meterRegistry.ifAvailable(registry -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(new ReplicaPool.Replica(replica.getPoolName(), replica));
+        }
+        // A replica further behind than the read-your-writes window could hide a caller's own writes
+        return new ReplicaPool(replicas, lagQuery, readYourWrites);
+    }
+
+    // Registered with the transaction manager as a TransactionExecutionListener
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${app.datasource.routing.read-your-writes:5s}") Duration readYourWrites) {
+        return new ReadYourWritesTracker(readYourWrites);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ReplicaPool replicaPool,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primaryDataSource, replicaPool, readYourWritesTracker));
+    }
+}
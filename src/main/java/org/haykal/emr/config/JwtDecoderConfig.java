@@ -0,0 +1,111 @@
+package org.haykal.emr.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.haykal.emr.security.CachingJwtDecoder;
+import org.haykal.emr.security.VerifiedTokenCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resource server token verification: replaces Boot's decoder with one that keeps the JWK set
+ * warm and caches verified tokens.
+ * <p>
+ * The JWK set is fetched at startup and refreshed in the background {@code refresh-ahead} before
+ * its {@code ttl} runs out, so requests find current keys in memory. Keycloak publishes a new key
+ * before signing with it, which the next refresh picks up; a token signed with a key not seen yet
+ * still triggers one (rate-limited) fetch.
+ */
+@Slf4j
+@Configuration
+public class JwtDecoderConfig {
+
+    @Bean
+    public VerifiedTokenCache verifiedTokenCache(@Value("${app.security.jwt-cache.max-entries:10000}") int maxEntries,
+                                                 MeterRegistry meterRegistry) {
+        return new VerifiedTokenCache(maxEntries, meterRegistry);
+    }
+
+    @Bean
+    public JWKSource<SecurityContext> jwkSource(OAuth2ResourceServerProperties properties,
+                                                @Value("${app.security.jwks.ttl:PT5M}") Duration ttl,
+                                                @Value("${app.security.jwks.refresh-ahead:PT30S}") Duration refreshAhead,
+                                                @Value("${app.security.jwks.refresh-timeout:PT15S}") Duration refreshTimeout)
+            throws MalformedURLException {
+        JWKSource<SecurityContext> jwkSource = JWKSourceBuilder
+                .<SecurityContext>create(URI.create(properties.getJwt().getJwkSetUri()).toURL())
+                .cache(ttl.toMillis(), refreshTimeout.toMillis())
+                .refreshAheadCache(refreshAhead.toMillis(), true)
+                // Fetches triggered by unknown key ids; the rate limit has to fit inside the ttl
+                .rateLimited(Math.min(JWKSourceBuilder.DEFAULT_RATE_LIMIT_MIN_INTERVAL, ttl.toMillis() / 2))
+                .build();
+
+        // Scheduled refreshes start after the first successful fetch; an identity provider that is
+        // down at startup only delays that until the first request
+        Thread.ofVirtual().name("jwks-prefetch").start(() -> {
+            try {
+                jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null);
+            } catch (Exception e) {
+                log.warn("Could not prefetch the JWK set from {}: {}", properties.getJwt().getJwkSetUri(), e.getMessage());
+            }
+        });
+        return jwkSource;
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource,
+                                 OAuth2ResourceServerProperties properties,
+                                 VerifiedTokenCache verifiedTokenCache,
+                                 MeterRegistry meterRegistry) {
+        OAuth2ResourceServerProperties.Jwt jwt = properties.getJwt();
+        Set<JWSAlgorithm> algorithms = jwt.getJwsAlgorithms().stream().map(JWSAlgorithm::parse).collect(Collectors.toSet());
+
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, jwkSource));
+        // Claims are checked by the Spring validators below, as NimbusJwtDecoder's builders do
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(validator(jwt.getIssuerUri(), jwt.getAudiences()));
+        return new CachingJwtDecoder(decoder, verifiedTokenCache, meterRegistry);
+    }
+
+    // Same checks as Boot's auto-configured decoder: timestamps, then issuer and audience when set
+    private static OAuth2TokenValidator<Jwt> validator(String issuerUri, List<String> audiences) {
+        List<OAuth2TokenValidator<Jwt>> validators = new ArrayList<>();
+        validators.add(issuerUri != null ? JwtValidators.createDefaultWithIssuer(issuerUri) : JwtValidators.createDefault());
+        if (audiences != null && !audiences.isEmpty()) {
+            validators.add(new JwtClaimValidator<List<String>>(JwtClaimNames.AUD,
+                    aud -> aud != null && !Collections.disjoint(aud, audiences)));
+        }
+        return new DelegatingOAuth2TokenValidator<>(validators);
+    }
+}
@@ -0,0 +1,35 @@
+package org.haykal.emr.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.haykal.emr.metrics.RequestStatementCounter;
+import org.haykal.emr.metrics.StatementMetricsFilter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public RequestStatementCounter requestStatementCounter() {
+        return new RequestStatementCounter();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer(RequestStatementCounter requestStatementCounter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, requestStatementCounter);
+    }
+
+    // Outermost, so statements run by filters (token checks, say) count towards the request too
+    @Bean
+    public FilterRegistrationBean<StatementMetricsFilter> statementMetricsFilter(RequestStatementCounter requestStatementCounter,
+                                                                                MeterRegistry meterRegistry) {
+        FilterRegistrationBean<StatementMetricsFilter> registration = new FilterRegistrationBean<>(
+                new StatementMetricsFilter(requestStatementCounter, meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
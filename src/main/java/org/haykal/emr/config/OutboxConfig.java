@@ -0,0 +1,31 @@
+package org.haykal.emr.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.haykal.emr.outbox.ChangeEventSink;
+import org.haykal.emr.outbox.FileChangeEventSink;
+import org.haykal.emr.outbox.InMemoryChangeEventSink;
+import org.haykal.emr.outbox.LoggingChangeEventSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class OutboxConfig {
+
+    // app.outbox.sink selects a built-in sink; integrations with a broker register their own bean
+    @Bean
+    @ConditionalOnMissingBean(ChangeEventSink.class)
+    public ChangeEventSink changeEventSink(@Value("${app.outbox.sink:log}") String sink,
+                                           @Value("${app.outbox.file:change-events.ndjson}") Path file,
+                                           ObjectMapper objectMapper) {
+        return switch (sink) {
+            case "log" -> new LoggingChangeEventSink();
+            case "memory" -> new InMemoryChangeEventSink();
+            case "file" -> new FileChangeEventSink(file, objectMapper);
+            default -> throw new IllegalStateException("Unknown app.outbox.sink: " + sink);
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package org.haykal.emr.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Runs the @Scheduled methods; tests switch them off and drive the jobs directly. Work started
+// by events, such as the partition maintainer's run on ApplicationReadyEvent, is not affected.
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -1,5 +1,6 @@
 package org.haykal.emr.config;
 
+import org.haykal.emr.security.VerifiedTokenCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
@@ -26,7 +27,8 @@ import java.util.stream.Collectors;
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   JwtAuthenticationConverter jwtAuthenticationConverter) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
@@ -38,10 +40,14 @@ public class SecurityConfig {
 
                         // Allow actuator health endpoints
                         .requestMatchers("/actuator/health", "/actuator/info").permitAll()
+                        .requestMatchers("/actuator/prometheus").hasAnyRole("ADMIN", "MONITORING")
 
                         // Allow H2 console for development
                         .requestMatchers("/h2-console/**").permitAll()
 
+                        // Patient data and statistics under /facilities are never public
+                        .requestMatchers(HttpMethod.GET, "/facilities/*/patients/**", "/facilities/*/stats").authenticated()
+
                         // Public facility endpoints - allow read operations without authentication
                         .requestMatchers(HttpMethod.GET, "/facilities", "/facilities/**").permitAll()
 
@@ -51,7 +57,7 @@ public class SecurityConfig {
                 // Enable OAuth2 Resource Server with JWT
                 .oauth2ResourceServer(oauth2 -> oauth2
                         .jwt(jwt -> jwt
-                                .jwtAuthenticationConverter(jwtAuthenticationConverter())
+                                .jwtAuthenticationConverter(jwtAuthenticationConverter)
                         )
                 )
                 // Allow frames for H2 console
@@ -74,14 +80,17 @@ public class SecurityConfig {
         return source;
     }
 
+    // Authorities are mapped once per token and then reused from the verified token cache
     @Bean
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+    public JwtAuthenticationConverter jwtAuthenticationConverter(VerifiedTokenCache verifiedTokenCache) {
+        Converter<Jwt, Collection<GrantedAuthority>> keycloakRoles = jwtGrantedAuthoritiesConverter();
         JwtAuthenticationConverter authenticationConverter = new JwtAuthenticationConverter();
-        authenticationConverter.setJwtGrantedAuthoritiesConverter(jwtGrantedAuthoritiesConverter());
+        authenticationConverter.setJwtGrantedAuthoritiesConverter(jwt -> verifiedTokenCache.authorities(jwt, keycloakRoles));
         return authenticationConverter;
     }
 
-    @Bean
+    // Not exposed as a @Bean: Spring MVC registers every Converter bean with its conversion
+    // service and cannot resolve the generic types of a lambda.
     public Converter<Jwt, Collection<GrantedAuthority>> jwtGrantedAuthoritiesConverter() {
         return jwt -> {
             Collection<GrantedAuthority> authorities = new ArrayList<>();
@@ -0,0 +1,24 @@
+package org.haykal.emr.controller;
+
+import org.haykal.emr.dto.ApiResponse;
+import org.haykal.emr.dto.ChangeFeedDTO;
+import org.haykal.emr.service.ChangeFeedService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/changes")
+@RequiredArgsConstructor
+public class ChangeController {
+    private final ChangeFeedService changeFeedService;
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'INTEGRATION')")
+    public ResponseEntity<ApiResponse<ChangeFeedDTO>> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "100") int size) {
+        return ResponseEntity.ok(ApiResponse.success(changeFeedService.getChanges(since, size)));
+    }
+}
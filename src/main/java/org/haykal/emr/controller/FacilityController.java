@@ -1,20 +1,36 @@
 package org.haykal.emr.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import jakarta.validation.Valid;
 import org.haykal.emr.dto.*;
+import org.haykal.emr.idempotency.IdempotencyService;
+import org.haykal.emr.idempotency.IdempotentOperation;
 import org.haykal.emr.service.FacilityService;
+import org.haykal.emr.service.FacilityStatsService;
+import org.haykal.emr.service.PatientExportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
 @RequestMapping("/facilities")
 @RequiredArgsConstructor
 public class FacilityController {
+    private static final TypeReference<ApiResponse<FacilityDTO>> FACILITY_RESPONSE = new TypeReference<>() {
+    };
+
     private final FacilityService facilityService;
+    private final PatientExportService patientExportService;
+    private final FacilityStatsService facilityStatsService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -36,12 +52,44 @@ public class FacilityController {
         return ResponseEntity.ok(ApiResponse.success(facilities));
     }
 
+    // Whole-roster export streamed straight from the database; secured in SecurityConfig as well,
+    // since other GET /facilities/** endpoints are public
+    @GetMapping("/{id}/patients/export")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportPatients(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        PatientExportService.Format exportFormat = PatientExportService.Format.parse(format);
+        StreamingResponseBody body = patientExportService.export(id, exportFormat);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"facility-" + id + "-patients." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    // Census and service volumes by day, category and status; from defaults to today and to defaults to from
+    @GetMapping("/{id}/stats")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF', 'VIEW_ONLY')")
+    public ResponseEntity<ApiResponse<FacilityStatsDTO>> getStats(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate first = from != null ? from : LocalDate.now();
+        FacilityStatsDTO stats = facilityStatsService.getStats(id, first, to != null ? to : first);
+        return ResponseEntity.ok(ApiResponse.success(stats));
+    }
+
     @PostMapping("/{facilityId}/services/{serviceTypeId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN')")
     public ResponseEntity<ApiResponse<FacilityDTO>> addServiceToFacility(
             @PathVariable Long facilityId,
-            @PathVariable Long serviceTypeId) {
-        FacilityDTO facility = facilityService.addServiceToFacility(facilityId, serviceTypeId);
-        return ResponseEntity.ok(ApiResponse.success("Service added to facility", facility));
+            @PathVariable Long serviceTypeId,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, IdempotentOperation.ADD_FACILITY_SERVICE,
+                List.of(facilityId, serviceTypeId), FACILITY_RESPONSE, () -> {
+                    FacilityDTO facility = facilityService.addServiceToFacility(facilityId, serviceTypeId);
+                    return ResponseEntity.ok(ApiResponse.success("Service added to facility", facility));
+                });
     }
 }
\ No newline at end of file
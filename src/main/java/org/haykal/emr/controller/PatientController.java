@@ -1,30 +1,89 @@
 package org.haykal.emr.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.haykal.emr.dto.*;
+import org.haykal.emr.idempotency.IdempotencyService;
+import org.haykal.emr.idempotency.IdempotentOperation;
+import org.haykal.emr.mpi.DuplicateDetector;
+import org.haykal.emr.service.PatientBulkRegistrationService;
+import org.haykal.emr.service.PatientDeletionService;
 import org.haykal.emr.service.PatientManagementService;
+import org.haykal.emr.service.PatientServiceManagementService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/patients")
 @RequiredArgsConstructor
 @Validated
 public class PatientController {
+    private static final TypeReference<ApiResponse<PatientDTO>> PATIENT_RESPONSE = new TypeReference<>() {
+    };
+    private static final TypeReference<ApiResponse<BulkRegistrationResult>> BULK_RESPONSE = new TypeReference<>() {
+    };
+
     private final PatientManagementService patientManagementService;
+    private final PatientBulkRegistrationService patientBulkRegistrationService;
+    private final PatientServiceManagementService patientServiceManagementService;
+    private final PatientDeletionService patientDeletionService;
+    private final DuplicateDetector duplicateDetector;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
 //    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF')")
-    public ResponseEntity<ApiResponse<PatientDTO>> createPatient(@Valid @RequestBody PatientDTO dto) {
-        PatientDTO patient = patientManagementService.createPatient(dto);
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.success("Patient created successfully", patient));
+    public ResponseEntity<ApiResponse<PatientDTO>> createPatient(
+            @Valid @RequestBody PatientDTO dto,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, IdempotentOperation.CREATE_PATIENT, dto, PATIENT_RESPONSE, () -> {
+            PatientDTO patient = patientManagementService.createPatient(dto);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(ApiResponse.success("Patient created successfully", patient));
+        });
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN')")
+    public ResponseEntity<ApiResponse<BulkRegistrationResult>> bulkCreatePatients(
+            @RequestBody List<PatientDTO> patients,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, IdempotentOperation.BULK_REGISTER_PATIENTS, patients,
+                BULK_RESPONSE, () -> {
+                    BulkRegistrationResult result = patientBulkRegistrationService.register(patients);
+                    return ResponseEntity.ok(ApiResponse.success(bulkMessage(result), result));
+                });
+    }
+
+    // Streaming variant for large imports: one PatientDTO JSON document per line. The body is not
+    // buffered, so a key reused with a different body is replayed rather than rejected.
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN')")
+    public ResponseEntity<ApiResponse<BulkRegistrationResult>> bulkCreatePatientsNdjson(
+            HttpServletRequest request,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute(idempotencyKey, IdempotentOperation.BULK_REGISTER_PATIENTS, "ndjson",
+                BULK_RESPONSE, () -> {
+                    try {
+                        BulkRegistrationResult result = patientBulkRegistrationService.registerNdjson(request.getInputStream());
+                        return ResponseEntity.ok(ApiResponse.success(bulkMessage(result), result));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
     }
 
     @PutMapping("/{id}")
@@ -50,22 +109,85 @@ public class PatientController {
         return ResponseEntity.ok(ApiResponse.success(patient));
     }
 
+    // Service history, newest first. The ETag comes from a validator query alone, so a repeat view
+    // sending If-None-Match gets its 304 without the rows being read. Caches must revalidate
+    // every time and only the client may keep a copy.
+    @GetMapping("/{id}/services")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF', 'VIEW_ONLY')")
+    public ResponseEntity<ApiResponse<List<PatientServiceDTO>>> getPatientServices(
+            @PathVariable Long id,
+            @RequestParam(required = false) List<String> status,
+            @RequestParam(required = false) String category,
+            WebRequest request) {
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        String etag = patientServiceManagementService.getTimelineETag(id, status, category);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        List<PatientServiceDTO> services = patientServiceManagementService.getPatientTimeline(id, status, category);
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(ApiResponse.success(services));
+    }
+
     @GetMapping("/search")
     @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF', 'VIEW_ONLY')")
     public ResponseEntity<ApiResponse<PageResponse<PatientDTO>>> searchPatients(
             @RequestParam Long facilityId,
             @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "false") boolean ranked,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        PageResponse<PatientDTO> patients = patientManagementService.searchPatients(facilityId, search, pageable);
+        PageResponse<PatientDTO> patients = patientManagementService.searchPatients(facilityId, search, ranked, pageable);
+        return ResponseEntity.ok(ApiResponse.success(patients));
+    }
+
+    // Cursor-based alternative to /search for scrolling UIs and exports; pass nextCursor back as cursor
+    @GetMapping("/scroll")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF', 'VIEW_ONLY')")
+    public ResponseEntity<ApiResponse<CursorPage<PatientDTO>>> scrollPatients(
+            @RequestParam Long facilityId,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeCount) {
+        CursorPage<PatientDTO> patients =
+                patientManagementService.scrollPatients(facilityId, search, cursor, size, includeCount);
         return ResponseEntity.ok(ApiResponse.success(patients));
     }
 
+    @GetMapping("/{id}/duplicate-candidates")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF')")
+    public ResponseEntity<ApiResponse<List<DuplicateCandidateDTO>>> getDuplicateCandidates(@PathVariable Long id) {
+        return ResponseEntity.ok(ApiResponse.success(duplicateDetector.findCandidates(id)));
+    }
+
+    // Full rescan of the patients table in the background; 409 while one is already running
+    @PostMapping("/duplicate-scan")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Void>> scanForDuplicates() {
+        duplicateDetector.startScan();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse.success("Duplicate scan started", null));
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ApiResponse<Void>> deletePatient(@PathVariable Long id) {
         patientManagementService.deletePatient(id);
         return ResponseEntity.ok(ApiResponse.success("Patient deleted successfully", null));
     }
-}
\ No newline at end of file
+
+    // Set-based deletion of up to 1000 patients in one transaction; unknown ids are skipped
+    @PostMapping("/deletions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<PatientDeletionResult>> deletePatients(@Valid @RequestBody PatientDeletionRequest request) {
+        PatientDeletionService.Mode mode = request.getMode() != null ? PatientDeletionService.Mode.parse(request.getMode()) : null;
+        PatientDeletionResult result = patientDeletionService.delete(request.getIds(), mode);
+        return ResponseEntity.ok(ApiResponse.success("Patients deleted", result));
+    }
+
+    private static String bulkMessage(BulkRegistrationResult result) {
+        return result.getInterruptedAtRow() == null
+                ? "Bulk registration completed"
+                : "Bulk registration interrupted at row " + result.getInterruptedAtRow();
+    }
+}
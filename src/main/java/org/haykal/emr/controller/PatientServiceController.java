@@ -0,0 +1,61 @@
+package org.haykal.emr.controller;
+
+import jakarta.validation.Valid;
+import org.haykal.emr.dto.*;
+import org.haykal.emr.service.PatientServiceManagementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/patient-services")
+@RequiredArgsConstructor
+public class PatientServiceController {
+    private final PatientServiceManagementService patientServiceManagementService;
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF', 'VIEW_ONLY')")
+    public ResponseEntity<ApiResponse<CursorPage<PatientServiceDTO>>> scrollFacilityServices(
+            @RequestParam Long facilityId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean includeCount) {
+        CursorPage<PatientServiceDTO> services =
+                patientServiceManagementService.scrollFacilityServices(facilityId, cursor, size, includeCount);
+        return ResponseEntity.ok(ApiResponse.success(services));
+    }
+
+    @GetMapping("/worklist")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF', 'VIEW_ONLY')")
+    public ResponseEntity<ApiResponse<WorklistDTO>> getWorklist(
+            @RequestParam Long facilityId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "1") int days,
+            @RequestParam(required = false) List<String> status) {
+        WorklistDTO worklist = patientServiceManagementService.getWorklist(
+                facilityId, date != null ? date : LocalDate.now(), days, status);
+        return ResponseEntity.ok(ApiResponse.success(worklist));
+    }
+
+    @PatchMapping("/{id}/status")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF')")
+    public ResponseEntity<ApiResponse<PatientServiceDTO>> transition(
+            @PathVariable Long id,
+            @Valid @RequestBody StatusTransitionRequest request) {
+        PatientServiceDTO service = patientServiceManagementService.transition(id, request);
+        return ResponseEntity.ok(ApiResponse.success("Patient service status updated", service));
+    }
+
+    @PostMapping("/status-transitions")
+    @PreAuthorize("hasAnyRole('ADMIN', 'FACILITY_ADMIN', 'STAFF')")
+    public ResponseEntity<ApiResponse<BulkTransitionResult>> transitionInBulk(
+            @Valid @RequestBody BulkStatusTransitionRequest request) {
+        BulkTransitionResult result = patientServiceManagementService.transitionInBulk(request);
+        return ResponseEntity.ok(ApiResponse.success("Patient service statuses updated", result));
+    }
+}
@@ -0,0 +1,21 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkRegistrationResult {
+    private int received;
+    private int created;
+    private int failed;
+    private List<BulkRowError> errors = new ArrayList<>();
+    // Set when the run broke off: rows from here on were not processed, earlier rows were either
+    // created or reported in errors
+    private Integer interruptedAtRow;
+
+    public void addError(int row, String mrn, String message) {
+        errors.add(new BulkRowError(row, mrn, message));
+        failed++;
+    }
+}
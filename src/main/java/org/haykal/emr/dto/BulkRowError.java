@@ -0,0 +1,15 @@
+package org.haykal.emr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRowError {
+    // Zero-based position of the row in the request body (line number - 1 for NDJSON)
+    private int row;
+    private String mrn;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package org.haykal.emr.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+import java.time.LocalDate;
+import java.util.List;
+
+// Either explicit service ids, or a facility and day range optionally narrowed by category or service type
+@Data
+public class BulkStatusTransitionRequest {
+    @NotBlank(message = "Status is required")
+    private String status;
+
+    private List<Long> ids;
+
+    private Long facilityId;
+    private LocalDate date;
+    private Integer days;
+    private String category;
+    private Long serviceTypeId;
+}
@@ -0,0 +1,13 @@
+package org.haykal.emr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkTransitionResult {
+    private String status;
+    private int updated;
+}
@@ -0,0 +1,20 @@
+package org.haykal.emr.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+public class ChangeEventDTO {
+    // Position in the change feed; the event id is the key to deduplicate redeliveries by
+    private Long sequence;
+    private Long id;
+    private String aggregateType;
+    private Long aggregateId;
+    private Long patientId;
+    private String eventType;
+    private LocalDateTime occurredAt;
+
+    @JsonRawValue
+    private String payload;
+}
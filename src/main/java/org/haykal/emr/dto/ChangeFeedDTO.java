@@ -0,0 +1,12 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class ChangeFeedDTO {
+    private List<ChangeEventDTO> events;
+    // Always set, also on an empty page: pass it back as since to continue from here
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,32 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) listing. {@code nextCursor} is passed back as {@code cursor} to get
+ * the following page and is {@code null} on the last one. {@code totalElements} is only filled
+ * when the caller asked for a count.
+ */
+@Data
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements;
+
+    // rows holds up to size + 1 elements; the extra one only tells whether another page exists
+    public static <T, R> CursorPage<R> of(List<T> rows, int size, Function<T, R> mapper, Function<T, String> cursorOf) {
+        CursorPage<R> page = new CursorPage<>();
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        page.setContent(content.stream().map(mapper).toList());
+        page.setSize(size);
+        page.setHasNext(hasNext);
+        page.setNextCursor(hasNext ? cursorOf.apply(content.get(content.size() - 1)) : null);
+        return page;
+    }
+}
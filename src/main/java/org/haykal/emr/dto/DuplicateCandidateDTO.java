@@ -0,0 +1,20 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// A patient record that probably describes the same person as the one asked about
+@Data
+public class DuplicateCandidateDTO {
+    private Long patientId;
+    private String mrn;
+    private String firstName;
+    private String lastName;
+    private LocalDate dateOfBirth;
+    private Long facilityId;
+    private double score;
+    private String source;
+    private LocalDateTime detectedAt;
+}
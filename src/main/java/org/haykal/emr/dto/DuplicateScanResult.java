@@ -0,0 +1,13 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+
+@Data
+public class DuplicateScanResult {
+    private long keysBackfilled;
+    private long blocks;
+    private long oversizedBlocks;
+    private long comparisons;
+    private long candidates;
+    private long durationMillis;
+}
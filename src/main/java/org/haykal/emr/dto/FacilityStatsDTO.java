@@ -0,0 +1,20 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class FacilityStatsDTO {
+    private Long facilityId;
+    private long patients;
+    private LocalDate from;
+    private LocalDate to;
+    // Totals over [from, to]; every status and category is present, possibly with 0
+    private Map<String, Long> servicesByStatus;
+    private Map<String, Long> servicesByCategory;
+    // Non-zero combinations only, by day, category and status
+    private List<ServiceVolumeDTO> daily;
+}
@@ -1,8 +1,11 @@
 package org.haykal.emr.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import lombok.Data;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Set;
 
 @Data
@@ -42,5 +45,48 @@ public class PatientDTO {
         private Long facilityId;
 
         private String facilityName;
+        @Valid
         private Set<ServiceRequestDTO> requestedServices;
+
+        // Probable duplicates found at registration, as ids and scores; only present in the create response
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        private List<PossibleDuplicateDTO> possibleDuplicates;
+
+        // Replaces the Lombok toString, which put names, birth date, contact and insurance details in
+        // every log line and exception message that rendered a DTO. Identifying fields are only named
+        // when present, never printed.
+        @Override
+        public String toString() {
+                StringBuilder out = new StringBuilder(160)
+                        .append("PatientDTO{id=").append(id)
+                        .append(", facilityId=").append(facilityId)
+                        .append(", gender=").append(gender)
+                        .append(", requestedServices=").append(requestedServices == null ? 0 : requestedServices.size())
+                        .append(", redacted=[");
+                int start = out.length();
+                appendIfPresent(out, start, "mrn", mrn);
+                appendIfPresent(out, start, "firstName", firstName);
+                appendIfPresent(out, start, "lastName", lastName);
+                appendIfPresent(out, start, "dateOfBirth", dateOfBirth);
+                appendIfPresent(out, start, "email", email);
+                appendIfPresent(out, start, "phone", phone);
+                appendIfPresent(out, start, "address", address);
+                appendIfPresent(out, start, "city", city);
+                appendIfPresent(out, start, "state", state);
+                appendIfPresent(out, start, "zipCode", zipCode);
+                appendIfPresent(out, start, "insuranceProvider", insuranceProvider);
+                appendIfPresent(out, start, "insurancePolicyNumber", insurancePolicyNumber);
+                appendIfPresent(out, start, "insuranceGroupNumber", insuranceGroupNumber);
+                return out.append("]}").toString();
+        }
+
+        private static void appendIfPresent(StringBuilder out, int start, String name, Object value) {
+                if (value == null) {
+                        return;
+                }
+                if (out.length() > start) {
+                        out.append(", ");
+                }
+                out.append(name);
+        }
 }
\ No newline at end of file
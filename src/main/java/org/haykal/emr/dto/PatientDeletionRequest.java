@@ -0,0 +1,14 @@
+package org.haykal.emr.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import java.util.List;
+
+// mode is DELETE or ARCHIVE; the configured app.patients.deletion-mode when absent
+@Data
+public class PatientDeletionRequest {
+    @NotEmpty(message = "At least one patient ID is required")
+    private List<Long> ids;
+
+    private String mode;
+}
@@ -0,0 +1,14 @@
+package org.haykal.emr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientDeletionResult {
+    private String mode;
+    private int deleted;
+    private int archivedServices;
+}
@@ -20,4 +20,5 @@ public class PatientServiceDTO {
     private String notes;
     private String providerName;
     private LocalDateTime createdAt;
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package org.haykal.emr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A probable duplicate as reported to the registering caller: the record's details are only served
+// by /patients/{id}/duplicate-candidates, which checks the caller's role
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PossibleDuplicateDTO {
+    private Long patientId;
+    private double score;
+}
@@ -0,0 +1,17 @@
+package org.haykal.emr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceVolumeDTO {
+    private LocalDate date;
+    private String category;
+    private String status;
+    private long services;
+}
@@ -0,0 +1,15 @@
+package org.haykal.emr.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class StatusTransitionRequest {
+    @NotBlank(message = "Status is required")
+    private String status;
+
+    private String notes;
+
+    // When set, the change only applies if the service is still at this version
+    private Long version;
+}
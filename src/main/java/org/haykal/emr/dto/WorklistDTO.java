@@ -0,0 +1,17 @@
+package org.haykal.emr.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class WorklistDTO {
+    private Long facilityId;
+    private LocalDate from;
+    private LocalDate to;
+    private int total;
+    // Keyed by status in ServiceStatus order; every status is present, possibly with an empty list
+    private Map<String, List<PatientServiceDTO>> servicesByStatus;
+}
@@ -0,0 +1,5 @@
+package org.haykal.emr.entity;
+
+public enum ChangeAggregate {
+    PATIENT, PATIENT_SERVICE, FACILITY
+}
@@ -0,0 +1,51 @@
+package org.haykal.emr.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "change_events", indexes = {
+        @Index(name = "idx_change_events_delivery_seq", columnList = "delivery_seq", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeEvent {
+
+    // Identity rather than a pooled sequence: the id is taken at insert time, after the changed
+    // rows are locked, so events for the same patient get increasing ids in commit order
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "aggregate_type", nullable = false)
+    private ChangeAggregate aggregateType;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    // Ordering key; null for facility events
+    @Column(name = "patient_id")
+    private Long patientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private ChangeEventType eventType;
+
+    // JSON document describing the aggregate after the change
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    @Column(name = "delivery_seq")
+    private Long deliverySeq;
+}
@@ -0,0 +1,5 @@
+package org.haykal.emr.entity;
+
+public enum ChangeEventType {
+    CREATED, UPDATED, DELETED, STATUS_CHANGED
+}
@@ -35,9 +35,13 @@ public class Facility {
     private String phone;
     private String email;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "facility", fetch = FetchType.LAZY)
     private Set<Patient> patients = new HashSet<>();
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToMany
     @JoinTable(
             name = "facility_services",
@@ -17,7 +17,7 @@ import java.util.Set;
 @Table(name = "patients", indexes = {
         @Index(name = "idx_mrn", columnList = "mrn", unique = true),
         @Index(name = "idx_name", columnList = "firstName, lastName"),
-        @Index(name = "idx_facility", columnList = "facility_id")
+        @Index(name = "idx_patients_facility_name_id", columnList = "facility_id, lastName, firstName, id")
 })
 @Data
 @NoArgsConstructor
@@ -25,8 +25,10 @@ import java.util.Set;
 @Builder
 @EntityListeners(AuditingEntityListener.class)
 public class Patient {
+    // Pooled sequence (see V5 migration) so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_id_generator")
+    @SequenceGenerator(name = "patient_id_generator", sequenceName = "patients_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -52,15 +54,40 @@ public class Patient {
     private String state;
     private String zipCode;
 
+    // Normalized "last first mrn" search key, generated by the database (see V3 migration)
+    @Column(name = "search_text", insertable = false, updatable = false)
+    private String searchText;
+
+    // Duplicate detection blocking keys, derived from names, birth date and phone (see V10 migration)
+    @Column(name = "mpi_name_dob_key")
+    private String mpiNameDobKey;
+
+    @Column(name = "mpi_first_dob_key")
+    private String mpiFirstDobKey;
+
+    @Column(name = "mpi_names_year_key")
+    private String mpiNamesYearKey;
+
+    @Column(name = "mpi_phone_key")
+    private String mpiPhoneKey;
+
+    // Set once the keys above were computed, even if none could be (see V16 migration)
+    @Column(name = "mpi_keyed", nullable = false)
+    private boolean mpiKeyed;
+
     // Insurance Details
     private String insuranceProvider;
     private String insurancePolicyNumber;
     private String insuranceGroupNumber;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "facility_id", nullable = false)
     private Facility facility;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "patient", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<PatientService> services = new HashSet<>();
 
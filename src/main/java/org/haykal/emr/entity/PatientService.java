@@ -9,10 +9,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "patient_services", indexes = {
-        @Index(name = "idx_patient_services_patient", columnList = "patient_id"),
-        @Index(name = "idx_patient_services_facility", columnList = "facility_id"),
+        @Index(name = "idx_patient_services_patient_timeline", columnList = "patient_id, scheduled_date DESC, id DESC"),
+        @Index(name = "idx_patient_services_facility_id", columnList = "facility_id, id"),
         @Index(name = "idx_patient_services_status", columnList = "status"),
-        @Index(name = "idx_patient_services_scheduled_date", columnList = "scheduled_date")
+        @Index(name = "idx_patient_services_scheduled_date", columnList = "scheduled_date"),
+        @Index(name = "idx_patient_services_facility_schedule", columnList = "facility_id, scheduled_date, status")
 })
 @Data
 @NoArgsConstructor
@@ -21,18 +22,26 @@ import java.time.LocalDateTime;
 @EntityListeners(AuditingEntityListener.class)
 public class PatientService {
 
+    // Pooled sequence (see V5 migration) so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_service_id_generator")
+    @SequenceGenerator(name = "patient_service_id_generator", sequenceName = "patient_services_id_seq", allocationSize = 50)
     private Long id;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "patient_id", nullable = false)
     private Patient patient;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "service_type_id", nullable = false)
     private ServiceType serviceType;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "facility_id", nullable = false)
     private Facility facility;
@@ -41,7 +50,7 @@ public class PatientService {
     @Column(nullable = false)
     private ServiceStatus status = ServiceStatus.SCHEDULED;
 
-    @Column(name = "scheduled_date")
+    @Column(name = "scheduled_date", nullable = false)
     private LocalDateTime scheduledDate;
 
     @Column(name = "completed_date")
@@ -55,4 +64,17 @@ public class PatientService {
     @CreatedDate
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
+
+    // Status changes are guarded optimistically; see PatientServiceManagementService.transition
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Written only by bulk transitions, which select their stats deltas and events by it (V17)
+    @Column(name = "transition_id", insertable = false, updatable = false)
+    private Long transitionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transition_from", insertable = false, updatable = false)
+    private ServiceStatus transitionFrom;
 }
\ No newline at end of file
@@ -1,5 +1,28 @@
 package org.haykal.emr.entity;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum ServiceStatus {
-    SCHEDULED, IN_PROGRESS, COMPLETED, CANCELLED
+    SCHEDULED, IN_PROGRESS, COMPLETED, CANCELLED;
+
+    // COMPLETED and CANCELLED are terminal
+    public boolean canTransitionTo(ServiceStatus target) {
+        return switch (this) {
+            case SCHEDULED -> target == IN_PROGRESS || target == COMPLETED || target == CANCELLED;
+            case IN_PROGRESS -> target == COMPLETED || target == CANCELLED;
+            case COMPLETED, CANCELLED -> false;
+        };
+    }
+
+    // The statuses a service may be in to move to the given one
+    public static Set<ServiceStatus> sourcesOf(ServiceStatus target) {
+        Set<ServiceStatus> sources = EnumSet.noneOf(ServiceStatus.class);
+        for (ServiceStatus status : values()) {
+            if (status.canTransitionTo(target)) {
+                sources.add(status);
+            }
+        }
+        return sources;
+    }
 }
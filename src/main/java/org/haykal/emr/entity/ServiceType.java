@@ -28,6 +28,8 @@ public class ServiceType {
     @Column(nullable = false)
     private ServiceCategory category;
 
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToMany(mappedBy = "availableServices")
     private Set<Facility> facilities = new HashSet<>();
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package org.haykal.emr.idempotency;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * SQL of the idempotency key store (V15). Every statement addresses one row by primary key, except
+ * the batched purge. Claims are fenced by a random token, so only the request that holds a claim
+ * can complete or release it.
+ */
+@Repository
+public class IdempotencyKeyRepository {
+
+    public record StoredKey(String operation, String requestHash, Instant lockedUntil, Integer responseStatus,
+                            String responseBody, Instant expiresAt) {
+
+        boolean isCompleted() {
+            return responseStatus != null;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<StoredKey> find(String principal, String key) {
+        List<StoredKey> rows = jdbcTemplate.query("SELECT operation, request_hash, locked_until, response_status, " +
+                        "response_body, expires_at FROM idempotency_keys WHERE principal = ? AND idempotency_key = ?",
+                (rs, rowNum) -> {
+                    Timestamp lockedUntil = rs.getTimestamp(3);
+                    int status = rs.getInt(4);
+                    Integer responseStatus = rs.wasNull() ? null : status;
+                    return new StoredKey(rs.getString(1), rs.getString(2),
+                            lockedUntil == null ? null : lockedUntil.toInstant(), responseStatus,
+                            rs.getString(5), rs.getTimestamp(6).toInstant());
+                }, principal, key);
+        return rows.stream().findFirst();
+    }
+
+    // False when the key is already taken, completed or claimed
+    public boolean claim(String principal, String key, String operation, String requestHash, long token,
+                         Instant lockedUntil, Instant expiresAt) {
+        try {
+            jdbcTemplate.update("INSERT INTO idempotency_keys (principal, idempotency_key, operation, request_hash, " +
+                            "claim_token, locked_until, expires_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    principal, key, operation, requestHash, token, Timestamp.from(lockedUntil), Timestamp.from(expiresAt));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // Claims a key whose previous claim ran out without completing, or whose stored response expired
+    public boolean takeOver(String principal, String key, String operation, String requestHash, long token,
+                            Instant now, Instant lockedUntil, Instant expiresAt) {
+        Timestamp at = Timestamp.from(now);
+        return jdbcTemplate.update("UPDATE idempotency_keys SET operation = ?, request_hash = ?, claim_token = ?, " +
+                        "locked_until = ?, response_status = NULL, response_body = NULL, created_at = ?, expires_at = ? " +
+                        "WHERE principal = ? AND idempotency_key = ? " +
+                        "AND ((response_status IS NULL AND locked_until < ?) OR expires_at < ?)",
+                operation, requestHash, token, Timestamp.from(lockedUntil), at, Timestamp.from(expiresAt),
+                principal, key, at, at) == 1;
+    }
+
+    // False when the claim was taken over meanwhile
+    public boolean complete(String principal, String key, long token, int responseStatus, String responseBody) {
+        return jdbcTemplate.update("UPDATE idempotency_keys SET response_status = ?, response_body = ?, " +
+                        "claim_token = NULL, locked_until = NULL " +
+                        "WHERE principal = ? AND idempotency_key = ? AND claim_token = ?",
+                responseStatus, responseBody, principal, key, token) == 1;
+    }
+
+    // Frees the key after a failed write, so the client may retry with it
+    public void release(String principal, String key, long token) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE principal = ? AND idempotency_key = ? AND claim_token = ?",
+                principal, key, token);
+    }
+
+    public int deleteExpired(Instant now, int limit) {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE (principal, idempotency_key) IN " +
+                        "(SELECT principal, idempotency_key FROM idempotency_keys WHERE expires_at < ? LIMIT ?)",
+                Timestamp.from(now), limit);
+    }
+}
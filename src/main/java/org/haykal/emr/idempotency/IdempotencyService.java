@@ -0,0 +1,312 @@
+package org.haykal.emr.idempotency;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.haykal.emr.exception.IdempotencyKeyInUseException;
+import org.haykal.emr.exception.IdempotencyKeyReusedException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a write at most once per Idempotency-Key and caller, and answers retries with the stored
+ * response.
+ * <p>
+ * A key is claimed with one INSERT before the write runs. For single writes the response is stored
+ * in the write's own transaction, so the write and its response commit or roll back together.
+ * A failed single write releases the key, and only successful (2xx) responses are stored. Bulk
+ * writes commit in chunks, so they store partial results and a bulk write that fails outright keeps
+ * its claim until the lease lapses.
+ * <p>
+ * Completed responses are also kept in a bounded in-memory cache. A retry served from it costs no
+ * statement; one that misses it costs one primary-key lookup. A duplicate arriving while the first
+ * request still runs gets 409 without waiting: on the same node from the in-flight set, on other
+ * nodes from the claim row. A claim that is never completed, for example after a crash, lapses
+ * after the lease. Rows expire after the TTL and are purged in batches.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 100;
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[\\x21-\\x7E]{1," + MAX_KEY_LENGTH + "}");
+
+    private record CacheKey(String principal, String key) {
+    }
+
+    private record Claim(CacheKey cacheKey, long token, IdempotentOperation operation, String requestHash,
+                         Instant expiresAt) {
+    }
+
+    private record Completion<T>(ResponseEntity<T> response, IdempotencyKeyRepository.StoredKey stored) {
+    }
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper fingerprintMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Duration bulkLease;
+    private final int purgeBatchSize;
+    private final Map<CacheKey, IdempotencyKeyRepository.StoredKey> responses;
+    private final Map<CacheKey, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${app.idempotency.lease:2m}") Duration lease,
+                              @Value("${app.idempotency.bulk-lease:30m}") Duration bulkLease,
+                              @Value("${app.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${app.idempotency.purge-batch-size:1000}") int purgeBatchSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.fingerprintMapper = canonicalCopy(objectMapper);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.lease = lease;
+        this.bulkLease = bulkLease;
+        this.purgeBatchSize = purgeBatchSize;
+        // Access-ordered, so the least recently replayed response goes first
+        this.responses = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, IdempotencyKeyRepository.StoredKey> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Runs {@code write} unless {@code key} was already used by the caller, in which case the stored
+     * response is returned with {@value #REPLAYED_HEADER}. Without a key the write simply runs.
+     * {@code request} identifies the request's content: reusing a key with different content is
+     * rejected. {@code responseType} is the write's response body type, for reading it back.
+     */
+    public <T> ResponseEntity<T> execute(String key, IdempotentOperation operation, Object request,
+                                         TypeReference<T> responseType, Supplier<ResponseEntity<T>> write) {
+        if (key == null) {
+            return write.get();
+        }
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " printable ASCII characters");
+        }
+        CacheKey cacheKey = new CacheKey(currentPrincipal(), key);
+        String requestHash = fingerprint(operation, request);
+        Instant now = Instant.now();
+
+        IdempotencyKeyRepository.StoredKey cached = responses.get(cacheKey);
+        if (cached != null && cached.expiresAt().isAfter(now)) {
+            return replay(cached, operation, requestHash, responseType);
+        }
+        if (inFlight.putIfAbsent(cacheKey, Boolean.TRUE) != null) {
+            throw new IdempotencyKeyInUseException("A request with this " + HEADER + " is still in progress");
+        }
+        try {
+            Optional<IdempotencyKeyRepository.StoredKey> stored = idempotencyKeyRepository.find(cacheKey.principal(), key);
+            if (stored.isPresent() && stored.get().isCompleted() && stored.get().expiresAt().isAfter(now)) {
+                responses.put(cacheKey, stored.get());
+                return replay(stored.get(), operation, requestHash, responseType);
+            }
+            Claim claim = claim(cacheKey, operation, requestHash, stored.orElse(null), now);
+            return run(claim, write);
+        } finally {
+            inFlight.remove(cacheKey);
+        }
+    }
+
+    private Claim claim(CacheKey cacheKey, IdempotentOperation operation, String requestHash,
+                        IdempotencyKeyRepository.StoredKey stored, Instant now) {
+        if (stored != null && !stored.isCompleted() && !matches(stored, operation, requestHash)) {
+            throw reused();
+        }
+        Claim claim = new Claim(cacheKey, ThreadLocalRandom.current().nextLong(), operation, requestHash, now.plus(ttl));
+        Instant lockedUntil = now.plus(operation.isBulk() ? bulkLease : lease);
+        boolean claimed = stored == null
+                ? idempotencyKeyRepository.claim(cacheKey.principal(), cacheKey.key(), operation.name(), requestHash,
+                        claim.token(), lockedUntil, claim.expiresAt())
+                : idempotencyKeyRepository.takeOver(cacheKey.principal(), cacheKey.key(), operation.name(), requestHash,
+                        claim.token(), now, lockedUntil, claim.expiresAt());
+        if (!claimed) {
+            // Another node claimed or completed the key since the lookup; a retry will replay it
+            throw new IdempotencyKeyInUseException("A request with this " + HEADER + " is still in progress");
+        }
+        return claim;
+    }
+
+    private <T> ResponseEntity<T> run(Claim claim, Supplier<ResponseEntity<T>> write) {
+        Completion<T> completion;
+        try {
+            if (claim.operation().isBulk()) {
+                ResponseEntity<T> response = write.get();
+                completion = new Completion<>(response, complete(claim, response));
+            } else {
+                completion = transactionTemplate.execute(status -> {
+                    ResponseEntity<T> response = write.get();
+                    IdempotencyKeyRepository.StoredKey stored = complete(claim, response);
+                    // Losing the claim rolls the write back: whoever took over the key runs it instead
+                    if (stored == null && response.getStatusCode().is2xxSuccessful()) {
+                        throw new IdempotencyKeyInUseException("The " + HEADER + " was taken over by another request");
+                    }
+                    return new Completion<>(response, stored);
+                });
+            }
+        } catch (RuntimeException e) {
+            if (claim.operation().isBulk()) {
+                // Chunks may have committed before the failure, so running the request again could
+                // register patients twice; retries get 409 until the bulk lease lapses
+                log.warn("Bulk request with idempotency key {} failed; keeping the claim until it lapses",
+                        claim.cacheKey().key());
+            } else {
+                idempotencyKeyRepository.release(claim.cacheKey().principal(), claim.cacheKey().key(), claim.token());
+            }
+            throw e;
+        }
+        if (completion.stored() == null) {
+            idempotencyKeyRepository.release(claim.cacheKey().principal(), claim.cacheKey().key(), claim.token());
+        } else {
+            responses.put(claim.cacheKey(), completion.stored());
+        }
+        return completion.response();
+    }
+
+    // The stored row, or null when the response is not a success or the claim lapsed meanwhile
+    private IdempotencyKeyRepository.StoredKey complete(Claim claim, ResponseEntity<?> response) {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            return null;
+        }
+        String body = toJson(response.getBody());
+        int status = response.getStatusCode().value();
+        if (!idempotencyKeyRepository.complete(claim.cacheKey().principal(), claim.cacheKey().key(), claim.token(),
+                status, body)) {
+            log.warn("Claim on idempotency key {} lapsed before the response could be stored", claim.cacheKey().key());
+            return null;
+        }
+        return new IdempotencyKeyRepository.StoredKey(claim.operation().name(), claim.requestHash(), null, status, body,
+                claim.expiresAt());
+    }
+
+    private <T> ResponseEntity<T> replay(IdempotencyKeyRepository.StoredKey stored, IdempotentOperation operation,
+                                         String requestHash, TypeReference<T> responseType) {
+        if (!matches(stored, operation, requestHash)) {
+            throw reused();
+        }
+        try {
+            T body = stored.responseBody() == null ? null : objectMapper.readValue(stored.responseBody(), responseType);
+            return ResponseEntity.status(stored.responseStatus()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response cannot be read back", e);
+        }
+    }
+
+    @Scheduled(cron = "${app.idempotency.purge-cron:-}")
+    public void scheduledPurge() {
+        try {
+            int purged = purgeExpired();
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Idempotency key purge failed: {}", e.getMessage());
+        }
+    }
+
+    // Deletes expired keys in batches of purgeBatchSize; expired cache entries are ignored on read
+    public int purgeExpired() {
+        Instant now = Instant.now();
+        int total = 0;
+        int purged;
+        do {
+            purged = idempotencyKeyRepository.deleteExpired(now, purgeBatchSize);
+            total += purged;
+        } while (purged == purgeBatchSize);
+        synchronized (responses) {
+            responses.values().removeIf(stored -> !stored.expiresAt().isAfter(now));
+        }
+        return total;
+    }
+
+    private static boolean matches(IdempotencyKeyRepository.StoredKey stored, IdempotentOperation operation,
+                                   String requestHash) {
+        return stored.operation().equals(operation.name()) && stored.requestHash().equals(requestHash);
+    }
+
+    private static IdempotencyKeyReusedException reused() {
+        return new IdempotencyKeyReusedException("This " + HEADER + " was already used for a different request");
+    }
+
+    String fingerprint(IdempotentOperation operation, Object request) {
+        try {
+            return DigestUtils.sha256Hex(operation.name() + "\n" + fingerprintMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + request.getClass().getSimpleName(), e);
+        }
+    }
+
+    // Equal requests must hash alike, but sets (PatientDTO.requestedServices, say) and maps iterate in
+    // no fixed order. This copy writes map entries by key and set elements sorted by their own JSON.
+    private static ObjectMapper canonicalCopy(ObjectMapper objectMapper) {
+        SimpleModule canonicalSets = new SimpleModule("canonical-sets");
+        canonicalSets.addSerializer(Set.class, new StdSerializer<>(Set.class) {
+            @Override
+            public void serialize(Set set, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                List<String> elements = new ArrayList<>(set.size());
+                for (Object element : set) {
+                    elements.add(((ObjectMapper) generator.getCodec()).writeValueAsString(element));
+                }
+                Collections.sort(elements);
+                generator.writeStartArray();
+                for (String element : elements) {
+                    generator.writeRawValue(element);
+                }
+                generator.writeEndArray();
+            }
+        });
+        return objectMapper.copy()
+                .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+                .registerModule(canonicalSets);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "anonymous" : authentication.getName();
+    }
+}
@@ -0,0 +1,19 @@
+package org.haykal.emr.idempotency;
+
+// Writes that accept an Idempotency-Key. Bulk operations commit in chunks of their own, so their
+// response is stored after the last chunk rather than in the write's transaction.
+public enum IdempotentOperation {
+    CREATE_PATIENT(false),
+    ADD_FACILITY_SERVICE(false),
+    BULK_REGISTER_PATIENTS(true);
+
+    private final boolean bulk;
+
+    IdempotentOperation(boolean bulk) {
+        this.bulk = bulk;
+    }
+
+    public boolean isBulk() {
+        return bulk;
+    }
+}
@@ -0,0 +1,143 @@
+package org.haykal.emr.limit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of requests of one class in flight, with a limit that follows observed latency.
+ * <p>
+ * Each completed request feeds its latency into a short and a long moving average. While the two
+ * agree the limit creeps up towards {@code maxLimit}; when the short average rises above the long
+ * one, requests are queueing (typically for a database connection) and the limit shrinks towards
+ * {@code minLimit}. Requests that cannot get a slot within {@code maxWait} are rejected so callers
+ * can shed them instead of letting them pile up.
+ * <p>
+ * Waiting uses a {@link ReentrantLock} rather than {@code synchronized} so that blocked virtual
+ * threads release their carrier thread.
+ */
+public class AdaptiveConcurrencyLimiter {
+    // Latency may grow to this multiple of the long-term average before the limit shrinks
+    private static final double TOLERANCE = 2.0;
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 0.01;
+    private static final double SMOOTHING = 0.2;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private double shortRtt;
+    private double longRtt;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit, Duration maxWait) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits for " + name + ": " + minLimit + ".." + maxLimit);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.limit = maxLimit;
+    }
+
+    // Returns false when no slot became free within maxWait; the caller must not call release then
+    public boolean tryAcquire() throws InterruptedException {
+        long remaining = maxWaitNanos;
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected++;
+                    return false;
+                }
+                remaining = slotFreed.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            int before = (int) limit;
+            update(latencyNanos);
+            if ((int) limit > before) {
+                slotFreed.signalAll();
+            } else {
+                slotFreed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long latencyNanos) {
+        shortRtt = shortRtt == 0 ? latencyNanos : shortRtt * (1 - SHORT_WEIGHT) + latencyNanos * SHORT_WEIGHT;
+        longRtt = longRtt == 0 ? latencyNanos : longRtt * (1 - LONG_WEIGHT) + latencyNanos * LONG_WEIGHT;
+        // Under sustained overload the long average drifts up too; pull it back so it stays a baseline
+        if (longRtt > shortRtt * TOLERANCE) {
+            longRtt *= 0.95;
+        }
+        // With most slots idle the latencies say nothing about what a higher limit would do
+        if (inFlight + 1 < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Smoothed latency of recent requests, used to suggest a Retry-After
+    public long getRecentLatencyMillis() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis((long) shortRtt);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
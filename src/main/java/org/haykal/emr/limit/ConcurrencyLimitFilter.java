@@ -0,0 +1,103 @@
+package org.haykal.emr.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.haykal.emr.dto.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Bulkhead in front of the API: reads (GET, HEAD) and writes each go through their own
+ * {@link AdaptiveConcurrencyLimiter}, sized from the connection pool. Requests that cannot be
+ * admitted get 503 with Retry-After straight away, instead of holding a thread while they wait
+ * for a connection and eventually timing out.
+ * <p>
+ * Registered ahead of Spring Security so that shed requests cost no token validation. A streaming
+ * response is counted until its handler returns, not until the stream completes.
+ */
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final List<String> EXEMPT_PATHS = List.of("/actuator", "/api-docs", "/v3/api-docs",
+            "/swagger-ui", "/h2-console");
+
+    private final AdaptiveConcurrencyLimiter readLimiter;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+    private final long minRetryAfterSeconds;
+    private final ObjectMapper objectMapper;
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter readLimiter,
+                                  AdaptiveConcurrencyLimiter writeLimiter,
+                                  long minRetryAfterSeconds,
+                                  ObjectMapper objectMapper) {
+        this.readLimiter = readLimiter;
+        this.writeLimiter = writeLimiter;
+        this.minRetryAfterSeconds = minRetryAfterSeconds;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return EXEMPT_PATHS.stream().anyMatch(path::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter limiter = isRead(request) ? readLimiter : writeLimiter;
+        boolean admitted;
+        try {
+            admitted = limiter.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            reject(limiter, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    private void reject(AdaptiveConcurrencyLimiter limiter, HttpServletResponse response) throws IOException {
+        // Shedding happens under overload, where the boxed arguments and varargs array are worth skipping
+        if (log.isDebugEnabled()) {
+            log.debug("Shedding {} request: {} in flight, limit {}", limiter.getName(), limiter.getInFlight(),
+                    limiter.getLimit());
+        }
+        // Roughly how long the requests ahead need to drain, never less than the configured minimum
+        long retryAfter = Math.max(minRetryAfterSeconds, (limiter.getRecentLatencyMillis() + 999) / 1000);
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                ApiResponse.error("Server is busy, retry after " + retryAfter + "s"));
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    public AdaptiveConcurrencyLimiter getReadLimiter() {
+        return readLimiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getWriteLimiter() {
+        return writeLimiter;
+    }
+}
@@ -0,0 +1,48 @@
+package org.haykal.emr.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Facility tag values with bounded cardinality: the first {@code maxFacilities} facilities admitted
+ * are tagged with their id and any beyond that share {@value #OTHER}, so a deployment with
+ * thousands of facilities cannot blow up the number of time series.
+ * <p>
+ * Ids are only admitted once a call has resolved the facility, so ids that do not exist (a typo,
+ * or a client probing) never take one of the slots; until then they are tagged {@value #OTHER}.
+ */
+public class FacilityTags {
+    public static final String OTHER = "other";
+    public static final String NONE = "none";
+
+    private final int maxFacilities;
+    private final Map<Long, String> admitted = new ConcurrentHashMap<>();
+
+    public FacilityTags(int maxFacilities) {
+        this.maxFacilities = maxFacilities;
+    }
+
+    // Tag of an id whether or not the facility exists: never admits it
+    public String of(Long facilityId) {
+        if (facilityId == null) {
+            return NONE;
+        }
+        return admitted.getOrDefault(facilityId, OTHER);
+    }
+
+    // Tag of a facility the caller has found. The size check races with concurrent admissions, so
+    // the bound may be overshot by a few.
+    public String admit(Long facilityId) {
+        if (facilityId == null) {
+            return NONE;
+        }
+        String tag = admitted.get(facilityId);
+        if (tag != null) {
+            return tag;
+        }
+        if (admitted.size() >= maxFacilities) {
+            return OTHER;
+        }
+        return admitted.computeIfAbsent(facilityId, String::valueOf);
+    }
+}
@@ -0,0 +1,31 @@
+package org.haykal.emr.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread between {@link #begin()} and
+ * {@link #end()}; statements outside such a window (scheduled jobs, startup) are not counted.
+ * Statements issued through JdbcTemplate bypass Hibernate and are not seen.
+ */
+public class RequestStatementCounter implements StatementInspector {
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    public void begin() {
+        COUNT.set(new int[1]);
+    }
+
+    public int end() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,86 @@
+package org.haykal.emr.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.haykal.emr.exception.DuplicateResourceException;
+import org.haykal.emr.exception.InvalidStatusTransitionException;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Timers and result-size summaries for the service-layer hot paths, tagged by facility (see
+ * {@link FacilityTags}) and by outcome: {@code success}, or the kind of failure the exception
+ * handler would report. Facilities that were never resolved are tagged {@code other}.
+ * <p>
+ * Timer buckets are configured per meter name under {@code management.metrics.distribution}; the
+ * result-size buckets are fixed here, since those properties read whole numbers as durations.
+ * Timings are taken inside the caller's transaction and so exclude its commit.
+ */
+@Component
+public class ServiceMetrics {
+    private static final double[] RESULT_SIZE_BUCKETS = {1, 5, 10, 20, 50, 100, 1000};
+
+    private final MeterRegistry meterRegistry;
+    private final FacilityTags facilityTags;
+
+    public ServiceMetrics(MeterRegistry meterRegistry,
+                          @Value("${app.metrics.max-facility-tags:100}") int maxFacilityTags) {
+        this.meterRegistry = meterRegistry;
+        this.facilityTags = new FacilityTags(maxFacilityTags);
+    }
+
+    public <T> T time(String name, Long facilityId, Supplier<T> action) {
+        return time(name, facilityId, Tags.empty(), action);
+    }
+
+    public <T> T time(String name, Long facilityId, Tags tags, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            // Every timed call resolves its facility, so only a successful one proves that it exists
+            String facility = outcome.equals("success") ? facilityTags.admit(facilityId) : facilityTags.of(facilityId);
+            sample.stop(meterRegistry.timer(name, tags.and("facility", facility, "outcome", outcome)));
+        }
+    }
+
+    public void time(String name, Long facilityId, Runnable action) {
+        time(name, facilityId, Tags.empty(), () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Called once the facility was resolved, like a successful timed call
+    public void recordResultSize(String name, Long facilityId, Tags tags, long size) {
+        DistributionSummary.builder(name)
+                .tags(tags.and("facility", facilityTags.admit(facilityId)))
+                .serviceLevelObjectives(RESULT_SIZE_BUCKETS)
+                .register(meterRegistry)
+                .record(size);
+    }
+
+    static String outcome(RuntimeException e) {
+        if (e instanceof ResourceNotFoundException) {
+            return "not_found";
+        }
+        if (e instanceof DuplicateResourceException || e instanceof InvalidStatusTransitionException
+                || e instanceof OptimisticLockingFailureException) {
+            return "conflict";
+        }
+        if (e instanceof IllegalArgumentException) {
+            return "invalid";
+        }
+        return "error";
+    }
+}
@@ -0,0 +1,51 @@
+package org.haykal.emr.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Records the number of Hibernate statements each request ran as {@code emr.http.statements},
+ * tagged like {@code http.server.requests} by method and URI template, so the endpoints that
+ * drive database load show up without turning on SQL logging.
+ */
+public class StatementMetricsFilter extends OncePerRequestFilter {
+    private static final double[] STATEMENT_BUCKETS = {1, 2, 5, 10, 20, 50, 100};
+
+    private final RequestStatementCounter counter;
+    private final MeterRegistry meterRegistry;
+
+    public StatementMetricsFilter(RequestStatementCounter counter, MeterRegistry meterRegistry) {
+        this.counter = counter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        counter.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int statements = counter.end();
+            DistributionSummary.builder("emr.http.statements")
+                    .tags("method", request.getMethod(), "uri", uri(request))
+                    .serviceLevelObjectives(STATEMENT_BUCKETS)
+                    .register(meterRegistry)
+                    .record(statements);
+        }
+    }
+
+    // The matched handler pattern keeps the tag bounded; unmatched requests share one value
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
@@ -0,0 +1,23 @@
+package org.haykal.emr.mpi;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.function.Function;
+
+// The blocking key columns on patients (see V10 migration) and where each value comes from
+@Getter
+@RequiredArgsConstructor
+public enum BlockingKey {
+    NAME_DOB("mpi_name_dob_key", PatientMatchKeys::nameDobKey),
+    FIRST_DOB("mpi_first_dob_key", PatientMatchKeys::firstDobKey),
+    NAMES_YEAR("mpi_names_year_key", PatientMatchKeys::namesYearKey),
+    PHONE("mpi_phone_key", PatientMatchKeys::phoneKey);
+
+    private final String column;
+    private final Function<PatientMatchKeys, String> value;
+
+    public String valueOf(PatientMatchKeys keys) {
+        return value.apply(keys);
+    }
+}
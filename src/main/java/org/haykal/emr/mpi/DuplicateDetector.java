@@ -0,0 +1,339 @@
+package org.haykal.emr.mpi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.haykal.emr.dto.DuplicateCandidateDTO;
+import org.haykal.emr.dto.DuplicateScanResult;
+import org.haykal.emr.dto.PossibleDuplicateDTO;
+import org.haykal.emr.entity.Patient;
+import org.haykal.emr.exception.DuplicateResourceException;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.haykal.emr.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Finds probable duplicate patients: candidates come from the blocking keys (see
+ * {@link PatientMatchKeys}) and are kept when the {@link PatientMatcher} scores them at or above
+ * {@link PatientMatcher#CANDIDATE_THRESHOLD}.
+ * <p>
+ * Registration runs the inline check: one index probe per non-null key, at most four, capped at
+ * {@code app.mpi.max-candidates} rows each, so its cost does not grow with the size of a block.
+ * Its time is recorded as {@code emr.mpi.inline} and logged when over
+ * {@code app.mpi.inline-budget}. Registrations that race each other, bulk imports and rows
+ * written outside the application are caught by the batch scan, which streams the table once per
+ * key and compares each block's records pairwise on {@code app.mpi.scan-parallelism} threads.
+ */
+@Slf4j
+@Component
+public class DuplicateDetector {
+    private static final int BACKFILL_CHUNK = 1000;
+    // Small blocks are handed to the workers together, roughly this many comparisons at a time
+    private static final long COMPARISONS_PER_TASK = 10_000;
+
+    private final PatientMatchRepository repository;
+    private final PatientRepository patientRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Timer inlineTimer;
+    private final Duration inlineBudget;
+    private final int maxCandidates;
+    private final int maxBlockSize;
+    private final int parallelism;
+    private final AtomicBoolean scanning = new AtomicBoolean();
+
+    public DuplicateDetector(PatientMatchRepository repository,
+                             PatientRepository patientRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.mpi.inline-budget:50ms}") Duration inlineBudget,
+                             @Value("${app.mpi.max-candidates:20}") int maxCandidates,
+                             @Value("${app.mpi.max-block-size:1000}") int maxBlockSize,
+                             @Value("${app.mpi.scan-parallelism:0}") int parallelism) {
+        this.repository = repository;
+        this.patientRepository = patientRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.inlineTimer = meterRegistry.timer("emr.mpi.inline");
+        this.inlineBudget = inlineBudget;
+        this.maxCandidates = maxCandidates;
+        this.maxBlockSize = maxBlockSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    // Runs in the registration transaction once the patient row has been flushed
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<PossibleDuplicateDTO> detectOnRegistration(Patient patient) {
+        long start = System.nanoTime();
+        MatchRecord probe = new MatchRecord(patient.getId(), patient.getMrn(), patient.getFirstName(),
+                patient.getLastName(), patient.getDateOfBirth(), patient.getGender().name(), patient.getPhone(),
+                patient.getEmail(), patient.getFacility().getId());
+
+        List<PossibleDuplicateDTO> matches = new ArrayList<>();
+        List<PatientMatchRepository.Candidate> candidates = new ArrayList<>();
+        for (MatchRecord record : repository.findByBlockingKeys(PatientMatchKeys.of(patient), patient.getId(), maxCandidates)) {
+            double score = PatientMatcher.score(probe, record);
+            if (score >= PatientMatcher.CANDIDATE_THRESHOLD) {
+                matches.add(new PossibleDuplicateDTO(record.getId(), score));
+                candidates.add(PatientMatchRepository.Candidate.of(patient.getId(), record.getId(), score));
+            }
+        }
+        if (!candidates.isEmpty()) {
+            repository.saveCandidates(candidates, PatientMatchRepository.SOURCE_INLINE);
+            log.info("Patient {} has {} probable duplicate(s)", patient.getId(), candidates.size());
+        }
+        matches.sort(Comparator.comparingDouble(PossibleDuplicateDTO::getScore).reversed());
+
+        long nanos = System.nanoTime() - start;
+        inlineTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos > inlineBudget.toNanos()) {
+            log.warn("Duplicate check for patient {} took {} ms, over its {} ms budget", patient.getId(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), inlineBudget.toMillis());
+        }
+        return matches;
+    }
+
+    @Transactional(readOnly = true)
+    public List<DuplicateCandidateDTO> findCandidates(Long patientId) {
+        if (!patientRepository.existsById(patientId)) {
+            throw new ResourceNotFoundException("Patient not found with ID: " + patientId);
+        }
+        return repository.findCandidatesOf(patientId);
+    }
+
+    // Off unless app.mpi.scan-cron is set
+    @Scheduled(cron = "${app.mpi.scan-cron:-}")
+    public void scheduledScan() {
+        try {
+            scan();
+        } catch (RuntimeException e) {
+            log.warn("Duplicate scan failed: {}", e.getMessage());
+        }
+    }
+
+    // Starts a scan on a background thread and returns at once; the outcome is logged
+    public void startScan() {
+        if (!scanning.compareAndSet(false, true)) {
+            throw new DuplicateResourceException("A duplicate scan is already running");
+        }
+        Thread.ofVirtual().name("duplicate-scan").start(() -> {
+            try {
+                runScan();
+            } catch (RuntimeException e) {
+                log.warn("Duplicate scan failed: {}", e.getMessage());
+            } finally {
+                scanning.set(false);
+            }
+        });
+    }
+
+    boolean isScanning() {
+        return scanning.get();
+    }
+
+    /**
+     * Rescans the whole patients table and replaces the batch-found candidates; candidates found at
+     * registration are kept. Blocks larger than {@code app.mpi.max-block-size} (a shared placeholder
+     * phone number, say) are skipped and counted rather than compared pairwise.
+     */
+    public DuplicateScanResult scan() {
+        if (!scanning.compareAndSet(false, true)) {
+            throw new DuplicateResourceException("A duplicate scan is already running");
+        }
+        try {
+            return runScan();
+        } finally {
+            scanning.set(false);
+        }
+    }
+
+    private DuplicateScanResult runScan() {
+        long start = System.nanoTime();
+        DuplicateScanResult result = new DuplicateScanResult();
+        result.setKeysBackfilled(backfillKeys());
+        log.debug("Duplicate scan: {} keys backfilled in {} ms", result.getKeysBackfilled(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        ConcurrentMap<PairKey, Double> pairs = new ConcurrentHashMap<>();
+        LongAdder comparisons = new LongAdder();
+        for (BlockingKey key : BlockingKey.values()) {
+            long keyStart = System.nanoTime();
+            scanBlocks(key, pairs, comparisons, result);
+            log.debug("Duplicate scan: {} blocks done in {} ms", key,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - keyStart));
+        }
+        result.setComparisons(comparisons.sum());
+
+        List<PatientMatchRepository.Candidate> candidates = pairs.entrySet().stream()
+                .map(pair -> new PatientMatchRepository.Candidate(pair.getKey().low(), pair.getKey().high(), pair.getValue()))
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.deleteCandidates(PatientMatchRepository.SOURCE_BATCH);
+            repository.saveCandidates(candidates, PatientMatchRepository.SOURCE_BATCH);
+        });
+        result.setCandidates(candidates.size());
+        result.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Duplicate scan: {} blocks ({} oversized), {} comparisons, {} candidates in {} ms",
+                result.getBlocks(), result.getOversizedBlocks(), result.getComparisons(),
+                result.getCandidates(), result.getDurationMillis());
+        return result;
+    }
+
+    // Fills in the keys of rows inserted without them, one chunk per transaction. Chunks are read
+    // from id windows that widen while they come back empty, to get across gaps in the ids quickly.
+    private long backfillKeys() {
+        long maxId = repository.maxPatientId();
+        long filled = 0;
+        long afterId = 0;
+        long span = BACKFILL_CHUNK;
+        while (afterId < maxId) {
+            long from = afterId;
+            long to = Math.min(afterId + span, maxId);
+            List<PatientMatchRepository.KeyedPatient> chunk = transactionTemplate.execute(status -> {
+                List<PatientMatchRepository.KeyedPatient> rows = repository.findWithoutKeys(from, to, BACKFILL_CHUNK);
+                if (!rows.isEmpty()) {
+                    repository.updateKeys(rows);
+                }
+                return rows;
+            });
+            if (chunk.isEmpty()) {
+                afterId = to;
+                span *= 2;
+                continue;
+            }
+            filled += chunk.size();
+            afterId = chunk.size() == BACKFILL_CHUNK ? chunk.get(chunk.size() - 1).id() : to;
+            span = BACKFILL_CHUNK;
+        }
+        return filled;
+    }
+
+    private void scanBlocks(BlockingKey key, ConcurrentMap<PairKey, Double> pairs, LongAdder comparisons,
+                            DuplicateScanResult result) {
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        // Bounds the blocks held in memory while the workers catch up with the reader
+        Semaphore inFlight = new Semaphore(parallelism * 4);
+
+        try (ExecutorService workers = Executors.newFixedThreadPool(parallelism)) {
+            BlockCollector collector = new BlockCollector(work -> {
+                inFlight.acquireUninterruptibly();
+                workers.execute(() -> {
+                    try {
+                        for (List<MatchRecord> block : work) {
+                            compare(block, pairs, comparisons);
+                        }
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            });
+            readOnlyTransaction.executeWithoutResult(status -> repository.scan(key, collector::accept));
+            collector.finish();
+            result.setBlocks(result.getBlocks() + collector.blocks);
+            result.setOversizedBlocks(result.getOversizedBlocks() + collector.oversized);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void compare(List<MatchRecord> block, ConcurrentMap<PairKey, Double> pairs, LongAdder comparisons) {
+        for (int i = 0; i < block.size(); i++) {
+            MatchRecord a = block.get(i);
+            for (int j = i + 1; j < block.size(); j++) {
+                MatchRecord b = block.get(j);
+                double score = PatientMatcher.score(a, b);
+                if (score >= PatientMatcher.CANDIDATE_THRESHOLD) {
+                    pairs.merge(PairKey.of(a.getId(), b.getId()), score, Math::max);
+                }
+            }
+        }
+        comparisons.add((long) block.size() * (block.size() - 1) / 2);
+    }
+
+    private record PairKey(long low, long high) {
+        static PairKey of(long a, long b) {
+            return a < b ? new PairKey(a, b) : new PairKey(b, a);
+        }
+    }
+
+    // Groups the key-ordered rows into blocks and hands them on in batches of similar total work
+    private final class BlockCollector {
+        private final Consumer<List<List<MatchRecord>>> sink;
+        private String currentKey;
+        private List<MatchRecord> current = new ArrayList<>();
+        private int currentSize;
+        private List<List<MatchRecord>> batch = new ArrayList<>();
+        private long batchComparisons;
+        private long blocks;
+        private long oversized;
+
+        private BlockCollector(Consumer<List<List<MatchRecord>>> sink) {
+            this.sink = sink;
+        }
+
+        void accept(String key, MatchRecord record) {
+            if (!key.equals(currentKey)) {
+                closeBlock();
+                currentKey = key;
+            }
+            // Oversized blocks are only counted, their records are not kept
+            if (++currentSize <= maxBlockSize) {
+                current.add(record);
+            } else {
+                current.clear();
+            }
+        }
+
+        void finish() {
+            closeBlock();
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+                batch = new ArrayList<>();
+            }
+        }
+
+        private void closeBlock() {
+            if (currentSize > maxBlockSize) {
+                oversized++;
+                log.debug("Skipping an oversized duplicate block of {} patients", currentSize);
+            } else if (currentSize > 1) {
+                blocks++;
+                batch.add(current);
+                current = new ArrayList<>();
+                batchComparisons += (long) currentSize * (currentSize - 1) / 2;
+                if (batchComparisons >= COMPARISONS_PER_TASK) {
+                    sink.accept(batch);
+                    batch = new ArrayList<>();
+                    batchComparisons = 0;
+                }
+            }
+            current.clear();
+            currentSize = 0;
+        }
+    }
+}
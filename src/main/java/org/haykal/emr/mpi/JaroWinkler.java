@@ -0,0 +1,68 @@
+package org.haykal.emr.mpi;
+
+/**
+ * Jaro-Winkler similarity: 1 for identical strings, 0 for strings with nothing in common, with a
+ * bonus for a shared prefix of up to four characters. Suited to short strings such as names,
+ * where typos and transposed letters keep the score high.
+ */
+public final class JaroWinkler {
+    private static final double PREFIX_SCALE = 0.1;
+    private static final int MAX_PREFIX = 4;
+
+    private JaroWinkler() {
+    }
+
+    public static double similarity(String a, String b) {
+        if (a.equals(b)) {
+            return a.isEmpty() ? 0 : 1;
+        }
+        int lengthA = a.length();
+        int lengthB = b.length();
+        if (lengthA == 0 || lengthB == 0) {
+            return 0;
+        }
+
+        int window = Math.max(0, Math.max(lengthA, lengthB) / 2 - 1);
+        boolean[] matchedA = new boolean[lengthA];
+        boolean[] matchedB = new boolean[lengthB];
+        int matches = 0;
+        for (int i = 0; i < lengthA; i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(lengthB, i + window + 1);
+            for (int j = from; j < to; j++) {
+                if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+                    matchedA[i] = true;
+                    matchedB[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+
+        int halfTranspositions = 0;
+        for (int i = 0, j = 0; i < lengthA; i++) {
+            if (matchedA[i]) {
+                while (!matchedB[j]) {
+                    j++;
+                }
+                if (a.charAt(i) != b.charAt(j)) {
+                    halfTranspositions++;
+                }
+                j++;
+            }
+        }
+
+        double m = matches;
+        double jaro = (m / lengthA + m / lengthB + (m - halfTranspositions / 2.0) / m) / 3;
+
+        int prefix = 0;
+        int maxPrefix = Math.min(MAX_PREFIX, Math.min(lengthA, lengthB));
+        while (prefix < maxPrefix && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * PREFIX_SCALE * (1 - jaro);
+    }
+}
@@ -0,0 +1,41 @@
+package org.haykal.emr.mpi;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * The fields of a patient that take part in matching, with the normalized forms the
+ * {@link PatientMatcher} compares computed once up front.
+ */
+@Getter
+public final class MatchRecord {
+    private final Long id;
+    private final String mrn;
+    private final String firstName;
+    private final String lastName;
+    private final LocalDate dateOfBirth;
+    private final String gender;
+    private final Long facilityId;
+
+    private final String normalizedFirstName;
+    private final String normalizedLastName;
+    private final String normalizedPhone;
+    private final String normalizedEmail;
+
+    public MatchRecord(Long id, String mrn, String firstName, String lastName, LocalDate dateOfBirth,
+                       String gender, String phone, String email, Long facilityId) {
+        this.id = id;
+        this.mrn = mrn;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth;
+        this.gender = gender;
+        this.facilityId = facilityId;
+        this.normalizedFirstName = PatientMatchKeys.normalizeName(firstName);
+        this.normalizedLastName = PatientMatchKeys.normalizeName(lastName);
+        this.normalizedPhone = PatientMatchKeys.normalizePhone(phone);
+        this.normalizedEmail = email == null || email.isBlank() ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
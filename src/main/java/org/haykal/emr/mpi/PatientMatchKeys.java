@@ -0,0 +1,112 @@
+package org.haykal.emr.mpi;
+
+import org.apache.commons.codec.language.DoubleMetaphone;
+import org.apache.commons.codec.language.Soundex;
+import org.haykal.emr.entity.Patient;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * Blocking keys of the master patient index: records sharing any one of them are compared by the
+ * {@link PatientMatcher}. Each key tolerates a different kind of error, so a duplicate only has to
+ * agree with its original on one of them.
+ * <ul>
+ *   <li>{@code nameDobKey}: Soundex of the last name and the full date of birth; tolerates typos and
+ *       spelling variants in the first name and sound-alike ones in the last</li>
+ *   <li>{@code firstDobKey}: Soundex of the first name and the full date of birth; tolerates any
+ *       change of last name, typos included</li>
+ *   <li>{@code namesYearKey}: Double Metaphone of both names in sorted order and the birth year;
+ *       tolerates day/month mistakes and swapped first and last names</li>
+ *   <li>{@code phoneKey}: the last ten digits of the phone number; tolerates name changes and any
+ *       date of birth error</li>
+ * </ul>
+ * A key is null when its inputs are missing, which keeps the record out of that block. A name
+ * without Latin letters (one written in another script, say) counts as missing: its phonetic codes
+ * would be empty, and every such record would otherwise share one huge block.
+ */
+public record PatientMatchKeys(String nameDobKey, String firstDobKey, String namesYearKey, String phoneKey) {
+    private static final Soundex SOUNDEX = new Soundex();
+    private static final DoubleMetaphone DOUBLE_METAPHONE = new DoubleMetaphone();
+    private static final int MIN_PHONE_DIGITS = 7;
+    private static final int PHONE_KEY_DIGITS = 10;
+
+    public static PatientMatchKeys of(String firstName, String lastName, LocalDate dateOfBirth, String phone) {
+        String first = normalizeName(firstName);
+        String last = normalizeName(lastName);
+        if (dateOfBirth == null) {
+            return new PatientMatchKeys(null, null, null, normalizePhone(phone));
+        }
+
+        String lastSoundex = encode(last, SOUNDEX::encode);
+        String firstSoundex = encode(first, SOUNDEX::encode);
+        String nameDobKey = lastSoundex == null ? null : lastSoundex + ":" + dateOfBirth;
+        String firstDobKey = firstSoundex == null ? null : firstSoundex + ":" + dateOfBirth;
+
+        String namesYearKey = null;
+        String a = encode(first, DOUBLE_METAPHONE::doubleMetaphone);
+        String b = encode(last, DOUBLE_METAPHONE::doubleMetaphone);
+        if (a != null && b != null) {
+            namesYearKey = (a.compareTo(b) <= 0 ? a + "|" + b : b + "|" + a) + ":" + dateOfBirth.getYear();
+        }
+
+        return new PatientMatchKeys(nameDobKey, firstDobKey, namesYearKey, normalizePhone(phone));
+    }
+
+    public static PatientMatchKeys of(Patient patient) {
+        return of(patient.getFirstName(), patient.getLastName(), patient.getDateOfBirth(), patient.getPhone());
+    }
+
+    public void applyTo(Patient patient) {
+        patient.setMpiNameDobKey(nameDobKey);
+        patient.setMpiFirstDobKey(firstDobKey);
+        patient.setMpiNamesYearKey(namesYearKey);
+        patient.setMpiPhoneKey(phoneKey);
+        patient.setMpiKeyed(true);
+    }
+
+    // Null for an empty name, and for a name the encoder has no code for
+    private static String encode(String normalizedName, UnaryOperator<String> encoder) {
+        if (normalizedName.isEmpty()) {
+            return null;
+        }
+        String code = encoder.apply(normalizedName);
+        return code == null || code.isEmpty() ? null : code;
+    }
+
+    // Upper-case A-Z only: accents are folded and spaces, hyphens and apostrophes dropped
+    static String normalizeName(String name) {
+        if (name == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(name, Normalizer.Form.NFD).toUpperCase(Locale.ROOT);
+        StringBuilder letters = new StringBuilder(folded.length());
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                letters.append(c);
+            }
+        }
+        return letters.toString();
+    }
+
+    // Last ten digits, so numbers with and without a country code agree; null for short or missing numbers
+    static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        if (digits.length() < MIN_PHONE_DIGITS) {
+            return null;
+        }
+        return digits.length() > PHONE_KEY_DIGITS ? digits.substring(digits.length() - PHONE_KEY_DIGITS) : digits.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package org.haykal.emr.mpi;
+
+import org.haykal.emr.dto.DuplicateCandidateDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * SQL of the master patient index. Plain JDBC rather than Spring Data: the batch scan streams the
+ * whole table in key order and writes keys and candidates in JDBC batches, none of which needs
+ * managed entities.
+ */
+@Repository
+public class PatientMatchRepository {
+    public static final String SOURCE_INLINE = "INLINE";
+    public static final String SOURCE_BATCH = "BATCH";
+
+    private static final String MATCH_COLUMNS = "id, mrn, first_name, last_name, date_of_birth, gender, phone, email, facility_id";
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private static final RowMapper<MatchRecord> MATCH_RECORD = (rs, rowNum) -> matchRecord(rs);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate scanTemplate;
+
+    public record KeyedPatient(long id, PatientMatchKeys keys) {
+    }
+
+    // A scored pair, lower id first as stored
+    public record Candidate(long patientId, long candidateId, double score) {
+        public static Candidate of(long a, long b, double score) {
+            return a < b ? new Candidate(a, b, score) : new Candidate(b, a, score);
+        }
+    }
+
+    public PatientMatchRepository(JdbcTemplate jdbcTemplate, DataSource dataSource) {
+        this.jdbcTemplate = jdbcTemplate;
+        // PostgreSQL only streams with a fetch size inside a transaction; the scan runs in a read-only one
+        this.scanTemplate = new JdbcTemplate(dataSource);
+        this.scanTemplate.setFetchSize(SCAN_FETCH_SIZE);
+    }
+
+    // Up to limitPerKey of the oldest records sharing each non-null key, excluding the patient itself
+    public List<MatchRecord> findByBlockingKeys(PatientMatchKeys keys, long excludeId, int limitPerKey) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (BlockingKey key : BlockingKey.values()) {
+            String value = key.valueOf(keys);
+            if (value == null) {
+                continue;
+            }
+            if (!sql.isEmpty()) {
+                sql.append(" UNION ");
+            }
+            sql.append("(SELECT ").append(MATCH_COLUMNS).append(" FROM patients WHERE ").append(key.getColumn())
+                    .append(" = ? AND id <> ? ORDER BY id LIMIT ?)");
+            args.add(value);
+            args.add(excludeId);
+            args.add(limitPerKey);
+        }
+        if (sql.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(sql.toString(), MATCH_RECORD, args.toArray());
+    }
+
+    // Every keyed patient in key order, so each block arrives as a run of consecutive rows
+    public void scan(BlockingKey key, BiConsumer<String, MatchRecord> consumer) {
+        scanTemplate.query("SELECT " + MATCH_COLUMNS + ", " + key.getColumn() + " FROM patients WHERE "
+                        + key.getColumn() + " IS NOT NULL ORDER BY " + key.getColumn(),
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(10), matchRecord(rs)));
+    }
+
+    // Patients written without going through the application, in id order after afterId
+    // Bounded by an id window as well as the limit, so no database has to sort every key-less row.
+    // Rows with a name key were keyed before mpi_keyed existed and need no second pass.
+    public List<KeyedPatient> findWithoutKeys(long afterId, long toId, int limit) {
+        return jdbcTemplate.query("SELECT id, first_name, last_name, date_of_birth, phone FROM patients " +
+                        "WHERE NOT mpi_keyed AND mpi_name_dob_key IS NULL AND id > ? AND id <= ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new KeyedPatient(rs.getLong(1), PatientMatchKeys.of(rs.getString(2), rs.getString(3),
+                        rs.getObject(4, LocalDate.class), rs.getString(5))),
+                afterId, toId, limit);
+    }
+
+    public long maxPatientId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM patients", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    public void updateKeys(List<KeyedPatient> patients) {
+        jdbcTemplate.batchUpdate("UPDATE patients SET mpi_name_dob_key = ?, mpi_first_dob_key = ?, " +
+                        "mpi_names_year_key = ?, mpi_phone_key = ?, mpi_keyed = TRUE WHERE id = ?", patients, patients.size(),
+                (ps, patient) -> {
+                    ps.setString(1, patient.keys().nameDobKey());
+                    ps.setString(2, patient.keys().firstDobKey());
+                    ps.setString(3, patient.keys().namesYearKey());
+                    ps.setString(4, patient.keys().phoneKey());
+                    ps.setLong(5, patient.id());
+                });
+    }
+
+    // Pairs already recorded, by either source, keep their original row
+    public void saveCandidates(List<Candidate> candidates, String source) {
+        jdbcTemplate.batchUpdate("INSERT INTO patient_match_candidates (patient_id, candidate_id, score, source) " +
+                        "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING", candidates, 500,
+                (ps, candidate) -> {
+                    ps.setLong(1, candidate.patientId());
+                    ps.setLong(2, candidate.candidateId());
+                    ps.setDouble(3, candidate.score());
+                    ps.setString(4, source);
+                });
+    }
+
+    public int deleteCandidates(String source) {
+        return jdbcTemplate.update("DELETE FROM patient_match_candidates WHERE source = ?", source);
+    }
+
+    // Candidates of a patient from either side of the pair, best first
+    public List<DuplicateCandidateDTO> findCandidatesOf(long patientId) {
+        String select = "SELECT p.id, p.mrn, p.first_name, p.last_name, p.date_of_birth, p.facility_id, " +
+                "c.score, c.source, c.detected_at FROM patient_match_candidates c JOIN patients p ";
+        return jdbcTemplate.query(select + "ON p.id = c.candidate_id WHERE c.patient_id = ? " +
+                        "UNION ALL " + select + "ON p.id = c.patient_id WHERE c.candidate_id = ? " +
+                        "ORDER BY 7 DESC, 1",
+                (rs, rowNum) -> {
+                    DuplicateCandidateDTO dto = new DuplicateCandidateDTO();
+                    dto.setPatientId(rs.getLong(1));
+                    dto.setMrn(rs.getString(2));
+                    dto.setFirstName(rs.getString(3));
+                    dto.setLastName(rs.getString(4));
+                    dto.setDateOfBirth(rs.getObject(5, LocalDate.class));
+                    dto.setFacilityId(rs.getLong(6));
+                    dto.setScore(rs.getDouble(7));
+                    dto.setSource(rs.getString(8));
+                    Timestamp detectedAt = rs.getTimestamp(9);
+                    dto.setDetectedAt(detectedAt != null ? detectedAt.toLocalDateTime() : null);
+                    return dto;
+                },
+                patientId, patientId);
+    }
+
+    private static MatchRecord matchRecord(ResultSet rs) throws SQLException {
+        return new MatchRecord(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                rs.getObject(5, LocalDate.class), rs.getString(6), rs.getString(7), rs.getString(8),
+                rs.getLong(9));
+    }
+}
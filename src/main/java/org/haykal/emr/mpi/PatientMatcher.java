@@ -0,0 +1,80 @@
+package org.haykal.emr.mpi;
+
+import java.time.LocalDate;
+
+/**
+ * Scores how likely two patient records describe the same person, from 0 to 1.
+ * <p>
+ * The score is a weighted average of per-field agreements: Jaro-Winkler similarity for names
+ * (also read with first and last name swapped), graded agreement for the date of birth and exact
+ * agreement for gender, phone and email. Fields missing on either side are left out of the
+ * average rather than counted as disagreeing. Twins and other relatives sharing a surname,
+ * birth date and phone agree on almost everything but the first name, so a clearly different first
+ * name keeps the pair below {@link #CANDIDATE_THRESHOLD} whatever the other fields say. Nicknames
+ * (Bob for Robert) are missed for the same reason.
+ */
+public final class PatientMatcher {
+    public static final double CANDIDATE_THRESHOLD = 0.85;
+
+    private static final double LAST_NAME = 0.25;
+    private static final double FIRST_NAME = 0.20;
+    private static final double BIRTH_DATE = 0.25;
+    private static final double GENDER = 0.05;
+    private static final double PHONE = 0.15;
+    private static final double EMAIL = 0.10;
+
+    // Swapped names are a common registration error but weaker evidence than names in place
+    private static final double SWAPPED_NAMES = 0.95;
+
+    // Below this first-name similarity the pair is treated as two people
+    private static final double FIRST_NAME_FLOOR = 0.75;
+    private static final double DIFFERENT_FIRST_NAME_CAP = CANDIDATE_THRESHOLD - 0.05;
+
+    private PatientMatcher() {
+    }
+
+    public static double score(MatchRecord a, MatchRecord b) {
+        double straightFirst = JaroWinkler.similarity(a.getNormalizedFirstName(), b.getNormalizedFirstName());
+        double straight = FIRST_NAME * straightFirst
+                + LAST_NAME * JaroWinkler.similarity(a.getNormalizedLastName(), b.getNormalizedLastName());
+        double swappedFirst = JaroWinkler.similarity(a.getNormalizedFirstName(), b.getNormalizedLastName());
+        double swapped = SWAPPED_NAMES * (FIRST_NAME * swappedFirst
+                + LAST_NAME * JaroWinkler.similarity(a.getNormalizedLastName(), b.getNormalizedFirstName()));
+        double firstName = straight >= swapped ? straightFirst : swappedFirst;
+
+        double weight = FIRST_NAME + LAST_NAME + BIRTH_DATE;
+        double total = Math.max(straight, swapped) + BIRTH_DATE * birthDateAgreement(a.getDateOfBirth(), b.getDateOfBirth());
+
+        if (a.getGender() != null && b.getGender() != null) {
+            weight += GENDER;
+            total += a.getGender().equals(b.getGender()) ? GENDER : 0;
+        }
+        if (a.getNormalizedPhone() != null && b.getNormalizedPhone() != null) {
+            weight += PHONE;
+            total += a.getNormalizedPhone().equals(b.getNormalizedPhone()) ? PHONE : 0;
+        }
+        if (a.getNormalizedEmail() != null && b.getNormalizedEmail() != null) {
+            weight += EMAIL;
+            total += a.getNormalizedEmail().equals(b.getNormalizedEmail()) ? EMAIL : 0;
+        }
+        double score = total / weight;
+        return firstName < FIRST_NAME_FLOOR ? Math.min(score, DIFFERENT_FIRST_NAME_CAP) : score;
+    }
+
+    // Same date, day and month swapped, or one of year, month and day mistyped
+    static double birthDateAgreement(LocalDate a, LocalDate b) {
+        if (a == null || b == null) {
+            return 0;
+        }
+        if (a.equals(b)) {
+            return 1;
+        }
+        if (a.getYear() == b.getYear() && a.getMonthValue() == b.getDayOfMonth() && a.getDayOfMonth() == b.getMonthValue()) {
+            return 0.8;
+        }
+        int differing = (a.getYear() != b.getYear() ? 1 : 0)
+                + (a.getMonthValue() != b.getMonthValue() ? 1 : 0)
+                + (a.getDayOfMonth() != b.getDayOfMonth() ? 1 : 0);
+        return differing == 1 ? 0.5 : 0;
+    }
+}
@@ -0,0 +1,84 @@
+package org.haykal.emr.outbox;
+
+import org.haykal.emr.entity.ChangeEvent;
+import org.haykal.emr.repository.ChangeEventRepository;
+import org.haykal.emr.service.ChangeFeedService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves committed outbox events to the {@link ChangeEventSink} in batches.
+ * <p>
+ * Each batch is one transaction: lock the relay state row, read the oldest unpublished events,
+ * give them the next delivery sequence numbers, publish, mark them published and commit. The lock
+ * makes relays on different nodes take turns, so delivery sequence numbers become visible in
+ * order and the /changes feed never skips one that commits late.
+ */
+@Slf4j
+@Component
+public class ChangeEventRelay {
+    private final ChangeEventRepository changeEventRepository;
+    private final ChangeEventSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public ChangeEventRelay(ChangeEventRepository changeEventRepository,
+                            ChangeEventSink sink,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.outbox.batch-size:200}") int batchSize) {
+        this.changeEventRepository = changeEventRepository;
+        this.sink = sink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval:PT1S}")
+    public void relay() {
+        try {
+            int published = publishPending();
+            if (published > 0) {
+                log.debug("Relayed {} change events", published);
+            }
+        } catch (RuntimeException e) {
+            // Nothing was marked published; the same events go out on the next run
+            log.warn("Change event relay failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+
+    // Publishes until the outbox is drained; returns the number of events published
+    public int publishPending() {
+        int total = 0;
+        while (true) {
+            Integer published = transactionTemplate.execute(status -> publishBatch());
+            total += published;
+            if (published < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    private int publishBatch() {
+        long seq = changeEventRepository.lockLastDeliverySeq();
+        List<ChangeEvent> batch = changeEventRepository.findUnpublished(PageRequest.ofSize(batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (ChangeEvent event : batch) {
+            event.setDeliverySeq(++seq);
+            event.setPublishedAt(now);
+        }
+        sink.publish(batch.stream().map(ChangeFeedService::toDTO).toList());
+        changeEventRepository.updateLastDeliverySeq(seq);
+        return batch.size();
+    }
+}
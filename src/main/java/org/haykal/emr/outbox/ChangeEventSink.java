@@ -0,0 +1,18 @@
+package org.haykal.emr.outbox;
+
+import org.haykal.emr.dto.ChangeEventDTO;
+
+import java.util.List;
+
+/**
+ * Destination the {@link ChangeEventRelay} publishes outbox events to.
+ * <p>
+ * Delivery is at-least-once: a batch is marked published only after {@link #publish} returns, so a
+ * failure, or a crash before the relay commits, sends the same events again. Events arrive in
+ * outbox order, which keeps each patient's events in the order they were committed. Consumers
+ * deduplicate by event id. Implementations throw to make the relay retry the batch later.
+ */
+public interface ChangeEventSink {
+
+    void publish(List<ChangeEventDTO> events);
+}
@@ -0,0 +1,50 @@
+package org.haykal.emr.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.haykal.emr.dto.ChangeEventDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Appends each batch to an NDJSON file and forces it to disk before the relay marks it published
+public class FileChangeEventSink implements ChangeEventSink {
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    // Not synchronized: a virtual thread blocked in the write or force would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public FileChangeEventSink(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void publish(List<ChangeEventDTO> events) {
+        StringBuilder lines = new StringBuilder();
+        lock.lock();
+        try {
+            for (ChangeEventDTO event : events) {
+                lines.append(objectMapper.writeValueAsString(event)).append('\n');
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append change events to " + file, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
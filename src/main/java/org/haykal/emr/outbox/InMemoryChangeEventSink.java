@@ -0,0 +1,24 @@
+package org.haykal.emr.outbox;
+
+import org.haykal.emr.dto.ChangeEventDTO;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// In-process sink for tests and local runs: keeps everything published
+public class InMemoryChangeEventSink implements ChangeEventSink {
+    private final List<ChangeEventDTO> published = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(List<ChangeEventDTO> events) {
+        published.addAll(events);
+    }
+
+    public List<ChangeEventDTO> getPublished() {
+        return List.copyOf(published);
+    }
+
+    public void clear() {
+        published.clear();
+    }
+}
@@ -0,0 +1,17 @@
+package org.haykal.emr.outbox;
+
+import org.haykal.emr.dto.ChangeEventDTO;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+// Default sink when integrations read the /changes feed rather than being pushed to
+@Slf4j
+public class LoggingChangeEventSink implements ChangeEventSink {
+
+    @Override
+    public void publish(List<ChangeEventDTO> events) {
+        log.debug("Published change events {} to {}", events.get(0).getSequence(),
+                events.get(events.size() - 1).getSequence());
+    }
+}
@@ -0,0 +1,69 @@
+package org.haykal.emr.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.haykal.emr.entity.ChangeAggregate;
+import org.haykal.emr.entity.ChangeEvent;
+import org.haykal.emr.entity.ChangeEventType;
+import org.haykal.emr.repository.ChangeEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records change events in the outbox as part of the caller's transaction, so an event exists
+ * exactly when the change it describes was committed.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxWriter {
+
+    public record Change(ChangeAggregate aggregateType, Long aggregateId, Long patientId,
+                         ChangeEventType eventType, Object payload) {
+    }
+
+    private final ChangeEventRepository changeEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(ChangeAggregate aggregateType, Long aggregateId, Long patientId,
+                       ChangeEventType eventType, Object payload) {
+        appendAll(List.of(new Change(aggregateType, aggregateId, patientId, eventType, payload)));
+    }
+
+    // The pending changes are flushed first: their row locks are then held when the event ids are
+    // taken, so a concurrent change to the same rows always ends up with the later event id
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(Collection<Change> changes) {
+        entityManager.flush();
+        LocalDateTime now = LocalDateTime.now();
+        for (Change change : changes) {
+            changeEventRepository.save(ChangeEvent.builder()
+                    .aggregateType(change.aggregateType())
+                    .aggregateId(change.aggregateId())
+                    .patientId(change.patientId())
+                    .eventType(change.eventType())
+                    .payload(toJson(change.payload()))
+                    .createdAt(now)
+                    .build());
+        }
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize change event payload", e);
+        }
+    }
+}
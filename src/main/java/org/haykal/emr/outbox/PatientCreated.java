@@ -0,0 +1,9 @@
+package org.haykal.emr.outbox;
+
+import org.haykal.emr.dto.PatientDTO;
+
+import java.util.List;
+
+// Payload of a patient CREATED event; the services requested at registration travel with it
+public record PatientCreated(PatientDTO patient, List<PatientServiceChange> services) {
+}
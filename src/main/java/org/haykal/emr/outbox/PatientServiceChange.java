@@ -0,0 +1,26 @@
+package org.haykal.emr.outbox;
+
+import org.haykal.emr.entity.PatientService;
+
+import java.time.LocalDateTime;
+
+/**
+ * Payload of patient service change events. Set-based transitions build the same JSON in SQL
+ * (see ChangeEventRepository.appendServiceStatusChanges), so the two must stay in step.
+ */
+public record PatientServiceChange(
+        Long id,
+        Long patientId,
+        Long facilityId,
+        Long serviceTypeId,
+        String status,
+        LocalDateTime scheduledDate,
+        LocalDateTime completedDate,
+        Long version) {
+
+    public static PatientServiceChange of(PatientService service) {
+        return new PatientServiceChange(service.getId(), service.getPatient().getId(), service.getFacility().getId(),
+                service.getServiceType().getId(), service.getStatus().name(), service.getScheduledDate(),
+                service.getCompletedDate(), service.getVersion());
+    }
+}
@@ -0,0 +1,55 @@
+package org.haykal.emr.repository;
+
+import org.haykal.emr.entity.ChangeEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChangeEventRepository extends JpaRepository<ChangeEvent, Long> {
+    // ISO-8601 JSON string for a timestamp column, or null, matching Jackson's LocalDateTime output
+    String JSON_TIMESTAMP_SCHEDULED = "COALESCE('\"' || REPLACE(CAST(ps.scheduled_date AS VARCHAR), ' ', 'T') || '\"', 'null')";
+    String JSON_TIMESTAMP_COMPLETED = "COALESCE('\"' || REPLACE(CAST(ps.completed_date AS VARCHAR), ' ', 'T') || '\"', 'null')";
+
+    @Query("SELECT e FROM ChangeEvent e WHERE e.publishedAt IS NULL ORDER BY e.id")
+    List<ChangeEvent> findUnpublished(Pageable limit);
+
+    @Query("SELECT e FROM ChangeEvent e WHERE e.deliverySeq > :since ORDER BY e.deliverySeq")
+    List<ChangeEvent> findDeliveredAfter(@Param("since") long since, Pageable limit);
+
+    // Held until the relay transaction ends, so only one relay sequences events at a time
+    @Query(value = "SELECT last_delivery_seq FROM change_relay_state WHERE id = 1 FOR UPDATE", nativeQuery = true)
+    long lockLastDeliverySeq();
+
+    @Modifying
+    @Query(value = "UPDATE change_relay_state SET last_delivery_seq = :seq WHERE id = 1", nativeQuery = true)
+    void updateLastDeliverySeq(@Param("seq") long seq);
+
+    // Status change events for a set-based transition, one per service it stamped with the marker,
+    // in id order, shaped like PatientServiceChange. Must run after the UPDATE, in the same transaction.
+    @Modifying
+    @Query(value = "INSERT INTO change_events (aggregate_type, aggregate_id, patient_id, event_type, payload, created_at) " +
+            "SELECT 'PATIENT_SERVICE', ps.id, ps.patient_id, 'STATUS_CHANGED', " +
+            "'{\"id\":' || ps.id || ',\"patientId\":' || ps.patient_id || ',\"facilityId\":' || ps.facility_id || " +
+            "',\"serviceTypeId\":' || ps.service_type_id || ',\"status\":\"' || ps.status || '\"' || " +
+            "',\"scheduledDate\":' || " + JSON_TIMESTAMP_SCHEDULED + " || " +
+            "',\"completedDate\":' || " + JSON_TIMESTAMP_COMPLETED + " || " +
+            "',\"version\":' || ps.version || '}', :createdAt " +
+            "FROM patient_services ps WHERE ps.transition_id = :transitionId ORDER BY ps.id", nativeQuery = true)
+    int appendServiceStatusChanges(@Param("transitionId") long transitionId, @Param("createdAt") LocalDateTime createdAt);
+
+    // Deletion events for a set of patients, shaped like the single-patient {"id": ...} payload.
+    // Must run before the DELETE, in the same transaction.
+    @Modifying
+    @Query(value = "INSERT INTO change_events (aggregate_type, aggregate_id, patient_id, event_type, payload, created_at) " +
+            "SELECT 'PATIENT', p.id, p.id, 'DELETED', '{\"id\":' || p.id || '}', :createdAt " +
+            "FROM patients p WHERE p.id IN (:ids) ORDER BY p.id", nativeQuery = true)
+    int appendPatientDeletions(@Param("ids") Collection<Long> ids, @Param("createdAt") LocalDateTime createdAt);
+}
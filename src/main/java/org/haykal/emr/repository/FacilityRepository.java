@@ -1,15 +1,29 @@
 package org.haykal.emr.repository;
 
 import org.haykal.emr.entity.Facility;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface FacilityRepository extends JpaRepository<Facility, Long> {
     Optional<Facility> findByCode(String code);
     List<Facility> findByActiveTrue();
     boolean existsByCode(String code);
+
+    // Fetch the services in the same statement so building FacilityDTOs does not run one query per facility
+    @EntityGraph(attributePaths = "availableServices")
+    List<Facility> findWithServicesByActiveTrueOrderById();
+
+    @EntityGraph(attributePaths = "availableServices")
+    Optional<Facility> findWithServicesById(Long id);
+
+    @Query("SELECT s.id FROM Facility f JOIN f.availableServices s WHERE f.id = :facilityId")
+    Set<Long> findAvailableServiceTypeIds(@Param("facilityId") Long facilityId);
 }
@@ -1,40 +1,140 @@
 package org.haykal.emr.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.haykal.emr.entity.Patient;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Long> {
 
     Optional<Patient> findByMrn(String mrn);
 
-    @Query("SELECT p FROM Patient p WHERE p.facility.id = :facilityId " +
-            "AND (LOWER(p.firstName) LIKE LOWER(CONCAT('%', :search, '%')) " +
-            "OR LOWER(p.lastName) LIKE LOWER(CONCAT('%', :search, '%')) " +
-            "OR LOWER(p.mrn) LIKE LOWER(CONCAT('%', :search, '%')))")
-    Page<Patient> searchByFacility(@Param("facilityId") Long facilityId,
-                                   @Param("search") String search,
-                                   Pageable pageable);
+    String EXPORT_FETCH_SIZE = "1000";
+
+    String SUMMARY_SELECT = "SELECT new org.haykal.emr.repository.PatientSummary(" +
+            "p.id, p.mrn, p.firstName, p.lastName, p.gender, p.dateOfBirth, p.email, p.phone, " +
+            "p.address, p.city, p.state, p.zipCode, p.insuranceProvider, p.insurancePolicyNumber, " +
+            "p.insuranceGroupNumber, f.id, f.name) FROM Patient p JOIN p.facility f ";
+
+    @Query(value = SUMMARY_SELECT + "WHERE f.id = :facilityId",
+            countQuery = "SELECT COUNT(p) FROM Patient p WHERE p.facility.id = :facilityId")
+    Page<PatientSummary> findSummariesByFacilityId(@Param("facilityId") Long facilityId, Pageable pageable);
+
+    // Substring match on the generated search_text column, served by idx_patients_search_trgm.
+    // :pattern is the already lower-cased and LIKE-escaped "%term%" built by the service.
+    @Query(value = SUMMARY_SELECT + "WHERE f.id = :facilityId AND p.searchText LIKE :pattern ESCAPE '\\'",
+            countQuery = "SELECT COUNT(p) FROM Patient p WHERE p.facility.id = :facilityId " +
+                    "AND p.searchText LIKE :pattern ESCAPE '\\'")
+    Page<PatientSummary> searchBySearchText(@Param("facilityId") Long facilityId,
+                                            @Param("pattern") String pattern,
+                                            Pageable pageable);
+
+    // Ranked variant: exact MRN first, then last-name prefix, then any word prefix, then substring.
+    @Query(value = SUMMARY_SELECT + "WHERE f.id = :facilityId " +
+            "AND p.searchText LIKE :pattern ESCAPE '\\' " +
+            "ORDER BY CASE WHEN LOWER(p.mrn) = :term THEN 0 " +
+            "WHEN p.searchText LIKE :prefix ESCAPE '\\' THEN 1 " +
+            "WHEN p.searchText LIKE :wordPrefix ESCAPE '\\' THEN 2 " +
+            "ELSE 3 END, p.lastName, p.firstName, p.id",
+            countQuery = "SELECT COUNT(p) FROM Patient p WHERE p.facility.id = :facilityId " +
+                    "AND p.searchText LIKE :pattern ESCAPE '\\'")
+    Page<PatientSummary> searchRankedBySearchText(@Param("facilityId") Long facilityId,
+                                                  @Param("term") String term,
+                                                  @Param("pattern") String pattern,
+                                                  @Param("prefix") String prefix,
+                                                  @Param("wordPrefix") String wordPrefix,
+                                                  Pageable pageable);
+
+    // Keyset listing in (last_name, first_name, id) order, served by idx_patients_facility_name_id.
+    // The limit comes from the Pageable; no count query is run for List results.
+    @Query(SUMMARY_SELECT + "WHERE f.id = :facilityId AND p.searchText LIKE :pattern ESCAPE '\\' " +
+            "ORDER BY p.lastName, p.firstName, p.id")
+    List<PatientSummary> scrollSummaries(@Param("facilityId") Long facilityId,
+                                         @Param("pattern") String pattern,
+                                         Pageable limit);
+
+    // Next page after the (lastName, firstName, id) key; the redundant lastName >= bound lets the index seek
+    @Query(SUMMARY_SELECT + "WHERE f.id = :facilityId AND p.searchText LIKE :pattern ESCAPE '\\' " +
+            "AND p.lastName >= :lastName AND (p.lastName > :lastName OR p.firstName > :firstName " +
+            "OR (p.firstName = :firstName AND p.id > :id)) " +
+            "ORDER BY p.lastName, p.firstName, p.id")
+    List<PatientSummary> scrollSummariesAfter(@Param("facilityId") Long facilityId,
+                                              @Param("pattern") String pattern,
+                                              @Param("lastName") String lastName,
+                                              @Param("firstName") String firstName,
+                                              @Param("id") Long id,
+                                              Pageable limit);
+
+    @Query("SELECT COUNT(p) FROM Patient p WHERE p.facility.id = :facilityId AND p.searchText LIKE :pattern ESCAPE '\\'")
+    long countBySearchText(@Param("facilityId") Long facilityId, @Param("pattern") String pattern);
+
+    // Forward-only read of a whole facility for exports; must be consumed inside a read-only
+    // transaction so PostgreSQL fetches EXPORT_FETCH_SIZE rows per round trip instead of the full result.
+    // The facility is not joined (its name is passed in) so the rows come in idx_patients_facility_name_id
+    // order without a sort step that would have to buffer the whole facility.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("SELECT new org.haykal.emr.repository.PatientSummary(" +
+            "p.id, p.mrn, p.firstName, p.lastName, p.gender, p.dateOfBirth, p.email, p.phone, " +
+            "p.address, p.city, p.state, p.zipCode, p.insuranceProvider, p.insurancePolicyNumber, " +
+            "p.insuranceGroupNumber, p.facility.id, CAST(:facilityName AS String)) FROM Patient p " +
+            "WHERE p.facility.id = :facilityId ORDER BY p.facility.id, p.lastName, p.firstName, p.id")
+    Stream<PatientSummary> streamSummariesByFacilityId(@Param("facilityId") Long facilityId,
+                                                       @Param("facilityName") String facilityName);
 
     Page<Patient> findByFacilityId(Long facilityId, Pageable pageable);
 
     boolean existsByMrn(String mrn);
 
-    // PostgreSQL compatible query for extracting number from MRN
-    @Query(value = "SELECT COALESCE(MAX(CAST(SUBSTRING(mrn FROM :prefixLength + 1) AS INTEGER)), 0) " +
-            "FROM patients WHERE mrn LIKE CONCAT(:prefix, '%')",
+    @Query("SELECT p.mrn FROM Patient p WHERE p.mrn IN :mrns")
+    List<String> findExistingMrns(@Param("mrns") Collection<String> mrns);
+
+    // Reserves the next block of MrnAllocator.BLOCK_SIZE MRN numbers; returns the first number of the block
+    @Query(value = "SELECT nextval('mrn_block_seq')", nativeQuery = true)
+    long nextMrnBlock();
+
+    // Locks the patients a set-based deletion will remove, so the archive copies, the outbox events
+    // and the DELETE all see the same rows
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p.id FROM Patient p WHERE p.id IN :ids ORDER BY p.id")
+    List<Long> lockByIds(@Param("ids") Collection<Long> ids);
+
+    // Archive copies for archive-mode deletion; must run before the DELETE, in the same transaction
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO patients_archive (id, mrn, first_name, last_name, gender, date_of_birth, " +
+            "email, phone, address, city, state, zip_code, insurance_provider, insurance_policy_number, " +
+            "insurance_group_number, facility_id, created_at, updated_at, archived_at) " +
+            "SELECT id, mrn, first_name, last_name, gender, date_of_birth, email, phone, address, city, state, " +
+            "zip_code, insurance_provider, insurance_policy_number, insurance_group_number, facility_id, " +
+            "created_at, updated_at, :archivedAt FROM patients WHERE id IN (:ids)", nativeQuery = true)
+    int archiveByIds(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO patient_services_archive (id, patient_id, service_type_id, facility_id, status, " +
+            "scheduled_date, completed_date, notes, provider_name, created_at, version, archived_at) " +
+            "SELECT id, patient_id, service_type_id, facility_id, status, scheduled_date, completed_date, notes, " +
+            "provider_name, created_at, version, :archivedAt FROM patient_services WHERE patient_id IN (:ids)",
             nativeQuery = true)
-    Integer findMaxMrnNumber(@Param("prefix") String prefix, @Param("prefixLength") int prefixLength);
+    int archiveServicesByPatientIds(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
 
-    // Alternative HQL version if you prefer
-    @Query("SELECT COALESCE(MAX(CAST(FUNCTION('SUBSTRING', p.mrn, :prefixLength + 1) AS INTEGER)), 0) " +
-            "FROM Patient p WHERE p.mrn LIKE CONCAT(:prefix, '%')")
-    Integer findMaxMrnNumberHQL(@Param("prefix") String prefix, @Param("prefixLength") int prefixLength);
-}
\ No newline at end of file
+    // One statement for the whole set: services and duplicate candidates go with the ON DELETE
+    // CASCADE foreign keys instead of being loaded and removed one by one
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM patients WHERE id IN (:ids)", nativeQuery = true)
+    int deleteAllByIds(@Param("ids") Collection<Long> ids);
+}
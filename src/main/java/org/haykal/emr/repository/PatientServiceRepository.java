@@ -1,15 +1,20 @@
 package org.haykal.emr.repository;
 
 import org.haykal.emr.entity.PatientService;
+import org.haykal.emr.entity.ServiceCategory;
 import org.haykal.emr.entity.ServiceStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PatientServiceRepository extends JpaRepository<PatientService, Long> {
@@ -17,11 +22,96 @@ public interface PatientServiceRepository extends JpaRepository<PatientService,
 
     Page<PatientService> findByFacilityId(Long facilityId, Pageable pageable);
 
+    // Keyset listing by id, served by idx_patient_services_facility_id; pass afterId 0 for the first page
+    @Query("SELECT ps FROM PatientService ps JOIN FETCH ps.patient JOIN FETCH ps.serviceType JOIN FETCH ps.facility " +
+            "WHERE ps.facility.id = :facilityId AND ps.id > :afterId ORDER BY ps.id")
+    List<PatientService> scrollByFacilityId(@Param("facilityId") Long facilityId,
+                                            @Param("afterId") Long afterId,
+                                            Pageable limit);
+
+    long countByFacilityId(Long facilityId);
+
     @Query("SELECT ps FROM PatientService ps WHERE ps.facility.id = :facilityId " +
             "AND ps.scheduledDate BETWEEN :startDate AND :endDate")
     List<PatientService> findByFacilityAndDateRange(@Param("facilityId") Long facilityId,
                                                     @Param("startDate") LocalDateTime startDate,
                                                     @Param("endDate") LocalDateTime endDate);
 
+    // Worklist for [from, to) in one statement, served by idx_patient_services_facility_schedule
+    @Query("SELECT new org.haykal.emr.repository.PatientServiceSummary(" +
+            "ps.id, p.id, p.firstName, p.lastName, p.mrn, st.id, st.name, st.category, f.id, f.name, " +
+            "ps.status, ps.scheduledDate, ps.completedDate, ps.notes, ps.providerName, ps.createdAt, ps.version) " +
+            "FROM PatientService ps JOIN ps.patient p JOIN ps.serviceType st JOIN ps.facility f " +
+            "WHERE f.id = :facilityId AND ps.scheduledDate >= :from AND ps.scheduledDate < :to " +
+            "AND ps.status IN :statuses " +
+            "ORDER BY ps.scheduledDate, ps.id")
+    List<PatientServiceSummary> findWorklist(@Param("facilityId") Long facilityId,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("statuses") Collection<ServiceStatus> statuses);
+
     List<PatientService> findByPatientIdAndStatus(Long patientId, ServiceStatus status);
-}
\ No newline at end of file
+
+    // A patient's services, newest first, in one statement; read in the order of
+    // idx_patient_services_patient_timeline, which also holds status for the filter
+    @Query("SELECT new org.haykal.emr.repository.PatientServiceSummary(" +
+            "ps.id, p.id, p.firstName, p.lastName, p.mrn, st.id, st.name, st.category, f.id, f.name, " +
+            "ps.status, ps.scheduledDate, ps.completedDate, ps.notes, ps.providerName, ps.createdAt, ps.version) " +
+            "FROM PatientService ps JOIN ps.patient p JOIN ps.serviceType st JOIN ps.facility f " +
+            "WHERE p.id = :patientId AND ps.status IN :statuses " +
+            "AND (:category IS NULL OR st.category = :category) " +
+            "ORDER BY ps.scheduledDate DESC, ps.id DESC")
+    List<PatientServiceSummary> findTimeline(@Param("patientId") Long patientId,
+                                             @Param("statuses") Collection<ServiceStatus> statuses,
+                                             @Param("category") ServiceCategory category);
+
+    // Validator of a patient's timeline: one primary key read of the patient and an index-only
+    // pass over the patient's entry in idx_patient_services_patient_timeline; empty when the
+    // patient does not exist
+    @Query("SELECT new org.haykal.emr.repository.PatientTimelineVersion(" +
+            "p.updatedAt, COUNT(ps.id), COALESCE(MAX(ps.id), 0), COALESCE(SUM(ps.version), 0)) " +
+            "FROM Patient p LEFT JOIN p.services ps " +
+            "WHERE p.id = :patientId " +
+            "GROUP BY p.id, p.updatedAt")
+    Optional<PatientTimelineVersion> findTimelineVersion(@Param("patientId") Long patientId);
+
+    @EntityGraph(attributePaths = {"patient", "serviceType", "facility"})
+    Optional<PatientService> findWithDetailsById(Long id);
+
+    // A fresh marker for one bulk transition, see V17
+    @Query(value = "SELECT nextval('patient_service_transition_seq')", nativeQuery = true)
+    long nextTransitionId();
+
+    // Set-based status transitions. Only rows in one of the given source statuses change; each
+    // bumps its version so a concurrent optimistic update of the same row fails instead of winning,
+    // and is stamped with the call's marker and the status it left.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PatientService ps SET ps.status = :target, ps.completedDate = :completedDate, " +
+            "ps.version = ps.version + 1, ps.transitionId = :transitionId, ps.transitionFrom = ps.status " +
+            "WHERE ps.id IN :ids AND ps.status IN :sources")
+    int transitionByIds(@Param("ids") Collection<Long> ids,
+                        @Param("sources") Collection<ServiceStatus> sources,
+                        @Param("target") ServiceStatus target,
+                        @Param("completedDate") LocalDateTime completedDate,
+                        @Param("transitionId") long transitionId);
+
+    // Same for a facility's services scheduled in [from, to), optionally narrowed to a service
+    // category or type; the range is served by idx_patient_services_facility_schedule
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PatientService ps SET ps.status = :target, ps.completedDate = :completedDate, " +
+            "ps.version = ps.version + 1, ps.transitionId = :transitionId, ps.transitionFrom = ps.status " +
+            "WHERE ps.facility.id = :facilityId AND ps.scheduledDate >= :from AND ps.scheduledDate < :to " +
+            "AND ps.status IN :sources " +
+            "AND ps.serviceType.id IN (SELECT st.id FROM ServiceType st " +
+            "WHERE (:category IS NULL OR st.category = :category) " +
+            "AND (:serviceTypeId IS NULL OR st.id = :serviceTypeId))")
+    int transitionScheduled(@Param("facilityId") Long facilityId,
+                            @Param("from") LocalDateTime from,
+                            @Param("to") LocalDateTime to,
+                            @Param("category") ServiceCategory category,
+                            @Param("serviceTypeId") Long serviceTypeId,
+                            @Param("sources") Collection<ServiceStatus> sources,
+                            @Param("target") ServiceStatus target,
+                            @Param("completedDate") LocalDateTime completedDate,
+                            @Param("transitionId") long transitionId);
+}
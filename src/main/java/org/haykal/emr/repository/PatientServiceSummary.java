@@ -0,0 +1,30 @@
+package org.haykal.emr.repository;
+
+import org.haykal.emr.entity.ServiceCategory;
+import org.haykal.emr.entity.ServiceStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only worklist row: a scheduled service with the patient and service type columns the
+ * worklist shows, filled by a JPQL constructor expression in a single joined query.
+ */
+public record PatientServiceSummary(
+        Long id,
+        Long patientId,
+        String patientFirstName,
+        String patientLastName,
+        String patientMrn,
+        Long serviceTypeId,
+        String serviceTypeName,
+        ServiceCategory serviceCategory,
+        Long facilityId,
+        String facilityName,
+        ServiceStatus status,
+        LocalDateTime scheduledDate,
+        LocalDateTime completedDate,
+        String notes,
+        String providerName,
+        LocalDateTime createdAt,
+        Long version) {
+}
@@ -0,0 +1,31 @@
+package org.haykal.emr.repository;
+
+import org.haykal.emr.entity.Gender;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only row of the patient list screens, filled by a JPQL constructor expression.
+ * <p>
+ * Selecting into a record skips entity hydration, the persistence context and the lazy
+ * {@code facility} proxy: the facility name comes from the same join.
+ */
+public record PatientSummary(
+        Long id,
+        String mrn,
+        String firstName,
+        String lastName,
+        Gender gender,
+        LocalDate dateOfBirth,
+        String email,
+        String phone,
+        String address,
+        String city,
+        String state,
+        String zipCode,
+        String insuranceProvider,
+        String insurancePolicyNumber,
+        String insuranceGroupNumber,
+        Long facilityId,
+        String facilityName) {
+}
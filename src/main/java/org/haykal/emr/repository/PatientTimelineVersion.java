@@ -0,0 +1,16 @@
+package org.haykal.emr.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Everything a patient's timeline depends on that can change: the patient row's last update and,
+ * over the patient's services, their number, the highest id and the sum of their versions. Any
+ * insert, delete or update of a service changes at least one of these (ids only grow and every
+ * update bumps a version), so together they identify one state of the timeline.
+ */
+public record PatientTimelineVersion(
+        LocalDateTime patientUpdatedAt,
+        Long services,
+        Long lastServiceId,
+        Long versionSum) {
+}
@@ -0,0 +1,66 @@
+package org.haykal.emr.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary.
+ * <p>
+ * The decision is made when a connection is requested, so this has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the JPA transaction
+ * manager asks for the connection before the transaction's read-only flag is published, and the
+ * proxy defers that until the first statement. Reads fall back to the primary while the caller is
+ * pinned by {@link ReadYourWritesTracker} or when no replica can hand out a connection.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+    private final DataSource primary;
+    private final ReplicaPool replicas;
+    private final ReadYourWritesTracker readYourWrites;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaPool replicas, ReadYourWritesTracker readYourWrites) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || readYourWrites.isCurrentCallerPinned()) {
+            return source.connect(primary);
+        }
+        // Bounded by the replica count in case the health check revives a replica mid-loop
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            ReplicaPool.Replica replica = replicas.next();
+            if (replica == null) {
+                break;
+            }
+            try {
+                return source.connect(replica.getDataSource());
+            } catch (SQLException e) {
+                replicas.markDown(replica, e);
+            }
+        }
+        log.debug("No read replica available, reading from the primary");
+        return source.connect(primary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+}
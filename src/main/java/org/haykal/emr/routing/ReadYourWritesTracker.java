@@ -0,0 +1,83 @@
+package org.haykal.emr.routing;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Pins a caller to the primary for a while after they commit a read-write transaction, so their
+ * next reads see their own writes even if the replicas have not caught up yet.
+ * <p>
+ * The caller is the authenticated principal; work without one (scheduled jobs, anonymous
+ * requests) is never pinned. Pins live in this node's memory only.
+ */
+public class ReadYourWritesTracker implements TransactionExecutionListener {
+    private static final int PURGE_EVERY = 1024;
+
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+    private final AtomicInteger pinsSincePurge = new AtomicInteger();
+
+    public ReadYourWritesTracker(Duration window) {
+        this(window, System::nanoTime);
+    }
+
+    ReadYourWritesTracker(Duration window, LongSupplier nanoClock) {
+        this.windowNanos = window.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (commitFailure == null && !transaction.isReadOnly()) {
+            String caller = currentCaller();
+            if (caller != null) {
+                pin(caller);
+            }
+        }
+    }
+
+    public boolean isCurrentCallerPinned() {
+        String caller = currentCaller();
+        return caller != null && isPinned(caller);
+    }
+
+    void pin(String caller) {
+        pinnedUntil.put(caller, nanoClock.getAsLong() + windowNanos);
+        if (pinsSincePurge.incrementAndGet() >= PURGE_EVERY) {
+            pinsSincePurge.set(0);
+            long now = nanoClock.getAsLong();
+            pinnedUntil.values().removeIf(until -> until - now <= 0);
+        }
+    }
+
+    boolean isPinned(String caller) {
+        Long until = pinnedUntil.get(caller);
+        if (until == null) {
+            return false;
+        }
+        if (until - nanoClock.getAsLong() > 0) {
+            return true;
+        }
+        pinnedUntil.remove(caller, until);
+        return false;
+    }
+
+    private static String currentCaller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,121 @@
+package org.haykal.emr.routing;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read replicas handed out round-robin, skipping the ones marked down.
+ * <p>
+ * A replica is marked down when a connection to it fails or when the periodic health check finds
+ * it unreachable or lagging by more than {@code maxLag}; the health check also brings it back.
+ * Replicas start out healthy so reads do not wait for the first check.
+ */
+@Slf4j
+public class ReplicaPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Getter
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    // lagQuery returns the replica's lag in seconds; blank skips the lag check
+    public ReplicaPool(List<Replica> replicas, String lagQuery, Duration maxLag) {
+        this.replicas = List.copyOf(replicas);
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+    }
+
+    // Next healthy replica in round-robin order, or null when none is healthy
+    public Replica next() {
+        int size = replicas.size();
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), size));
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return replicas.size();
+    }
+
+    public long healthyCount() {
+        return replicas.stream().filter(Replica::isHealthy).count();
+    }
+
+    public void markDown(Replica replica, Exception cause) {
+        if (replica.healthy) {
+            log.warn("Read replica {} marked down: {}", replica.name, cause.getMessage());
+        }
+        replica.healthy = false;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.routing.health-check-interval:PT5S}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            String problem = probe(replica);
+            if (problem != null) {
+                if (replica.healthy) {
+                    log.warn("Read replica {} marked down: {}", replica.name, problem);
+                }
+                replica.healthy = false;
+            } else if (!replica.healthy) {
+                log.info("Read replica {} is back up", replica.name);
+                replica.healthy = true;
+            }
+        }
+    }
+
+    // Null when the replica is usable, otherwise what is wrong with it
+    private String probe(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection()) {
+            if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return "connection is not valid";
+            }
+            if (lagQuery == null || lagQuery.isBlank()) {
+                return null;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(lagQuery)) {
+                double seconds = lag.next() ? lag.getDouble(1) : 0;
+                return seconds * 1000 > maxLag.toMillis() ? String.format("lagging by %.1f s", seconds) : null;
+            }
+        } catch (SQLException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
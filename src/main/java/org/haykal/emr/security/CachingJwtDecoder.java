@@ -0,0 +1,44 @@
+package org.haykal.emr.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * Verifies each distinct bearer token once and serves repeats from the {@link VerifiedTokenCache}.
+ * Verification time is recorded as {@code emr.security.jwt.verification}, tagged by outcome;
+ * rejected tokens are never cached.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final VerifiedTokenCache cache;
+    private final MeterRegistry meterRegistry;
+
+    public CachingJwtDecoder(JwtDecoder delegate, VerifiedTokenCache cache, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = VerifiedTokenCache.keyOf(token);
+        Jwt cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "rejected";
+        try {
+            Jwt jwt = delegate.decode(token);
+            outcome = "verified";
+            cache.put(key, jwt);
+            return jwt;
+        } finally {
+            sample.stop(meterRegistry.timer("emr.security.jwt.verification", "outcome", outcome));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.haykal.emr.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bearer tokens that passed signature and claim validation, with the authorities mapped from
+ * them, kept until the token expires.
+ * <p>
+ * Entries are keyed by the SHA-256 of the whole encoded token, never by {@code jti} alone: a
+ * forged token reusing a valid token's {@code jti} would otherwise skip verification. At most
+ * {@code maxEntries} tokens are held; while the cache is full of unexpired tokens, new ones are
+ * verified on every request until room frees up.
+ */
+public class VerifiedTokenCache {
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Clock clock;
+    private final Counter hits;
+    private final Counter misses;
+
+    private static final class Entry {
+        private final Jwt jwt;
+        private volatile Collection<GrantedAuthority> authorities;
+
+        private Entry(Jwt jwt) {
+            this.jwt = jwt;
+        }
+    }
+
+    public VerifiedTokenCache(int maxEntries, MeterRegistry meterRegistry) {
+        this(maxEntries, meterRegistry, Clock.systemUTC());
+    }
+
+    VerifiedTokenCache(int maxEntries, MeterRegistry meterRegistry, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.hits = meterRegistry.counter("emr.security.jwt.cache", "result", "hit");
+        this.misses = meterRegistry.counter("emr.security.jwt.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("emr.security.jwt.cache.size", List.of(), entries);
+    }
+
+    public static String keyOf(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // The verified token for key, or null when it is not cached or has expired
+    public Jwt get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && isLive(entry.jwt)) {
+            hits.increment();
+            return entry.jwt;
+        }
+        if (entry != null) {
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, Jwt jwt) {
+        if (jwt.getExpiresAt() == null || !isLive(jwt)) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            purgeExpired();
+            if (entries.size() >= maxEntries) {
+                return;
+            }
+        }
+        entries.put(key, new Entry(jwt));
+    }
+
+    /**
+     * Authorities of a token, mapped once per cached token. Only the exact {@link Jwt} instance
+     * handed out by this cache reuses the stored authorities; anything else is mapped afresh.
+     */
+    public Collection<GrantedAuthority> authorities(Jwt jwt, Converter<Jwt, Collection<GrantedAuthority>> mapper) {
+        Entry entry = entries.get(keyOf(jwt.getTokenValue()));
+        if (entry == null || entry.jwt != jwt) {
+            return mapper.convert(jwt);
+        }
+        Collection<GrantedAuthority> authorities = entry.authorities;
+        if (authorities == null) {
+            authorities = List.copyOf(mapper.convert(jwt));
+            entry.authorities = authorities;
+        }
+        return authorities;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean isLive(Jwt jwt) {
+        return clock.instant().isBefore(jwt.getExpiresAt());
+    }
+
+    private void purgeExpired() {
+        Instant now = clock.instant();
+        entries.values().removeIf(entry -> !now.isBefore(entry.jwt.getExpiresAt()));
+    }
+}
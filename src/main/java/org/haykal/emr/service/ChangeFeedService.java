@@ -0,0 +1,72 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.ChangeEventDTO;
+import org.haykal.emr.dto.ChangeFeedDTO;
+import org.haykal.emr.entity.ChangeEvent;
+import org.haykal.emr.repository.ChangeEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// Consumer-facing change feed over the events the relay has sequenced
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ChangeFeedService {
+    static final int MAX_FEED_SIZE = 1000;
+
+    private final ChangeEventRepository changeEventRepository;
+
+    public ChangeFeedDTO getChanges(String since, int size) {
+        if (size < 1 || size > MAX_FEED_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_FEED_SIZE);
+        }
+        long after = parseCursor(since);
+        log.debug("Reading change feed after {}", after);
+
+        List<ChangeEvent> rows = changeEventRepository.findDeliveredAfter(after, PageRequest.ofSize(size + 1));
+        boolean hasMore = rows.size() > size;
+        List<ChangeEventDTO> events = rows.stream().limit(size).map(ChangeFeedService::toDTO).toList();
+
+        ChangeFeedDTO feed = new ChangeFeedDTO();
+        feed.setEvents(events);
+        feed.setHasMore(hasMore);
+        feed.setNextCursor(events.isEmpty() ? String.valueOf(after)
+                : String.valueOf(events.get(events.size() - 1).getSequence()));
+        return feed;
+    }
+
+    // The cursor is the last delivery sequence number a consumer has seen; 0 reads from the start
+    private static long parseCursor(String since) {
+        if (since == null || since.isEmpty()) {
+            return 0L;
+        }
+        try {
+            long after = Long.parseLong(since);
+            if (after < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return after;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public static ChangeEventDTO toDTO(ChangeEvent event) {
+        ChangeEventDTO dto = new ChangeEventDTO();
+        dto.setSequence(event.getDeliverySeq());
+        dto.setId(event.getId());
+        dto.setAggregateType(event.getAggregateType().name());
+        dto.setAggregateId(event.getAggregateId());
+        dto.setPatientId(event.getPatientId());
+        dto.setEventType(event.getEventType().name());
+        dto.setOccurredAt(event.getCreatedAt());
+        dto.setPayload(event.getPayload());
+        return dto;
+    }
+}
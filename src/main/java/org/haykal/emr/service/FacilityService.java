@@ -1,29 +1,59 @@
 package org.haykal.emr.service;
 
+import org.haykal.emr.cache.FacilityCatalogCache;
 import org.haykal.emr.dto.FacilityDTO;
 import org.haykal.emr.dto.ServiceTypeDTO;
+import org.haykal.emr.entity.ChangeAggregate;
+import org.haykal.emr.entity.ChangeEventType;
 import org.haykal.emr.entity.Facility;
 import org.haykal.emr.entity.ServiceType;
 import org.haykal.emr.repository.FacilityRepository;
 import org.haykal.emr.repository.ServiceTypeRepository;
 import org.haykal.emr.exception.ResourceNotFoundException;
 import org.haykal.emr.exception.DuplicateResourceException;
-import lombok.RequiredArgsConstructor;
+import org.haykal.emr.metrics.ServiceMetrics;
+import org.haykal.emr.outbox.OutboxWriter;
+import io.micrometer.core.instrument.Tags;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.Collections;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @Transactional
 public class FacilityService {
     private final FacilityRepository facilityRepository;
     private final ServiceTypeRepository serviceTypeRepository;
+    private final FacilityCatalogCache facilityCatalogCache;
+    private final OutboxWriter outboxWriter;
+    private final TransactionTemplate primaryTransaction;
+    private final boolean routingEnabled;
+    private final ServiceMetrics serviceMetrics;
+
+    public FacilityService(FacilityRepository facilityRepository,
+                           ServiceTypeRepository serviceTypeRepository,
+                           FacilityCatalogCache facilityCatalogCache,
+                           OutboxWriter outboxWriter,
+                           PlatformTransactionManager transactionManager,
+                           ServiceMetrics serviceMetrics,
+                           @Value("${app.datasource.routing.enabled:false}") boolean routingEnabled) {
+        this.facilityRepository = facilityRepository;
+        this.serviceTypeRepository = serviceTypeRepository;
+        this.facilityCatalogCache = facilityCatalogCache;
+        this.outboxWriter = outboxWriter;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.serviceMetrics = serviceMetrics;
+        this.routingEnabled = routingEnabled;
+    }
 
     public FacilityDTO createFacility(FacilityDTO dto) {
         log.info("Creating facility with code: {}", dto.getCode());
@@ -45,55 +75,66 @@ public class FacilityService {
                 .build();
 
         facility = facilityRepository.save(facility);
+        facilityCatalogCache.invalidateAfterCommit(facility.getId());
         log.info("Facility created successfully with ID: {}", facility.getId());
-        return toDTO(facility);
+
+        FacilityDTO created = toDTO(facility);
+        outboxWriter.append(ChangeAggregate.FACILITY, facility.getId(), null, ChangeEventType.CREATED, created);
+        return created;
     }
 
-    @Transactional(readOnly = true)
+    // Served from the catalog cache; a transaction (and connection) is only opened on a miss
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public FacilityDTO getFacility(Long id) {
-        log.info("Fetching facility with ID: {}", id);
-        Facility facility = facilityRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Facility not found"));
-        return toDTO(facility);
+        log.debug("Fetching facility with ID: {}", id);
+        return serviceMetrics.time("emr.facility.read", id, Tags.of("operation", "get"),
+                () -> facilityCatalogCache.getFacility(id, this::loadFacility));
     }
 
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<FacilityDTO> getAllActiveFacilities() {
-        log.info("Fetching all active facilities");
+        log.debug("Fetching all active facilities");
+        return serviceMetrics.time("emr.facility.read", null, Tags.of("operation", "list"),
+                () -> facilityCatalogCache.getActiveFacilities(this::loadActiveFacilities));
+    }
 
-        try {
-            List<Facility> facilities = facilityRepository.findByActiveTrue();
-            log.info("Found {} active facilities", facilities.size());
+    // Facilities are loaded together with their services in one statement, see FacilityRepository
+    private FacilityDTO loadFacility(Long id) {
+        return loadFromPrimary(() -> {
+            Facility facility = facilityRepository.findWithServicesById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Facility not found"));
+            return toDTO(facility);
+        });
+    }
 
+    private List<FacilityDTO> loadActiveFacilities() {
+        return loadFromPrimary(() -> {
+            List<Facility> facilities = facilityRepository.findWithServicesByActiveTrueOrderById();
+            log.info("Loaded {} active facilities into the catalog cache", facilities.size());
             if (facilities.isEmpty()) {
                 log.warn("No active facilities found in database");
-                return Collections.emptyList();
             }
-
-            List<FacilityDTO> result = facilities.stream()
-                    .map(facility -> {
-                        try {
-                            return toDTO(facility);
-                        } catch (Exception e) {
-                            log.error("Error converting facility to DTO: {}", facility.getId(), e);
-                            throw new RuntimeException("Error processing facility: " + facility.getId(), e);
-                        }
-                    })
+            return facilities.stream()
+                    .map(FacilityService::toDTO)
                     .collect(Collectors.toList());
+        });
+    }
 
-            log.info("Successfully converted {} facilities to DTOs", result.size());
-            return result;
-
-        } catch (Exception e) {
-            log.error("Error fetching active facilities", e);
-            throw new RuntimeException("Error fetching facilities: " + e.getMessage(), e);
+    // With routing on, a replica may still serve the row an invalidation was about, and the stale
+    // copy would stay cached until the next facility write, so misses outside a transaction load
+    // in a read-write one, which goes to the primary. Inside a transaction the load uses the
+    // caller's connection rather than holding a second one from the pool.
+    private <T> T loadFromPrimary(Supplier<T> load) {
+        if (routingEnabled && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return primaryTransaction.execute(status -> load.get());
         }
+        return load.get();
     }
 
     public FacilityDTO addServiceToFacility(Long facilityId, Long serviceTypeId) {
         log.info("Adding service {} to facility {}", serviceTypeId, facilityId);
 
-        Facility facility = facilityRepository.findById(facilityId)
+        Facility facility = facilityRepository.findWithServicesById(facilityId)
                 .orElseThrow(() -> new ResourceNotFoundException("Facility not found"));
 
         ServiceType serviceType = serviceTypeRepository.findById(serviceTypeId)
@@ -101,12 +142,16 @@ public class FacilityService {
 
         facility.getAvailableServices().add(serviceType);
         facility = facilityRepository.save(facility);
+        facilityCatalogCache.invalidateAfterCommit(facilityId);
 
         log.info("Service added successfully to facility {}", facilityId);
-        return toDTO(facility);
+
+        FacilityDTO updated = toDTO(facility);
+        outboxWriter.append(ChangeAggregate.FACILITY, facilityId, null, ChangeEventType.UPDATED, updated);
+        return updated;
     }
 
-    private FacilityDTO toDTO(Facility facility) {
+    static FacilityDTO toDTO(Facility facility) {
         if (facility == null) {
             log.error("Attempted to convert null facility to DTO");
             throw new IllegalArgumentException("Facility cannot be null");
@@ -126,25 +171,12 @@ public class FacilityService {
         dto.setEmail(facility.getEmail());
         dto.setActive(facility.isActive());
 
-        // Handle availableServices safely to avoid lazy loading issues
-        try {
-            if (facility.getAvailableServices() != null && !facility.getAvailableServices().isEmpty()) {
-                Set<ServiceTypeDTO> services = facility.getAvailableServices().stream()
-                        .map(serviceType -> {
-                            if (serviceType == null) {
-                                log.warn("Found null service type for facility {}", facility.getId());
-                                return null;
-                            }
-                            return toServiceTypeDTO(serviceType);
-                        })
-                        .filter(serviceDTO -> serviceDTO != null) // Remove any null DTOs
-                        .collect(Collectors.toSet());
-                dto.setAvailableServices(services);
-            } else {
-                dto.setAvailableServices(Collections.emptySet());
-            }
-        } catch (Exception e) {
-            log.warn("Error processing available services for facility {}, setting empty set", facility.getId(), e);
+        // availableServices must already be initialized; a lazy load here would be an N+1
+        if (facility.getAvailableServices() != null && !facility.getAvailableServices().isEmpty()) {
+            dto.setAvailableServices(facility.getAvailableServices().stream()
+                    .map(FacilityService::toServiceTypeDTO)
+                    .collect(Collectors.toSet()));
+        } else {
             dto.setAvailableServices(Collections.emptySet());
         }
 
@@ -152,23 +184,13 @@ public class FacilityService {
         return dto;
     }
 
-    private ServiceTypeDTO toServiceTypeDTO(ServiceType serviceType) {
-        if (serviceType == null) {
-            log.error("Attempted to convert null service type to DTO");
-            return null;
-        }
-
-        try {
-            ServiceTypeDTO dto = new ServiceTypeDTO();
-            dto.setId(serviceType.getId());
-            dto.setCode(serviceType.getCode());
-            dto.setName(serviceType.getName());
-            dto.setDescription(serviceType.getDescription());
-            dto.setCategory(serviceType.getCategory() != null ? serviceType.getCategory().name() : null);
-            return dto;
-        } catch (Exception e) {
-            log.error("Error converting service type to DTO: {}", serviceType.getId(), e);
-            return null;
-        }
+    private static ServiceTypeDTO toServiceTypeDTO(ServiceType serviceType) {
+        ServiceTypeDTO dto = new ServiceTypeDTO();
+        dto.setId(serviceType.getId());
+        dto.setCode(serviceType.getCode());
+        dto.setName(serviceType.getName());
+        dto.setDescription(serviceType.getDescription());
+        dto.setCategory(serviceType.getCategory() != null ? serviceType.getCategory().name() : null);
+        return dto;
     }
-}
\ No newline at end of file
+}
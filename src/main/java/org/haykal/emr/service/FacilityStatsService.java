@@ -0,0 +1,72 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.FacilityStatsDTO;
+import org.haykal.emr.dto.ServiceVolumeDTO;
+import org.haykal.emr.entity.ServiceCategory;
+import org.haykal.emr.entity.ServiceStatus;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.haykal.emr.repository.FacilityRepository;
+import org.haykal.emr.stats.FacilityStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facility dashboard figures from the incrementally maintained aggregates (see
+ * {@link org.haykal.emr.stats.FacilityStatsRollup}). A read is a facility lookup and two indexed
+ * queries whose cost depends on the date range asked for, not on the number of patients or
+ * services.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class FacilityStatsService {
+    static final int MAX_STATS_DAYS = 366;
+
+    private final FacilityStatsRepository facilityStatsRepository;
+    private final FacilityRepository facilityRepository;
+
+    public FacilityStatsDTO getStats(Long facilityId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_STATS_DAYS) {
+            throw new IllegalArgumentException("Stats range must run forward and span at most " + MAX_STATS_DAYS + " days");
+        }
+        if (!facilityRepository.existsById(facilityId)) {
+            throw new ResourceNotFoundException("Facility not found with ID: " + facilityId);
+        }
+        log.debug("Reading stats for facility {} from {} to {}", facilityId, from, to);
+
+        List<FacilityStatsRepository.Volume> volumes = facilityStatsRepository.readVolumes(facilityId, from, to);
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (ServiceStatus status : ServiceStatus.values()) {
+            byStatus.put(status.name(), 0L);
+        }
+        Map<String, Long> byCategory = new LinkedHashMap<>();
+        for (ServiceCategory category : ServiceCategory.values()) {
+            byCategory.put(category.name(), 0L);
+        }
+        for (FacilityStatsRepository.Volume volume : volumes) {
+            byStatus.merge(volume.status(), volume.services(), Long::sum);
+            byCategory.merge(volume.category(), volume.services(), Long::sum);
+        }
+
+        FacilityStatsDTO stats = new FacilityStatsDTO();
+        stats.setFacilityId(facilityId);
+        stats.setPatients(facilityStatsRepository.readCensus(facilityId));
+        stats.setFrom(from);
+        stats.setTo(to);
+        stats.setServicesByStatus(byStatus);
+        stats.setServicesByCategory(byCategory);
+        stats.setDaily(volumes.stream()
+                .map(v -> new ServiceVolumeDTO(v.serviceDate(), v.category(), v.status(), v.services()))
+                .toList());
+        return stats;
+    }
+}
@@ -0,0 +1,67 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.repository.PatientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out MRNs per facility prefix from in-memory blocks (hi/lo).
+ * <p>
+ * Each block is reserved with a single {@code nextval('mrn_block_seq')} on the caller's own
+ * connection, so generating an MRN is O(1), takes no row locks and never needs a second pooled
+ * connection. Numbers are unique across all facilities and nodes but not gap-free: unused
+ * numbers of a block are lost on restart.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MrnAllocator {
+
+    // Must match the INCREMENT BY of mrn_block_seq (V4 migration)
+    static final int BLOCK_SIZE = 50;
+
+    private final PatientRepository patientRepository;
+    private final ConcurrentMap<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public String nextMrn(String facilityCode) {
+        if (facilityCode == null || facilityCode.trim().isEmpty()) {
+            throw new IllegalArgumentException("Facility code cannot be null or empty for MRN generation");
+        }
+
+        String prefix = facilityCode.trim().toUpperCase(Locale.ROOT);
+        long number = blocks.computeIfAbsent(prefix, key -> new Block()).next();
+        return format(prefix, number);
+    }
+
+    static String format(String prefix, long number) {
+        return String.format("%s%06d", prefix, number);
+    }
+
+    private final class Block {
+        // Per-prefix lock: a refill only stalls registrations for the same facility. A ReentrantLock
+        // rather than synchronized, so virtual threads waiting on the refill's query keep no carrier.
+        private final ReentrantLock lock = new ReentrantLock();
+        private long next;
+        private long limit;
+
+        long next() {
+            lock.lock();
+            try {
+                if (next >= limit) {
+                    next = patientRepository.nextMrnBlock();
+                    limit = next + BLOCK_SIZE;
+                    log.debug("Reserved MRN block [{}, {})", next, limit);
+                }
+                return next++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.haykal.emr.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Opaque continuation tokens for keyset listings: the sort key of the last row of a page,
+ * serialized and URL-safe Base64 encoded. Each token carries its kind so a patient cursor
+ * cannot be replayed against the patient service listing.
+ */
+public final class PageCursor {
+    private static final byte VERSION = 1;
+    private static final byte NAME_KEY = 'N';
+    private static final byte ID_KEY = 'I';
+
+    /** Position in a listing ordered by (last_name, first_name, id). */
+    public record NameKey(String lastName, String firstName, long id) {
+    }
+
+    private PageCursor() {
+    }
+
+    public static String encode(NameKey key) {
+        return write(out -> {
+            out.writeByte(NAME_KEY);
+            out.writeUTF(key.lastName());
+            out.writeUTF(key.firstName());
+            out.writeLong(key.id());
+        });
+    }
+
+    public static String encode(long id) {
+        return write(out -> {
+            out.writeByte(ID_KEY);
+            out.writeLong(id);
+        });
+    }
+
+    public static NameKey decodeNameKey(String cursor) {
+        try (DataInputStream in = read(cursor, NAME_KEY)) {
+            return new NameKey(in.readUTF(), in.readUTF(), in.readLong());
+        } catch (IOException e) {
+            throw invalid();
+        }
+    }
+
+    public static long decodeIdKey(String cursor) {
+        try (DataInputStream in = read(cursor, ID_KEY)) {
+            return in.readLong();
+        } catch (IOException e) {
+            throw invalid();
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static String write(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static DataInputStream read(String cursor, byte kind) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readByte() != VERSION || in.readByte() != kind) {
+            throw invalid();
+        }
+        return in;
+    }
+
+    private static IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Invalid cursor");
+    }
+}
@@ -0,0 +1,104 @@
+package org.haykal.emr.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Removes archived patients and services once they are older than the retention period.
+ * <p>
+ * Rows go in batches of {@code batchSize}, oldest first, each batch its own short auto-committed
+ * DELETE so row locks and WAL volume stay small. Between batches the job sleeps for {@code pause}
+ * and it stops after {@code maxBatches}; whatever is left goes on the next run. On PostgreSQL the
+ * archive tables are partitioned by year, so a year that is entirely past retention can also be
+ * dropped by hand in one statement.
+ */
+@Slf4j
+@Component
+public class PatientArchivePurger {
+    private static final String[] TABLES = {"patient_services_archive", "patients_archive"};
+
+    public record PurgeResult(int patients, int services, int batches, boolean complete) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final int batchSize;
+    private final Duration pause;
+    private final int maxBatches;
+
+    public PatientArchivePurger(JdbcTemplate jdbcTemplate,
+                                @Value("${app.patients.archive.retention:3650d}") Duration retention,
+                                @Value("${app.patients.archive.purge-batch-size:1000}") int batchSize,
+                                @Value("${app.patients.archive.purge-pause:200ms}") Duration pause,
+                                @Value("${app.patients.archive.purge-max-batches:100}") int maxBatches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.maxBatches = maxBatches;
+    }
+
+    // Off unless app.patients.archive.purge-cron is set
+    @Scheduled(cron = "${app.patients.archive.purge-cron:-}")
+    public void scheduledPurge() {
+        try {
+            PurgeResult result = purge();
+            if (result.batches() > 0) {
+                log.info("Purged {} archived patients and {} archived services in {} batches{}", result.patients(),
+                        result.services(), result.batches(), result.complete() ? "" : ", more left for the next run");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Archive purge failed: {}", e.getMessage());
+        }
+    }
+
+    public PurgeResult purge() {
+        return purge(LocalDateTime.now().minus(retention));
+    }
+
+    // Purges rows archived before the cutoff, services first
+    public PurgeResult purge(LocalDateTime cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff);
+        int[] purged = new int[TABLES.length];
+        int batches = 0;
+        for (int t = 0; t < TABLES.length; t++) {
+            String sql = "DELETE FROM " + TABLES[t] + " WHERE archived_at < ? AND id IN " +
+                    "(SELECT id FROM " + TABLES[t] + " WHERE archived_at < ? ORDER BY archived_at LIMIT ?)";
+            while (true) {
+                if (batches >= maxBatches) {
+                    return new PurgeResult(purged[1], purged[0], batches, false);
+                }
+                if (batches > 0 && !sleep()) {
+                    return new PurgeResult(purged[1], purged[0], batches, false);
+                }
+                int deleted = jdbcTemplate.update(sql, before, before, batchSize);
+                if (deleted == 0) {
+                    break;
+                }
+                purged[t] += deleted;
+                batches++;
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+        }
+        return new PurgeResult(purged[1], purged[0], batches, true);
+    }
+
+    private boolean sleep() {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
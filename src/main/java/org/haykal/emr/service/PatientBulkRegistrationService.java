@@ -0,0 +1,307 @@
+package org.haykal.emr.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.haykal.emr.dto.BulkRegistrationResult;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.haykal.emr.entity.Facility;
+import org.haykal.emr.entity.Patient;
+import org.haykal.emr.entity.ServiceType;
+import org.haykal.emr.outbox.OutboxWriter;
+import org.haykal.emr.repository.FacilityRepository;
+import org.haykal.emr.repository.PatientRepository;
+import org.haykal.emr.stats.FacilityStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registers large numbers of patients in chunks of {@code app.bulk.batch-size} rows.
+ * <p>
+ * Each chunk is validated up front with a fixed number of queries (facilities, their offerings,
+ * service types and existing MRNs are looked up once per chunk), then inserted in its own
+ * transaction so Hibernate can JDBC-batch the patient and service inserts. Invalid rows are
+ * reported and skipped; if a chunk still fails at the database it is replayed row by row so only
+ * the offending rows are lost. A run that breaks off after some chunks committed returns what it
+ * did, with the row it stopped at.
+ */
+@Slf4j
+@Service
+public class PatientBulkRegistrationService {
+    private final PatientManagementService patientManagementService;
+    private final PatientRepository patientRepository;
+    private final FacilityRepository facilityRepository;
+    private final ServiceTypeCatalog serviceTypeCatalog;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final OutboxWriter outboxWriter;
+    private final FacilityStatsRepository facilityStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public PatientBulkRegistrationService(PatientManagementService patientManagementService,
+                                          PatientRepository patientRepository,
+                                          FacilityRepository facilityRepository,
+                                          ServiceTypeCatalog serviceTypeCatalog,
+                                          Validator validator,
+                                          ObjectMapper objectMapper,
+                                          OutboxWriter outboxWriter,
+                                          FacilityStatsRepository facilityStatsRepository,
+                                          PlatformTransactionManager transactionManager,
+                                          @Value("${app.bulk.batch-size:500}") int batchSize) {
+        this.patientManagementService = patientManagementService;
+        this.patientRepository = patientRepository;
+        this.facilityRepository = facilityRepository;
+        this.serviceTypeCatalog = serviceTypeCatalog;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.outboxWriter = outboxWriter;
+        this.facilityStatsRepository = facilityStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    public BulkRegistrationResult register(List<PatientDTO> patients) {
+        log.info("Bulk registering {} patients in batches of {}", patients.size(), batchSize);
+        BulkRegistrationResult result = new BulkRegistrationResult();
+        List<Row> chunk = new ArrayList<>(batchSize);
+
+        int i = 0;
+        try {
+            for (; i < patients.size(); i++) {
+                result.setReceived(result.getReceived() + 1);
+                chunk.add(new Row(i, patients.get(i)));
+                if (chunk.size() == batchSize) {
+                    processChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+            processChunk(chunk, result);
+        } catch (RuntimeException e) {
+            if (result.getCreated() == 0) {
+                throw e;
+            }
+            interrupted(result, chunk.isEmpty() ? i : chunk.get(0).index(), e);
+        }
+
+        log.info("Bulk registration finished: {} created, {} failed", result.getCreated(), result.getFailed());
+        return result;
+    }
+
+    // One JSON document per line; only the current chunk is held in memory
+    public BulkRegistrationResult registerNdjson(InputStream body) throws IOException {
+        log.info("Bulk registering patients from NDJSON stream in batches of {}", batchSize);
+        BulkRegistrationResult result = new BulkRegistrationResult();
+        List<Row> chunk = new ArrayList<>(batchSize);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        int lineIndex = -1;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineIndex++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                result.setReceived(result.getReceived() + 1);
+                try {
+                    chunk.add(new Row(lineIndex, objectMapper.readValue(line, PatientDTO.class)));
+                } catch (JsonProcessingException e) {
+                    result.addError(lineIndex, null, "Malformed JSON: " + e.getOriginalMessage());
+                }
+                if (chunk.size() == batchSize) {
+                    processChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+            processChunk(chunk, result);
+        } catch (IOException | RuntimeException e) {
+            if (result.getCreated() == 0) {
+                throw e;
+            }
+            interrupted(result, chunk.isEmpty() ? lineIndex + 1 : chunk.get(0).index(), e);
+        }
+
+        log.info("Bulk registration finished: {} created, {} failed", result.getCreated(), result.getFailed());
+        return result;
+    }
+
+    // Chunks committed before the failure stay committed, so once any row was created the run ends
+    // with a partial result instead of an error; the caller, and a retry replaying the Idempotency-Key,
+    // learns where to resume. With nothing created the failure propagates unchanged.
+    private void interrupted(BulkRegistrationResult result, int row, Exception failure) {
+        log.warn("Bulk registration interrupted at row {} after {} patients were created: {}", row,
+                result.getCreated(), failure.getClass().getSimpleName());
+        result.setInterruptedAtRow(row);
+    }
+
+    private void processChunk(List<Row> chunk, BulkRegistrationResult result) {
+        List<Row> valid = validate(chunk, result);
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(valid));
+            result.setCreated(result.getCreated() + valid.size());
+        } catch (RuntimeException e) {
+            log.warn("Bulk chunk of {} rows from row {} failed, retrying row by row: {}", valid.size(),
+                    valid.get(0).index(), e.getClass().getSimpleName());
+            for (Row row : valid) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persist(List.of(row)));
+                    result.setCreated(result.getCreated() + 1);
+                } catch (RuntimeException rowFailure) {
+                    log.warn("Bulk row {} failed: {}", row.index(), rowFailure.getClass().getSimpleName());
+                    result.addError(row.index(), row.dto().getMrn(), failureMessage(rowFailure));
+                }
+            }
+        }
+    }
+
+    // Database messages can quote the offending values (PostgreSQL: "Key (mrn)=(...) already
+    // exists"), so neither the log nor the row error repeats them
+    private static String failureMessage(RuntimeException failure) {
+        if (failure instanceof DataIntegrityViolationException) {
+            return "Violates a database constraint";
+        }
+        return "Could not be saved";
+    }
+
+    private List<Row> validate(List<Row> chunk, BulkRegistrationResult result) {
+        if (chunk.isEmpty()) {
+            return chunk;
+        }
+
+        // Reference data and MRN collisions are resolved with one query each for the whole chunk
+        Set<Long> facilityIds = chunk.stream()
+                .map(row -> row.dto().getFacilityId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Facility> facilities = facilityRepository.findAllById(facilityIds).stream()
+                .collect(Collectors.toMap(Facility::getId, Function.identity()));
+
+        Set<Long> serviceTypeIds = chunk.stream()
+                .filter(row -> row.dto().getRequestedServices() != null)
+                .flatMap(row -> row.dto().getRequestedServices().stream())
+                .map(ServiceRequestDTO::getServiceTypeId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, ServiceType> serviceTypes = serviceTypeCatalog.resolve(serviceTypeIds);
+        Map<Long, Set<Long>> offeredServiceTypeIds = new HashMap<>();
+        for (Long facilityId : facilities.keySet()) {
+            offeredServiceTypeIds.put(facilityId, facilityRepository.findAvailableServiceTypeIds(facilityId));
+        }
+
+        Set<String> providedMrns = chunk.stream()
+                .map(row -> row.dto().getMrn())
+                .filter(mrn -> mrn != null && !mrn.trim().isEmpty())
+                .map(String::trim)
+                .collect(Collectors.toSet());
+        Set<String> existingMrns = providedMrns.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(patientRepository.findExistingMrns(providedMrns));
+
+        List<Row> valid = new ArrayList<>(chunk.size());
+        Set<String> seenMrns = new HashSet<>();
+        for (Row row : chunk) {
+            String error = validateRow(row.dto(), facilities, serviceTypes, offeredServiceTypeIds, existingMrns, seenMrns);
+            if (error != null) {
+                result.addError(row.index(), row.dto().getMrn(), error);
+            } else {
+                valid.add(new Row(row.index(), row.dto(), facilities.get(row.dto().getFacilityId()), serviceTypes));
+            }
+        }
+        return valid;
+    }
+
+    private String validateRow(PatientDTO dto, Map<Long, Facility> facilities, Map<Long, ServiceType> serviceTypes,
+                               Map<Long, Set<Long>> offeredServiceTypeIds, Set<String> existingMrns,
+                               Set<String> seenMrns) {
+        Set<ConstraintViolation<PatientDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+
+        try {
+            patientManagementService.validateGender(dto.getGender());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        if (!facilities.containsKey(dto.getFacilityId())) {
+            return "Facility not found with ID: " + dto.getFacilityId();
+        }
+
+        if (dto.getMrn() != null && !dto.getMrn().trim().isEmpty()) {
+            String mrn = dto.getMrn().trim();
+            if (existingMrns.contains(mrn) || !seenMrns.add(mrn)) {
+                return "A patient with the given MRN already exists";
+            }
+        }
+
+        if (dto.getRequestedServices() != null) {
+            for (ServiceRequestDTO request : dto.getRequestedServices()) {
+                ServiceType serviceType = serviceTypes.get(request.getServiceTypeId());
+                if (serviceType == null) {
+                    return "Service type not found with ID: " + request.getServiceTypeId();
+                }
+                if (!offeredServiceTypeIds.get(dto.getFacilityId()).contains(serviceType.getId())) {
+                    return "Service type " + serviceType.getCode() + " is not offered by facility " +
+                            facilities.get(dto.getFacilityId()).getCode();
+                }
+            }
+        }
+        return null;
+    }
+
+    // Runs inside the chunk transaction; services are persisted through the Patient.services cascade
+    private void persist(List<Row> rows) {
+        List<Patient> patients = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            PatientDTO dto = row.dto();
+            if (dto.getMrn() == null || dto.getMrn().trim().isEmpty()) {
+                dto.setMrn(patientManagementService.generateMRN(row.facility()));
+            }
+
+            Patient patient = patientManagementService.buildPatient(dto, row.facility());
+            if (dto.getRequestedServices() != null) {
+                for (ServiceRequestDTO request : dto.getRequestedServices()) {
+                    patient.getServices().add(patientManagementService.buildPatientService(
+                            patient, request, row.serviceTypes().get(request.getServiceTypeId()), row.facility()));
+                }
+            }
+            patients.add(patient);
+        }
+
+        patientRepository.saveAll(patients);
+        patientRepository.flush();
+
+        outboxWriter.appendAll(patients.stream().map(patientManagementService::creationChange).toList());
+        facilityStatsRepository.appendPatientDeltas(patients.stream().map(Patient::getId).toList(), 1);
+    }
+
+    private record Row(int index, PatientDTO dto, Facility facility, Map<Long, ServiceType> serviceTypes) {
+        Row(int index, PatientDTO dto) {
+            this(index, dto, null, Collections.emptyMap());
+        }
+    }
+}
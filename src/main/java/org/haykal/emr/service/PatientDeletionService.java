@@ -0,0 +1,89 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.PatientDeletionResult;
+import org.haykal.emr.repository.ChangeEventRepository;
+import org.haykal.emr.repository.PatientRepository;
+import org.haykal.emr.stats.FacilityStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Set-based patient deletion. Whatever the number of patients or services, a call is one locking
+ * SELECT of the ids, in archive mode one INSERT ... SELECT into each archive table, one
+ * INSERT ... SELECT of outbox events, one INSERT ... SELECT of facility stats deltas and one
+ * DELETE; services and duplicate candidates go with the database's ON DELETE CASCADE. Archived
+ * rows are removed later by {@link PatientArchivePurger}.
+ */
+@Slf4j
+@Service
+@Transactional
+public class PatientDeletionService {
+    static final int MAX_BULK_IDS = 1000;
+
+    public enum Mode {
+        DELETE, ARCHIVE;
+
+        public static Mode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported deletion mode: " + value);
+            }
+        }
+    }
+
+    private final PatientRepository patientRepository;
+    private final ChangeEventRepository changeEventRepository;
+    private final FacilityStatsRepository facilityStatsRepository;
+    private final Mode defaultMode;
+
+    public PatientDeletionService(PatientRepository patientRepository,
+                                  ChangeEventRepository changeEventRepository,
+                                  FacilityStatsRepository facilityStatsRepository,
+                                  @Value("${app.patients.deletion-mode:archive}") String defaultMode) {
+        this.patientRepository = patientRepository;
+        this.changeEventRepository = changeEventRepository;
+        this.facilityStatsRepository = facilityStatsRepository;
+        this.defaultMode = Mode.parse(defaultMode);
+    }
+
+    public Mode getDefaultMode() {
+        return defaultMode;
+    }
+
+    // Ids that do not exist are skipped; the result tells how many patients were actually removed
+    public PatientDeletionResult delete(Collection<Long> ids, Mode mode) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one patient ID is required");
+        }
+        if (ids.size() > MAX_BULK_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_IDS + " patients can be deleted at once");
+        }
+        Mode effectiveMode = mode != null ? mode : defaultMode;
+
+        List<Long> locked = patientRepository.lockByIds(ids);
+        if (locked.isEmpty()) {
+            return new PatientDeletionResult(effectiveMode.name(), 0, 0);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int archivedServices = 0;
+        if (effectiveMode == Mode.ARCHIVE) {
+            archivedServices = patientRepository.archiveServicesByPatientIds(locked, now);
+            patientRepository.archiveByIds(locked, now);
+        }
+        changeEventRepository.appendPatientDeletions(locked, now);
+        facilityStatsRepository.appendPatientDeltas(locked, -1);
+        int deleted = patientRepository.deleteAllByIds(locked);
+
+        log.info("Deleted {} patients ({} mode, {} services archived)", deleted, effectiveMode, archivedServices);
+        return new PatientDeletionResult(effectiveMode.name(), deleted, archivedServices);
+    }
+}
@@ -0,0 +1,165 @@
+package org.haykal.emr.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.haykal.emr.repository.FacilityRepository;
+import org.haykal.emr.repository.PatientRepository;
+import org.haykal.emr.repository.PatientSummary;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Streams a facility's full patient roster as NDJSON or CSV.
+ * <p>
+ * Rows come from a forward-only cursor over {@link PatientSummary} projections and are written as
+ * they are read, so memory use does not depend on the size of the facility. Projections are not
+ * managed entities, which keeps the persistence context empty for the whole export.
+ */
+@Slf4j
+@Service
+public class PatientExportService {
+    private static final String CSV_HEADER = "id,mrn,first_name,last_name,gender,date_of_birth,email,phone," +
+            "address,city,state,zip_code,insurance_provider,insurance_policy_number,insurance_group_number," +
+            "facility_id,facility_name";
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private final PatientRepository patientRepository;
+    private final FacilityRepository facilityRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public PatientExportService(PatientRepository patientRepository,
+                                FacilityRepository facilityRepository,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.patientRepository = patientRepository;
+        this.facilityRepository = facilityRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // The facility is checked up front so a missing one is still a 404 rather than a broken stream
+    public StreamingResponseBody export(Long facilityId, Format format) {
+        facilityName(facilityId);
+        return out -> {
+            long rows = write(facilityId, format, out);
+            log.info("Exported {} patients of facility {} as {}", rows, facilityId, format);
+        };
+    }
+
+    public long write(Long facilityId, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            Long rows = readOnlyTransaction.execute(status -> {
+                String facilityName = facilityName(facilityId);
+                try (Stream<PatientSummary> summaries =
+                             patientRepository.streamSummariesByFacilityId(facilityId, facilityName)) {
+                    return format == Format.CSV ? writeCsv(summaries, writer) : writeNdjson(summaries, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            return rows == null ? 0 : rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String facilityName(Long facilityId) {
+        return facilityRepository.findById(facilityId)
+                .orElseThrow(() -> new ResourceNotFoundException("Facility not found with ID: " + facilityId))
+                .getName();
+    }
+
+    private long writeNdjson(Stream<PatientSummary> summaries, Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        long rows = 0;
+        for (PatientSummary summary : (Iterable<PatientSummary>) summaries::iterator) {
+            generator.writeObject(summary);
+            generator.writeRaw('\n');
+            rows++;
+        }
+        generator.flush();
+        return rows;
+    }
+
+    private long writeCsv(Stream<PatientSummary> summaries, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long rows = 0;
+        for (PatientSummary summary : (Iterable<PatientSummary>) summaries::iterator) {
+            writer.write(String.valueOf(summary.id()));
+            writeCsvField(writer, summary.mrn());
+            writeCsvField(writer, summary.firstName());
+            writeCsvField(writer, summary.lastName());
+            writeCsvField(writer, summary.gender().name());
+            writeCsvField(writer, String.valueOf(summary.dateOfBirth()));
+            writeCsvField(writer, summary.email());
+            writeCsvField(writer, summary.phone());
+            writeCsvField(writer, summary.address());
+            writeCsvField(writer, summary.city());
+            writeCsvField(writer, summary.state());
+            writeCsvField(writer, summary.zipCode());
+            writeCsvField(writer, summary.insuranceProvider());
+            writeCsvField(writer, summary.insurancePolicyNumber());
+            writeCsvField(writer, summary.insuranceGroupNumber());
+            writeCsvField(writer, String.valueOf(summary.facilityId()));
+            writeCsvField(writer, summary.facilityName());
+            writer.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    // RFC 4180: quote fields containing separators, quotes or line breaks and double embedded quotes
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        writer.write(',');
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -5,34 +5,60 @@ import org.haykal.emr.entity.*;
 import org.haykal.emr.repository.*;
 import org.haykal.emr.exception.ResourceNotFoundException;
 import org.haykal.emr.exception.DuplicateResourceException;
+import org.haykal.emr.metrics.ServiceMetrics;
+import org.haykal.emr.mpi.DuplicateDetector;
+import org.haykal.emr.mpi.PatientMatchKeys;
+import org.haykal.emr.outbox.OutboxWriter;
+import org.haykal.emr.outbox.PatientCreated;
+import org.haykal.emr.outbox.PatientServiceChange;
+import org.haykal.emr.stats.FacilityStatsRepository;
+import io.micrometer.core.instrument.Tags;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class PatientManagementService {
+    static final int MAX_SCROLL_SIZE = 500;
+
     private final PatientRepository patientRepository;
     private final FacilityRepository facilityRepository;
-    private final ServiceTypeRepository serviceTypeRepository;
-    private final PatientServiceRepository patientServiceRepository;
+    private final ServiceTypeCatalog serviceTypeCatalog;
+    private final MrnAllocator mrnAllocator;
+    private final OutboxWriter outboxWriter;
+    private final DuplicateDetector duplicateDetector;
+    private final ServiceMetrics serviceMetrics;
+    private final PatientDeletionService patientDeletionService;
+    private final FacilityStatsRepository facilityStatsRepository;
 
     public PatientDTO createPatient(PatientDTO dto) {
-        log.info("Creating new patient with data: {}", dto);
+        return serviceMetrics.time("emr.patient.create", dto.getFacilityId(), () -> register(dto));
+    }
+
+    private PatientDTO register(PatientDTO dto) {
+        log.debug("Creating patient {}", dto);
 
         // Validate gender
         validateGender(dto.getGender());
 
         // Check if MRN already exists
         if (dto.getMrn() != null && patientRepository.existsByMrn(dto.getMrn())) {
-            throw new DuplicateResourceException("Patient with MRN " + dto.getMrn() + " already exists");
+            throw new DuplicateResourceException("A patient with the given MRN already exists");
         }
 
         // Get facility
@@ -41,41 +67,29 @@ public class PatientManagementService {
 
         // Generate MRN if not provided
         if (dto.getMrn() == null || dto.getMrn().trim().isEmpty()) {
-            dto.setMrn(generateMRN(facility.getCode()));
+            dto.setMrn(generateMRN(facility));
         }
 
         // Create patient
-        Patient patient = Patient.builder()
-                .mrn(dto.getMrn().trim())
-                .firstName(dto.getFirstName().trim())
-                .lastName(dto.getLastName().trim())
-                .gender(Gender.valueOf(dto.getGender().toUpperCase()))
-                .dateOfBirth(dto.getDateOfBirth())
-                .email(dto.getEmail() != null ? dto.getEmail().trim() : null)
-                .phone(dto.getPhone() != null ? dto.getPhone().trim() : null)
-                .address(dto.getAddress() != null ? dto.getAddress().trim() : null)
-                .city(dto.getCity() != null ? dto.getCity().trim() : null)
-                .state(dto.getState() != null ? dto.getState().trim() : null)
-                .zipCode(dto.getZipCode() != null ? dto.getZipCode().trim() : null)
-                .insuranceProvider(dto.getInsuranceProvider() != null ? dto.getInsuranceProvider().trim() : null)
-                .insurancePolicyNumber(dto.getInsurancePolicyNumber() != null ? dto.getInsurancePolicyNumber().trim() : null)
-                .insuranceGroupNumber(dto.getInsuranceGroupNumber() != null ? dto.getInsuranceGroupNumber().trim() : null)
-                .facility(facility)
-                .services(new HashSet<>())
-                .build();
-
-        patient = patientRepository.save(patient);
-        log.info("Patient created successfully with ID: {} and MRN: {}", patient.getId(), patient.getMrn());
+        Patient patient = buildPatient(dto, facility);
 
-        // Create requested services
+        // Create requested services, persisted in one batch through the Patient.services cascade
         if (dto.getRequestedServices() != null && !dto.getRequestedServices().isEmpty()) {
             log.info("Creating {} requested services for patient", dto.getRequestedServices().size());
-            for (ServiceRequestDTO serviceRequest : dto.getRequestedServices()) {
-                createPatientService(patient, serviceRequest, facility);
-            }
+            Patient unsaved = patient;
+            serviceMetrics.time("emr.patient.services.create", facility.getId(),
+                    () -> createPatientServices(unsaved, dto.getRequestedServices(), facility));
         }
 
-        return toDTO(patient);
+        patient = patientRepository.save(patient);
+        log.info("Patient created successfully with ID: {} at facility {}", patient.getId(), facility.getId());
+
+        PatientDTO created = toDTO(patient);
+        outboxWriter.appendAll(List.of(creationChange(patient, created)));
+        facilityStatsRepository.appendPatientDeltas(List.of(patient.getId()), 1);
+        // The outbox append flushed the patient row, which the recorded candidates refer to
+        created.setPossibleDuplicates(duplicateDetector.detectOnRegistration(patient));
+        return created;
     }
 
     public PatientDTO updatePatient(Long id, PatientDTO dto) {
@@ -101,11 +115,14 @@ public class PatientManagementService {
         patient.setInsuranceProvider(dto.getInsuranceProvider() != null ? dto.getInsuranceProvider().trim() : null);
         patient.setInsurancePolicyNumber(dto.getInsurancePolicyNumber() != null ? dto.getInsurancePolicyNumber().trim() : null);
         patient.setInsuranceGroupNumber(dto.getInsuranceGroupNumber() != null ? dto.getInsuranceGroupNumber().trim() : null);
+        PatientMatchKeys.of(patient).applyTo(patient);
 
         patient = patientRepository.save(patient);
         log.info("Patient updated successfully with ID: {}", patient.getId());
 
-        return toDTO(patient);
+        PatientDTO updated = toDTO(patient);
+        outboxWriter.append(ChangeAggregate.PATIENT, id, id, ChangeEventType.UPDATED, updated);
+        return updated;
     }
 
     @Transactional(readOnly = true)
@@ -118,19 +135,39 @@ public class PatientManagementService {
 
     @Transactional(readOnly = true)
     public PatientDTO getPatientByMrn(String mrn) {
-        log.debug("Fetching patient with MRN: {}", mrn);
         if (mrn == null || mrn.trim().isEmpty()) {
             throw new IllegalArgumentException("MRN cannot be null or empty");
         }
 
+        // The MRN identifies the patient, so neither the log nor the error message repeats it
         Patient patient = patientRepository.findByMrn(mrn.trim())
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with MRN: " + mrn));
+                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with the given MRN"));
+        log.debug("Fetched patient with ID {} by MRN", patient.getId());
         return toDTO(patient);
     }
 
     @Transactional(readOnly = true)
     public PageResponse<PatientDTO> searchPatients(Long facilityId, String search, Pageable pageable) {
-        log.debug("Searching patients for facility ID: {} with search term: {}", facilityId, search);
+        return searchPatients(facilityId, search, false, pageable);
+    }
+
+    // Timed and sized by type: plain listing, substring search or ranked search
+    @Transactional(readOnly = true)
+    public PageResponse<PatientDTO> searchPatients(Long facilityId, String search, boolean ranked, Pageable pageable) {
+        Tags type = Tags.of("type", search == null || search.trim().isEmpty() ? "list" : ranked ? "ranked" : "search");
+        return serviceMetrics.time("emr.patient.search", facilityId, type, () -> {
+            PageResponse<PatientDTO> page = findPatients(facilityId, search, ranked, pageable);
+            serviceMetrics.recordResultSize("emr.patient.results", facilityId, type, page.getTotalElements());
+            return page;
+        });
+    }
+
+    private PageResponse<PatientDTO> findPatients(Long facilityId, String search, boolean ranked, Pageable pageable) {
+        // The search term is usually a patient's name, so only whether there is one is logged
+        if (log.isDebugEnabled()) {
+            log.debug("Searching patients for facility ID: {} (term given: {}, ranked: {})", facilityId,
+                    search != null && !search.isBlank(), ranked);
+        }
 
         if (facilityId == null) {
             throw new IllegalArgumentException("Facility ID cannot be null");
@@ -141,36 +178,140 @@ public class PatientManagementService {
             throw new ResourceNotFoundException("Facility not found with ID: " + facilityId);
         }
 
-        Page<Patient> patients;
+        // List screens read summaries straight from the query; no Patient entities are hydrated
+        Page<PatientSummary> patients;
         if (search != null && !search.trim().isEmpty()) {
-            patients = patientRepository.searchByFacility(facilityId, search.trim(), pageable);
+            String term = search.trim().toLowerCase(Locale.ROOT);
+            String escaped = escapeLike(term);
+            if (ranked) {
+                patients = patientRepository.searchRankedBySearchText(facilityId, term,
+                        "%" + escaped + "%", escaped + "%", "% " + escaped + "%", pageable);
+            } else {
+                patients = patientRepository.searchBySearchText(facilityId, "%" + escaped + "%", pageable);
+            }
         } else {
-            patients = patientRepository.findByFacilityId(facilityId, pageable);
+            patients = patientRepository.findSummariesByFacilityId(facilityId, pageable);
         }
 
-        Page<PatientDTO> dtoPage = patients.map(this::toDTO);
+        Page<PatientDTO> dtoPage = patients.map(PatientManagementService::toDTO);
         return PageResponse.of(dtoPage);
     }
 
+    // Keyset variant of the listing: every page costs the same whatever its depth, and the
+    // COUNT(*) is only run on request
+    @Transactional(readOnly = true)
+    public CursorPage<PatientDTO> scrollPatients(Long facilityId, String search, String cursor, int size,
+                                                 boolean includeCount) {
+        log.debug("Scrolling patients for facility ID: {} (term given: {})", facilityId, search != null && !search.isBlank());
+
+        if (facilityId == null) {
+            throw new IllegalArgumentException("Facility ID cannot be null");
+        }
+        int pageSize = scrollPageSize(size);
+        if (!facilityRepository.existsById(facilityId)) {
+            throw new ResourceNotFoundException("Facility not found with ID: " + facilityId);
+        }
+
+        String pattern = search != null && !search.trim().isEmpty()
+                ? "%" + escapeLike(search.trim().toLowerCase(Locale.ROOT)) + "%"
+                : "%";
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        List<PatientSummary> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = patientRepository.scrollSummaries(facilityId, pattern, limit);
+        } else {
+            PageCursor.NameKey after = PageCursor.decodeNameKey(cursor);
+            rows = patientRepository.scrollSummariesAfter(facilityId, pattern,
+                    after.lastName(), after.firstName(), after.id(), limit);
+        }
+
+        CursorPage<PatientDTO> page = CursorPage.of(rows, pageSize, PatientManagementService::toDTO,
+                row -> PageCursor.encode(new PageCursor.NameKey(row.lastName(), row.firstName(), row.id())));
+        if (includeCount) {
+            page.setTotalElements(patientRepository.countBySearchText(facilityId, pattern));
+        }
+        return page;
+    }
+
+    static int scrollPageSize(int size) {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+        return size;
+    }
+
+    // Same set-based path as bulk deletion, in the configured mode
     public void deletePatient(Long id) {
         log.info("Deleting patient with ID: {}", id);
 
-        if (!patientRepository.existsById(id)) {
+        if (patientDeletionService.delete(List.of(id), null).getDeleted() == 0) {
             throw new ResourceNotFoundException("Patient not found with ID: " + id);
         }
-
-        patientRepository.deleteById(id);
         log.info("Patient deleted successfully with ID: {}", id);
     }
 
-    private void createPatientService(Patient patient, ServiceRequestDTO request, Facility facility) {
-        log.debug("Creating patient service for patient ID: {} and service type ID: {}",
-                patient.getId(), request.getServiceTypeId());
+    // Resolves all requested service types with one catalog lookup and one offering query,
+    // whatever the number of requests
+    private void createPatientServices(Patient patient, Set<ServiceRequestDTO> requests, Facility facility) {
+        Set<Long> serviceTypeIds = requests.stream()
+                .map(ServiceRequestDTO::getServiceTypeId)
+                .collect(Collectors.toSet());
+        Map<Long, ServiceType> serviceTypes = serviceTypeCatalog.resolve(serviceTypeIds);
+        Set<Long> offeredServiceTypeIds = facilityRepository.findAvailableServiceTypeIds(facility.getId());
+
+        for (ServiceRequestDTO request : requests) {
+            ServiceType serviceType = serviceTypes.get(request.getServiceTypeId());
+            if (serviceType == null) {
+                throw new ResourceNotFoundException("Service type not found with ID: " + request.getServiceTypeId());
+            }
+            if (!offeredServiceTypeIds.contains(serviceType.getId())) {
+                throw new IllegalArgumentException("Service type " + serviceType.getCode() +
+                        " is not offered by facility " + facility.getCode());
+            }
+            patient.getServices().add(buildPatientService(patient, request, serviceType, facility));
+        }
+    }
+
+    // One outbox event per registration, whatever the number of requested services
+    OutboxWriter.Change creationChange(Patient patient, PatientDTO dto) {
+        List<PatientServiceChange> services = patient.getServices().stream()
+                .sorted(Comparator.comparing(PatientService::getId))
+                .map(PatientServiceChange::of)
+                .toList();
+        return new OutboxWriter.Change(ChangeAggregate.PATIENT, patient.getId(), patient.getId(),
+                ChangeEventType.CREATED, new PatientCreated(dto, services));
+    }
+
+    OutboxWriter.Change creationChange(Patient patient) {
+        return creationChange(patient, toDTO(patient));
+    }
 
-        ServiceType serviceType = serviceTypeRepository.findById(request.getServiceTypeId())
-                .orElseThrow(() -> new ResourceNotFoundException("Service type not found with ID: " + request.getServiceTypeId()));
+    // Builds a new, unsaved patient from a validated DTO whose MRN has already been assigned
+    Patient buildPatient(PatientDTO dto, Facility facility) {
+        Patient patient = Patient.builder()
+                .mrn(dto.getMrn().trim())
+                .firstName(dto.getFirstName().trim())
+                .lastName(dto.getLastName().trim())
+                .gender(Gender.valueOf(dto.getGender().toUpperCase()))
+                .dateOfBirth(dto.getDateOfBirth())
+                .email(dto.getEmail() != null ? dto.getEmail().trim() : null)
+                .phone(dto.getPhone() != null ? dto.getPhone().trim() : null)
+                .address(dto.getAddress() != null ? dto.getAddress().trim() : null)
+                .city(dto.getCity() != null ? dto.getCity().trim() : null)
+                .state(dto.getState() != null ? dto.getState().trim() : null)
+                .zipCode(dto.getZipCode() != null ? dto.getZipCode().trim() : null)
+                .insuranceProvider(dto.getInsuranceProvider() != null ? dto.getInsuranceProvider().trim() : null)
+                .insurancePolicyNumber(dto.getInsurancePolicyNumber() != null ? dto.getInsurancePolicyNumber().trim() : null)
+                .insuranceGroupNumber(dto.getInsuranceGroupNumber() != null ? dto.getInsuranceGroupNumber().trim() : null)
+                .facility(facility)
+                .services(new HashSet<>())
+                .build();
+        PatientMatchKeys.of(patient).applyTo(patient);
+        return patient;
+    }
 
-        PatientService patientService = PatientService.builder()
+    PatientService buildPatientService(Patient patient, ServiceRequestDTO request, ServiceType serviceType, Facility facility) {
+        return PatientService.builder()
                 .patient(patient)
                 .serviceType(serviceType)
                 .facility(facility)
@@ -180,26 +321,24 @@ public class PatientManagementService {
                 .providerName(request.getProviderName() != null ? request.getProviderName().trim() : null)
                 .status(ServiceStatus.SCHEDULED)
                 .build();
-
-        patientServiceRepository.save(patientService);
-        log.debug("Patient service created successfully for patient ID: {}", patient.getId());
     }
 
-    private String generateMRN(String facilityCode) {
-        if (facilityCode == null || facilityCode.trim().isEmpty()) {
-            throw new IllegalArgumentException("Facility code cannot be null or empty for MRN generation");
-        }
-
-        String prefix = facilityCode.toUpperCase().trim();
-        Integer maxNumber = patientRepository.findMaxMrnNumber(prefix, prefix.length());
-        int nextNumber = (maxNumber != null && maxNumber > 0) ? maxNumber + 1 : 1000;
-        String mrn = String.format("%s%06d", prefix, nextNumber);
+    String generateMRN(Facility facility) {
+        return serviceMetrics.time("emr.patient.mrn", facility.getId(), () -> {
+            String mrn = mrnAllocator.nextMrn(facility.getCode());
+            log.debug("Generated MRN for facility code: {}", facility.getCode());
+            return mrn;
+        });
+    }
 
-        log.debug("Generated MRN: {} for facility code: {}", mrn, facilityCode);
-        return mrn;
+    // Escapes LIKE wildcards so user input is always matched literally (see ESCAPE in PatientRepository)
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
-    private void validateGender(String gender) {
+    void validateGender(String gender) {
         if (gender == null || gender.trim().isEmpty()) {
             throw new IllegalArgumentException("Gender cannot be null or empty");
         }
@@ -212,7 +351,7 @@ public class PatientManagementService {
         }
     }
 
-    private PatientDTO toDTO(Patient patient) {
+    static PatientDTO toDTO(Patient patient) {
         PatientDTO dto = new PatientDTO();
         dto.setId(patient.getId());
         dto.setMrn(patient.getMrn());
@@ -238,4 +377,26 @@ public class PatientManagementService {
 
         return dto;
     }
-}
\ No newline at end of file
+
+    static PatientDTO toDTO(PatientSummary summary) {
+        PatientDTO dto = new PatientDTO();
+        dto.setId(summary.id());
+        dto.setMrn(summary.mrn());
+        dto.setFirstName(summary.firstName());
+        dto.setLastName(summary.lastName());
+        dto.setGender(summary.gender().name());
+        dto.setDateOfBirth(summary.dateOfBirth());
+        dto.setEmail(summary.email());
+        dto.setPhone(summary.phone());
+        dto.setAddress(summary.address());
+        dto.setCity(summary.city());
+        dto.setState(summary.state());
+        dto.setZipCode(summary.zipCode());
+        dto.setInsuranceProvider(summary.insuranceProvider());
+        dto.setInsurancePolicyNumber(summary.insurancePolicyNumber());
+        dto.setInsuranceGroupNumber(summary.insuranceGroupNumber());
+        dto.setFacilityId(summary.facilityId());
+        dto.setFacilityName(summary.facilityName());
+        return dto;
+    }
+}
@@ -0,0 +1,350 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.BulkStatusTransitionRequest;
+import org.haykal.emr.dto.BulkTransitionResult;
+import org.haykal.emr.dto.CursorPage;
+import org.haykal.emr.dto.PatientServiceDTO;
+import org.haykal.emr.dto.StatusTransitionRequest;
+import org.haykal.emr.dto.WorklistDTO;
+import org.haykal.emr.entity.ChangeAggregate;
+import org.haykal.emr.entity.ChangeEventType;
+import org.haykal.emr.entity.PatientService;
+import org.haykal.emr.entity.ServiceCategory;
+import org.haykal.emr.entity.ServiceStatus;
+import org.haykal.emr.exception.InvalidStatusTransitionException;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.haykal.emr.outbox.OutboxWriter;
+import org.haykal.emr.outbox.PatientServiceChange;
+import org.haykal.emr.repository.ChangeEventRepository;
+import org.haykal.emr.repository.FacilityRepository;
+import org.haykal.emr.repository.PatientServiceRepository;
+import org.haykal.emr.repository.PatientServiceSummary;
+import org.haykal.emr.repository.PatientTimelineVersion;
+import org.haykal.emr.stats.FacilityStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+@Service
+@Transactional
+public class PatientServiceManagementService {
+    static final int MAX_WORKLIST_DAYS = 7;
+    static final int MAX_TRANSITION_ATTEMPTS = 4;
+    static final int MAX_BULK_IDS = 1000;
+
+    private final PatientServiceRepository patientServiceRepository;
+    private final FacilityRepository facilityRepository;
+    private final ChangeEventRepository changeEventRepository;
+    private final OutboxWriter outboxWriter;
+    private final FacilityStatsRepository facilityStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public PatientServiceManagementService(PatientServiceRepository patientServiceRepository,
+                                           FacilityRepository facilityRepository,
+                                           ChangeEventRepository changeEventRepository,
+                                           OutboxWriter outboxWriter,
+                                           FacilityStatsRepository facilityStatsRepository,
+                                           PlatformTransactionManager transactionManager) {
+        this.patientServiceRepository = patientServiceRepository;
+        this.facilityRepository = facilityRepository;
+        this.changeEventRepository = changeEventRepository;
+        this.outboxWriter = outboxWriter;
+        this.facilityStatsRepository = facilityStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Keyset listing of the services scheduled at a facility, in id order
+    @Transactional(readOnly = true)
+    public CursorPage<PatientServiceDTO> scrollFacilityServices(Long facilityId, String cursor, int size,
+                                                                boolean includeCount) {
+        log.debug("Scrolling patient services for facility ID: {}", facilityId);
+
+        int pageSize = PatientManagementService.scrollPageSize(size);
+        requireFacility(facilityId);
+
+        long afterId = cursor == null || cursor.isEmpty() ? 0L : PageCursor.decodeIdKey(cursor);
+        List<PatientService> rows = patientServiceRepository.scrollByFacilityId(
+                facilityId, afterId, PageRequest.ofSize(pageSize + 1));
+
+        CursorPage<PatientServiceDTO> page = CursorPage.of(rows, pageSize, this::toDTO,
+                row -> PageCursor.encode(row.getId()));
+        if (includeCount) {
+            page.setTotalElements(patientServiceRepository.countByFacilityId(facilityId));
+        }
+        return page;
+    }
+
+    // A day (or up to a week) of a facility's services in one query, grouped by status
+    @Transactional(readOnly = true)
+    public WorklistDTO getWorklist(Long facilityId, LocalDate date, int days, Collection<String> statuses) {
+        if (log.isDebugEnabled()) {
+            log.debug("Fetching worklist for facility ID: {} from {} for {} days", facilityId, date, days);
+        }
+
+        if (days < 1 || days > MAX_WORKLIST_DAYS) {
+            throw new IllegalArgumentException("Worklist span must be between 1 and " + MAX_WORKLIST_DAYS + " days");
+        }
+        Set<ServiceStatus> wanted = parseStatuses(statuses);
+        requireFacility(facilityId);
+
+        LocalDate to = date.plusDays(days);
+        List<PatientServiceSummary> rows = patientServiceRepository.findWorklist(
+                facilityId, date.atStartOfDay(), to.atStartOfDay(), wanted);
+
+        Map<String, List<PatientServiceDTO>> byStatus = new LinkedHashMap<>();
+        for (ServiceStatus status : wanted) {
+            byStatus.put(status.name(), new ArrayList<>());
+        }
+        for (PatientServiceSummary row : rows) {
+            byStatus.get(row.status().name()).add(toDTO(row));
+        }
+
+        WorklistDTO worklist = new WorklistDTO();
+        worklist.setFacilityId(facilityId);
+        worklist.setFrom(date);
+        worklist.setTo(to);
+        worklist.setTotal(rows.size());
+        worklist.setServicesByStatus(byStatus);
+        return worklist;
+    }
+
+    // A patient's whole service history, newest first, optionally narrowed to statuses and a category
+    @Transactional(readOnly = true)
+    public List<PatientServiceDTO> getPatientTimeline(Long patientId, Collection<String> statuses, String category) {
+        Set<ServiceStatus> wanted = parseStatuses(statuses);
+        ServiceCategory serviceCategory = parseCategory(category);
+
+        List<PatientServiceSummary> rows = patientServiceRepository.findTimeline(patientId, wanted, serviceCategory);
+        if (rows.isEmpty() && patientServiceRepository.findTimelineVersion(patientId).isEmpty()) {
+            throw new ResourceNotFoundException("Patient not found with ID: " + patientId);
+        }
+        return rows.stream().map(this::toDTO).toList();
+    }
+
+    // Strong entity tag of a patient's timeline under one status and category filter; filters are
+    // normalized first, so "lab" and "LAB" share a tag. Callers read it before the rows: a change in
+    // between leaves an older tag on newer rows, which costs a refetch, never a stale 304.
+    // Service type and facility names are rendered but not tagged: neither can be renamed through
+    // the API, so a rename made directly in the database shows after the patient's next change.
+    @Transactional(readOnly = true)
+    public String getTimelineETag(Long patientId, Collection<String> statuses, String category) {
+        Set<ServiceStatus> wanted = parseStatuses(statuses);
+        ServiceCategory serviceCategory = parseCategory(category);
+        PatientTimelineVersion version = patientServiceRepository.findTimelineVersion(patientId)
+                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with ID: " + patientId));
+        LocalDateTime updatedAt = version.patientUpdatedAt();
+        long updatedMicros = updatedAt == null ? 0 : ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), updatedAt);
+        int statusMask = 0;
+        for (ServiceStatus status : wanted) {
+            statusMask |= 1 << status.ordinal();
+        }
+        return "\"" + patientId + "-" + Long.toString(updatedMicros, 36) + "-" + version.services() + "-" +
+                version.lastServiceId() + "-" + version.versionSum() + "-" + Integer.toString(statusMask, 36) +
+                (serviceCategory == null ? "" : "-" + serviceCategory.name()) + "\"";
+    }
+
+    // Moves one service to a new status. Each attempt is its own short transaction guarded by the
+    // version column; on a conflict the service is re-read and the transition re-checked, so a
+    // concurrent change either still allows it or turns it into an illegal transition. Callers
+    // that pass an expected version get the conflict instead of a retry.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PatientServiceDTO transition(Long id, StatusTransitionRequest request) {
+        ServiceStatus target = parseStatus(request.getStatus());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> applyTransition(id, target, request));
+            } catch (OptimisticLockingFailureException e) {
+                if (request.getVersion() != null || attempt == MAX_TRANSITION_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Patient service {} changed concurrently, retrying transition to {} (attempt {})",
+                        id, target, attempt);
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    private PatientServiceDTO applyTransition(Long id, ServiceStatus target, StatusTransitionRequest request) {
+        PatientService service = patientServiceRepository.findWithDetailsById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Patient service not found with ID: " + id));
+        if (request.getVersion() != null && !request.getVersion().equals(service.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(PatientService.class, id);
+        }
+        if (!service.getStatus().canTransitionTo(target)) {
+            throw new InvalidStatusTransitionException("Cannot move patient service " + id + " from " +
+                    service.getStatus() + " to " + target);
+        }
+
+        // Recorded while the row still holds the old status; a conflicting attempt rolls it back
+        facilityStatsRepository.appendTransitionDeltas(List.of(id), List.of(service.getStatus().name()), target.name());
+        service.setStatus(target);
+        if (target == ServiceStatus.COMPLETED) {
+            service.setCompletedDate(LocalDateTime.now());
+        }
+        if (request.getNotes() != null) {
+            service.setNotes(request.getNotes().trim());
+        }
+        // Flush here so a version conflict surfaces inside the retry loop rather than at commit
+        service = patientServiceRepository.saveAndFlush(service);
+        outboxWriter.append(ChangeAggregate.PATIENT_SERVICE, id, service.getPatient().getId(),
+                ChangeEventType.STATUS_CHANGED, PatientServiceChange.of(service));
+        return toDTO(service);
+    }
+
+    // Jittered exponential back-off so retrying clinicians do not collide again in lockstep
+    private static void backOff(int attempt, OptimisticLockingFailureException conflict) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    // Bulk transitions are set-based, never load-modify-save loops: one UPDATE stamps the rows it
+    // moves with a marker, then one INSERT ... SELECT each of stats deltas and outbox events reads
+    // exactly those rows back. Rows not in a legal source status are left alone, so a bulk change
+    // never overrides a terminal status, and no row is locked before the UPDATE itself.
+    public BulkTransitionResult transitionInBulk(BulkStatusTransitionRequest request) {
+        ServiceStatus target = parseStatus(request.getStatus());
+        Set<ServiceStatus> sources = ServiceStatus.sourcesOf(target);
+        if (sources.isEmpty()) {
+            throw new InvalidStatusTransitionException("No patient service can move to " + target);
+        }
+        LocalDateTime completedDate = target == ServiceStatus.COMPLETED ? LocalDateTime.now() : null;
+
+        long transitionId;
+        int updated;
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            if (request.getIds().size() > MAX_BULK_IDS) {
+                throw new IllegalArgumentException("At most " + MAX_BULK_IDS + " patient services can be changed by id at once");
+            }
+            transitionId = patientServiceRepository.nextTransitionId();
+            updated = patientServiceRepository.transitionByIds(request.getIds(), sources, target, completedDate,
+                    transitionId);
+        } else {
+            if (request.getFacilityId() == null || request.getDate() == null) {
+                throw new IllegalArgumentException("Either ids or a facility ID and date are required");
+            }
+            int days = request.getDays() != null ? request.getDays() : 1;
+            if (days < 1 || days > MAX_WORKLIST_DAYS) {
+                throw new IllegalArgumentException("Transition span must be between 1 and " + MAX_WORKLIST_DAYS + " days");
+            }
+            requireFacility(request.getFacilityId());
+            transitionId = patientServiceRepository.nextTransitionId();
+            updated = patientServiceRepository.transitionScheduled(request.getFacilityId(),
+                    request.getDate().atStartOfDay(), request.getDate().plusDays(days).atStartOfDay(),
+                    parseCategory(request.getCategory()), request.getServiceTypeId(), sources, target, completedDate,
+                    transitionId);
+        }
+
+        if (updated > 0) {
+            facilityStatsRepository.appendBulkTransitionDeltas(transitionId);
+            changeEventRepository.appendServiceStatusChanges(transitionId, LocalDateTime.now());
+        }
+
+        log.info("Moved {} patient services to {}", updated, target);
+        return new BulkTransitionResult(target.name(), updated);
+    }
+
+    // Checked in the caller's transaction: a catalog cache miss would need a second connection
+    private void requireFacility(Long facilityId) {
+        if (!facilityRepository.existsById(facilityId)) {
+            throw new ResourceNotFoundException("Facility not found with ID: " + facilityId);
+        }
+    }
+
+    private static ServiceStatus parseStatus(String status) {
+        try {
+            return ServiceStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid service status: " + status);
+        }
+    }
+
+    private static ServiceCategory parseCategory(String category) {
+        if (category == null || category.isBlank()) {
+            return null;
+        }
+        try {
+            return ServiceCategory.valueOf(category.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid service category: " + category);
+        }
+    }
+
+    // EnumSet keeps the ServiceStatus declaration order, which is also the worklist group order
+    private static Set<ServiceStatus> parseStatuses(Collection<String> statuses) {
+        if (statuses == null || statuses.isEmpty()) {
+            return EnumSet.allOf(ServiceStatus.class);
+        }
+        Set<ServiceStatus> parsed = EnumSet.noneOf(ServiceStatus.class);
+        for (String status : statuses) {
+            parsed.add(parseStatus(status));
+        }
+        return parsed;
+    }
+
+    private PatientServiceDTO toDTO(PatientServiceSummary summary) {
+        PatientServiceDTO dto = new PatientServiceDTO();
+        dto.setId(summary.id());
+        dto.setPatientId(summary.patientId());
+        dto.setPatientName(summary.patientFirstName() + " " + summary.patientLastName());
+        dto.setPatientMrn(summary.patientMrn());
+        dto.setServiceTypeId(summary.serviceTypeId());
+        dto.setServiceTypeName(summary.serviceTypeName());
+        dto.setServiceCategory(summary.serviceCategory() != null ? summary.serviceCategory().name() : null);
+        dto.setFacilityId(summary.facilityId());
+        dto.setFacilityName(summary.facilityName());
+        dto.setStatus(summary.status().name());
+        dto.setScheduledDate(summary.scheduledDate());
+        dto.setCompletedDate(summary.completedDate());
+        dto.setNotes(summary.notes());
+        dto.setProviderName(summary.providerName());
+        dto.setCreatedAt(summary.createdAt());
+        dto.setVersion(summary.version());
+        return dto;
+    }
+
+    private PatientServiceDTO toDTO(PatientService service) {
+        PatientServiceDTO dto = new PatientServiceDTO();
+        dto.setId(service.getId());
+        dto.setPatientId(service.getPatient().getId());
+        dto.setPatientName(service.getPatient().getFirstName() + " " + service.getPatient().getLastName());
+        dto.setPatientMrn(service.getPatient().getMrn());
+        dto.setServiceTypeId(service.getServiceType().getId());
+        dto.setServiceTypeName(service.getServiceType().getName());
+        dto.setServiceCategory(service.getServiceType().getCategory() != null
+                ? service.getServiceType().getCategory().name() : null);
+        dto.setFacilityId(service.getFacility().getId());
+        dto.setFacilityName(service.getFacility().getName());
+        dto.setStatus(service.getStatus().name());
+        dto.setScheduledDate(service.getScheduledDate());
+        dto.setCompletedDate(service.getCompletedDate());
+        dto.setNotes(service.getNotes());
+        dto.setProviderName(service.getProviderName());
+        dto.setCreatedAt(service.getCreatedAt());
+        dto.setVersion(service.getVersion());
+        return dto;
+    }
+}
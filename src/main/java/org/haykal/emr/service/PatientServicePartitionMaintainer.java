@@ -0,0 +1,87 @@
+package org.haykal.emr.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of patient_services (PostgreSQL only, see V13) in shape: creates
+ * the partitions for the current month and {@code monthsAhead} more, so new services never land
+ * in the default partition, and detaches months that ended more than {@code retentionMonths} ago.
+ * <p>
+ * Runs at startup and on {@code maintenance-cron}. A retention of 0 keeps every month. Detached
+ * months stay behind as ordinary tables unless {@code dropDetached} is set. On any other
+ * database the job does nothing.
+ */
+@Slf4j
+@Component
+public class PatientServicePartitionMaintainer {
+
+    public record MaintenanceResult(int created, List<String> detached) {
+        static final MaintenanceResult NONE = new MaintenanceResult(0, List.of());
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropDetached;
+    private volatile Boolean partitioned;
+
+    public PatientServicePartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                             @Value("${app.patient-services.partitions.months-ahead:3}") int monthsAhead,
+                                             @Value("${app.patient-services.partitions.retention-months:0}") int retentionMonths,
+                                             @Value("${app.patient-services.partitions.drop-detached:false}") boolean dropDetached) {
+        if (monthsAhead < 1 || retentionMonths < 0) {
+            throw new IllegalArgumentException("months-ahead must be at least 1 and retention-months not negative");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropDetached = dropDetached;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.patient-services.partitions.maintenance-cron:-}")
+    public void scheduledMaintenance() {
+        try {
+            MaintenanceResult result = maintain(LocalDate.now());
+            if (result.created() > 0 || !result.detached().isEmpty()) {
+                log.info("Created {} patient_services partitions, detached {}", result.created(), result.detached());
+            }
+        } catch (RuntimeException e) {
+            // Months already created ahead cover the gap until the next run
+            log.warn("patient_services partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    public MaintenanceResult maintain(LocalDate today) {
+        if (!isPartitioned()) {
+            return MaintenanceResult.NONE;
+        }
+        LocalDate month = today.withDayOfMonth(1);
+        Integer created = jdbcTemplate.queryForObject("SELECT ensure_patient_services_partitions(?, ?)",
+                Integer.class, Date.valueOf(month), Date.valueOf(month.plusMonths(monthsAhead)));
+        List<String> detached = retentionMonths == 0 ? List.of() :
+                jdbcTemplate.queryForList("SELECT * FROM detach_patient_services_partitions(?, ?)",
+                        String.class, Date.valueOf(month.minusMonths(retentionMonths)), dropDetached);
+        return new MaintenanceResult(created == null ? 0 : created, detached);
+    }
+
+    // Partitioning is a PostgreSQL-only migration; H2 keeps the plain table
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            partitioned = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        }
+        return partitioned;
+    }
+}
@@ -0,0 +1,71 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.cache.CacheInvalidation;
+import org.haykal.emr.cache.CacheInvalidationBus;
+import org.haykal.emr.entity.ServiceType;
+import org.haykal.emr.repository.ServiceTypeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of the service type reference data.
+ * <p>
+ * Service types are only ever read by the patient write paths, so they are kept as detached
+ * entities and used as foreign key references when scheduling services. Ids that are not cached
+ * yet are loaded together with a single {@code findAllById}. Entries are dropped when a
+ * {@link CacheInvalidation#SERVICE_TYPES} invalidation arrives on the bus.
+ */
+@Slf4j
+@Component
+public class ServiceTypeCatalog {
+    private final ServiceTypeRepository serviceTypeRepository;
+    private final ConcurrentMap<Long, ServiceType> serviceTypes = new ConcurrentHashMap<>();
+
+    public ServiceTypeCatalog(ServiceTypeRepository serviceTypeRepository, CacheInvalidationBus invalidationBus) {
+        this.serviceTypeRepository = serviceTypeRepository;
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    // Returns the known service types among the given ids; unknown ids are absent from the result
+    public Map<Long, ServiceType> resolve(Collection<Long> ids) {
+        Map<Long, ServiceType> resolved = new HashMap<>();
+        List<Long> missing = ids.stream()
+                .filter(id -> {
+                    ServiceType cached = serviceTypes.get(id);
+                    if (cached != null) {
+                        resolved.put(id, cached);
+                        return false;
+                    }
+                    return true;
+                })
+                .collect(Collectors.toList());
+
+        if (!missing.isEmpty()) {
+            log.debug("Loading {} service types into the catalog", missing.size());
+            for (ServiceType serviceType : serviceTypeRepository.findAllById(missing)) {
+                serviceTypes.put(serviceType.getId(), serviceType);
+                resolved.put(serviceType.getId(), serviceType);
+            }
+        }
+        return resolved;
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (!CacheInvalidation.SERVICE_TYPES.equals(invalidation.cache())) {
+            return;
+        }
+        if (invalidation.key() == null) {
+            serviceTypes.clear();
+        } else {
+            serviceTypes.remove(invalidation.key());
+        }
+    }
+}
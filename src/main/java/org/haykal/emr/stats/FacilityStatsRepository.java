@@ -0,0 +1,185 @@
+package org.haykal.emr.stats;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL of the facility statistics tables (V14). Plain JDBC: deltas are appended with set-based
+ * INSERT ... SELECT statements and the aggregates are only ever read and rewritten in bulk.
+ * <p>
+ * Deltas are computed from the rows themselves, so callers run the append after the change is
+ * flushed for additions and bulk status changes, and before it for removals and single status
+ * changes, in the same transaction.
+ */
+@Repository
+public class FacilityStatsRepository {
+    private static final String INSERT_DELTAS =
+            "INSERT INTO facility_stats_deltas (facility_id, service_date, category, status, patients, services) ";
+    private static final String SERVICE_KEY = "ps.facility_id, CAST(ps.scheduled_date AS DATE), " +
+            "CAST(st.category AS VARCHAR(20))";
+    private static final String SERVICE_FROM = "FROM patient_services ps JOIN service_types st ON st.id = ps.service_type_id ";
+    private static final String SERVICE_GROUP = "GROUP BY ps.facility_id, CAST(ps.scheduled_date AS DATE), st.category";
+
+    public record Delta(long id, long facilityId, LocalDate serviceDate, String category, String status,
+                        long patients, long services) {
+    }
+
+    public record VolumeKey(long facilityId, LocalDate serviceDate, String category, String status) {
+    }
+
+    public record Volume(LocalDate serviceDate, String category, String status, long services) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public FacilityStatsRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    // Census and service deltas of a set of patients: sign +1 once they are written, -1 before they are deleted
+    public int appendPatientDeltas(Collection<Long> patientIds, int sign) {
+        return namedJdbcTemplate.update(INSERT_DELTAS +
+                "SELECT p.facility_id, CAST(NULL AS DATE), CAST(NULL AS VARCHAR(20)), CAST(NULL AS VARCHAR(20)), " +
+                ":sign * COUNT(*), 0 FROM patients p WHERE p.id IN (:ids) GROUP BY p.facility_id " +
+                "UNION ALL " +
+                "SELECT " + SERVICE_KEY + ", CAST(ps.status AS VARCHAR(20)), 0, :sign * COUNT(*) " + SERVICE_FROM +
+                "WHERE ps.patient_id IN (:ids) " + SERVICE_GROUP + ", ps.status",
+                new MapSqlParameterSource("ids", patientIds).addValue("sign", sign));
+    }
+
+    // Moves the services among ids that are in one of the source statuses to target; must run before the UPDATE
+    public int appendTransitionDeltas(Collection<Long> serviceIds, Collection<String> sources, String target) {
+        String where = "WHERE ps.id IN (:ids) AND CAST(ps.status AS VARCHAR(20)) IN (:sources) ";
+        return namedJdbcTemplate.update(INSERT_DELTAS +
+                "SELECT " + SERVICE_KEY + ", CAST(ps.status AS VARCHAR(20)), 0, -COUNT(*) " + SERVICE_FROM + where +
+                SERVICE_GROUP + ", ps.status " +
+                "UNION ALL " +
+                "SELECT " + SERVICE_KEY + ", CAST(:target AS VARCHAR(20)), 0, COUNT(*) " + SERVICE_FROM + where +
+                SERVICE_GROUP,
+                new MapSqlParameterSource("ids", serviceIds).addValue("sources", sources).addValue("target", target));
+    }
+
+    // Moves the services a bulk transition stamped with transitionId from the status each left to
+    // the one it is in now; must run after the UPDATE
+    public int appendBulkTransitionDeltas(long transitionId) {
+        String where = "WHERE ps.transition_id = :transitionId ";
+        return namedJdbcTemplate.update(INSERT_DELTAS +
+                "SELECT " + SERVICE_KEY + ", CAST(ps.transition_from AS VARCHAR(20)), 0, -COUNT(*) " + SERVICE_FROM +
+                where + SERVICE_GROUP + ", ps.transition_from " +
+                "UNION ALL " +
+                "SELECT " + SERVICE_KEY + ", CAST(ps.status AS VARCHAR(20)), 0, COUNT(*) " + SERVICE_FROM + where +
+                SERVICE_GROUP + ", ps.status",
+                new MapSqlParameterSource("transitionId", transitionId));
+    }
+
+    // Folded census plus pending deltas
+    public long readCensus(long facilityId) {
+        Long patients = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT patients FROM facility_census WHERE facility_id = ?), 0) + " +
+                        "COALESCE((SELECT SUM(patients) FROM facility_stats_deltas " +
+                        "WHERE facility_id = ? AND service_date IS NULL), 0)",
+                Long.class, facilityId, facilityId);
+        return patients == null ? 0 : patients;
+    }
+
+    // Folded volumes plus pending deltas for [from, to], without the combinations that net to zero
+    public List<Volume> readVolumes(long facilityId, LocalDate from, LocalDate to) {
+        Date first = Date.valueOf(from);
+        Date last = Date.valueOf(to);
+        return jdbcTemplate.query(
+                "SELECT service_date, category, status, SUM(services) FROM (" +
+                        "SELECT service_date, category, status, services FROM facility_service_volume " +
+                        "WHERE facility_id = ? AND service_date >= ? AND service_date <= ? " +
+                        "UNION ALL " +
+                        "SELECT service_date, category, status, services FROM facility_stats_deltas " +
+                        "WHERE facility_id = ? AND service_date >= ? AND service_date <= ?) v " +
+                        "GROUP BY service_date, category, status HAVING SUM(services) <> 0 " +
+                        "ORDER BY service_date, category, status",
+                (rs, rowNum) -> new Volume(rs.getDate(1).toLocalDate(), rs.getString(2), rs.getString(3), rs.getLong(4)),
+                facilityId, first, last, facilityId, first, last);
+    }
+
+    // Held until the caller's transaction ends
+    public void lockState() {
+        jdbcTemplate.queryForObject("SELECT id FROM facility_stats_state WHERE id = 1 FOR UPDATE", Integer.class);
+    }
+
+    public List<Delta> findOldestDeltas(int limit) {
+        return jdbcTemplate.query("SELECT id, facility_id, service_date, category, status, patients, services " +
+                        "FROM facility_stats_deltas ORDER BY id LIMIT ?",
+                (rs, rowNum) -> {
+                    Date serviceDate = rs.getDate(3);
+                    return new Delta(rs.getLong(1), rs.getLong(2), serviceDate == null ? null : serviceDate.toLocalDate(),
+                            rs.getString(4), rs.getString(5), rs.getLong(6), rs.getLong(7));
+                }, limit);
+    }
+
+    // Adds the folded deltas to the aggregates and deletes exactly those deltas. Deltas committed
+    // later with lower ids than some folded ones are left for the next fold.
+    public void fold(List<Long> deltaIds, Map<Long, Long> census, Map<VolumeKey, Long> volumes, LocalDateTime now) {
+        List<Object[]> censusRows = new ArrayList<>();
+        census.forEach((facilityId, patients) -> censusRows.add(new Object[]{patients, facilityId}));
+        upsert("UPDATE facility_census SET patients = patients + ? WHERE facility_id = ?",
+                "INSERT INTO facility_census (patients, facility_id) VALUES (?, ?)", censusRows);
+
+        List<Object[]> volumeRows = new ArrayList<>();
+        volumes.forEach((key, services) -> volumeRows.add(new Object[]{services, key.facilityId(),
+                Date.valueOf(key.serviceDate()), key.category(), key.status()}));
+        upsert("UPDATE facility_service_volume SET services = services + ? " +
+                        "WHERE facility_id = ? AND service_date = ? AND category = ? AND status = ?",
+                "INSERT INTO facility_service_volume (services, facility_id, service_date, category, status) " +
+                        "VALUES (?, ?, ?, ?, ?)", volumeRows);
+
+        jdbcTemplate.batchUpdate("DELETE FROM facility_stats_deltas WHERE id = ?",
+                deltaIds.stream().map(id -> new Object[]{id}).toList());
+        jdbcTemplate.update("UPDATE facility_stats_state SET last_rollup_at = ? WHERE id = 1", Timestamp.valueOf(now));
+    }
+
+    // Replaces the aggregates with figures computed from the base tables and drops every delta the
+    // caller's snapshot sees: those changes are in the base tables already. Needs a snapshot that
+    // spans the statements (REPEATABLE READ), so deltas committed meanwhile survive to be folded.
+    public int rebuild(LocalDateTime now) {
+        jdbcTemplate.update("DELETE FROM facility_stats_deltas");
+        jdbcTemplate.update("DELETE FROM facility_census");
+        jdbcTemplate.update("INSERT INTO facility_census (facility_id, patients) " +
+                "SELECT facility_id, COUNT(*) FROM patients GROUP BY facility_id");
+        jdbcTemplate.update("DELETE FROM facility_service_volume");
+        int volumes = jdbcTemplate.update("INSERT INTO facility_service_volume " +
+                "(facility_id, service_date, category, status, services) " +
+                "SELECT " + SERVICE_KEY + ", CAST(ps.status AS VARCHAR(20)), COUNT(*) " + SERVICE_FROM +
+                SERVICE_GROUP + ", ps.status");
+        jdbcTemplate.update("UPDATE facility_stats_state SET last_reconciled_at = ? WHERE id = 1", Timestamp.valueOf(now));
+        return volumes;
+    }
+
+    // Adds to the existing aggregate rows in one batch and inserts the ones that did not exist in
+    // another; safe because only the holder of the state lock writes aggregates
+    private void upsert(String update, String insert, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(update, rows);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, missing);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.haykal.emr.stats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background maintenance of the facility statistics.
+ * <p>
+ * The rollup folds pending deltas into the aggregate tables in batches, one transaction each,
+ * holding the state row lock so rollups and reconciliations on different nodes take turns. The
+ * reconciliation rebuilds the aggregates from patients and patient_services under one
+ * REPEATABLE READ snapshot: every change it sees is counted from the base tables and its delta
+ * dropped, every change committed after the snapshot keeps its delta for the next rollup.
+ */
+@Slf4j
+@Component
+public class FacilityStatsRollup {
+    private static final int MAX_RECONCILE_ATTEMPTS = 3;
+
+    private final FacilityStatsRepository facilityStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final int batchSize;
+
+    public FacilityStatsRollup(FacilityStatsRepository facilityStatsRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.stats.rollup-batch-size:5000}") int batchSize) {
+        this.facilityStatsRepository = facilityStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.stats.rollup-interval:PT5S}")
+    public void scheduledRollup() {
+        try {
+            int folded = rollup();
+            if (folded > 0) {
+                log.debug("Folded {} facility stats deltas", folded);
+            }
+        } catch (RuntimeException e) {
+            // Nothing was deleted; the same deltas are folded on the next run
+            log.warn("Facility stats rollup failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+
+    // Folds until no deltas are left; returns the number of deltas folded
+    public int rollup() {
+        int total = 0;
+        while (true) {
+            Integer folded = transactionTemplate.execute(status -> foldBatch());
+            total += folded;
+            if (folded < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    private int foldBatch() {
+        facilityStatsRepository.lockState();
+        List<FacilityStatsRepository.Delta> deltas = facilityStatsRepository.findOldestDeltas(batchSize);
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(deltas.size());
+        Map<Long, Long> census = new HashMap<>();
+        Map<FacilityStatsRepository.VolumeKey, Long> volumes = new HashMap<>();
+        for (FacilityStatsRepository.Delta delta : deltas) {
+            ids.add(delta.id());
+            if (delta.serviceDate() == null) {
+                census.merge(delta.facilityId(), delta.patients(), Long::sum);
+            } else {
+                volumes.merge(new FacilityStatsRepository.VolumeKey(delta.facilityId(), delta.serviceDate(),
+                        delta.category(), delta.status()), delta.services(), Long::sum);
+            }
+        }
+        facilityStatsRepository.fold(ids, census, volumes, LocalDateTime.now());
+        return deltas.size();
+    }
+
+    @Scheduled(cron = "${app.stats.reconcile-cron:-}")
+    public void scheduledReconcile() {
+        try {
+            int volumes = reconcile();
+            log.info("Reconciled facility stats: {} service volume rows rebuilt", volumes);
+        } catch (RuntimeException e) {
+            log.warn("Facility stats reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    // A rollup committing while the snapshot is taken makes the rebuild a serialization failure; retry then
+    public int reconcile() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Integer volumes = snapshotTransaction.execute(status -> {
+                    facilityStatsRepository.lockState();
+                    return facilityStatsRepository.rebuild(LocalDateTime.now());
+                });
+                return volumes == null ? 0 : volumes;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt == MAX_RECONCILE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Facility stats reconciliation conflicted with a rollup, retrying (attempt {})", attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+-- V11__add_patient_timeline_index.sql (H2)
+-- Patient timeline: one patient's services newest first, read in index order without a sort.
+-- H2 has no INCLUDE, so status, service_type_id and version are trailing key columns instead;
+-- the status filter and the timeline's ETag validator are still answered from the index alone.
+-- The single-column patient index stays: H2 bound the patient foreign key to it.
+
+CREATE INDEX idx_patient_services_patient_timeline
+    ON patient_services(patient_id, scheduled_date DESC, id DESC, status, service_type_id, version);
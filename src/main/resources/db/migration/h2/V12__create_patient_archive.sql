@@ -0,0 +1,46 @@
+-- V12__create_patient_archive.sql (H2)
+-- Archive for deleted patients and their services. H2 has no table partitioning, so these are
+-- plain tables with the same columns and keys as the partitioned PostgreSQL ones.
+
+CREATE TABLE patients_archive (
+                                  id BIGINT NOT NULL,
+                                  mrn VARCHAR(50) NOT NULL,
+                                  first_name VARCHAR(100) NOT NULL,
+                                  last_name VARCHAR(100) NOT NULL,
+                                  gender VARCHAR(10) NOT NULL,
+                                  date_of_birth DATE NOT NULL,
+                                  email VARCHAR(100),
+                                  phone VARCHAR(20),
+                                  address VARCHAR(255),
+                                  city VARCHAR(100),
+                                  state VARCHAR(50),
+                                  zip_code VARCHAR(20),
+                                  insurance_provider VARCHAR(100),
+                                  insurance_policy_number VARCHAR(100),
+                                  insurance_group_number VARCHAR(100),
+                                  facility_id BIGINT NOT NULL,
+                                  created_at TIMESTAMP,
+                                  updated_at TIMESTAMP,
+                                  archived_at TIMESTAMP NOT NULL,
+                                  PRIMARY KEY (id, archived_at)
+);
+
+CREATE TABLE patient_services_archive (
+                                          id BIGINT NOT NULL,
+                                          patient_id BIGINT NOT NULL,
+                                          service_type_id BIGINT NOT NULL,
+                                          facility_id BIGINT NOT NULL,
+                                          status VARCHAR(20),
+                                          scheduled_date TIMESTAMP,
+                                          completed_date TIMESTAMP,
+                                          notes TEXT,
+                                          provider_name VARCHAR(255),
+                                          created_at TIMESTAMP,
+                                          version BIGINT NOT NULL,
+                                          archived_at TIMESTAMP NOT NULL,
+                                          PRIMARY KEY (id, archived_at)
+);
+
+CREATE INDEX idx_patients_archive_archived_at ON patients_archive(archived_at);
+CREATE INDEX idx_patient_services_archive_archived_at ON patient_services_archive(archived_at);
+CREATE INDEX idx_patient_services_archive_patient ON patient_services_archive(patient_id);
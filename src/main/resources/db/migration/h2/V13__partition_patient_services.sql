@@ -0,0 +1,7 @@
+-- V13__partition_patient_services.sql (H2)
+-- PostgreSQL partitions patient_services by month of scheduled_date. H2 has no partitioning and
+-- keeps the single table; only the NOT NULL scheduled_date that the partition key needs is
+-- mirrored here, so both schemas accept the same rows.
+
+UPDATE patient_services SET scheduled_date = COALESCE(created_at, CURRENT_TIMESTAMP) WHERE scheduled_date IS NULL;
+ALTER TABLE patient_services ALTER COLUMN scheduled_date SET NOT NULL;
@@ -0,0 +1,47 @@
+-- V14__create_facility_stats.sql (H2)
+-- Incrementally maintained facility statistics, the same tables as on PostgreSQL: write paths
+-- append signed deltas, the rollup job folds them into the aggregates and the reconciliation job
+-- rebuilds the aggregates from the base tables.
+
+CREATE TABLE facility_stats_deltas (
+                                       id BIGSERIAL PRIMARY KEY,
+                                       facility_id BIGINT NOT NULL,
+                                       service_date DATE,
+                                       category VARCHAR(20),
+                                       status VARCHAR(20),
+                                       patients BIGINT NOT NULL,
+                                       services BIGINT NOT NULL,
+                                       created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_facility_stats_deltas_facility ON facility_stats_deltas(facility_id, service_date);
+
+CREATE TABLE facility_census (
+                                 facility_id BIGINT PRIMARY KEY,
+                                 patients BIGINT NOT NULL
+);
+
+CREATE TABLE facility_service_volume (
+                                         facility_id BIGINT NOT NULL,
+                                         service_date DATE NOT NULL,
+                                         category VARCHAR(20) NOT NULL,
+                                         status VARCHAR(20) NOT NULL,
+                                         services BIGINT NOT NULL,
+                                         PRIMARY KEY (facility_id, service_date, category, status)
+);
+
+CREATE TABLE facility_stats_state (
+                                      id INT PRIMARY KEY,
+                                      last_rollup_at TIMESTAMP,
+                                      last_reconciled_at TIMESTAMP
+);
+
+INSERT INTO facility_stats_state (id, last_rollup_at, last_reconciled_at) VALUES (1, NULL, CURRENT_TIMESTAMP);
+
+INSERT INTO facility_census (facility_id, patients)
+SELECT facility_id, COUNT(*) FROM patients GROUP BY facility_id;
+
+INSERT INTO facility_service_volume (facility_id, service_date, category, status, services)
+SELECT ps.facility_id, CAST(ps.scheduled_date AS DATE), CAST(st.category AS VARCHAR(20)), CAST(ps.status AS VARCHAR(20)), COUNT(*)
+FROM patient_services ps JOIN service_types st ON st.id = ps.service_type_id
+GROUP BY ps.facility_id, CAST(ps.scheduled_date AS DATE), st.category, ps.status;
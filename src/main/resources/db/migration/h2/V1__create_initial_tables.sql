@@ -0,0 +1,120 @@
+-- H2 compatible Flyway migration for EMR System (local development and tests)
+-- V1__Create_initial_tables.sql
+--
+-- Mirrors db/migration/postgresql/V1__create_initial_tables.sql. H2 has no
+-- ENUM types or plpgsql triggers, so enums are stored as VARCHAR with CHECK
+-- constraints and updated_at is maintained with ON UPDATE.
+
+CREATE TABLE facilities (
+                            id BIGSERIAL PRIMARY KEY,
+                            code VARCHAR(50) UNIQUE NOT NULL,
+                            name VARCHAR(255) NOT NULL,
+                            address VARCHAR(255),
+                            city VARCHAR(100),
+                            state VARCHAR(50),
+                            zip_code VARCHAR(20),
+                            phone VARCHAR(20),
+                            email VARCHAR(100),
+                            active BOOLEAN DEFAULT TRUE,
+                            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                            updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE service_types (
+                               id BIGSERIAL PRIMARY KEY,
+                               code VARCHAR(50) UNIQUE NOT NULL,
+                               name VARCHAR(255) NOT NULL,
+                               description TEXT,
+                               category VARCHAR(20) NOT NULL
+                                   CHECK (category IN ('LAB', 'RADIOLOGY', 'CONSULTATION', 'PROCEDURE', 'OTHER'))
+);
+
+CREATE TABLE facility_services (
+                                   facility_id BIGINT NOT NULL,
+                                   service_type_id BIGINT NOT NULL,
+                                   PRIMARY KEY (facility_id, service_type_id),
+                                   FOREIGN KEY (facility_id) REFERENCES facilities(id) ON DELETE CASCADE,
+                                   FOREIGN KEY (service_type_id) REFERENCES service_types(id) ON DELETE CASCADE
+);
+
+CREATE TABLE patients (
+                          id BIGSERIAL PRIMARY KEY,
+                          mrn VARCHAR(50) UNIQUE NOT NULL,
+                          first_name VARCHAR(100) NOT NULL,
+                          last_name VARCHAR(100) NOT NULL,
+                          gender VARCHAR(10) NOT NULL CHECK (gender IN ('MALE', 'FEMALE')),
+                          date_of_birth DATE NOT NULL,
+                          email VARCHAR(100),
+                          phone VARCHAR(20),
+                          address VARCHAR(255),
+                          city VARCHAR(100),
+                          state VARCHAR(50),
+                          zip_code VARCHAR(20),
+                          insurance_provider VARCHAR(100),
+                          insurance_policy_number VARCHAR(100),
+                          insurance_group_number VARCHAR(100),
+                          facility_id BIGINT NOT NULL,
+                          created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                          updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                          FOREIGN KEY (facility_id) REFERENCES facilities(id) ON DELETE RESTRICT
+);
+
+-- Create indexes
+CREATE INDEX idx_patients_mrn ON patients(mrn);
+CREATE INDEX idx_patients_name ON patients(first_name, last_name);
+CREATE INDEX idx_patients_facility ON patients(facility_id);
+
+CREATE TABLE patient_services (
+                                  id BIGSERIAL PRIMARY KEY,
+                                  patient_id BIGINT NOT NULL,
+                                  service_type_id BIGINT NOT NULL,
+                                  facility_id BIGINT NOT NULL,
+                                  status VARCHAR(20) DEFAULT 'SCHEDULED'
+                                      CHECK (status IN ('SCHEDULED', 'IN_PROGRESS', 'COMPLETED', 'CANCELLED')),
+                                  scheduled_date TIMESTAMP,
+                                  completed_date TIMESTAMP,
+                                  notes TEXT,
+                                  provider_name VARCHAR(255),
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  FOREIGN KEY (patient_id) REFERENCES patients(id) ON DELETE CASCADE,
+                                  FOREIGN KEY (service_type_id) REFERENCES service_types(id) ON DELETE RESTRICT,
+                                  FOREIGN KEY (facility_id) REFERENCES facilities(id) ON DELETE RESTRICT
+);
+
+-- Create indexes for patient_services
+CREATE INDEX idx_patient_services_patient ON patient_services(patient_id);
+CREATE INDEX idx_patient_services_facility ON patient_services(facility_id);
+CREATE INDEX idx_patient_services_status ON patient_services(status);
+CREATE INDEX idx_patient_services_scheduled_date ON patient_services(scheduled_date);
+
+CREATE VIEW patient_summary AS
+SELECT
+    p.id,
+    p.mrn,
+    p.first_name || ' ' || p.last_name AS full_name,
+    p.gender,
+    p.date_of_birth,
+    p.email,
+    p.phone,
+    f.name AS facility_name,
+    p.insurance_provider,
+    p.created_at
+FROM patients p
+         JOIN facilities f ON p.facility_id = f.id;
+
+CREATE VIEW service_summary AS
+SELECT
+    ps.id,
+    p.mrn,
+    p.first_name || ' ' || p.last_name AS patient_name,
+    st.name AS service_name,
+    st.category,
+    f.name AS facility_name,
+    ps.status,
+    ps.scheduled_date,
+    ps.completed_date,
+    ps.provider_name
+FROM patient_services ps
+         JOIN patients p ON ps.patient_id = p.id
+         JOIN service_types st ON ps.service_type_id = st.id
+         JOIN facilities f ON ps.facility_id = f.id;
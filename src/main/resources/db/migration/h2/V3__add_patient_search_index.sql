@@ -0,0 +1,10 @@
+-- V3__add_patient_search_index.sql
+-- H2 counterpart of the PostgreSQL trigram search migration. H2 has no
+-- trigram indexes, so search_text is backed by a plain composite index; the
+-- generated column and the queries against it are identical.
+
+ALTER TABLE patients
+    ADD COLUMN search_text VARCHAR(255)
+        GENERATED ALWAYS AS (LOWER(last_name || ' ' || first_name || ' ' || mrn));
+
+CREATE INDEX idx_patients_search ON patients(facility_id, search_text);
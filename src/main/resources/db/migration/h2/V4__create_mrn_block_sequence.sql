@@ -0,0 +1,6 @@
+-- V4__create_mrn_block_sequence.sql
+-- H2 counterpart of the MRN block sequence. H2 cannot seed a sequence from a
+-- query, so it starts just above the sample data loaded by V2 (MAIN001001).
+-- The increment must match MrnAllocator.BLOCK_SIZE.
+
+CREATE SEQUENCE mrn_block_seq START WITH 1002 INCREMENT BY 50 MINVALUE 1;
@@ -0,0 +1,8 @@
+-- V5__pooled_patient_id_sequences.sql
+-- H2 counterpart of the pooled id sequences. H2 BIGSERIAL columns use an
+-- internal identity generator, so the named sequences Hibernate expects are
+-- created explicitly, starting above the V2 sample data. The increments must
+-- match the allocationSize of the @SequenceGenerator on Patient and PatientService.
+
+CREATE SEQUENCE patients_id_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE patient_services_id_seq START WITH 100 INCREMENT BY 50;
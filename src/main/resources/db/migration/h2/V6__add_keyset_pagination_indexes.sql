@@ -0,0 +1,7 @@
+-- V6__add_keyset_pagination_indexes.sql (H2)
+-- Keyset listing indexes, see the PostgreSQL migration. H2 backs the facility
+-- foreign keys with the single-column facility indexes, so they are kept here.
+
+CREATE INDEX idx_patients_facility_name_id ON patients(facility_id, last_name, first_name, id);
+
+CREATE INDEX idx_patient_services_facility_id ON patient_services(facility_id, id);
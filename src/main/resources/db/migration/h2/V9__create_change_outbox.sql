@@ -0,0 +1,26 @@
+-- V9__create_change_outbox.sql (H2)
+-- Transactional outbox for patient, patient service and facility changes.
+-- H2 has no partial indexes, so the unpublished tail is found through
+-- (published_at, id) instead.
+
+CREATE TABLE change_events (
+                               id BIGSERIAL PRIMARY KEY,
+                               aggregate_type VARCHAR(32) NOT NULL,
+                               aggregate_id BIGINT NOT NULL,
+                               patient_id BIGINT,
+                               event_type VARCHAR(32) NOT NULL,
+                               payload TEXT NOT NULL,
+                               created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                               published_at TIMESTAMP,
+                               delivery_seq BIGINT
+);
+
+CREATE INDEX idx_change_events_unpublished ON change_events(published_at, id);
+CREATE UNIQUE INDEX idx_change_events_delivery_seq ON change_events(delivery_seq);
+
+CREATE TABLE change_relay_state (
+                                    id INT PRIMARY KEY,
+                                    last_delivery_seq BIGINT NOT NULL
+);
+
+INSERT INTO change_relay_state (id, last_delivery_seq) VALUES (1, 0);
@@ -0,0 +1,35 @@
+-- V10__add_patient_matching.sql (PostgreSQL)
+-- Master patient index: blocking keys for duplicate detection and the
+-- candidate pairs it finds.
+--
+-- The keys are computed by the application (PatientMatchKeys) when a patient
+-- is written; rows inserted behind its back are filled in by the batch scan.
+--   mpi_name_dob_key    Soundex of the last name + date of birth
+--   mpi_first_dob_key   Soundex of the first name + date of birth
+--   mpi_names_year_key  Double Metaphone of both names, in sorted order, + birth year
+--   mpi_phone_key       last ten digits of the phone number
+-- Each is indexed with id so registration reads the oldest records of a block
+-- first, with one index probe per key.
+
+ALTER TABLE patients ADD COLUMN mpi_name_dob_key VARCHAR(32);
+ALTER TABLE patients ADD COLUMN mpi_first_dob_key VARCHAR(32);
+ALTER TABLE patients ADD COLUMN mpi_names_year_key VARCHAR(32);
+ALTER TABLE patients ADD COLUMN mpi_phone_key VARCHAR(16);
+
+CREATE INDEX idx_patients_mpi_name_dob ON patients(mpi_name_dob_key, id);
+CREATE INDEX idx_patients_mpi_first_dob ON patients(mpi_first_dob_key, id);
+CREATE INDEX idx_patients_mpi_names_year ON patients(mpi_names_year_key, id);
+CREATE INDEX idx_patients_mpi_phone ON patients(mpi_phone_key, id);
+
+-- One row per probable duplicate pair, lower id first
+CREATE TABLE patient_match_candidates (
+                                          patient_id BIGINT NOT NULL REFERENCES patients(id) ON DELETE CASCADE,
+                                          candidate_id BIGINT NOT NULL REFERENCES patients(id) ON DELETE CASCADE,
+                                          score DOUBLE PRECISION NOT NULL,
+                                          source VARCHAR(16) NOT NULL,
+                                          detected_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                          PRIMARY KEY (patient_id, candidate_id),
+                                          CHECK (patient_id < candidate_id)
+);
+
+CREATE INDEX idx_patient_match_candidates_candidate ON patient_match_candidates(candidate_id);
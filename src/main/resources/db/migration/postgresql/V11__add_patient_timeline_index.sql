@@ -0,0 +1,10 @@
+-- V11__add_patient_timeline_index.sql
+-- Patient timeline: one patient's services newest first, read in index order without a sort.
+-- status, service_type_id and version ride along so the status filter and the timeline's ETag
+-- validator (count, max id and sum of versions) are answered from the index alone. It takes
+-- over the single-column patient index, including the lookups of the ON DELETE CASCADE.
+
+CREATE INDEX idx_patient_services_patient_timeline
+    ON patient_services(patient_id, scheduled_date DESC, id DESC) INCLUDE (status, service_type_id, version);
+
+DROP INDEX idx_patient_services_patient;
@@ -0,0 +1,70 @@
+-- V12__create_patient_archive.sql
+-- Archive for deleted patients and their services. Archive-mode deletion copies the rows here
+-- with one INSERT ... SELECT per table before the set-based DELETE; the purge job removes them
+-- in batches once they are older than the retention period.
+--
+-- Both tables are range-partitioned by archived_at, one partition per year, so purging touches
+-- the oldest partitions only and a year past retention can be dropped outright. The primary key
+-- has to include the partition key. There are no foreign keys: archived rows outlive their
+-- patient and may outlive the facility or service type they point at.
+
+CREATE TABLE patients_archive (
+                                  id BIGINT NOT NULL,
+                                  mrn VARCHAR(50) NOT NULL,
+                                  first_name VARCHAR(100) NOT NULL,
+                                  last_name VARCHAR(100) NOT NULL,
+                                  gender gender_enum NOT NULL,
+                                  date_of_birth DATE NOT NULL,
+                                  email VARCHAR(100),
+                                  phone VARCHAR(20),
+                                  address VARCHAR(255),
+                                  city VARCHAR(100),
+                                  state VARCHAR(50),
+                                  zip_code VARCHAR(20),
+                                  insurance_provider VARCHAR(100),
+                                  insurance_policy_number VARCHAR(100),
+                                  insurance_group_number VARCHAR(100),
+                                  facility_id BIGINT NOT NULL,
+                                  created_at TIMESTAMP,
+                                  updated_at TIMESTAMP,
+                                  archived_at TIMESTAMP NOT NULL,
+                                  PRIMARY KEY (id, archived_at)
+) PARTITION BY RANGE (archived_at);
+
+CREATE TABLE patient_services_archive (
+                                          id BIGINT NOT NULL,
+                                          patient_id BIGINT NOT NULL,
+                                          service_type_id BIGINT NOT NULL,
+                                          facility_id BIGINT NOT NULL,
+                                          status service_status_enum,
+                                          scheduled_date TIMESTAMP,
+                                          completed_date TIMESTAMP,
+                                          notes TEXT,
+                                          provider_name VARCHAR(255),
+                                          created_at TIMESTAMP,
+                                          version BIGINT NOT NULL,
+                                          archived_at TIMESTAMP NOT NULL,
+                                          PRIMARY KEY (id, archived_at)
+) PARTITION BY RANGE (archived_at);
+
+-- The purge job walks archived_at; patient_id finds an archived patient's services
+CREATE INDEX idx_patients_archive_archived_at ON patients_archive(archived_at);
+CREATE INDEX idx_patient_services_archive_archived_at ON patient_services_archive(archived_at);
+CREATE INDEX idx_patient_services_archive_patient ON patient_services_archive(patient_id);
+
+-- Ten yearly partitions from the current year; anything later lands in the default partition
+DO $$
+DECLARE
+    first_year INT := EXTRACT(YEAR FROM CURRENT_DATE);
+    y INT;
+BEGIN
+    FOR y IN first_year .. first_year + 9 LOOP
+        EXECUTE format('CREATE TABLE patients_archive_%s PARTITION OF patients_archive ' ||
+                       'FOR VALUES FROM (%L) TO (%L)', y, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+        EXECUTE format('CREATE TABLE patient_services_archive_%s PARTITION OF patient_services_archive ' ||
+                       'FOR VALUES FROM (%L) TO (%L)', y, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+    END LOOP;
+END $$;
+
+CREATE TABLE patients_archive_default PARTITION OF patients_archive DEFAULT;
+CREATE TABLE patient_services_archive_default PARTITION OF patient_services_archive DEFAULT;
@@ -0,0 +1,138 @@
+-- V13__partition_patient_services.sql
+-- Rebuild patient_services as a table range-partitioned by month of scheduled_date.
+--
+-- Date-bounded reads (worklists, bulk transitions by day, findByFacilityAndDateRange) are pruned
+-- to the months they cover, so their cost follows the size of those months rather than of the
+-- whole history, and old months can be detached instead of deleted row by row. Reads without a
+-- date bound (a patient's timeline, lookups by id) probe every partition's index instead of one.
+--
+-- The partition key has to be part of the primary key and cannot be NULL, so scheduled_date
+-- becomes NOT NULL (the application always sets it) and the key is (id, scheduled_date); ids
+-- still come from patient_services_id_seq and stay unique. Rows outside every monthly partition
+-- land in patient_services_default; ensure_patient_services_partitions() moves them out when it
+-- creates their month. The maintenance job (PatientServicePartitionMaintainer) keeps partitions
+-- created months ahead and detaches months past retention.
+
+UPDATE patient_services SET scheduled_date = COALESCE(created_at, CURRENT_TIMESTAMP) WHERE scheduled_date IS NULL;
+
+-- The view is recreated unchanged on the new table
+DROP VIEW service_summary;
+
+ALTER TABLE patient_services RENAME TO patient_services_unpartitioned;
+ALTER SEQUENCE patient_services_id_seq OWNED BY NONE;
+
+CREATE TABLE patient_services (
+                                  id BIGINT NOT NULL DEFAULT nextval('patient_services_id_seq'),
+                                  patient_id BIGINT NOT NULL,
+                                  service_type_id BIGINT NOT NULL,
+                                  facility_id BIGINT NOT NULL,
+                                  status service_status_enum DEFAULT 'SCHEDULED',
+                                  scheduled_date TIMESTAMP NOT NULL,
+                                  completed_date TIMESTAMP,
+                                  notes TEXT,
+                                  provider_name VARCHAR(255),
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  version BIGINT NOT NULL DEFAULT 0,
+                                  FOREIGN KEY (patient_id) REFERENCES patients(id) ON DELETE CASCADE,
+                                  FOREIGN KEY (service_type_id) REFERENCES service_types(id) ON DELETE RESTRICT,
+                                  FOREIGN KEY (facility_id) REFERENCES facilities(id) ON DELETE RESTRICT
+) PARTITION BY RANGE (scheduled_date);
+
+ALTER SEQUENCE patient_services_id_seq OWNED BY patient_services.id;
+
+CREATE TABLE patient_services_default PARTITION OF patient_services DEFAULT;
+
+-- Creates the monthly partitions patient_services_pYYYYMM for every month from from_month through
+-- to_month that does not have one yet; returns how many were created. A new month is built as a
+-- standalone table and attached, which locks the parent less than CREATE TABLE ... PARTITION OF,
+-- and rows of that month already sitting in the default partition are moved into it first.
+CREATE OR REPLACE FUNCTION ensure_patient_services_partitions(from_month DATE, to_month DATE)
+    RETURNS INT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', from_month);
+    month_end DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    WHILE month_start <= to_month LOOP
+        month_end := (month_start + INTERVAL '1 month')::DATE;
+        partition_name := 'patient_services_p' || to_char(month_start, 'YYYYMM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE patient_services INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM patient_services_default ' ||
+                           'WHERE scheduled_date >= %L AND scheduled_date < %L RETURNING *) ' ||
+                           'INSERT INTO %I SELECT * FROM moved', month_start, month_end, partition_name);
+            EXECUTE format('ALTER TABLE patient_services ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, month_start, month_end);
+            created := created + 1;
+        END IF;
+        month_start := month_end;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detaches the monthly partitions that end on or before before_month and, if drop_detached,
+-- drops them; returns the names of the partitions handled. A detached partition is an ordinary
+-- table again and can be dumped to cold storage before it is dropped.
+CREATE OR REPLACE FUNCTION detach_patient_services_partitions(before_month DATE, drop_detached BOOLEAN)
+    RETURNS SETOF TEXT AS $$
+DECLARE
+    partition_name TEXT;
+BEGIN
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'patient_services'::regclass AND c.relname ~ '^patient_services_p[0-9]{6}$'
+          AND (to_date(substr(c.relname, 19), 'YYYYMM') + INTERVAL '1 month')::DATE <= before_month
+        ORDER BY c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE patient_services DETACH PARTITION %I', partition_name);
+        IF drop_detached THEN
+            EXECUTE format('DROP TABLE %I', partition_name);
+        END IF;
+        RETURN NEXT partition_name;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Every month holding existing rows, and the next three
+SELECT ensure_patient_services_partitions(
+               COALESCE((SELECT MIN(scheduled_date) FROM patient_services_unpartitioned), CURRENT_DATE)::DATE,
+               (GREATEST(COALESCE((SELECT MAX(scheduled_date) FROM patient_services_unpartitioned), CURRENT_DATE),
+                         CURRENT_DATE) + INTERVAL '3 months')::DATE);
+
+INSERT INTO patient_services (id, patient_id, service_type_id, facility_id, status, scheduled_date,
+                              completed_date, notes, provider_name, created_at, version)
+SELECT id, patient_id, service_type_id, facility_id, status, scheduled_date,
+       completed_date, notes, provider_name, created_at, version
+FROM patient_services_unpartitioned;
+
+DROP TABLE patient_services_unpartitioned;
+
+-- Indexes are built after the copy and are inherited by every partition, present and future
+ALTER TABLE patient_services ADD PRIMARY KEY (id, scheduled_date);
+CREATE INDEX idx_patient_services_patient_timeline
+    ON patient_services(patient_id, scheduled_date DESC, id DESC) INCLUDE (status, service_type_id, version);
+CREATE INDEX idx_patient_services_facility_id ON patient_services(facility_id, id);
+CREATE INDEX idx_patient_services_facility_schedule ON patient_services(facility_id, scheduled_date, status);
+CREATE INDEX idx_patient_services_status ON patient_services(status);
+CREATE INDEX idx_patient_services_scheduled_date ON patient_services(scheduled_date);
+
+CREATE VIEW service_summary AS
+SELECT
+    ps.id,
+    p.mrn,
+    p.first_name || ' ' || p.last_name AS patient_name,
+    st.name AS service_name,
+    st.category,
+    f.name AS facility_name,
+    ps.status,
+    ps.scheduled_date,
+    ps.completed_date,
+    ps.provider_name
+FROM patient_services ps
+         JOIN patients p ON ps.patient_id = p.id
+         JOIN service_types st ON ps.service_type_id = st.id
+         JOIN facilities f ON ps.facility_id = f.id;
+
+COMMENT ON TABLE patient_services IS 'Services scheduled or completed for patients, partitioned by month of scheduled_date';
@@ -0,0 +1,21 @@
+-- V15__create_idempotency_keys.sql
+-- Idempotency-Key store for retried writes. A row is claimed (response_status NULL) before the
+-- write runs and holds the response once it succeeded, so a replay returns the stored response
+-- instead of running the write again. Claims expire at locked_until, so a crashed request does
+-- not block its key forever; stored responses expire at expires_at and are purged in batches.
+
+CREATE TABLE idempotency_keys (
+                                  principal VARCHAR(255) NOT NULL,
+                                  idempotency_key VARCHAR(100) NOT NULL,
+                                  operation VARCHAR(40) NOT NULL,
+                                  request_hash CHAR(64) NOT NULL,
+                                  claim_token BIGINT,
+                                  locked_until TIMESTAMP,
+                                  response_status INT,
+                                  response_body TEXT,
+                                  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                  expires_at TIMESTAMP NOT NULL,
+                                  PRIMARY KEY (principal, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys(expires_at);
@@ -0,0 +1,8 @@
+-- V16__add_patient_mpi_keyed.sql (PostgreSQL)
+-- Marks patients whose blocking keys (V10) have been computed. A name without
+-- Latin letters yields no name keys, so a NULL key cannot tell such a row from
+-- one inserted behind the application's back; the duplicate scan's backfill
+-- selects on this flag instead and sets it on every row it processes.
+-- Rows keyed before this migration still have their keys and are not selected.
+
+ALTER TABLE patients ADD COLUMN mpi_keyed BOOLEAN NOT NULL DEFAULT FALSE;
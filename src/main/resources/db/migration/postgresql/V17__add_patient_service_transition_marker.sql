@@ -0,0 +1,15 @@
+-- V17__add_patient_service_transition_marker.sql (PostgreSQL)
+-- Marks the rows a bulk status transition changed. The UPDATE stamps each row it
+-- moves with the call's transition_id, taken from patient_service_transition_seq,
+-- and the status it left in transition_from; the stats deltas and outbox events
+-- are then selected by the marker, so no locking pre-select of the ids is needed.
+-- Single-row transitions leave both columns alone, and an old marker is never
+-- reused, so stale values are harmless.
+
+ALTER TABLE patient_services ADD COLUMN transition_id BIGINT;
+ALTER TABLE patient_services ADD COLUMN transition_from service_status_enum;
+
+CREATE SEQUENCE patient_service_transition_seq;
+
+CREATE INDEX idx_patient_services_transition ON patient_services(transition_id)
+    WHERE transition_id IS NOT NULL;
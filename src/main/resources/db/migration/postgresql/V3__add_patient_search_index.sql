@@ -0,0 +1,17 @@
+-- V3__add_patient_search_index.sql
+-- Patient search-as-you-type support.
+--
+-- LOWER(col) LIKE '%term%' cannot use the B-tree indexes on patients, so every
+-- keystroke scanned the whole facility. search_text is a normalized, generated
+-- column ("last first mrn", lower-cased) indexed with a trigram GIN index that
+-- also carries facility_id (btree_gin), so the facility filter and the
+-- substring match are answered by a single index scan.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+ALTER TABLE patients
+    ADD COLUMN search_text VARCHAR(255)
+        GENERATED ALWAYS AS (LOWER(last_name || ' ' || first_name || ' ' || mrn)) STORED;
+
+CREATE INDEX idx_patients_search_trgm ON patients USING gin (facility_id, search_text gin_trgm_ops);
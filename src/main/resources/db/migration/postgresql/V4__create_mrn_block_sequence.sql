@@ -0,0 +1,17 @@
+-- V4__create_mrn_block_sequence.sql
+-- Block source for MrnAllocator (hi/lo MRN generation).
+--
+-- Each nextval() reserves a block of 50 MRN numbers [value, value + 50) that
+-- the application hands out from memory, so registration no longer scans
+-- MAX(SUBSTRING(mrn)) and concurrent registrations cannot draw the same number.
+-- Sequences are non-transactional: a rolled back registration never returns a
+-- block, so numbers are unique but not gap-free. The increment must match
+-- MrnAllocator.BLOCK_SIZE.
+
+CREATE SEQUENCE mrn_block_seq INCREMENT BY 50 MINVALUE 1;
+
+-- Start above every numeric MRN suffix already issued (1000 on an empty system)
+SELECT setval('mrn_block_seq',
+              GREATEST(1000, (SELECT COALESCE(MAX(CAST(SUBSTRING(mrn FROM '[0-9]+$') AS BIGINT)), 0) + 1
+                              FROM patients)),
+              false);
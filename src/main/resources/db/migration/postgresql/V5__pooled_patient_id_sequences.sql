@@ -0,0 +1,16 @@
+-- V5__pooled_patient_id_sequences.sql
+-- Switch patients and patient_services to pooled sequence ids.
+--
+-- IDENTITY ids force Hibernate to execute each INSERT immediately to learn the
+-- key, which disables JDBC batching. With INCREMENT BY 50 one nextval() gives
+-- Hibernate a block of 50 ids (pooled optimizer: [value - 49, value]), so bulk
+-- registration can batch its inserts. The increments must match the
+-- allocationSize of the @SequenceGenerator on Patient and PatientService.
+-- Plain SQL inserts that still use the column default stay collision-free:
+-- they consume the top id of a block nobody else holds.
+
+ALTER SEQUENCE patients_id_seq INCREMENT BY 50;
+SELECT setval('patients_id_seq', (SELECT COALESCE(MAX(id), 0) FROM patients) + 50);
+
+ALTER SEQUENCE patient_services_id_seq INCREMENT BY 50;
+SELECT setval('patient_services_id_seq', (SELECT COALESCE(MAX(id), 0) FROM patient_services) + 50);
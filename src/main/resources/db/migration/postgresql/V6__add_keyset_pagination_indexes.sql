@@ -0,0 +1,13 @@
+-- V6__add_keyset_pagination_indexes.sql
+-- Indexes matching the keyset (cursor) listings.
+--
+-- Patients scroll by (last_name, first_name, id) within a facility and patient
+-- services by id within a facility, so every page is an index range scan that
+-- starts at the cursor instead of skipping OFFSET rows. Both indexes lead with
+-- facility_id and replace the single-column facility indexes.
+
+CREATE INDEX idx_patients_facility_name_id ON patients(facility_id, last_name, first_name, id);
+DROP INDEX IF EXISTS idx_patients_facility;
+
+CREATE INDEX idx_patient_services_facility_id ON patient_services(facility_id, id);
+DROP INDEX IF EXISTS idx_patient_services_facility;
@@ -0,0 +1,5 @@
+-- V7__add_worklist_index.sql
+-- Composite index for the facility worklist: one range scan over a facility's
+-- day or week, with status available in the index to filter without heap visits.
+
+CREATE INDEX idx_patient_services_facility_schedule ON patient_services(facility_id, scheduled_date, status);
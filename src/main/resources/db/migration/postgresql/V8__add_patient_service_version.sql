@@ -0,0 +1,6 @@
+-- V8__add_patient_service_version.sql (PostgreSQL)
+-- Optimistic locking for patient service status changes. Existing rows start at
+-- version 0; bulk transitions bump the column themselves so they conflict with
+-- concurrent single-row updates instead of being overwritten by them.
+
+ALTER TABLE patient_services ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,31 @@
+-- V9__create_change_outbox.sql (PostgreSQL)
+-- Transactional outbox for patient, patient service and facility changes.
+-- Events are written in the same transaction as the change they describe. The
+-- relay publishes them in id order and stamps each with a delivery_seq; the
+-- /changes feed reads by delivery_seq, which (unlike id) only ever grows in
+-- commit order, so a consumer polling with its last seen value misses nothing.
+
+CREATE TABLE change_events (
+                               id BIGSERIAL PRIMARY KEY,
+                               aggregate_type VARCHAR(32) NOT NULL,
+                               aggregate_id BIGINT NOT NULL,
+                               patient_id BIGINT,
+                               event_type VARCHAR(32) NOT NULL,
+                               payload TEXT NOT NULL,
+                               created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                               published_at TIMESTAMP,
+                               delivery_seq BIGINT
+);
+
+-- Only the unpublished tail is scanned by the relay
+CREATE INDEX idx_change_events_unpublished ON change_events(id) WHERE published_at IS NULL;
+CREATE UNIQUE INDEX idx_change_events_delivery_seq ON change_events(delivery_seq);
+
+-- Single row holding the last delivery_seq handed out. The relay locks it for the
+-- whole batch, which serializes relays running on several nodes.
+CREATE TABLE change_relay_state (
+                                    id INT PRIMARY KEY,
+                                    last_delivery_seq BIGINT NOT NULL
+);
+
+INSERT INTO change_relay_state (id, last_delivery_seq) VALUES (1, 0);
@@ -0,0 +1,126 @@
+package org.haykal.emr;
+
+import org.haykal.emr.load.AnyTokenAuth;
+import org.haykal.emr.load.LoadDriver;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Request throughput under the development logging configuration of application.properties
+ * (SQL echo with formatting, DEBUG for Spring Security, Spring Web and the application, all
+ * written synchronously to the console) and under the prod profile (asynchronous console, INFO
+ * and WARN). Both boot the application on a random port and run the same mix of patient searches
+ * and registrations from {@code benchmark.clients} closed-loop clients of {@link LoadDriver}.
+ * <p>
+ * Not part of the regular test run. Run with
+ * {@code mvn test -Dtest=LoggingProfileBenchmark [-Dbenchmark.clients=32] [-Dbenchmark.seconds=15]}.
+ * The console is the forked test JVM's stdout, piped back to Maven, as it would be to a container
+ * log collector.
+ */
+class LoggingProfileBenchmark {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 32);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("benchmark.seconds", 15));
+    private static final Duration WARM_UP = Duration.ofSeconds(5);
+    private static final int PATIENTS = 20_000;
+    private static final long WEST_FACILITY_ID = 3L;
+    // One registration in every REGISTRATION_EVERY requests on average, the rest are searches
+    private static final int REGISTRATION_EVERY = 5;
+
+    // application.properties as shipped, restated on the command line to win over the test profile
+    private static final String[] DEVELOPMENT_LOGGING = {
+            "--spring.jpa.show-sql=true",
+            "--spring.jpa.properties.hibernate.format_sql=true",
+            "--logging.level.org.springframework.security=DEBUG",
+            "--logging.level.org.haykal.emr=DEBUG",
+            "--logging.level.org.springframework.web=DEBUG"};
+
+    @Test
+    void compareLoggingConfigurations() throws Exception {
+        String development = run("development", new String[]{"test"}, DEVELOPMENT_LOGGING);
+        String production = run("prod", new String[]{"test", "prod"});
+
+        System.out.printf("%nLogging configurations (%d clients, %d s, 1 registration per %d requests)%n", CLIENTS,
+                DURATION.toSeconds(), REGISTRATION_EVERY);
+        System.out.printf("  %-12s %-9s %9s %8s %8s %8s%n", "logging", "endpoint", "ok/s", "p50 ms", "p99 ms",
+                "errors");
+        System.out.print(development);
+        System.out.print(production);
+        System.out.println();
+    }
+
+    private String run(String label, String[] profiles, String... args) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EmrApplication.class, AnyTokenAuth.class)
+                .profiles(profiles)
+                .run(withHarnessArgs(args))) {
+            seed(context.getBean(JdbcTemplate.class));
+            String port = context.getEnvironment().getProperty("local.server.port");
+            URI base = URI.create("http://localhost:" + port + "/api/v1/patients");
+
+            Map<String, LoadDriver.EndpointStats> stats = new LoadDriver(CLIENTS).closedLoop(CLIENTS, WARM_UP,
+                    DURATION, random -> random.nextInt(REGISTRATION_EVERY) == 0
+                            ? registration(base, random)
+                            : search(base, random), Duration.ZERO);
+            StringBuilder rows = new StringBuilder();
+            for (String endpoint : List.of("search", "register")) {
+                LoadDriver.EndpointStats endpointStats = stats.get(endpoint);
+                rows.append(String.format("  %-12s %-9s %9.0f %8.1f %8.1f %8d%n", label, endpoint,
+                        endpointStats.ok() / (double) DURATION.toSeconds(), endpointStats.percentile(0.50),
+                        endpointStats.percentile(0.99), endpointStats.errors() + endpointStats.shed()));
+            }
+            return rows.toString();
+        }
+    }
+
+    // Command-line arguments, so they win over application.properties and the profile files
+    private static String[] withHarnessArgs(String... args) {
+        List<String> all = new ArrayList<>(List.of("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loggingharness;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;" +
+                        "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                "--app.limiter.enabled=false"));
+        all.addAll(List.of(args));
+        return all.toArray(String[]::new);
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM patients WHERE last_name LIKE 'Logbench%'", Long.class);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, city, facility_id) " +
+                "SELECT 55000000 + n, 'LOGB' || n, 'First' || n, 'Logbench' || MOD(n, 500), 'FEMALE', DATE '1980-01-01', " +
+                "'Queens', ? FROM SYSTEM_RANGE(1, ?) AS r(n)", WEST_FACILITY_ID, PATIENTS);
+    }
+
+    private static LoadDriver.Call search(URI base, ThreadLocalRandom random) {
+        return new LoadDriver.Call("search", HttpRequest.newBuilder(URI.create(base + "/search?facilityId=" +
+                        WEST_FACILITY_ID + "&size=20&search=Logbench" + random.nextInt(500)))
+                .header("Authorization", "Bearer logging-benchmark")
+                .timeout(Duration.ofSeconds(60))
+                .build());
+    }
+
+    private static LoadDriver.Call registration(URI base, ThreadLocalRandom random) {
+        LocalDate dateOfBirth = LocalDate.of(1940, 1, 1).plusDays(random.nextInt(25_000));
+        String body = "{\"firstName\":\"Registered\",\"lastName\":\"Logbench" + random.nextInt(1_000_000) + "\"," +
+                "\"gender\":\"MALE\",\"dateOfBirth\":\"" + dateOfBirth + "\",\"phone\":\"+1212555" +
+                (1000 + random.nextInt(9000)) + "\",\"city\":\"Queens\",\"facilityId\":" + WEST_FACILITY_ID + "}";
+        return new LoadDriver.Call("register", HttpRequest.newBuilder(base)
+                .header("Authorization", "Bearer logging-benchmark")
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+}
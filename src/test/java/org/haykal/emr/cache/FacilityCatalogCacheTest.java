@@ -0,0 +1,151 @@
+package org.haykal.emr.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.haykal.emr.dto.FacilityDTO;
+import org.haykal.emr.dto.ServiceTypeDTO;
+import org.haykal.emr.service.FacilityService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class FacilityCatalogCacheTest {
+
+    private static final long MAIN_FACILITY_ID = 1L;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private FacilityCatalogCache facilityCatalogCache;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM facilities WHERE code = 'CACHE'");
+        invalidationBus.publish(CacheInvalidation.all(CacheInvalidation.FACILITIES));
+    }
+
+    @Test
+    void repeatedReadsAreServedWithoutStatements() {
+        facilityService.getAllActiveFacilities();
+        facilityService.getFacility(MAIN_FACILITY_ID);
+
+        statistics.clear();
+        List<FacilityDTO> facilities = facilityService.getAllActiveFacilities();
+        FacilityDTO main = facilityService.getFacility(MAIN_FACILITY_ID);
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(facilities).extracting(FacilityDTO::getCode).contains("MAIN", "NORTH", "WEST");
+        assertThat(main.getAvailableServices()).hasSize(17);
+    }
+
+    @Test
+    void cachedViewsAreImmutable() {
+        FacilityDTO main = facilityService.getFacility(MAIN_FACILITY_ID);
+
+        assertThatThrownBy(() -> main.getAvailableServices().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> facilityService.getAllActiveFacilities().clear())
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        // Each read is a copy of the cached snapshot
+        main.setName("Changed by a caller");
+        facilityService.getAllActiveFacilities().get(0).setCode("CHANGED");
+        assertThat(facilityService.getFacility(MAIN_FACILITY_ID).getName()).isNotEqualTo("Changed by a caller");
+        assertThat(facilityService.getAllActiveFacilities()).extracting(FacilityDTO::getCode).doesNotContain("CHANGED");
+    }
+
+    @Test
+    void writesInvalidateOnlyTheAffectedEntries() {
+        facilityService.getFacility(MAIN_FACILITY_ID);
+        assertThat(facilityService.getAllActiveFacilities()).extracting(FacilityDTO::getCode).doesNotContain("CACHE");
+
+        FacilityDTO request = new FacilityDTO();
+        request.setCode("CACHE");
+        request.setName("Cache Clinic");
+        FacilityDTO created = facilityService.createFacility(request);
+
+        assertThat(facilityService.getAllActiveFacilities()).extracting(FacilityDTO::getCode).contains("CACHE");
+        assertThat(facilityService.getFacility(created.getId()).getAvailableServices()).isEmpty();
+
+        statistics.clear();
+        facilityService.getFacility(MAIN_FACILITY_ID);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        facilityService.addServiceToFacility(created.getId(), 1L);
+
+        assertThat(facilityService.getFacility(created.getId()).getAvailableServices())
+                .extracting(ServiceTypeDTO::getCode)
+                .containsExactly("CBC");
+    }
+
+    @Test
+    void invalidationFromAnotherNodeForcesReload() {
+        facilityService.getFacility(MAIN_FACILITY_ID);
+        jdbcTemplate.update("UPDATE facilities SET name = 'Renamed Elsewhere' WHERE id = ?", MAIN_FACILITY_ID);
+        try {
+            assertThat(facilityService.getFacility(MAIN_FACILITY_ID).getName()).isNotEqualTo("Renamed Elsewhere");
+
+            invalidationBus.publish(CacheInvalidation.of(CacheInvalidation.FACILITIES, MAIN_FACILITY_ID));
+
+            assertThat(facilityService.getFacility(MAIN_FACILITY_ID).getName()).isEqualTo("Renamed Elsewhere");
+        } finally {
+            jdbcTemplate.update("UPDATE facilities SET name = 'Main Hospital' WHERE id = ?", MAIN_FACILITY_ID);
+        }
+    }
+
+    @Test
+    void loadsRacingAnInvalidationAreNotKept() {
+        // The invalidation lands while the loader runs, so the loaded snapshot may predate the change
+        FacilityDTO stale = facilityCatalogCache.getFacility(MAIN_FACILITY_ID, id -> {
+            invalidationBus.publish(CacheInvalidation.of(CacheInvalidation.FACILITIES, id));
+            return facility(id, "Stale");
+        });
+        List<FacilityDTO> staleList = facilityCatalogCache.getActiveFacilities(() -> {
+            invalidationBus.publish(CacheInvalidation.of(CacheInvalidation.FACILITIES, MAIN_FACILITY_ID));
+            return List.of(facility(MAIN_FACILITY_ID, "Stale"));
+        });
+
+        assertThat(stale.getName()).isEqualTo("Stale");
+        assertThat(staleList).extracting(FacilityDTO::getName).containsExactly("Stale");
+        assertThat(facilityCatalogCache.getFacility(MAIN_FACILITY_ID, id -> facility(id, "Fresh")).getName())
+                .isEqualTo("Fresh");
+        assertThat(facilityCatalogCache.getActiveFacilities(() -> List.of(facility(MAIN_FACILITY_ID, "Fresh"))))
+                .extracting(FacilityDTO::getName).containsExactly("Fresh");
+    }
+
+    private static FacilityDTO facility(Long id, String name) {
+        FacilityDTO facility = new FacilityDTO();
+        facility.setId(id);
+        facility.setName(name);
+        return facility;
+    }
+}
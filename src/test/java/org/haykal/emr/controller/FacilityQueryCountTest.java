@@ -0,0 +1,66 @@
+package org.haykal.emr.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.haykal.emr.cache.CacheInvalidation;
+import org.haykal.emr.cache.CacheInvalidationBus;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Guards against the facility -> availableServices N+1 coming back
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FacilityQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // Start from a cold cache so the database path is what gets measured
+        invalidationBus.publish(CacheInvalidation.all(CacheInvalidation.FACILITIES));
+        statistics.clear();
+    }
+
+    @Test
+    void activeFacilitiesLoadInOneStatement() throws Exception {
+        mockMvc.perform(get("/facilities"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].availableServices", hasSize(17)))
+                .andExpect(jsonPath("$.data[2].availableServices", hasSize(17)));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void singleFacilityLoadsInOneStatement() throws Exception {
+        mockMvc.perform(get("/facilities/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.code").value("NORTH"))
+                .andExpect(jsonPath("$.data.availableServices", hasSize(17)));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,92 @@
+package org.haykal.emr.controller;
+
+import org.haykal.emr.service.PatientExportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PatientExportTest {
+
+    private static final long MAIN_FACILITY_ID = 1L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PatientExportService patientExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Exported'");
+    }
+
+    @Test
+    void exportIsNotPublicLikeOtherFacilityReads() throws Exception {
+        mockMvc.perform(get("/facilities/{id}/patients/export", MAIN_FACILITY_ID))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/facilities/{id}/patients/export", MAIN_FACILITY_ID)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_VIEW_ONLY"))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void ndjsonExportStreamsOneDocumentPerPatient() throws Exception {
+        MvcResult started = mockMvc.perform(get("/facilities/{id}/patients/export", MAIN_FACILITY_ID)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"facility-1-patients.ndjson\""))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(body.split("\n"))
+                .hasSize(2)
+                .allSatisfy(line -> assertThat(line).startsWith("{\"id\":").contains("\"facilityName\":\"Main Hospital\""));
+        assertThat(body).contains("\"mrn\":\"MAIN001000\"", "\"dateOfBirth\":\"1980-05-15\"");
+    }
+
+    @Test
+    void csvExportQuotesFieldsThatNeedIt() throws Exception {
+        jdbcTemplate.update("INSERT INTO patients (mrn, first_name, last_name, gender, date_of_birth, address, facility_id) " +
+                "VALUES ('EXPORT-CSV-1', 'Quoted', 'Exported', 'FEMALE', DATE '1990-01-02', '1 Main St, \"Rear\"', ?)",
+                MAIN_FACILITY_ID);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = patientExportService.write(MAIN_FACILITY_ID, PatientExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(rows).isEqualTo(3);
+        assertThat(lines).hasSize(4);
+        assertThat(lines[0]).startsWith("id,mrn,first_name,last_name,");
+        // Sorted by last name: Doe, Exported, Smith
+        assertThat(lines[2]).contains(",EXPORT-CSV-1,Quoted,Exported,FEMALE,1990-01-02,,,\"1 Main St, \"\"Rear\"\"\",");
+    }
+}
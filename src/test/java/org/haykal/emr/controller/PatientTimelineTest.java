@@ -0,0 +1,129 @@
+package org.haykal.emr.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+class PatientTimelineTest {
+
+    // John Doe: a lab test at 09:00 and an X-ray at 10:00 on 2025-07-30 (seed data)
+    private static final long PATIENT_ID = 1L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void timelineIsNewestFirstAndCanBeFiltered() throws Exception {
+        mockMvc.perform(timeline())
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().string("Cache-Control", containsString("no-cache")))
+                .andExpect(header().string("Cache-Control", not(containsString("no-store"))))
+                .andExpect(jsonPath("$.data", hasSize(2)))
+                .andExpect(jsonPath("$.data[0].serviceTypeName").value("X-Ray"))
+                .andExpect(jsonPath("$.data[1].serviceCategory").value("LAB"));
+
+        mockMvc.perform(timeline().param("category", "lab"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(1)))
+                .andExpect(jsonPath("$.data[0].serviceTypeName").value("Complete Blood Count"));
+        mockMvc.perform(timeline().param("status", "COMPLETED", "CANCELLED"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(0)));
+    }
+
+    @Test
+    void repeatViewIsAnsweredFromTheValidatorAlone() throws Exception {
+        String etag = mockMvc.perform(timeline()).andReturn().getResponse().getHeader("ETag");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(timeline().header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void eachFilterHasItsOwnTag() throws Exception {
+        String all = mockMvc.perform(timeline()).andReturn().getResponse().getHeader("ETag");
+        String lab = mockMvc.perform(timeline().param("category", "lab")).andReturn().getResponse().getHeader("ETag");
+        String done = mockMvc.perform(timeline().param("status", "COMPLETED", "CANCELLED"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertThat(lab).isNotEqualTo(all);
+        assertThat(done).isNotEqualTo(all).isNotEqualTo(lab);
+        mockMvc.perform(timeline().param("category", "LAB").header("If-None-Match", lab))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(timeline().param("status", "CANCELLED", "completed").header("If-None-Match", done))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(timeline().param("category", "lab").header("If-None-Match", all))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void anyServiceChangeMakesANewTag() throws Exception {
+        String original = mockMvc.perform(timeline()).andReturn().getResponse().getHeader("ETag");
+
+        jdbcTemplate.update("UPDATE patient_services SET status = 'IN_PROGRESS', version = version + 1 " +
+                "WHERE patient_id = ? AND service_type_id = 6", PATIENT_ID);
+        String updated = mockMvc.perform(timeline().header("If-None-Match", original))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].status").value("IN_PROGRESS"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        jdbcTemplate.update("INSERT INTO patient_services (id, patient_id, service_type_id, facility_id, status, " +
+                "scheduled_date) VALUES (70000001, ?, 11, 1, 'SCHEDULED', TIMESTAMP '2025-08-15 09:00:00')", PATIENT_ID);
+        String inserted = mockMvc.perform(timeline().header("If-None-Match", updated))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", hasSize(3)))
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertThat(updated).isNotEqualTo(original);
+        assertThat(inserted).isNotEqualTo(updated).isNotEqualTo(original);
+    }
+
+    @Test
+    void unknownPatientIsNotFound() throws Exception {
+        mockMvc.perform(get("/patients/999999/services")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF"))))
+                .andExpect(status().isNotFound());
+    }
+
+    private static MockHttpServletRequestBuilder timeline() {
+        return get("/patients/{id}/services", PATIENT_ID)
+                .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF")));
+    }
+}
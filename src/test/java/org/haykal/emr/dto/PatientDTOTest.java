@@ -0,0 +1,31 @@
+package org.haykal.emr.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PatientDTOTest {
+
+    @Test
+    void toStringNamesIdentifyingFieldsWithoutTheirValues() {
+        PatientDTO dto = new PatientDTO();
+        dto.setId(42L);
+        dto.setFacilityId(2L);
+        dto.setMrn("NORTH000123");
+        dto.setFirstName("Margarethe");
+        dto.setLastName("Oyelaran");
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1961, 7, 4));
+        dto.setPhone("+12125550188");
+        dto.setInsurancePolicyNumber("POL-99812");
+        dto.setRequestedServices(Set.of(new ServiceRequestDTO()));
+
+        assertThat(dto.toString()).isEqualTo("PatientDTO{id=42, facilityId=2, gender=FEMALE, requestedServices=1, " +
+                "redacted=[mrn, firstName, lastName, dateOfBirth, phone, insurancePolicyNumber]}");
+        assertThat(new PatientDTO().toString()).isEqualTo(
+                "PatientDTO{id=null, facilityId=null, gender=null, requestedServices=0, redacted=[]}");
+    }
+}
@@ -0,0 +1,271 @@
+package org.haykal.emr.idempotency;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.haykal.emr.exception.IdempotencyKeyInUseException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class IdempotencyTest {
+
+    private static final TypeReference<String> TEXT = new TypeReference<>() {
+    };
+    private static final String PATIENT = "{\"firstName\":\"Ida\",\"lastName\":\"Idempotent\",\"gender\":\"FEMALE\"," +
+            "\"dateOfBirth\":\"1981-06-14\",\"facilityId\":1}";
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Idempotent'");
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key LIKE 'test-%'");
+    }
+
+    @Test
+    void retriedRegistrationReturnsTheStoredResponseWithoutWriting() throws Exception {
+        MvcResult first = createPatient("test-register", PATIENT)
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyService.REPLAYED_HEADER))
+                .andReturn();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        MvcResult replay = createPatient("test-register", PATIENT)
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andReturn();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(replay.getResponse().getContentAsString()).isEqualTo(first.getResponse().getContentAsString());
+        assertThat(countPatients()).isEqualTo(1);
+
+        createPatient("test-register", PATIENT.replace("Ida", "Iris")).andExpect(status().isUnprocessableEntity());
+        createPatient("test-register-2", PATIENT).andExpect(status().isCreated());
+        assertThat(countPatients()).isEqualTo(2);
+    }
+
+    @Test
+    void storedResponsesAreReplayedByOtherNodes() {
+        AtomicInteger writes = new AtomicInteger();
+        idempotencyService.execute("test-node", IdempotentOperation.CREATE_PATIENT, "request", TEXT,
+                () -> ResponseEntity.status(201).body("created " + writes.incrementAndGet()));
+
+        // A second instance has an empty front cache, like another node
+        ResponseEntity<String> replay = newService(Duration.ofHours(1)).execute("test-node",
+                IdempotentOperation.CREATE_PATIENT, "request", TEXT,
+                () -> ResponseEntity.status(201).body("created " + writes.incrementAndGet()));
+
+        assertThat(writes).hasValue(1);
+        assertThat(replay.getStatusCode().value()).isEqualTo(201);
+        assertThat(replay.getBody()).isEqualTo("created 1");
+        assertThat(replay.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void concurrentDuplicatesAreRejectedWhileTheFirstRuns() throws Exception {
+        int threads = 6;
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger writes = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<ResponseEntity<String>>> results = new ArrayList<>();
+        results.add(executor.submit(() -> idempotencyService.execute("test-race", IdempotentOperation.CREATE_PATIENT,
+                "request", TEXT, () -> {
+                    writes.incrementAndGet();
+                    running.countDown();
+                    await(release);
+                    return ResponseEntity.ok("done");
+                })));
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < threads; i++) {
+            results.add(executor.submit(() -> idempotencyService.execute("test-race", IdempotentOperation.CREATE_PATIENT,
+                    "request", TEXT, () -> ResponseEntity.ok("duplicate " + writes.incrementAndGet()))));
+        }
+
+        int rejected = 0;
+        for (Future<ResponseEntity<String>> result : results.subList(1, threads)) {
+            try {
+                result.get();
+            } catch (Exception e) {
+                assertThat(e.getCause()).isInstanceOf(IdempotencyKeyInUseException.class);
+                rejected++;
+            }
+        }
+        release.countDown();
+        assertThat(results.get(0).get().getBody()).isEqualTo("done");
+        executor.shutdown();
+
+        assertThat(rejected).isEqualTo(threads - 1);
+        assertThat(writes).hasValue(1);
+        // Once completed, the key replays the stored response
+        assertThat(idempotencyService.execute("test-race", IdempotentOperation.CREATE_PATIENT, "request", TEXT,
+                () -> ResponseEntity.ok("again")).getBody()).isEqualTo("done");
+    }
+
+    @Test
+    void failedSingleWritesReleaseTheKeyAndLapsedClaimsAreTakenOver() {
+        assertThatThrownBy(() -> idempotencyService.execute("test-failed", IdempotentOperation.ADD_FACILITY_SERVICE,
+                "request", TEXT, () -> {
+                    throw new IllegalStateException("boom");
+                })).isInstanceOf(IllegalStateException.class);
+        assertThat(idempotencyKeyRepository.find("anonymous", "test-failed")).isEmpty();
+
+        // A failed bulk write may have committed chunks, so its claim is kept until it lapses
+        assertThatThrownBy(() -> idempotencyService.execute("test-failed-bulk", IdempotentOperation.BULK_REGISTER_PATIENTS,
+                "request", TEXT, () -> {
+                    throw new IllegalStateException("boom");
+                })).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> idempotencyService.execute("test-failed-bulk", IdempotentOperation.BULK_REGISTER_PATIENTS,
+                "request", TEXT, () -> ResponseEntity.ok("again"))).isInstanceOf(IdempotencyKeyInUseException.class);
+
+        Instant past = Instant.now().minusSeconds(60);
+        idempotencyKeyRepository.claim("anonymous", "test-lapsed", IdempotentOperation.ADD_FACILITY_SERVICE.name(),
+                idempotencyService.fingerprint(IdempotentOperation.ADD_FACILITY_SERVICE, "request"), 1L, past,
+                Instant.now().plusSeconds(3600));
+        ResponseEntity<String> response = idempotencyService.execute("test-lapsed",
+                IdempotentOperation.ADD_FACILITY_SERVICE, "request", TEXT, () -> ResponseEntity.ok("ran"));
+
+        assertThat(response.getBody()).isEqualTo("ran");
+        assertThat(idempotencyKeyRepository.find("anonymous", "test-lapsed").orElseThrow().responseStatus())
+                .isEqualTo(200);
+    }
+
+    @Test
+    void fingerprintsIgnoreSetAndMapOrder() {
+        Set<String> ascending = new LinkedHashSet<>(List.of("CBC", "ECG", "XRAY"));
+        Set<String> descending = new LinkedHashSet<>(List.of("XRAY", "ECG", "CBC"));
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("facilityId", 1);
+        first.put("services", ascending);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("services", descending);
+        second.put("facilityId", 1);
+
+        assertThat(idempotencyService.fingerprint(IdempotentOperation.CREATE_PATIENT, first))
+                .isEqualTo(idempotencyService.fingerprint(IdempotentOperation.CREATE_PATIENT, second));
+        assertThat(idempotencyService.fingerprint(IdempotentOperation.CREATE_PATIENT, patient(1L, 6L, 11L)))
+                .isEqualTo(idempotencyService.fingerprint(IdempotentOperation.CREATE_PATIENT, patient(11L, 6L, 1L)));
+        // Lists keep their order: it is part of the request
+        assertThat(idempotencyService.fingerprint(IdempotentOperation.CREATE_PATIENT, List.of("CBC", "ECG")))
+                .isNotEqualTo(idempotencyService.fingerprint(IdempotentOperation.CREATE_PATIENT, List.of("ECG", "CBC")));
+    }
+
+    @Test
+    void expiredKeysArePurgedAndCanBeReused() {
+        IdempotencyService shortLived = newService(Duration.ofMillis(1));
+        shortLived.execute("test-expired", IdempotentOperation.CREATE_PATIENT, "request", TEXT,
+                () -> ResponseEntity.ok("first"));
+        jdbcTemplate.update("UPDATE idempotency_keys SET expires_at = ? WHERE idempotency_key = 'test-expired'",
+                Timestamp.from(Instant.now().minusSeconds(1)));
+
+        ResponseEntity<String> reused = shortLived.execute("test-expired", IdempotentOperation.CREATE_PATIENT,
+                "other request", TEXT, () -> ResponseEntity.ok("second"));
+        jdbcTemplate.update("UPDATE idempotency_keys SET expires_at = ? WHERE idempotency_key = 'test-expired'",
+                Timestamp.from(Instant.now().minusSeconds(1)));
+
+        assertThat(reused.getBody()).isEqualTo("second");
+        assertThat(shortLived.purgeExpired()).isGreaterThanOrEqualTo(1);
+        assertThat(idempotencyKeyRepository.find("anonymous", "test-expired")).isEmpty();
+    }
+
+    private IdempotencyService newService(Duration ttl) {
+        return new IdempotencyService(idempotencyKeyRepository, objectMapper, transactionManager, ttl,
+                Duration.ofMinutes(2), Duration.ofMinutes(30), 100, 2);
+    }
+
+    private static PatientDTO patient(Long... serviceTypeIds) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Ida");
+        dto.setLastName("Idempotent");
+        Set<ServiceRequestDTO> requests = new LinkedHashSet<>();
+        for (Long serviceTypeId : serviceTypeIds) {
+            ServiceRequestDTO request = new ServiceRequestDTO();
+            request.setServiceTypeId(serviceTypeId);
+            requests.add(request);
+        }
+        dto.setRequestedServices(requests);
+        return dto;
+    }
+
+    private ResultActions createPatient(String key, String body) throws Exception {
+        return mockMvc.perform(post("/patients")
+                .with(jwt().jwt(token -> token.subject("kiosk-7")).authorities(new SimpleGrantedAuthority("ROLE_STAFF")))
+                .header(IdempotencyService.HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+    }
+
+    private long countPatients() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM patients WHERE last_name = 'Idempotent'", Long.class);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
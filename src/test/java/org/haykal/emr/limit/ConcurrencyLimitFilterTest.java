@@ -0,0 +1,78 @@
+package org.haykal.emr.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    private static final Duration NO_WAIT = Duration.ZERO;
+
+    @Test
+    void limitShrinksWhenLatencyRisesAndRecoversWhenItFalls() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("read", 2, 20, NO_WAIT);
+
+        // Steady 5 ms requests with every slot busy: the limit stays at its maximum
+        runBatches(limiter, 20, 50, 5);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        // Requests now take 50 ms, as when they queue for connections: the limit backs off
+        runBatches(limiter, limiter.getLimit(), 3, 50);
+        int congested = limiter.getLimit();
+        assertThat(congested).isLessThanOrEqualTo(15);
+
+        // Back to 5 ms: the limit grows again
+        runBatches(limiter, congested, 200, 5);
+        assertThat(limiter.getLimit()).isGreaterThan(congested);
+    }
+
+    @Test
+    void requestsBeyondTheLimitAreShedWithRetryAfter() throws Exception {
+        AdaptiveConcurrencyLimiter reads = new AdaptiveConcurrencyLimiter("read", 1, 1, NO_WAIT);
+        AdaptiveConcurrencyLimiter writes = new AdaptiveConcurrencyLimiter("write", 1, 1, NO_WAIT);
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(reads, writes, 2, new ObjectMapper());
+        assertThat(reads.tryAcquire()).isTrue();
+
+        MockHttpServletResponse shed = perform(filter, "GET", "/patients/search");
+        MockHttpServletResponse write = perform(filter, "POST", "/patients");
+        MockHttpServletResponse health = perform(filter, "GET", "/actuator/health");
+
+        assertThat(shed.getStatus()).isEqualTo(503);
+        assertThat(shed.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(shed.getContentAsString()).contains("\"success\":false");
+        assertThat(reads.getRejected()).isEqualTo(1);
+        // Writes and exempt paths are unaffected by a saturated read limiter
+        assertThat(write.getStatus()).isEqualTo(200);
+        assertThat(health.getStatus()).isEqualTo(200);
+        assertThat(writes.getInFlight()).isZero();
+    }
+
+    // Fills the limiter to the given concurrency and completes every request with the given latency
+    private static void runBatches(AdaptiveConcurrencyLimiter limiter, int concurrency, int batches, long latencyMillis)
+            throws InterruptedException {
+        for (int batch = 0; batch < batches; batch++) {
+            int admitted = 0;
+            while (admitted < concurrency && limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            }
+        }
+    }
+
+    private static MockHttpServletResponse perform(ConcurrencyLimitFilter filter, String method, String path)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,95 @@
+package org.haykal.emr.limit;
+
+import org.haykal.emr.EmrApplication;
+import org.haykal.emr.load.AnyTokenAuth;
+import org.haykal.emr.load.LoadDriver;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load harness for the request execution modes: boots the application on a random port with
+ * platform and with virtual request threads, each with and without the concurrency limiter, and
+ * drives it with {@code benchmark.clients} closed-loop clients of {@link LoadDriver} running a
+ * patient search.
+ * <p>
+ * Not part of the regular test run. Run with
+ * {@code mvn test -Dtest=RequestModeLoadBenchmark [-Dbenchmark.clients=400] [-Dbenchmark.seconds=15]}.
+ * Latency percentiles are over successful responses; shed requests are counted separately and
+ * clients pause for a moment after one, as a well-behaved client honouring Retry-After would.
+ */
+class RequestModeLoadBenchmark {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 400);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("benchmark.seconds", 15));
+    private static final Duration WARM_UP = Duration.ofSeconds(3);
+    private static final int PATIENTS = 20_000;
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final Duration PAUSE_AFTER_SHED = Duration.ofMillis(50);
+
+    @Test
+    void compareExecutionModes() throws Exception {
+        List<String> rows = new ArrayList<>();
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            for (boolean limiter : new boolean[]{false, true}) {
+                rows.add(run(virtualThreads, limiter));
+            }
+        }
+
+        System.out.printf("%nRequest execution modes (%d clients, %d s, pool of 10 connections)%n", CLIENTS,
+                DURATION.toSeconds());
+        System.out.printf("  %-9s %-8s %9s %8s %8s %8s %8s %8s%n", "threads", "limiter", "ok/s", "p50 ms",
+                "p99 ms", "p99.9 ms", "shed", "errors");
+        rows.forEach(System.out::println);
+        System.out.println();
+    }
+
+    private String run(boolean virtualThreads, boolean limiter) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EmrApplication.class, AnyTokenAuth.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadharness;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;" +
+                                "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "app.limiter.enabled=" + limiter,
+                        "logging.level.root=WARN")
+                .run()) {
+            seed(context.getBean(JdbcTemplate.class));
+            String port = context.getEnvironment().getProperty("local.server.port");
+            String base = "http://localhost:" + port + "/api/v1/patients/search?facilityId=" + WEST_FACILITY_ID +
+                    "&size=20&search=";
+
+            LoadDriver.EndpointStats search = new LoadDriver(CLIENTS).closedLoop(CLIENTS, WARM_UP, DURATION,
+                    random -> search(base, random), PAUSE_AFTER_SHED).get("search");
+            return String.format("  %-9s %-8s %9.0f %8.1f %8.1f %8.1f %8d %8d",
+                    virtualThreads ? "virtual" : "platform", limiter ? "on" : "off",
+                    search.ok() / (double) DURATION.toSeconds(), search.percentile(0.50), search.percentile(0.99),
+                    search.percentile(0.999), search.shed(), search.errors());
+        }
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        Long existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM patients WHERE last_name LIKE 'Load%'", Long.class);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, city, facility_id) " +
+                "SELECT 50000000 + n, 'LOAD' || n, 'First' || n, 'Load' || MOD(n, 500), 'FEMALE', DATE '1980-01-01', " +
+                "'Queens', ? FROM SYSTEM_RANGE(1, ?) AS r(n)", WEST_FACILITY_ID, PATIENTS);
+    }
+
+    private static LoadDriver.Call search(String base, ThreadLocalRandom random) {
+        return new LoadDriver.Call("search", HttpRequest.newBuilder(URI.create(base + "Load" + random.nextInt(500)))
+                .header("Authorization", "Bearer load-test")
+                .timeout(Duration.ofSeconds(60))
+                .build());
+    }
+}
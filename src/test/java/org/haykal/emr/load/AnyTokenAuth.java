@@ -0,0 +1,32 @@
+package org.haykal.emr.load;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accepts any bearer token as a STAFF user, so a benchmark needs no identity provider. Add it as a
+ * source of the application under load; benchmarks that should exercise real token verification
+ * use {@link StubTokenIssuer} instead.
+ */
+@Configuration
+public class AnyTokenAuth {
+
+    @Bean
+    @Primary
+    JwtDecoder anyTokenJwtDecoder() {
+        return token -> Jwt.withTokenValue(token)
+                .header("alg", "none")
+                .subject("load-test")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .claim("realm_access", Map.of("roles", List.of("staff")))
+                .build();
+    }
+}
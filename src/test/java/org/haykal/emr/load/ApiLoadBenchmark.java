@@ -0,0 +1,234 @@
+package org.haykal.emr.load;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.haykal.emr.EmrApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end API load test: boots the application on a random port over an in-memory database
+ * migrated by Flyway, fills it with {@link SyntheticDataGenerator}, and sends a mix of patient
+ * searches, MRN lookups, registrations with requested services and facility listings at a fixed
+ * rate with {@link LoadDriver}. Tokens come from a {@link StubTokenIssuer} and go through the
+ * application's real verification, so the run needs no network access.
+ * <p>
+ * Reports latency percentiles per endpoint and the mean and maximum number of SQL statements per
+ * request from the {@code emr.http.statements} metric. Not part of the regular test run:
+ * <pre>
+ * mvn test -Dtest=ApiLoadBenchmark [-Dload.rps=100] [-Dload.seconds=30] [-Dload.facilities=40]
+ *     [-Dload.patients=100000] [-Dload.skew=1.1] [-Dload.servicesPerPatient=2] [-Dload.users=20]
+ *     [-Dload.mix=search:50,mrn:25,create:10,facilities:15]
+ * </pre>
+ * Searches, lookups and registrations go to facilities in proportion to their size, and search
+ * terms follow the same surname distribution as the data.
+ */
+class ApiLoadBenchmark {
+
+    private static final int RATE = Integer.getInteger("load.rps", 100);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+    private static final Duration WARM_UP = Duration.ofSeconds(Long.getLong("load.warmUpSeconds", 10));
+    private static final int USERS = Integer.getInteger("load.users", 20);
+    private static final String MIX = System.getProperty("load.mix", "search:50,mrn:25,create:10,facilities:15");
+    private static final SyntheticDataGenerator.Spec SPEC = new SyntheticDataGenerator.Spec(
+            Integer.getInteger("load.facilities", 40),
+            Integer.getInteger("load.patients", 100_000),
+            Double.parseDouble(System.getProperty("load.skew", "1.1")),
+            Integer.getInteger("load.servicesPerPatient", 2),
+            60_000_000L,
+            42L);
+    private static final int MAX_OUTSTANDING = 2_000;
+
+    // Endpoints by name, with the method and handler pattern their statement counts are tagged with
+    private static final Map<String, String[]> ENDPOINTS = Map.of(
+            "search", new String[]{"GET", "/patients/search"},
+            "mrn", new String[]{"GET", "/patients/mrn/{mrn}"},
+            "create", new String[]{"POST", "/patients"},
+            "facilities", new String[]{"GET", "/facilities"});
+
+    @Test
+    void mixedWorkload() throws Exception {
+        try (StubTokenIssuer issuer = new StubTokenIssuer();
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(EmrApplication.class)
+                     .profiles("test")
+                     .run("--server.port=0",
+                             "--spring.datasource.url=jdbc:h2:mem:apiload;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;" +
+                                     "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                             "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + issuer.issuerUri(),
+                             "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + issuer.jwkSetUri(),
+                             "--spring.jpa.show-sql=false",
+                             "--logging.level.root=WARN",
+                             "--logging.level.org.haykal.emr=WARN")) {
+            long generateStart = System.nanoTime();
+            SyntheticDataGenerator.Dataset dataset =
+                    new SyntheticDataGenerator(context.getBean(JdbcTemplate.class)).generate(SPEC);
+            double generateSeconds = (System.nanoTime() - generateStart) / 1e9;
+
+            List<String> tokens = new ArrayList<>(USERS);
+            for (int i = 0; i < USERS; i++) {
+                tokens.add(issuer.issue("load-user-" + i, List.of("default-roles-emr", "offline_access", "staff"),
+                        Duration.ofHours(1)));
+            }
+            Workload workload = new Workload(URI.create("http://localhost:" +
+                    context.getEnvironment().getProperty("local.server.port") + "/api/v1"), dataset, tokens, parseMix(MIX));
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            Map<String, double[]> statementsBefore = new LinkedHashMap<>();
+            Map<String, LoadDriver.EndpointStats> stats = new LoadDriver(MAX_OUTSTANDING).openLoop(RATE, WARM_UP,
+                    DURATION, workload::next, () -> ENDPOINTS.forEach((name, endpoint) ->
+                            statementsBefore.put(name, statements(meterRegistry, endpoint))));
+
+            report(dataset, generateSeconds, stats, meterRegistry, statementsBefore);
+            assertThat(stats.values().stream().mapToLong(LoadDriver.EndpointStats::ok).sum()).isPositive();
+        }
+    }
+
+    private static void report(SyntheticDataGenerator.Dataset dataset, double generateSeconds,
+                               Map<String, LoadDriver.EndpointStats> stats, MeterRegistry meterRegistry,
+                               Map<String, double[]> statementsBefore) {
+        int[] sizes = dataset.facilities().stream().mapToInt(SyntheticDataGenerator.GeneratedFacility::patients).toArray();
+        System.out.printf("%nAPI load (%d req/s for %d s after %d s warm-up, %d users)%n", RATE, DURATION.toSeconds(),
+                WARM_UP.toSeconds(), USERS);
+        System.out.printf("  data: %d facilities (largest %d patients, smallest %d, skew %.2f), %d patients, " +
+                        "%d services, generated in %.1f s%n", sizes.length, Arrays.stream(sizes).max().orElse(0),
+                Arrays.stream(sizes).min().orElse(0), SPEC.skew(), dataset.patients(), dataset.services(),
+                generateSeconds);
+        System.out.printf("  %-11s %7s %7s %8s %8s %8s %6s %6s %7s %10s %9s%n", "endpoint", "sent", "ok/s", "p50 ms",
+                "p95 ms", "p99 ms", "shed", "errors", "dropped", "stmts/req", "max stmts");
+        for (String name : List.of("search", "mrn", "create", "facilities")) {
+            LoadDriver.EndpointStats endpoint = stats.get(name);
+            if (endpoint == null) {
+                continue;
+            }
+            double[] before = statementsBefore.getOrDefault(name, new double[2]);
+            double[] after = statements(meterRegistry, ENDPOINTS.get(name));
+            double requests = after[0] - before[0];
+            System.out.printf("  %-11s %7d %7.1f %8.1f %8.1f %8.1f %6d %6d %7d %10.1f %9.0f%n", name, endpoint.sent(),
+                    endpoint.ok() / (double) DURATION.toSeconds(), endpoint.percentile(0.50),
+                    endpoint.percentile(0.95), endpoint.percentile(0.99), endpoint.shed(), endpoint.errors(),
+                    endpoint.dropped(), requests > 0 ? (after[1] - before[1]) / requests : Double.NaN, after[2]);
+        }
+        System.out.println();
+    }
+
+    // {count, total, max} of the statement summary for an endpoint, zeros before its first request
+    private static double[] statements(MeterRegistry meterRegistry, String[] endpoint) {
+        return Search.in(meterRegistry).name("emr.http.statements").tag("method", endpoint[0]).tag("uri", endpoint[1])
+                .summaries().stream()
+                .map(summary -> new double[]{summary.count(), summary.totalAmount(), summary.max()})
+                .findFirst()
+                .orElse(new double[3]);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            if (!ENDPOINTS.containsKey(nameAndWeight[0])) {
+                throw new IllegalArgumentException("Unknown endpoint in load.mix: " + nameAndWeight[0]);
+            }
+            weights.put(nameAndWeight[0], Integer.parseInt(nameAndWeight[1]));
+        }
+        return weights;
+    }
+
+    private static final class Workload {
+        private final URI base;
+        private final List<SyntheticDataGenerator.GeneratedFacility> facilities;
+        private final long[] cumulativePatients;
+        private final List<String> tokens;
+        private final String[] endpoints;
+        private final int[] cumulativeWeights;
+
+        Workload(URI base, SyntheticDataGenerator.Dataset dataset, List<String> tokens, Map<String, Integer> mix) {
+            this.base = base;
+            this.facilities = dataset.facilities();
+            this.tokens = tokens;
+            cumulativePatients = new long[facilities.size()];
+            long patients = 0;
+            for (int i = 0; i < facilities.size(); i++) {
+                patients += facilities.get(i).patients();
+                cumulativePatients[i] = patients;
+            }
+            endpoints = mix.keySet().toArray(String[]::new);
+            cumulativeWeights = new int[endpoints.length];
+            int total = 0;
+            for (int i = 0; i < endpoints.length; i++) {
+                total += mix.get(endpoints[i]);
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        LoadDriver.Call next(ThreadLocalRandom random) {
+            int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int index = 0;
+            while (cumulativeWeights[index] <= pick) {
+                index++;
+            }
+            String endpoint = endpoints[index];
+            HttpRequest.Builder request = switch (endpoint) {
+                case "search" -> get("/patients/search?facilityId=" + facility(random).id() + "&size=20&search=" +
+                        SyntheticDataGenerator.LAST_NAMES[SyntheticDataGenerator.zipfIndex(random,
+                                SyntheticDataGenerator.LAST_NAMES.length)].substring(0, 3));
+                case "mrn" -> {
+                    SyntheticDataGenerator.GeneratedFacility facility = facility(random);
+                    yield get("/patients/mrn/" + facility.mrn(random.nextInt(facility.patients())));
+                }
+                case "create" -> HttpRequest.newBuilder(URI.create(base + "/patients"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(registration(random)));
+                default -> get("/facilities");
+            };
+            return new LoadDriver.Call(endpoint, request
+                    .header("Authorization", "Bearer " + tokens.get(random.nextInt(tokens.size())))
+                    .timeout(Duration.ofSeconds(60))
+                    .build());
+        }
+
+        private HttpRequest.Builder get(String path) {
+            return HttpRequest.newBuilder(URI.create(base + path)).GET();
+        }
+
+        // Facilities are picked in proportion to their patients, as their traffic would be
+        private SyntheticDataGenerator.GeneratedFacility facility(ThreadLocalRandom random) {
+            long pick = random.nextLong(cumulativePatients[cumulativePatients.length - 1]);
+            int index = Arrays.binarySearch(cumulativePatients, pick + 1);
+            return facilities.get(index >= 0 ? index : -index - 1);
+        }
+
+        private String registration(ThreadLocalRandom random) {
+            StringBuilder services = new StringBuilder();
+            int serviceCount = 1 + random.nextInt(3);
+            String scheduled = LocalDateTime.now().plusDays(1 + random.nextInt(14)).withNano(0).toString();
+            for (int i = 0; i < serviceCount; i++) {
+                services.append(i == 0 ? "" : ",").append("{\"serviceTypeId\":").append(1 + random.nextInt(17))
+                        .append(",\"scheduledDate\":\"").append(scheduled).append("\"}");
+            }
+            String firstName = SyntheticDataGenerator.FIRST_NAMES[random.nextInt(SyntheticDataGenerator.FIRST_NAMES.length)];
+            String lastName = SyntheticDataGenerator.LAST_NAMES[SyntheticDataGenerator.zipfIndex(random,
+                    SyntheticDataGenerator.LAST_NAMES.length)];
+            return "{\"firstName\":\"" + firstName + "\",\"lastName\":\"" + lastName + "\"," +
+                    "\"gender\":\"" + (random.nextBoolean() ? "FEMALE" : "MALE") + "\"," +
+                    "\"dateOfBirth\":\"" + LocalDate.of(1935, 1, 1).plusDays(random.nextInt(32_000)) + "\"," +
+                    "\"phone\":\"+1" + (200 + random.nextInt(800)) + (1_000_000 + random.nextInt(9_000_000)) + "\"," +
+                    "\"city\":\"Queens\",\"facilityId\":" + facility(random).id() + "," +
+                    "\"requestedServices\":[" + services + "]}";
+        }
+    }
+}
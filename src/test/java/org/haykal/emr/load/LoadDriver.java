@@ -0,0 +1,216 @@
+package org.haykal.emr.load;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Drives a running application over HTTP for the load benchmarks, and keeps per-endpoint
+ * outcomes and latencies.
+ * <p>
+ * {@link #openLoop} sends requests at a fixed arrival rate, whether or not earlier ones have been
+ * answered. Latency is measured from when a request was due to be sent, not from when it actually
+ * went out, so a server that stalls is charged for the requests queued behind the stall (no
+ * coordinated omission). Requests that would exceed {@code maxOutstanding} in flight are not sent
+ * and counted as dropped.
+ * <p>
+ * {@link #closedLoop} runs a fixed number of clients that each send their next request when the
+ * previous one is answered, which measures throughput at a given concurrency; latency is then
+ * measured from the send. In both modes only requests due inside the measurement window are
+ * recorded.
+ */
+public class LoadDriver {
+
+    public record Call(String endpoint, HttpRequest request) {
+    }
+
+    public static final class EndpointStats {
+        private long ok;
+        private long shed;
+        private long errors;
+        private long dropped;
+        private long[] latencies = new long[256];
+        private int count;
+
+        private synchronized void record(int status, long nanos) {
+            if (status >= 200 && status < 300) {
+                ok++;
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = nanos;
+            } else if (status == 503) {
+                shed++;
+            } else {
+                errors++;
+            }
+        }
+
+        private synchronized void drop() {
+            dropped++;
+        }
+
+        public synchronized long ok() {
+            return ok;
+        }
+
+        public synchronized long shed() {
+            return shed;
+        }
+
+        public synchronized long errors() {
+            return errors;
+        }
+
+        public synchronized long dropped() {
+            return dropped;
+        }
+
+        public synchronized long sent() {
+            return ok + shed + errors;
+        }
+
+        // Latency percentile of the successful calls, in milliseconds
+        public synchronized double percentile(double p) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, (int) (count * p))] / 1e6;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final int maxOutstanding;
+
+    public LoadDriver(int maxOutstanding) {
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    /**
+     * Runs {@code warmUp} then {@code duration} at {@code ratePerSecond}, drawing each request from
+     * {@code workload}; {@code atMeasurementStart} runs once, just before the first measured request.
+     */
+    public Map<String, EndpointStats> openLoop(int ratePerSecond, Duration warmUp, Duration duration,
+                                               Function<ThreadLocalRandom, Call> workload,
+                                               Runnable atMeasurementStart) {
+        Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+        Semaphore outstanding = new Semaphore(maxOutstanding);
+        long period = 1_000_000_000L / ratePerSecond;
+        long start = System.nanoTime();
+        long measureFrom = start + warmUp.toNanos();
+        long end = measureFrom + duration.toNanos();
+        boolean measuring = false;
+
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long due = start; due < end; due += period) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                boolean measured = due >= measureFrom;
+                if (measured && !measuring) {
+                    atMeasurementStart.run();
+                    measuring = true;
+                }
+
+                Call call = workload.apply(ThreadLocalRandom.current());
+                EndpointStats endpoint = stats.computeIfAbsent(call.endpoint(), name -> new EndpointStats());
+                if (!outstanding.tryAcquire()) {
+                    if (measured) {
+                        endpoint.drop();
+                    }
+                    continue;
+                }
+                long dueAt = due;
+                requests.submit(() -> {
+                    int status;
+                    try {
+                        status = send(call);
+                    } finally {
+                        outstanding.release();
+                    }
+                    if (measured) {
+                        endpoint.record(status, System.nanoTime() - dueAt);
+                    }
+                });
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Runs {@code clients} closed-loop clients for {@code warmUp} then {@code duration}, each drawing
+     * its requests from {@code workload}. A client that is shed (503) pauses for
+     * {@code pauseAfterShed} plus up to as much again, as one honouring Retry-After would.
+     * {@code maxOutstanding} does not apply: the clients bound what is in flight.
+     */
+    public Map<String, EndpointStats> closedLoop(int clients, Duration warmUp, Duration duration,
+                                                 Function<ThreadLocalRandom, Call> workload,
+                                                 Duration pauseAfterShed) throws InterruptedException {
+        Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+        long measureFrom = System.nanoTime() + warmUp.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        try (ExecutorService loops = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                futures.add(loops.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < end) {
+                        Call call = workload.apply(random);
+                        long start = System.nanoTime();
+                        int status = send(call);
+                        long now = System.nanoTime();
+                        if (now >= measureFrom) {
+                            stats.computeIfAbsent(call.endpoint(), name -> new EndpointStats())
+                                    .record(status, now - start);
+                        }
+                        if (status == 503 && !pauseAfterShed.isZero()) {
+                            long pause = pauseAfterShed.toNanos();
+                            LockSupport.parkNanos(pause + random.nextLong(pause));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A load client failed", e.getCause());
+        }
+        return stats;
+    }
+
+    // The response status, or -1 when the request could not be sent or answered
+    private int send(Call call) {
+        try {
+            return client.send(call.request(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
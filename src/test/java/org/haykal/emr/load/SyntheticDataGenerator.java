@@ -0,0 +1,202 @@
+package org.haykal.emr.load;
+
+import org.haykal.emr.mpi.PatientMatchKeys;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills the Flyway schema with synthetic facilities, patients and patient services.
+ * <p>
+ * Facility sizes follow a Zipf distribution with exponent {@code skew}: the first facility is the
+ * largest and facility {@code i} holds {@code 1 / i^skew} of its patients, so a skew around 1 gives a
+ * few very large facilities and a long tail of small ones, and 0 gives equal sizes. Names, birth
+ * dates and phone numbers are drawn from a seeded {@link Random}, so a given spec always produces
+ * the same data. Rows go in through plain batched JDBC inserts with the master patient index keys
+ * filled in, as registration would leave them; the SQL is the same on H2 and PostgreSQL.
+ */
+class SyntheticDataGenerator {
+
+    static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael",
+            "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+            "Sarah", "Carlos", "Karen", "Ahmed", "Fatima", "Wei", "Mei", "Olga", "Ivan", "Priya", "Arjun", "Amara",
+            "Kwame", "Sofia", "Mateo", "Yuki", "Hiroshi", "Aisha", "Omar", "Chloe", "Liam", "Noor", "Elena"};
+    static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas",
+            "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez",
+            "Clark", "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Nguyen",
+            "Hill", "Flores", "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter",
+            "Roberts", "Kowalski", "Okafor", "Haddad", "Chen", "Patel", "Ivanova", "Tanaka", "Mensah", "Silva"};
+    private static final String[] CITIES = {"Queens", "Brooklyn", "Bronx", "Yonkers", "Newark", "Jersey City"};
+    private static final String[] STATUSES = {"SCHEDULED", "IN_PROGRESS", "COMPLETED", "CANCELLED"};
+    // Most services of an established patient are done; the rest are spread over the other states
+    private static final int[] STATUS_WEIGHTS = {25, 5, 60, 10};
+    private static final int SERVICE_TYPES = 17;
+    private static final int BATCH_SIZE = 1_000;
+
+    /**
+     * @param facilities          number of generated facilities
+     * @param patients            total number of patients, spread over the facilities by {@code skew}
+     * @param skew                Zipf exponent of the facility sizes, 0 for equal sizes
+     * @param servicesPerPatient  average patient services per patient
+     * @param idBase              generated ids start above this, clear of the seed data and sequences
+     */
+    record Spec(int facilities, int patients, double skew, int servicesPerPatient, long idBase, long seed) {
+    }
+
+    /**
+     * A generated facility: its patients have ids {@code firstPatientId} to
+     * {@code firstPatientId + patients - 1} and MRNs {@code code-index}. The dash keeps them apart
+     * from the MRNs the application hands out to patients registered during a run.
+     */
+    record GeneratedFacility(long id, String code, int patients, long firstPatientId) {
+        String mrn(int index) {
+            return String.format("%s-%07d", code, index);
+        }
+    }
+
+    record Dataset(List<GeneratedFacility> facilities, long patients, long services) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private long nextServiceId;
+
+    SyntheticDataGenerator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    Dataset generate(Spec spec) {
+        Random random = new Random(spec.seed());
+        int[] sizes = facilitySizes(spec);
+        List<GeneratedFacility> facilities = new ArrayList<>(spec.facilities());
+        long nextPatientId = spec.idBase() + 1;
+        for (int i = 0; i < spec.facilities(); i++) {
+            facilities.add(new GeneratedFacility(spec.idBase() + i + 1, String.format("SYN%04d", i + 1), sizes[i],
+                    nextPatientId));
+            nextPatientId += sizes[i];
+        }
+
+        insertFacilities(facilities);
+        nextServiceId = spec.idBase() + 1;
+        long services = 0;
+        for (GeneratedFacility facility : facilities) {
+            services += insertPatients(facility, spec, random);
+        }
+        return new Dataset(List.copyOf(facilities), nextPatientId - spec.idBase() - 1, services);
+    }
+
+    // Largest remainder rounding keeps the total exact; every facility gets at least one patient
+    static int[] facilitySizes(Spec spec) {
+        double[] weights = new double[spec.facilities()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = 1 / Math.pow(i + 1, spec.skew());
+            total += weights[i];
+        }
+        int remaining = spec.patients() - spec.facilities();
+        int[] sizes = new int[weights.length];
+        int assigned = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sizes[i] = 1 + (int) (remaining * weights[i] / total);
+            assigned += sizes[i];
+        }
+        for (int i = 0; assigned < spec.patients(); i = (i + 1) % sizes.length) {
+            sizes[i]++;
+            assigned++;
+        }
+        return sizes;
+    }
+
+    private void insertFacilities(List<GeneratedFacility> facilities) {
+        jdbcTemplate.batchUpdate("INSERT INTO facilities (id, code, name, address, city, state, zip_code, phone, email, " +
+                        "active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)",
+                facilities.stream().map(facility -> new Object[]{facility.id(), facility.code(),
+                        "Synthetic Facility " + facility.code(), facility.id() + " Main Street", "Queens", "NY", "11101",
+                        "+1212555" + String.format("%04d", facility.id() % 10_000),
+                        facility.code().toLowerCase() + "@synthetic.example"}).toList());
+        jdbcTemplate.batchUpdate("INSERT INTO facility_services (facility_id, service_type_id) " +
+                        "SELECT ?, id FROM service_types",
+                facilities.stream().map(facility -> new Object[]{facility.id()}).toList());
+    }
+
+    private long insertPatients(GeneratedFacility facility, Spec spec, Random random) {
+        List<Object[]> patients = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> services = new ArrayList<>(BATCH_SIZE * Math.max(1, spec.servicesPerPatient()));
+        long serviceCount = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (int index = 0; index < facility.patients(); index++) {
+            long patientId = facility.firstPatientId() + index;
+            String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String lastName = LAST_NAMES[zipfIndex(random, LAST_NAMES.length)];
+            LocalDate dateOfBirth = LocalDate.of(1935, 1, 1).plusDays(random.nextInt(32_000));
+            String phone = "+1" + (200 + random.nextInt(800)) + (1_000_000 + random.nextInt(9_000_000));
+            PatientMatchKeys keys = PatientMatchKeys.of(firstName, lastName, dateOfBirth, phone);
+            patients.add(new Object[]{patientId, facility.mrn(index), firstName, lastName,
+                    random.nextBoolean() ? "FEMALE" : "MALE", Date.valueOf(dateOfBirth),
+                    firstName.toLowerCase() + "." + lastName.toLowerCase() + patientId + "@mail.example", phone,
+                    (1 + random.nextInt(999)) + " Elm Street", CITIES[random.nextInt(CITIES.length)], "NY", "11101",
+                    "Acme Health", "AH-" + patientId, facility.id(), keys.nameDobKey(), keys.firstDobKey(),
+                    keys.namesYearKey(), keys.phoneKey()});
+
+            // 0 to twice the average, so the mean comes out at servicesPerPatient
+            int serviceTotal = random.nextInt(2 * spec.servicesPerPatient() + 1);
+            for (int s = 0; s < serviceTotal; s++) {
+                LocalDateTime scheduled = now.minusDays(90).plusMinutes(random.nextInt(120 * 24 * 60));
+                String status = scheduled.isAfter(now) ? "SCHEDULED" : STATUSES[weightedIndex(random, STATUS_WEIGHTS)];
+                services.add(new Object[]{nextServiceId++, patientId, 1 + random.nextInt(SERVICE_TYPES), facility.id(),
+                        status, Timestamp.valueOf(scheduled),
+                        "COMPLETED".equals(status) ? Timestamp.valueOf(scheduled.plusHours(1)) : null,
+                        "Dr. " + LAST_NAMES[random.nextInt(LAST_NAMES.length)]});
+                serviceCount++;
+            }
+
+            if (patients.size() == BATCH_SIZE) {
+                flush(patients, services);
+            }
+        }
+        flush(patients, services);
+        return serviceCount;
+    }
+
+    private void flush(List<Object[]> patients, List<Object[]> services) {
+        if (!patients.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, email, " +
+                    "phone, address, city, state, zip_code, insurance_provider, insurance_policy_number, facility_id, " +
+                    "mpi_name_dob_key, mpi_first_dob_key, mpi_names_year_key, mpi_phone_key, mpi_keyed) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)", patients);
+            patients.clear();
+        }
+        if (!services.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO patient_services (id, patient_id, service_type_id, facility_id, status, " +
+                    "scheduled_date, completed_date, provider_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", services);
+            services.clear();
+        }
+    }
+
+    // Common surnames are much more common than rare ones, which is what makes name searches uneven
+    static int zipfIndex(Random random, int size) {
+        double u = random.nextDouble();
+        return Math.min(size - 1, (int) (Math.pow(size + 1, u) - 1));
+    }
+
+    private static int weightedIndex(Random random, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}
@@ -0,0 +1,111 @@
+package org.haykal.emr.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.haykal.emr.service.PatientManagementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("test")
+class ServiceMetricsTest {
+
+    private static final long NORTH_FACILITY_ID = 2L;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Metered'");
+    }
+
+    @Test
+    void serviceCallsAreTimedByFacilityAndOutcome() {
+        patientManagementService.createPatient(patient(NORTH_FACILITY_ID));
+        assertThatThrownBy(() -> patientManagementService.createPatient(patient(999L)))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(meterRegistry.get("emr.patient.create").tags("facility", "2", "outcome", "success").timer().count())
+                .isPositive();
+        assertThat(meterRegistry.get("emr.patient.mrn").tags("facility", "2").timer().count()).isPositive();
+        // An unknown facility id is not admitted as a tag value
+        assertThat(meterRegistry.find("emr.patient.create").tags("facility", "999").timer()).isNull();
+        assertThat(meterRegistry.get("emr.patient.create").tags("facility", FacilityTags.OTHER, "outcome", "not_found")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void prometheusShowsSearchSizesAndStatementsPerEndpoint() throws Exception {
+        patientManagementService.createPatient(patient(NORTH_FACILITY_ID));
+        mockMvc.perform(get("/patients/search").param("facilityId", "2").param("search", "metered")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF"))))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_MONITORING"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("emr_patient_search_seconds_count{facility=\"2\",outcome=\"success\",type=\"search\"}")
+                .contains("emr_patient_results_bucket{facility=\"2\",type=\"search\",le=\"1.0\"}")
+                .containsPattern("emr_http_statements_bucket\\{method=\"GET\",uri=\"/patients/search\",le=\"5.0\"} 1")
+                .contains("hikaricp_connections_acquire_seconds_bucket");
+
+        mockMvc.perform(get("/actuator/prometheus")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF"))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void facilityTagsAreBounded() {
+        FacilityTags tags = new FacilityTags(2);
+
+        assertThat(tags.of(6L)).isEqualTo(FacilityTags.OTHER);
+        assertThat(tags.admit(7L)).isEqualTo("7");
+        assertThat(tags.admit(8L)).isEqualTo("8");
+        assertThat(tags.admit(9L)).isEqualTo(FacilityTags.OTHER);
+        assertThat(tags.of(7L)).isEqualTo("7");
+        assertThat(tags.of(6L)).isEqualTo(FacilityTags.OTHER);
+        assertThat(tags.of(null)).isEqualTo(FacilityTags.NONE);
+    }
+
+    private static PatientDTO patient(long facilityId) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Ivo");
+        dto.setLastName("Metered");
+        dto.setGender("MALE");
+        dto.setDateOfBirth(LocalDate.of(1969, 5, 17));
+        dto.setFacilityId(facilityId);
+        return dto;
+    }
+}
@@ -0,0 +1,141 @@
+package org.haykal.emr.mpi;
+
+import org.haykal.emr.dto.DuplicateCandidateDTO;
+import org.haykal.emr.dto.DuplicateScanResult;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.service.PatientManagementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The batch scan commits in its own transactions, so fixtures are committed and removed afterwards
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DuplicateDetectionTest {
+
+    private static final long MAIN_FACILITY_ID = 1L;
+    private static final long NORTH_FACILITY_ID = 2L;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private DuplicateDetector duplicateDetector;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name IN ('Quillfeather', 'Quilfeather', 'Brannagh', 'Branagh', " +
+                "'Коваленко')");
+    }
+
+    @Test
+    void registrationFlagsTheSamePersonAtAnotherFacility() throws Exception {
+        PatientDTO original = patientManagementService.createPatient(
+                patient("Eleanor", "Quillfeather", MAIN_FACILITY_ID, "+12125550142"));
+        assertThat(original.getPossibleDuplicates()).isNullOrEmpty();
+
+        PatientDTO duplicate = patientManagementService.createPatient(
+                patient("Elenor", "Quilfeather", NORTH_FACILITY_ID, "2125550142"));
+
+        assertThat(duplicate.getPossibleDuplicates()).singleElement().satisfies(candidate -> {
+            assertThat(candidate.getPatientId()).isEqualTo(original.getId());
+            assertThat(candidate.getScore()).isGreaterThanOrEqualTo(PatientMatcher.CANDIDATE_THRESHOLD);
+        });
+
+        // Recorded once, visible from both sides
+        mockMvc.perform(get("/patients/{id}/duplicate-candidates", original.getId())
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].patientId").value(duplicate.getId()))
+                .andExpect(jsonPath("$.data[0].facilityId").value(NORTH_FACILITY_ID))
+                .andExpect(jsonPath("$.data[0].source").value("INLINE"));
+        assertThat(duplicateDetector.findCandidates(duplicate.getId()))
+                .extracting(DuplicateCandidateDTO::getPatientId).containsExactly(original.getId());
+    }
+
+    @Test
+    void batchScanFindsDuplicatesAmongRowsWrittenOutsideTheApplication() {
+        // Keys are left null, as for an import straight into the database
+        insert(40000001, "Siobhan", "Brannagh", LocalDate.of(1990, 4, 12), "FEMALE", "3475550177");
+        insert(40000002, "Siobhan", "Branagh", LocalDate.of(1990, 12, 4), "FEMALE", null);
+        insert(40000003, "Aoife", "Brannagh", LocalDate.of(1990, 4, 12), "FEMALE", "3475550177");
+        insert(40000004, "Niamh", "Branagh", LocalDate.of(1962, 8, 30), "FEMALE", null);
+
+        DuplicateScanResult result = duplicateDetector.scan();
+
+        assertThat(result.getKeysBackfilled()).isGreaterThanOrEqualTo(4);
+        assertThat(result.getComparisons()).isPositive();
+        List<DuplicateCandidateDTO> candidates = duplicateDetector.findCandidates(40000001L);
+        assertThat(candidates).extracting(DuplicateCandidateDTO::getPatientId).containsExactly(40000002L);
+        assertThat(candidates.get(0).getSource()).isEqualTo("BATCH");
+        assertThat(duplicateDetector.findCandidates(40000004L)).isEmpty();
+
+        // A rescan replaces its own results rather than adding to them
+        duplicateDetector.scan();
+        assertThat(duplicateDetector.findCandidates(40000001L)).hasSize(1);
+    }
+
+    @Test
+    void scanEndpointRunsInTheBackgroundAndKeysEachRowOnce() throws Exception {
+        insert(40000011, "Siobhan", "Brannagh", LocalDate.of(1990, 4, 12), "FEMALE", null);
+        insert(40000012, "Siobhan", "Branagh", LocalDate.of(1990, 12, 4), "FEMALE", null);
+        // No Latin letters, so no name keys can be derived
+        insert(40000013, "Ярослава", "Коваленко", LocalDate.of(1975, 3, 9), "FEMALE", null);
+
+        mockMvc.perform(post("/patients/duplicate-scan")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isAccepted());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (duplicateDetector.isScanning() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(duplicateDetector.isScanning()).isFalse();
+        assertThat(duplicateDetector.findCandidates(40000011L)).extracting(DuplicateCandidateDTO::getPatientId)
+                .containsExactly(40000012L);
+        assertThat(jdbcTemplate.queryForObject("SELECT mpi_keyed FROM patients WHERE id = 40000013", Boolean.class))
+                .isTrue();
+        assertThat(duplicateDetector.scan().getKeysBackfilled()).isZero();
+    }
+
+    private void insert(long id, String first, String last, LocalDate dob, String gender, String phone) {
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, phone, facility_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", id, "MPI" + id, first, last, gender, dob, phone, MAIN_FACILITY_ID);
+    }
+
+    private static PatientDTO patient(String firstName, String lastName, long facilityId, String phone) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName(firstName);
+        dto.setLastName(lastName);
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1958, 10, 2));
+        dto.setPhone(phone);
+        dto.setFacilityId(facilityId);
+        return dto;
+    }
+}
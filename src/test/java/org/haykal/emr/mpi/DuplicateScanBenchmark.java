@@ -0,0 +1,239 @@
+package org.haykal.emr.mpi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.haykal.emr.dto.DuplicateScanResult;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.service.PatientManagementService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Batch duplicate scan over {@code benchmark.patients} synthetic patients, followed by inline
+ * checks on registration against the same table.
+ * <p>
+ * Surnames are skewed (a few are very common) and one patient in a hundred is a re-registration
+ * of an earlier one with a typo, swapped names or a swapped day and month, usually at another
+ * facility; recall is measured against those planted pairs. Keys are left null on insert, so the
+ * first scan includes the backfill and a second one measures blocking and scoring alone.
+ * <p>
+ * Not part of the regular test run. Run with
+ * {@code mvn test -Dtest=DuplicateScanBenchmark -DargLine=-Xmx4g [-Dbenchmark.patients=1000000]}.
+ * The in-memory H2 table and its indexes share that heap, about 2 KB per patient, which is what
+ * bounds the patient count here.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:mpibench;MODE=PostgreSQL;" +
+        "DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1")
+class DuplicateScanBenchmark {
+
+    private static final long ID_BASE = 60_000_000L;
+    private static final int PATIENTS = Integer.getInteger("benchmark.patients", 1_000_000);
+    private static final int INSERT_CHUNK = 5_000;
+    private static final int REGISTRATIONS = 300;
+
+    private static final String[] FIRST_NAMES = {
+            "JAMES", "MARY", "ROBERT", "PATRICIA", "JOHN", "JENNIFER", "MICHAEL", "LINDA", "DAVID", "ELIZABETH",
+            "WILLIAM", "BARBARA", "RICHARD", "SUSAN", "JOSEPH", "JESSICA", "THOMAS", "SARAH", "CHRISTOPHER", "KAREN",
+            "CHARLES", "LISA", "DANIEL", "NANCY", "MATTHEW", "BETTY", "ANTHONY", "SANDRA", "MARK", "MARGARET",
+            "DONALD", "ASHLEY", "STEVEN", "KIMBERLY", "ANDREW", "EMILY", "PAUL", "DONNA", "JOSHUA", "MICHELLE",
+            "KENNETH", "CAROL", "KEVIN", "AMANDA", "BRIAN", "MELISSA", "GEORGE", "DEBORAH", "TIMOTHY", "STEPHANIE",
+            "AHMED", "FATIMA", "MOHAMMED", "AISHA", "OMAR", "LAYLA", "YUSUF", "MARIAM", "HASSAN", "ZAINAB",
+            "JOSE", "MARIA", "LUIS", "ANA", "CARLOS", "SOFIA", "JUAN", "LUCIA", "MIGUEL", "ISABEL",
+            "WEI", "LI", "HUI", "MIN", "JUN", "YAN", "KWAME", "AMARA", "CHIDI", "NGOZI"};
+    private static final String[] SURNAME_STEMS = {
+            "SMITH", "JOHNS", "WILLIAM", "BROWN", "JONES", "GARC", "MILL", "DAVI", "RODRIG", "MARTIN",
+            "HERNAND", "LOPEZ", "GONZAL", "WILS", "ANDERS", "THOMAS", "TAYL", "MOORE", "JACKS", "WHITE",
+            "HARRIS", "SANCH", "CLARK", "RAMIR", "LEWIS", "ROBINS", "WALK", "YOUNG", "ALLEN", "KING",
+            "WRIGHT", "SCOTT", "TORR", "NGUY", "HILL", "FLOR", "GREEN", "ADAMS", "NELS", "BAKER",
+            "HALL", "RIVER", "CAMPB", "MITCH", "CART", "ROBERTS", "KHAN", "HADDAD", "OKAF", "MENS"};
+    private static final String[] SURNAME_ENDINGS = {
+            "", "ON", "SON", "S", "EZ", "ER", "A", "MAN", "EY", "ELL", "INI", "OV", "SKI", "BERG", "TON", "ARD"};
+
+    @Autowired
+    private DuplicateDetector duplicateDetector;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void scanAndInlineLatency() {
+        Random random = new Random(42);
+        long insertStart = System.nanoTime();
+        Set<Long> planted = insertPatients(random);
+        long insertNanos = System.nanoTime() - insertStart;
+
+        DuplicateScanResult result = duplicateDetector.scan();
+        // Keys are in place now, so this one measures blocking and scoring alone
+        DuplicateScanResult rescan = duplicateDetector.scan();
+
+        Set<Long> found = new HashSet<>();
+        int[] unplanted = new int[1];
+        jdbcTemplate.query("SELECT patient_id, candidate_id FROM patient_match_candidates WHERE source = 'BATCH'",
+                (RowCallbackHandler) rs -> {
+                    long pair = pairKey(rs.getLong(1), rs.getLong(2));
+                    if (planted.contains(pair)) {
+                        found.add(pair);
+                    } else {
+                        unplanted[0]++;
+                    }
+                });
+
+        long[] registration = registerPatients(random);
+        Timer inline = meterRegistry.find("emr.mpi.inline").timer();
+
+        System.out.printf("%nDuplicate scan benchmark (%d patients, %d processors)%n", PATIENTS,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("  insert           : %8.1f s%n", insertNanos / 1e9);
+        System.out.printf("  scan             : %8.1f s (%d keys backfilled, %d blocks, %d oversized)%n",
+                result.getDurationMillis() / 1e3, result.getKeysBackfilled(), result.getBlocks(),
+                result.getOversizedBlocks());
+        System.out.printf("  rescan           : %8.1f s%n", rescan.getDurationMillis() / 1e3);
+        System.out.printf("  comparisons      : %,12d (%.2f per patient)%n", result.getComparisons(),
+                (double) result.getComparisons() / PATIENTS);
+        System.out.printf("  candidates       : %,12d (%d of %d planted pairs, %.1f%% recall; %d others)%n",
+                result.getCandidates(), found.size(), planted.size(), 100.0 * found.size() / planted.size(),
+                unplanted[0]);
+        System.out.printf("  registration     : p50 %6.1f ms  p95 %6.1f ms  (inline check mean %.1f ms, max %.1f ms)%n%n",
+                registration[registration.length / 2] / 1e6, registration[(int) (registration.length * 0.95)] / 1e6,
+                inline.mean(TimeUnit.MILLISECONDS), inline.max(TimeUnit.MILLISECONDS));
+
+        assertThat(result.getKeysBackfilled()).isGreaterThanOrEqualTo(PATIENTS);
+        assertThat((double) found.size() / planted.size()).isGreaterThan(0.9);
+
+        jdbcTemplate.update("DELETE FROM patients WHERE id >= ?", ID_BASE);
+    }
+
+    // Returns the planted duplicate pairs as pair keys
+    private Set<Long> insertPatients(Random random) {
+        Set<Long> planted = new HashSet<>();
+        List<Object[]> rows = new ArrayList<>(INSERT_CHUNK);
+        List<Object[]> recent = new ArrayList<>();
+        for (int n = 0; n < PATIENTS; n++) {
+            long id = ID_BASE + n;
+            Object[] row;
+            if (n > 1_000 && random.nextInt(100) == 0) {
+                Object[] original = recent.get(random.nextInt(recent.size()));
+                row = reRegistration(id, original, random);
+                planted.add(pairKey(id, (Long) original[0]));
+            } else {
+                row = newPatient(id, random);
+                if (recent.size() < 50_000) {
+                    recent.add(row);
+                } else {
+                    recent.set(random.nextInt(recent.size()), row);
+                }
+            }
+            rows.add(row);
+            if (rows.size() == INSERT_CHUNK) {
+                insert(rows);
+                rows.clear();
+            }
+        }
+        insert(rows);
+        return planted;
+    }
+
+    private void insert(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, phone, " +
+                "email, facility_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private static Object[] newPatient(long id, Random random) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        // Squaring skews the surname choice towards the first stems and endings
+        String last = SURNAME_STEMS[(int) (SURNAME_STEMS.length * Math.pow(random.nextDouble(), 2))]
+                + SURNAME_ENDINGS[(int) (SURNAME_ENDINGS.length * Math.pow(random.nextDouble(), 2))];
+        LocalDate dob = LocalDate.of(1930, 1, 1).plusDays(random.nextInt(33_000));
+        String phone = random.nextInt(4) == 0 ? null : String.valueOf(2_000_000_000L + id);
+        String email = random.nextInt(3) == 0 ? first.toLowerCase() + "." + id + "@example.com" : null;
+        return new Object[]{id, "MPIB" + id, first, last, id % 2 == 0 ? "MALE" : "FEMALE", dob, phone, email,
+                1L + random.nextInt(3)};
+    }
+
+    private static Object[] reRegistration(long id, Object[] original, Random random) {
+        String first = (String) original[2];
+        String last = (String) original[3];
+        LocalDate dob = (LocalDate) original[5];
+        switch (random.nextInt(4)) {
+            case 0 -> first = transpose(first, random);
+            case 1 -> last = dropLetter(last, random);
+            case 2 -> {
+                String swap = first;
+                first = last;
+                last = swap;
+            }
+            default -> {
+                if (dob.getDayOfMonth() <= 12) {
+                    dob = LocalDate.of(dob.getYear(), dob.getDayOfMonth(), dob.getMonthValue());
+                } else {
+                    first = transpose(first, random);
+                }
+            }
+        }
+        String phone = random.nextBoolean() ? (String) original[6] : null;
+        return new Object[]{id, "MPIB" + id, first, last, original[4], dob, phone, null, 1L + random.nextInt(3)};
+    }
+
+    private long[] registerPatients(Random random) {
+        long[] nanos = new long[REGISTRATIONS];
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            Object[] source = newPatient(0, random);
+            PatientDTO dto = new PatientDTO();
+            dto.setFirstName((String) source[2]);
+            dto.setLastName((String) source[3]);
+            dto.setGender((String) source[4]);
+            dto.setDateOfBirth((LocalDate) source[5]);
+            dto.setFacilityId((Long) source[8]);
+            long start = System.nanoTime();
+            patientManagementService.createPatient(dto);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static String transpose(String value, Random random) {
+        if (value.length() < 3) {
+            return value + value.charAt(0);
+        }
+        int i = 1 + random.nextInt(value.length() - 2);
+        char[] chars = value.toCharArray();
+        char c = chars[i];
+        chars[i] = chars[i + 1];
+        chars[i + 1] = c;
+        return new String(chars);
+    }
+
+    private static String dropLetter(String value, Random random) {
+        int i = 1 + random.nextInt(value.length() - 1);
+        return value.substring(0, i) + value.substring(i + 1);
+    }
+
+    private static long pairKey(long a, long b) {
+        return (Math.min(a, b) - ID_BASE) * PATIENTS + (Math.max(a, b) - ID_BASE);
+    }
+}
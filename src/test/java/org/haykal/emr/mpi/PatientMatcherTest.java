@@ -0,0 +1,66 @@
+package org.haykal.emr.mpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PatientMatcherTest {
+
+    private static final LocalDate DOB = LocalDate.of(1984, 3, 7);
+
+    @Test
+    void jaroWinklerMatchesReferenceValues() {
+        assertThat(JaroWinkler.similarity("MARTHA", "MARHTA")).isCloseTo(0.961, within(0.001));
+        assertThat(JaroWinkler.similarity("DWAYNE", "DUANE")).isCloseTo(0.840, within(0.001));
+        assertThat(JaroWinkler.similarity("DIXON", "DICKSONX")).isCloseTo(0.813, within(0.001));
+        assertThat(JaroWinkler.similarity("ABC", "XYZ")).isZero();
+        assertThat(JaroWinkler.similarity("", "")).isZero();
+    }
+
+    @Test
+    void blockingKeysTolerateTyposSwapsAndFormatting() {
+        PatientMatchKeys original = PatientMatchKeys.of("Katherine", "Smith", DOB, "+1 (718) 555-0101");
+        PatientMatchKeys typo = PatientMatchKeys.of("Catherine", "Smyth", DOB, null);
+        PatientMatchKeys married = PatientMatchKeys.of("Katherine", "Delacroix-Smith", DOB, null);
+        PatientMatchKeys swapped = PatientMatchKeys.of("Smith", "Katherine", LocalDate.of(1984, 7, 3), "7185550101");
+
+        assertThat(typo.nameDobKey()).isEqualTo(original.nameDobKey());
+        assertThat(married.firstDobKey()).isEqualTo(original.firstDobKey());
+        assertThat(swapped.namesYearKey()).isEqualTo(original.namesYearKey());
+        assertThat(swapped.phoneKey()).isEqualTo(original.phoneKey()).isEqualTo("7185550101");
+        assertThat(typo.phoneKey()).isNull();
+        assertThat(PatientMatchKeys.of("José", "Núñez-O'Brien", DOB, "555").nameDobKey())
+                .isEqualTo(PatientMatchKeys.of("Jose", "Nunez OBrien", DOB, null).nameDobKey());
+
+        PatientMatchKeys cyrillic = PatientMatchKeys.of("Ярослава", "Коваленко", DOB, "7185550101");
+        assertThat(cyrillic.nameDobKey()).isNull();
+        assertThat(cyrillic.firstDobKey()).isNull();
+        assertThat(cyrillic.namesYearKey()).isNull();
+        assertThat(cyrillic.phoneKey()).isEqualTo("7185550101");
+    }
+
+    @Test
+    void duplicatesScoreAboveTheThresholdAndRelativesBelow() {
+        MatchRecord original = record(1, "Jonathan", "Smith", DOB, "MALE", "7185550101", "jon@example.com");
+        MatchRecord typo = record(2, "Jonathon", "Smith", DOB, "MALE", "+17185550101", null);
+        MatchRecord swapped = record(3, "Smith", "Jonathan", LocalDate.of(1984, 7, 3), "MALE", null, null);
+        MatchRecord twin = record(4, "Joanna", "Smith", DOB, "FEMALE", "7185550101", "joanna@example.com");
+        MatchRecord brother = record(6, "Michael", "Smith", DOB, "MALE", "7185550101", null);
+        MatchRecord namesake = record(5, "Jonathan", "Smith", LocalDate.of(1991, 11, 23), "MALE", "2125550199", null);
+
+        assertThat(PatientMatcher.score(original, typo)).isGreaterThanOrEqualTo(PatientMatcher.CANDIDATE_THRESHOLD);
+        assertThat(PatientMatcher.score(original, swapped)).isGreaterThanOrEqualTo(PatientMatcher.CANDIDATE_THRESHOLD);
+        assertThat(PatientMatcher.score(original, twin)).isLessThan(PatientMatcher.CANDIDATE_THRESHOLD);
+        assertThat(PatientMatcher.score(original, brother)).isLessThan(PatientMatcher.CANDIDATE_THRESHOLD);
+        assertThat(PatientMatcher.score(original, namesake)).isLessThan(PatientMatcher.CANDIDATE_THRESHOLD);
+        assertThat(PatientMatcher.score(typo, original)).isEqualTo(PatientMatcher.score(original, typo));
+    }
+
+    private static MatchRecord record(long id, String first, String last, LocalDate dob, String gender, String phone,
+                                      String email) {
+        return new MatchRecord(id, "MRN" + id, first, last, dob, gender, phone, email, 1L);
+    }
+}
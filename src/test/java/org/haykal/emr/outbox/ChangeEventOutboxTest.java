@@ -0,0 +1,189 @@
+package org.haykal.emr.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.haykal.emr.dto.BulkStatusTransitionRequest;
+import org.haykal.emr.dto.ChangeEventDTO;
+import org.haykal.emr.dto.ChangeFeedDTO;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.haykal.emr.service.ChangeFeedService;
+import org.haykal.emr.service.PatientManagementService;
+import org.haykal.emr.service.PatientServiceManagementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The relay works on committed events, so fixtures are committed and removed afterwards
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChangeEventOutboxTest {
+
+    private static final long WEST_FACILITY_ID = 3L;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private ChangeEventRelay changeEventRelay;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @SpyBean
+    private ChangeEventSink changeEventSink;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private String cursor;
+
+    @BeforeEach
+    void setUp() {
+        // Start from a drained outbox and remember where the feed stands
+        changeEventRelay.publishPending();
+        ((InMemoryChangeEventSink) changeEventSink).clear();
+        cursor = String.valueOf(jdbcTemplate.queryForObject(
+                "SELECT last_delivery_seq FROM change_relay_state", Long.class));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Outbox'");
+    }
+
+    @Test
+    void committedChangesAreRelayedInOrderAndServedByTheFeed() throws Exception {
+        PatientDTO created = patientManagementService.createPatient(patient("Olive", 1L, 6L));
+        created.setFirstName("Olivia");
+        patientManagementService.updatePatient(created.getId(), created);
+
+        assertThat(changeEventRelay.publishPending()).isEqualTo(2);
+
+        List<ChangeEventDTO> published = ((InMemoryChangeEventSink) changeEventSink).getPublished();
+        assertThat(published).extracting(ChangeEventDTO::getEventType).containsExactly("CREATED", "UPDATED");
+        assertThat(published).extracting(ChangeEventDTO::getPatientId).containsOnly(created.getId());
+        assertThat(published.get(1).getSequence()).isEqualTo(published.get(0).getSequence() + 1);
+        JsonNode registration = objectMapper.readTree(published.get(0).getPayload());
+        assertThat(registration.at("/patient/mrn").asText()).isEqualTo(created.getMrn());
+        assertThat(registration.at("/services")).hasSize(2);
+
+        ChangeFeedDTO feed = changeFeedService.getChanges(cursor, 1);
+        assertThat(feed.getEvents()).extracting(ChangeEventDTO::getId).containsExactly(published.get(0).getId());
+        assertThat(feed.isHasMore()).isTrue();
+        ChangeFeedDTO rest = changeFeedService.getChanges(feed.getNextCursor(), 100);
+        assertThat(rest.getEvents()).extracting(ChangeEventDTO::getEventType).containsExactly("UPDATED");
+        assertThat(changeFeedService.getChanges(rest.getNextCursor(), 100).getNextCursor()).isEqualTo(rest.getNextCursor());
+
+        mockMvc.perform(get("/changes")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_INTEGRATION")))
+                        .param("since", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.events[0].payload.patient.firstName").value("Olive"))
+                .andExpect(jsonPath("$.data.events[1].payload.firstName").value("Olivia"));
+        mockMvc.perform(get("/changes")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF"))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void rolledBackChangesLeaveNoEvent() {
+        PatientDTO dto = patient("Rollback", 1L);
+        dto.setFacilityId(999L);
+
+        assertThatThrownBy(() -> patientManagementService.createPatient(dto)).isNotNull();
+        assertThat(changeEventRelay.publishPending()).isZero();
+    }
+
+    @Test
+    void failedPublishIsRetriedWithTheSameEvents() {
+        PatientDTO created = patientManagementService.createPatient(patient("Retry", 1L));
+        doThrow(new IllegalStateException("sink down")).doCallRealMethod().when(changeEventSink).publish(anyList());
+
+        changeEventRelay.relay();
+        assertThat(((InMemoryChangeEventSink) changeEventSink).getPublished()).isEmpty();
+        assertThat(changeFeedService.getChanges(cursor, 100).getEvents()).isEmpty();
+
+        assertThat(changeEventRelay.publishPending()).isEqualTo(1);
+        assertThat(((InMemoryChangeEventSink) changeEventSink).getPublished())
+                .extracting(ChangeEventDTO::getAggregateId).containsExactly(created.getId());
+    }
+
+    @Test
+    void bulkTransitionWritesOneEventPerChangedService() throws Exception {
+        PatientDTO created = patientManagementService.createPatient(patient("Bulk", 1L, 2L, 6L));
+        changeEventRelay.publishPending();
+        ((InMemoryChangeEventSink) changeEventSink).clear();
+
+        BulkStatusTransitionRequest request = new BulkStatusTransitionRequest();
+        request.setStatus("COMPLETED");
+        request.setFacilityId(WEST_FACILITY_ID);
+        request.setDate(LocalDate.of(2033, 2, 1));
+        request.setCategory("LAB");
+        assertThat(patientServiceManagementService.transitionInBulk(request).getUpdated()).isEqualTo(2);
+        changeEventRelay.publishPending();
+
+        List<ChangeEventDTO> published = ((InMemoryChangeEventSink) changeEventSink).getPublished();
+        assertThat(published).hasSize(2).allSatisfy(event -> {
+            assertThat(event.getEventType()).isEqualTo("STATUS_CHANGED");
+            assertThat(event.getPatientId()).isEqualTo(created.getId());
+        });
+        JsonNode payload = objectMapper.readTree(published.get(0).getPayload());
+        assertThat(payload.get("status").asText()).isEqualTo("COMPLETED");
+        assertThat(payload.get("version").asLong()).isEqualTo(1);
+        assertThat(LocalDateTime.parse(payload.get("scheduledDate").asText())).isIn(
+                LocalDateTime.of(2033, 2, 1, 9, 0), LocalDateTime.of(2033, 2, 1, 10, 0));
+        assertThat(LocalDateTime.parse(payload.get("completedDate").asText())).isBeforeOrEqualTo(LocalDateTime.now());
+    }
+
+    private static PatientDTO patient(String firstName, Long... serviceTypeIds) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName(firstName);
+        dto.setLastName("Outbox");
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1982, 6, 1));
+        dto.setFacilityId(WEST_FACILITY_ID);
+        Set<ServiceRequestDTO> requests = new HashSet<>();
+        for (int i = 0; i < serviceTypeIds.length; i++) {
+            ServiceRequestDTO request = new ServiceRequestDTO();
+            request.setServiceTypeId(serviceTypeIds[i]);
+            request.setScheduledDate(LocalDateTime.of(2033, 2, 1, 9 + i, 0));
+            requests.add(request);
+        }
+        dto.setRequestedServices(requests);
+        return dto;
+    }
+}
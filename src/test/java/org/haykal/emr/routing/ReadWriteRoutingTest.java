@@ -0,0 +1,128 @@
+package org.haykal.emr.routing;
+
+import org.flywaydb.core.Flyway;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.haykal.emr.service.FacilityService;
+import org.haykal.emr.service.PatientManagementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The replica is a second in-memory H2 database that is never written to, so a read shows where it was routed
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "app.datasource.routing.enabled=true",
+        "app.datasource.routing.replica-urls=" + ReadWriteRoutingTest.REPLICA_URL + "," + ReadWriteRoutingTest.DEAD_REPLICA_URL,
+        "app.datasource.routing.read-your-writes=1m",
+        // The lag query is PostgreSQL's
+        "app.datasource.routing.replica-lag-query="
+})
+class ReadWriteRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:emrreplica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;" +
+            "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+    static final String DEAD_REPLICA_URL = "jdbc:h2:tcp://localhost:1/unreachable";
+    private static final long NORTH_FACILITY_ID = 2L;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private FacilityService facilityService;
+
+    @Autowired
+    private ReplicaPool replicaPool;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void createReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").locations("classpath:db/migration/h2").load().migrate();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Routing'");
+        jdbcTemplate.update("DELETE FROM facilities WHERE code = 'ROUTED'");
+    }
+
+    @Test
+    void readOnlyTransactionsGoToAHealthyReplica() {
+        replicaPool.checkHealth();
+        assertThat(replicaPool.healthyCount()).isEqualTo(1);
+
+        // Outside a transaction the JdbcTemplate writes to the primary
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, facility_id) " +
+                "VALUES (60000001, 'ROUTE1', 'Rita', 'Routing', 'FEMALE', DATE '1980-01-01', ?)", NORTH_FACILITY_ID);
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> patientManagementService.getPatient(60000001L))
+                    .isInstanceOf(ResourceNotFoundException.class);
+        }
+        // Seed data is on both, so reads of it still work
+        assertThat(patientManagementService.getPatient(1L).getMrn()).isEqualTo("MAIN001000");
+    }
+
+    @Test
+    void callersReadTheirOwnWritesFromThePrimary() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null, "ROLE_STAFF"));
+        PatientDTO created = patientManagementService.createPatient(patient());
+
+        assertThat(patientManagementService.getPatient(created.getId()).getFirstName()).isEqualTo("Rhea");
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("bob", null, "ROLE_STAFF"));
+        assertThatThrownBy(() -> patientManagementService.getPatient(created.getId()))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void facilityCacheMissesLoadFromThePrimary() {
+        replicaPool.checkHealth();
+        jdbcTemplate.update("INSERT INTO facilities (id, code, name, active) VALUES (60000010, 'ROUTED', 'Routed Clinic', TRUE)");
+
+        // Unpinned caller; a replica read would not find the row and the cache would keep the miss
+        assertThat(facilityService.getFacility(60000010L).getCode()).isEqualTo("ROUTED");
+    }
+
+    @Test
+    void pinsExpireAfterTheWindow() {
+        AtomicLong now = new AtomicLong();
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(Duration.ofSeconds(5), now::get);
+        tracker.pin("alice");
+
+        now.set(Duration.ofSeconds(4).toNanos());
+        assertThat(tracker.isPinned("alice")).isTrue();
+        assertThat(tracker.isPinned("bob")).isFalse();
+
+        now.set(Duration.ofSeconds(6).toNanos());
+        assertThat(tracker.isPinned("alice")).isFalse();
+    }
+
+    private static PatientDTO patient() {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Rhea");
+        dto.setLastName("Routing");
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1981, 6, 1));
+        dto.setFacilityId(NORTH_FACILITY_ID);
+        return dto;
+    }
+}
@@ -0,0 +1,211 @@
+package org.haykal.emr.security;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.haykal.emr.config.JwtDecoderConfig;
+import org.haykal.emr.config.SecurityConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Verification runs against a stub JWKS endpoint standing in for Keycloak's certs URL
+class CachingJwtDecoderTest {
+
+    private static final String ISSUER = "http://localhost/realms/emr";
+
+    private HttpServer jwks;
+    private final AtomicReference<JWKSet> publishedKeys = new AtomicReference<>();
+    private final AtomicInteger jwksFetches = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private static RSAKey firstKey;
+    private static RSAKey secondKey;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        firstKey = new RSAKeyGenerator(2048).keyID("first").generate();
+        secondKey = new RSAKeyGenerator(2048).keyID("second").generate();
+    }
+
+    @BeforeEach
+    void startJwks() throws Exception {
+        publishedKeys.set(new JWKSet(firstKey.toPublicJWK()));
+
+        jwks = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        jwks.createContext("/certs", exchange -> {
+            jwksFetches.incrementAndGet();
+            byte[] body = publishedKeys.get().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        jwks.start();
+    }
+
+    @AfterEach
+    void stopJwks() {
+        jwks.stop(0);
+    }
+
+    @Test
+    void repeatedTokensAreVerifiedOnceAndMappedOnce() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, meterRegistry);
+        JwtDecoder decoder = decoder(cache, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5));
+        String token = sign(firstKey, Instant.now().plusSeconds(300));
+
+        Jwt first = decoder.decode(token);
+        Jwt second = decoder.decode(token);
+
+        assertThat(second).isSameAs(first);
+        assertThat(meterRegistry.counter("emr.security.jwt.cache", "result", "hit").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("emr.security.jwt.cache", "result", "miss").count()).isEqualTo(1);
+        assertThat(meterRegistry.timer("emr.security.jwt.verification", "outcome", "verified").count()).isEqualTo(1);
+
+        Converter<Jwt, Collection<GrantedAuthority>> keycloakRoles = new SecurityConfig().jwtGrantedAuthoritiesConverter();
+        Collection<GrantedAuthority> authorities = cache.authorities(first, keycloakRoles);
+        assertThat(cache.authorities(second, keycloakRoles)).isSameAs(authorities);
+        assertThat(authorities).extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_STAFF", "ROLE_EMR-API_EXPORT");
+    }
+
+    @Test
+    void badTokensAreRejectedAndNeverCached() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, meterRegistry);
+        JwtDecoder decoder = decoder(cache, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5));
+        String token = sign(firstKey, Instant.now().plusSeconds(300));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + sign(firstKey, Instant.now().plusSeconds(600)).split("\\.")[1] + "." + parts[2];
+        String expired = sign(firstKey, Instant.now().minusSeconds(120));
+
+        assertThatThrownBy(() -> decoder.decode(forged)).isInstanceOf(BadJwtException.class);
+        assertThatThrownBy(() -> decoder.decode(expired)).isInstanceOf(JwtValidationException.class);
+        assertThatThrownBy(() -> decoder.decode(forged)).isInstanceOf(BadJwtException.class);
+
+        assertThat(cache.size()).isZero();
+        assertThat(meterRegistry.timer("emr.security.jwt.verification", "outcome", "rejected").count()).isEqualTo(3);
+    }
+
+    @Test
+    void entriesLapseWhenTheTokenExpires() throws Exception {
+        Instant now = Instant.now();
+        MutableClock clock = new MutableClock(now);
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, meterRegistry, clock);
+        JwtDecoder decoder = decoder(cache, Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(5));
+        String token = sign(firstKey, now.plusSeconds(60));
+        String key = VerifiedTokenCache.keyOf(token);
+
+        decoder.decode(token);
+        clock.instant = now.plusSeconds(59);
+        assertThat(cache.get(key)).isNotNull();
+        clock.instant = now.plusSeconds(60);
+        assertThat(cache.get(key)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void rotatedKeysArePickedUpAheadOfExpiry() throws Exception {
+        JwtDecoder decoder = decoder(new VerifiedTokenCache(100, meterRegistry),
+                Duration.ofSeconds(3), Duration.ofMillis(1500), Duration.ofMillis(500));
+        decoder.decode(sign(firstKey, Instant.now().plusSeconds(300)));
+        int fetchesBeforeRotation = jwksFetches.get();
+
+        // Rotation publishes the new key next to the old one; the background refresh fetches it
+        // without any request waiting on the endpoint
+        publishedKeys.set(new JWKSet(List.of(secondKey.toPublicJWK(), firstKey.toPublicJWK())));
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (jwksFetches.get() == fetchesBeforeRotation && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(jwksFetches.get()).isGreaterThan(fetchesBeforeRotation);
+
+        int fetchesAfterRefresh = jwksFetches.get();
+        assertThat(decoder.decode(sign(secondKey, Instant.now().plusSeconds(300))).getSubject()).isEqualTo("user-1");
+        assertThat(jwksFetches.get()).isEqualTo(fetchesAfterRefresh);
+    }
+
+    private JwtDecoder decoder(VerifiedTokenCache cache, Duration ttl, Duration refreshAhead, Duration refreshTimeout)
+            throws Exception {
+        OAuth2ResourceServerProperties properties = new OAuth2ResourceServerProperties();
+        properties.getJwt().setJwkSetUri("http://localhost:" + jwks.getAddress().getPort() + "/certs");
+        properties.getJwt().setIssuerUri(ISSUER);
+
+        JwtDecoderConfig config = new JwtDecoderConfig();
+        JWKSource<SecurityContext> jwkSource = config.jwkSource(properties, ttl, refreshAhead, refreshTimeout);
+        return config.jwtDecoder(jwkSource, properties, cache, meterRegistry);
+    }
+
+    private static String sign(RSAKey key, Instant expiresAt) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("user-1")
+                .issueTime(Date.from(expiresAt.minusSeconds(600)))
+                .expirationTime(Date.from(expiresAt))
+                .claim("realm_access", Map.of("roles", List.of("staff")))
+                .claim("resource_access", Map.of("emr-api", Map.of("roles", List.of("export"))))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID())
+                .type(JOSEObjectType.JWT).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
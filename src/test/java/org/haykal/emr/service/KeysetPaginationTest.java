@@ -0,0 +1,129 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.CursorPage;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.PatientServiceDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional
+class KeysetPaginationTest {
+
+    private static final long NORTH_FACILITY_ID = 2L;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void scrollingVisitsEveryPatientOnceInNameOrder() {
+        // Ties on last name and on full name exercise every level of the (last, first, id) key
+        createPatient("Ann", "Keyset");
+        createPatient("Bob", "Keyset");
+        createPatient("Bob", "Keyset");
+        createPatient("Cy", "Keyset");
+        createPatient("Dee", "Keysetter");
+        createPatient("Ann", "Abbott");
+
+        List<Long> scrolled = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPage<PatientDTO> page = patientManagementService.scrollPatients(NORTH_FACILITY_ID, null, cursor, 2, false);
+            page.getContent().forEach(patient -> scrolled.add(patient.getId()));
+            assertThat(page.getTotalElements()).isNull();
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        List<Long> offsetOrder = patientManagementService.searchPatients(NORTH_FACILITY_ID, null, false,
+                        PageRequest.of(0, 100, Sort.by("lastName", "firstName", "id")))
+                .getContent().stream().map(PatientDTO::getId).toList();
+        assertThat(scrolled).hasSize(7).containsExactlyElementsOf(offsetOrder);
+        assertThat(pages).isEqualTo(4);
+    }
+
+    @Test
+    void searchTermAndCountApplyToScrolling() {
+        createPatient("Ann", "Keyset");
+        createPatient("Bob", "Keyset");
+        createPatient("Cy", "Other");
+
+        CursorPage<PatientDTO> first = patientManagementService.scrollPatients(NORTH_FACILITY_ID, "keyset", null, 1, true);
+        CursorPage<PatientDTO> second = patientManagementService.scrollPatients(NORTH_FACILITY_ID, "keyset",
+                first.getNextCursor(), 1, false);
+
+        assertThat(first.getTotalElements()).isEqualTo(2);
+        assertThat(first.getContent()).extracting(PatientDTO::getFirstName).containsExactly("Ann");
+        assertThat(second.getContent()).extracting(PatientDTO::getFirstName).containsExactly("Bob");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void malformedOrForeignCursorsAreRejected() {
+        String serviceCursor = patientServiceManagementService.scrollFacilityServices(1L, null, 1, false).getNextCursor();
+
+        assertThatThrownBy(() -> patientManagementService.scrollPatients(NORTH_FACILITY_ID, null, "not-a-cursor", 10, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> patientManagementService.scrollPatients(NORTH_FACILITY_ID, null, serviceCursor, 10, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> patientManagementService.scrollPatients(NORTH_FACILITY_ID, null, null, 0, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void patientServicesScrollById() throws Exception {
+        CursorPage<PatientServiceDTO> first = patientServiceManagementService.scrollFacilityServices(1L, null, 2, true);
+
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(first.getContent()).extracting(PatientServiceDTO::getId).containsExactly(1L, 2L);
+        assertThat(first.getContent().get(0).getPatientMrn()).isEqualTo("MAIN001000");
+
+        mockMvc.perform(get("/patient-services")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF")))
+                        .param("facilityId", "1")
+                        .param("size", "2")
+                        .param("cursor", first.getNextCursor()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content[0].id").value(3))
+                .andExpect(jsonPath("$.data.hasNext").value(false));
+    }
+
+    private void createPatient(String firstName, String lastName) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName(firstName);
+        dto.setLastName(lastName);
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1975, 3, 1));
+        dto.setFacilityId(NORTH_FACILITY_ID);
+        patientManagementService.createPatient(dto);
+    }
+}
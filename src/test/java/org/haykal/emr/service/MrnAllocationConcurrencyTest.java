@@ -0,0 +1,83 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.repository.PatientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class MrnAllocationConcurrencyTest {
+
+    private static final long NORTH_FACILITY_ID = 2L;
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final int REGISTRATIONS = 2000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    private final Set<Long> createdIds = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void cleanUp() {
+        patientRepository.deleteAllByIdInBatch(createdIds);
+    }
+
+    @Test
+    void parallelRegistrationsNeverDrawTheSameMrn() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Callable<String>> registrations = new ArrayList<>();
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            long facilityId = i % 2 == 0 ? NORTH_FACILITY_ID : WEST_FACILITY_ID;
+            int index = i;
+            registrations.add(() -> {
+                PatientDTO created = patientManagementService.createPatient(newPatient(facilityId, index));
+                createdIds.add(created.getId());
+                return created.getMrn();
+            });
+        }
+
+        Set<String> mrns = ConcurrentHashMap.newKeySet();
+        try {
+            for (Future<String> result : executor.invokeAll(registrations)) {
+                mrns.add(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(createdIds).hasSize(REGISTRATIONS);
+        assertThat(mrns).hasSize(REGISTRATIONS);
+        assertThat(mrns).filteredOn(mrn -> mrn.startsWith("NORTH")).hasSize(REGISTRATIONS / 2);
+        assertThat(mrns).filteredOn(mrn -> mrn.startsWith("WEST")).hasSize(REGISTRATIONS / 2);
+    }
+
+    private static PatientDTO newPatient(long facilityId, int index) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Load" + index);
+        dto.setLastName("Tester");
+        dto.setGender(index % 2 == 0 ? "FEMALE" : "MALE");
+        dto.setDateOfBirth(LocalDate.of(1970, 1, 1).plusDays(index));
+        dto.setFacilityId(facilityId);
+        return dto;
+    }
+}
@@ -0,0 +1,97 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.BulkRegistrationResult;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of bulk registration against the per-row createPatient path.
+ * <p>
+ * Not part of the regular test run (surefire only picks up *Test classes). Run with
+ * {@code mvn test -Dtest=PatientBulkRegistrationBenchmark [-Dbenchmark.rows=20000]}. The default
+ * profile is in-memory H2, where a round trip is nearly free; against PostgreSQL over a network
+ * the gap is considerably wider.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientBulkRegistrationBenchmark {
+
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 5000);
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private PatientBulkRegistrationService patientBulkRegistrationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        // patient_services rows go with the ON DELETE CASCADE foreign key
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name LIKE 'Bench%'");
+    }
+
+    @Test
+    void bulkVersusPerRowRegistration() {
+        // Warm up JIT, connection pool and MRN blocks on both paths
+        runPerRow(rows("BenchWarmPerRow", 500));
+        patientBulkRegistrationService.register(rows("BenchWarmBulk", 500));
+
+        long perRowNanos = runPerRow(rows("BenchPerRow", ROWS));
+
+        long start = System.nanoTime();
+        BulkRegistrationResult result = patientBulkRegistrationService.register(rows("BenchBulk", ROWS));
+        long bulkNanos = System.nanoTime() - start;
+
+        assertThat(result.getCreated()).isEqualTo(ROWS);
+        System.out.printf("%nBulk registration benchmark (%d patients, 2 services each)%n", ROWS);
+        System.out.printf("  per-row createPatient : %8.0f patients/s%n", ROWS / (perRowNanos / 1e9));
+        System.out.printf("  bulk register         : %8.0f patients/s%n", ROWS / (bulkNanos / 1e9));
+        System.out.printf("  speed-up              : %8.1fx%n%n", (double) perRowNanos / bulkNanos);
+    }
+
+    private long runPerRow(List<PatientDTO> rows) {
+        long start = System.nanoTime();
+        for (PatientDTO row : rows) {
+            patientManagementService.createPatient(row);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<PatientDTO> rows(String lastName, int count) {
+        List<PatientDTO> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PatientDTO dto = new PatientDTO();
+            dto.setFirstName("Patient" + i);
+            dto.setLastName(lastName);
+            dto.setGender(i % 2 == 0 ? "FEMALE" : "MALE");
+            dto.setDateOfBirth(LocalDate.of(1950, 1, 1).plusDays(i % 20000));
+            dto.setFacilityId(WEST_FACILITY_ID);
+            dto.setRequestedServices(Set.of(serviceRequest(1L), serviceRequest(6L)));
+            rows.add(dto);
+        }
+        return rows;
+    }
+
+    private static ServiceRequestDTO serviceRequest(Long serviceTypeId) {
+        ServiceRequestDTO request = new ServiceRequestDTO();
+        request.setServiceTypeId(serviceTypeId);
+        return request;
+    }
+}
@@ -0,0 +1,189 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.BulkRegistrationResult;
+import org.haykal.emr.dto.BulkRowError;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.haykal.emr.entity.Patient;
+import org.haykal.emr.repository.PatientRepository;
+import org.haykal.emr.repository.PatientServiceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PatientBulkRegistrationTest {
+
+    private static final long WEST_FACILITY_ID = 3L;
+
+    @Autowired
+    private PatientBulkRegistrationService patientBulkRegistrationService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientServiceRepository patientServiceRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @AfterEach
+    void cleanUp() {
+        List<Patient> created = patientRepository.findAll().stream()
+                .filter(patient -> patient.getLastName().startsWith("Bulk"))
+                .toList();
+        patientRepository.deleteAllInBatch(created);
+    }
+
+    @Test
+    void invalidRowsAreReportedWithoutAbortingTheBatch() {
+        List<PatientDTO> rows = new ArrayList<>();
+        rows.add(patient("Valid"));
+        rows.add(withGender(patient("BadGender"), "X"));
+        rows.add(withMrn(patient("ExistingMrn"), "MAIN001000"));
+        rows.add(withFacility(patient("UnknownFacility"), 999L));
+        rows.add(withServices(patient("WithServices"), 1L, 6L));
+        rows.add(withServices(patient("UnknownService"), 999L));
+        rows.add(withMrn(patient("FirstOfPair"), "BULK-DUP-1"));
+        rows.add(withMrn(patient("SecondOfPair"), "BULK-DUP-1"));
+        PatientDTO missingName = patient("MissingName");
+        missingName.setFirstName(null);
+        rows.add(missingName);
+
+        BulkRegistrationResult result = patientBulkRegistrationService.register(rows);
+
+        assertThat(result.getReceived()).isEqualTo(9);
+        assertThat(result.getCreated()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(6);
+        assertThat(result.getErrors()).extracting(BulkRowError::getRow).containsExactly(1, 2, 3, 5, 7, 8);
+        assertThat(result.getErrors().get(5).getMessage()).isEqualTo("firstName: First name is required");
+
+        Patient withServices = patientRepository.findAll().stream()
+                .filter(patient -> patient.getFirstName().equals("WithServices"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(withServices.getMrn()).startsWith("WEST");
+        assertThat(patientServiceRepository.findByPatientId(withServices.getId())).hasSize(2);
+    }
+
+    @Test
+    void databaseFailureInChunkIsIsolatedToTheOffendingRow() {
+        List<PatientDTO> rows = List.of(
+                patient("Before"),
+                withMrn(patient("TooLong"), "X".repeat(60)),
+                patient("After"));
+
+        BulkRegistrationResult result = patientBulkRegistrationService.register(rows);
+
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(BulkRowError::getRow).containsExactly(1);
+        // The database message quotes the rejected value; the row error does not
+        assertThat(result.getErrors().get(0).getMessage()).isEqualTo("Violates a database constraint");
+    }
+
+    @Test
+    void ndjsonStreamReportsMalformedLinesByLineIndex() throws Exception {
+        String body = """
+                {"firstName":"Line","lastName":"BulkNdjson","gender":"FEMALE","dateOfBirth":"1990-02-03","facilityId":3}
+                {not json
+
+                {"firstName":"Line","lastName":"BulkNdjson","gender":"MALE","dateOfBirth":"1991-04-05","facilityId":3}
+                """;
+
+        mockMvc.perform(post("/patients/bulk")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.received").value(3))
+                .andExpect(jsonPath("$.data.created").value(2))
+                .andExpect(jsonPath("$.data.errors[0].row").value(1));
+    }
+
+    @Test
+    void brokenStreamReturnsThePartialResult() throws Exception {
+        String line = "{\"firstName\":\"Cut\",\"lastName\":\"BulkCut\",\"gender\":\"MALE\"," +
+                "\"dateOfBirth\":\"1977-08-09\",\"facilityId\":3}\n";
+        // One full chunk arrives before the connection drops
+        byte[] firstChunk = line.repeat(500).getBytes(StandardCharsets.UTF_8);
+        InputStream body = new SequenceInputStream(new ByteArrayInputStream(firstChunk), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        });
+
+        BulkRegistrationResult result = patientBulkRegistrationService.registerNdjson(body);
+
+        assertThat(result.getCreated()).isEqualTo(500);
+        assertThat(result.getInterruptedAtRow()).isEqualTo(500);
+        assertThatThrownBy(() -> patientBulkRegistrationService.registerNdjson(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        })).isInstanceOf(IOException.class);
+    }
+
+    private static PatientDTO patient(String firstName) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName(firstName);
+        dto.setLastName("Bulk");
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1980, 6, 1));
+        dto.setFacilityId(WEST_FACILITY_ID);
+        return dto;
+    }
+
+    private static PatientDTO withGender(PatientDTO dto, String gender) {
+        dto.setGender(gender);
+        return dto;
+    }
+
+    private static PatientDTO withMrn(PatientDTO dto, String mrn) {
+        dto.setMrn(mrn);
+        return dto;
+    }
+
+    private static PatientDTO withFacility(PatientDTO dto, Long facilityId) {
+        dto.setFacilityId(facilityId);
+        return dto;
+    }
+
+    private static PatientDTO withServices(PatientDTO dto, Long... serviceTypeIds) {
+        Set<ServiceRequestDTO> requests = new HashSet<>();
+        for (Long serviceTypeId : serviceTypeIds) {
+            ServiceRequestDTO request = new ServiceRequestDTO();
+            request.setServiceTypeId(serviceTypeId);
+            requests.add(request);
+        }
+        dto.setRequestedServices(requests);
+        return dto;
+    }
+}
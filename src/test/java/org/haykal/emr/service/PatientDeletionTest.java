@@ -0,0 +1,216 @@
+package org.haykal.emr.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.PatientDeletionResult;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.haykal.emr.exception.ResourceNotFoundException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PatientDeletionTest {
+
+    private static final long NORTH_FACILITY_ID = 2L;
+
+    // Lock, archive services, archive patients, outbox events, delete
+    private static final int ARCHIVE_STATEMENTS = 5;
+    // Lock, outbox events, delete
+    private static final int DELETE_STATEMENTS = 3;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private PatientDeletionService patientDeletionService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patient_services_archive WHERE patient_id IN " +
+                "(SELECT id FROM patients_archive WHERE last_name = 'Deletion')");
+        jdbcTemplate.update("DELETE FROM patients_archive WHERE last_name = 'Deletion'");
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Deletion'");
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithServicesOrPatients() {
+        long none = statementsFor(List.of(createPatient(0)), PatientDeletionService.Mode.ARCHIVE);
+        long five = statementsFor(List.of(createPatient(5)), PatientDeletionService.Mode.ARCHIVE);
+        long seventeen = statementsFor(List.of(createPatient(17)), PatientDeletionService.Mode.ARCHIVE);
+        long tenPatients = statementsFor(createPatients(10, 5), PatientDeletionService.Mode.ARCHIVE);
+        long hardDelete = statementsFor(createPatients(10, 5), PatientDeletionService.Mode.DELETE);
+
+        assertThat(List.of(none, five, seventeen, tenPatients)).containsOnly((long) ARCHIVE_STATEMENTS);
+        assertThat(hardDelete).isEqualTo(DELETE_STATEMENTS);
+    }
+
+    @Test
+    void archiveModeMovesPatientServicesAndDropsCandidates() {
+        Long first = createPatient(3);
+        Long second = createPatient(0);
+        // Same surname and date of birth: registration records them as a duplicate candidate pair
+        assertThat(count("patient_match_candidates WHERE patient_id = ? AND candidate_id = ?", first, second)).isOne();
+        long eventsBefore = countEvents();
+
+        PatientDeletionResult result = patientDeletionService.delete(List.of(first, second, -1L),
+                PatientDeletionService.Mode.ARCHIVE);
+
+        assertThat(result.getMode()).isEqualTo("ARCHIVE");
+        assertThat(result.getDeleted()).isEqualTo(2);
+        assertThat(result.getArchivedServices()).isEqualTo(3);
+        assertThat(count("patients WHERE id IN (?, ?)", first, second)).isZero();
+        assertThat(count("patient_services WHERE patient_id = ?", first)).isZero();
+        assertThat(count("patient_match_candidates WHERE patient_id IN (?, ?)", first, second)).isZero();
+        assertThat(count("patients_archive WHERE id IN (?, ?)", first, second)).isEqualTo(2);
+        assertThat(count("patient_services_archive WHERE patient_id = ?", first)).isEqualTo(3);
+        assertThat(countEvents() - eventsBefore).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT payload FROM change_events WHERE aggregate_type = 'PATIENT' " +
+                "AND event_type = 'DELETED' AND aggregate_id = ?", String.class, first)).isEqualTo("{\"id\":" + first + "}");
+    }
+
+    @Test
+    void singleDeletionUsesConfiguredModeAndRejectsUnknownIds() {
+        Long id = createPatient(2);
+
+        patientManagementService.deletePatient(id);
+
+        assertThat(patientDeletionService.getDefaultMode()).isEqualTo(PatientDeletionService.Mode.ARCHIVE);
+        assertThat(count("patients_archive WHERE id = ?", id)).isEqualTo(1);
+        assertThatThrownBy(() -> patientManagementService.deletePatient(id))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void purgeRemovesExpiredArchiveRowsInBatches() {
+        List<Long> ids = createPatients(5, 1);
+        patientDeletionService.delete(ids, PatientDeletionService.Mode.ARCHIVE);
+        PatientArchivePurger purger = new PatientArchivePurger(jdbcTemplate, Duration.ofDays(1), 2, Duration.ZERO, 100);
+
+        PatientArchivePurger.PurgeResult kept = purger.purge();
+        PatientArchivePurger.PurgeResult purged = purger.purge(LocalDateTime.now().plusMinutes(1));
+
+        assertThat(kept.patients()).isZero();
+        assertThat(purged.patients()).isGreaterThanOrEqualTo(5);
+        assertThat(purged.services()).isGreaterThanOrEqualTo(5);
+        assertThat(purged.batches()).isGreaterThanOrEqualTo(6);
+        assertThat(purged.complete()).isTrue();
+        assertThat(count("patients_archive WHERE id IN (" + String.join(",",
+                ids.stream().map(String::valueOf).toList()) + ")")).isZero();
+    }
+
+    @Test
+    void purgeStopsAfterMaxBatches() {
+        patientDeletionService.delete(createPatients(5, 0), PatientDeletionService.Mode.ARCHIVE);
+        PatientArchivePurger purger = new PatientArchivePurger(jdbcTemplate, Duration.ZERO, 1, Duration.ZERO, 2);
+
+        PatientArchivePurger.PurgeResult result = purger.purge(LocalDateTime.now().plusMinutes(1));
+
+        assertThat(result.batches()).isEqualTo(2);
+        assertThat(result.complete()).isFalse();
+    }
+
+    @Test
+    void bulkEndpointIsAdminOnly() throws Exception {
+        List<Long> ids = createPatients(2, 1);
+        String body = "{\"ids\":" + ids + ",\"mode\":\"delete\"}";
+
+        mockMvc.perform(post("/patients/deletions")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF")))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/patients/deletions")
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.mode").value("DELETE"))
+                .andExpect(jsonPath("$.data.deleted").value(2))
+                .andExpect(jsonPath("$.data.archivedServices").value(0));
+
+        assertThat(count("patients_archive WHERE id = ?", ids.get(0))).isZero();
+    }
+
+    private long statementsFor(List<Long> ids, PatientDeletionService.Mode mode) {
+        statistics.clear();
+        patientDeletionService.delete(ids, mode);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long count(String from, Object... args) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Long.class, args);
+    }
+
+    private long countEvents() {
+        return count("change_events WHERE aggregate_type = 'PATIENT' AND event_type = 'DELETED'");
+    }
+
+    private List<Long> createPatients(int patients, int servicesEach) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < patients; i++) {
+            ids.add(createPatient(servicesEach));
+        }
+        return ids;
+    }
+
+    private Long createPatient(int services) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Removed" + services);
+        dto.setLastName("Deletion");
+        dto.setGender("FEMALE");
+        dto.setDateOfBirth(LocalDate.of(1958, 11, 2));
+        dto.setFacilityId(NORTH_FACILITY_ID);
+
+        Set<ServiceRequestDTO> requests = new HashSet<>();
+        for (int i = 0; i < services; i++) {
+            ServiceRequestDTO request = new ServiceRequestDTO();
+            request.setServiceTypeId(1L + i % 17);
+            request.setScheduledDate(LocalDateTime.of(2031, 5, 1, 9, 0).plusDays(i));
+            requests.add(request);
+        }
+        dto.setRequestedServices(requests);
+        return patientManagementService.createPatient(dto).getId();
+    }
+}
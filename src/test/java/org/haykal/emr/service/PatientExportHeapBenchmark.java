@@ -0,0 +1,110 @@
+package org.haykal.emr.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports a large generated facility and checks that the live heap does not grow while streaming.
+ * <p>
+ * Not part of the regular test run. Run under a small heap:
+ * {@code mvn test -Dtest=PatientExportHeapBenchmark -DargLine=-Xmx384m [-Dbenchmark.rows=200000]}.
+ * The in-memory H2 table shares that heap, so the row count has to stay modest; lazy query
+ * execution makes H2 hand rows out as they are read, like a PostgreSQL cursor with a fetch size.
+ * The live heap is measured with a full GC every few megabytes of output, so the reported
+ * throughput is lower than the real one.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:exportheap;MODE=PostgreSQL;" +
+        "DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1")
+class PatientExportHeapBenchmark {
+
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int INSERT_CHUNK = 10_000;
+
+    @Autowired
+    private PatientExportService patientExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportHeapStaysFlat() throws Exception {
+        for (int from = 1; from <= ROWS; from += INSERT_CHUNK) {
+            int to = Math.min(from + INSERT_CHUNK - 1, ROWS);
+            jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, " +
+                    "address, city, state, insurance_provider, facility_id) " +
+                    "SELECT 10000000 + n, 'HEAP' || n, 'First' || n, 'Last' || MOD(n, 1000), " +
+                    "CASE WHEN MOD(n, 2) = 0 THEN 'MALE' ELSE 'FEMALE' END, " +
+                    "DATEADD('DAY', -MOD(n, 20000), DATE '2000-01-01'), 'Unit ' || n || ', Health St', " +
+                    "'Queens', 'NY', 'Acme Health', ? FROM SYSTEM_RANGE(?, ?) AS r(n)", WEST_FACILITY_ID, from, to);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+
+        CheckpointOutputStream out = new CheckpointOutputStream(memory);
+        long start = System.nanoTime();
+        long rows = patientExportService.write(WEST_FACILITY_ID, PatientExportService.Format.NDJSON, out);
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("%nPatient export heap benchmark (%d rows, max heap %d MB)%n", rows,
+                memory.getHeapMemoryUsage().getMax() >> 20);
+        System.out.printf("  exported         : %8d MB in %.1f s (%.0f rows/s)%n", out.count >> 20, nanos / 1e9,
+                rows / (nanos / 1e9));
+        System.out.printf("  live heap before : %8d MB%n", baseline >> 20);
+        System.out.printf("  peak live heap   : %8d MB over %d checkpoints%n%n", out.peakLive >> 20, out.checkpoints);
+
+        assertThat(rows).isEqualTo(ROWS);
+        // A materialized roster would hold several hundred bytes per row
+        assertThat(out.peakLive - baseline).isLessThan(32L << 20);
+    }
+
+    // Counts the exported bytes and, every CHECKPOINT_BYTES, measures the live heap mid-stream
+    private static final class CheckpointOutputStream extends OutputStream {
+        private static final long CHECKPOINT_BYTES = 8L << 20;
+
+        private final MemoryMXBean memory;
+        private long count;
+        private long nextCheckpoint = CHECKPOINT_BYTES;
+        private long peakLive;
+        private int checkpoints;
+
+        CheckpointOutputStream(MemoryMXBean memory) {
+            this.memory = memory;
+        }
+
+        @Override
+        public void write(int b) {
+            count++;
+            checkpoint();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+            checkpoint();
+        }
+
+        private void checkpoint() {
+            if (count >= nextCheckpoint) {
+                nextCheckpoint += CHECKPOINT_BYTES;
+                System.gc();
+                peakLive = Math.max(peakLive, memory.getHeapMemoryUsage().getUsed());
+                checkpoints++;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.entity.Patient;
+import org.haykal.emr.repository.PatientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes allocated and time per search page: the projection read path against the entity path it replaced.
+ * <p>
+ * Not part of the regular test run. Run with
+ * {@code mvn test -Dtest=PatientSearchProjectionBenchmark [-Dbenchmark.pages=2000]}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientSearchProjectionBenchmark {
+
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final int PATIENTS = 2000;
+    private static final int PAGES = Integer.getInteger("benchmark.pages", 2000);
+    private static final Pageable PAGE = PageRequest.of(3, 50, Sort.by("lastName", "firstName"));
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientBulkRegistrationService patientBulkRegistrationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        List<PatientDTO> rows = new ArrayList<>(PATIENTS);
+        for (int i = 0; i < PATIENTS; i++) {
+            PatientDTO dto = new PatientDTO();
+            dto.setFirstName("Patient" + i);
+            dto.setLastName("BenchProjection" + (i % 97));
+            dto.setGender(i % 2 == 0 ? "FEMALE" : "MALE");
+            dto.setDateOfBirth(LocalDate.of(1950, 1, 1).plusDays(i));
+            dto.setCity("Queens");
+            dto.setInsuranceProvider("Acme Health");
+            dto.setFacilityId(WEST_FACILITY_ID);
+            rows.add(dto);
+        }
+        assertThat(patientBulkRegistrationService.register(rows).getCreated()).isEqualTo(PATIENTS);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name LIKE 'BenchProjection%'");
+    }
+
+    @Test
+    void projectionVersusEntityPage() {
+        // The entity path as it was: hydrate Patient, then touch the lazy facility for its name
+        Supplier<Integer> entityPage = () -> {
+            Page<Patient> page = patientRepository.findByFacilityId(WEST_FACILITY_ID, PAGE);
+            int names = 0;
+            for (Patient patient : page) {
+                names += patient.getFacility().getName().length();
+            }
+            return names;
+        };
+        Supplier<Integer> projectionPage = () -> patientRepository
+                .findSummariesByFacilityId(WEST_FACILITY_ID, PAGE)
+                .map(summary -> summary.facilityName().length())
+                .stream().mapToInt(Integer::intValue).sum();
+
+        measure(entityPage, PAGES / 4);
+        measure(projectionPage, PAGES / 4);
+
+        long[] entity = measure(entityPage, PAGES);
+        long[] projection = measure(projectionPage, PAGES);
+
+        System.out.printf("%nSearch page benchmark (%d pages of %d rows)%n", PAGES, PAGE.getPageSize());
+        System.out.printf("  entity path     : %9d bytes/page %8.1f us/page%n", entity[0], entity[1] / 1e3);
+        System.out.printf("  projection path : %9d bytes/page %8.1f us/page%n", projection[0], projection[1] / 1e3);
+        System.out.printf("  allocation ratio: %9.2fx%n%n", (double) entity[0] / projection[0]);
+    }
+
+    // Returns {bytes allocated per page, nanoseconds per page} for the calling thread
+    private long[] measure(Supplier<Integer> page, int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            readOnly.execute(status -> page.get());
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        return new long[]{bytes / iterations, nanos / iterations};
+    }
+}
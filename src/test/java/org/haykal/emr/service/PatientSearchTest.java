@@ -0,0 +1,90 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.PageResponse;
+import org.haykal.emr.dto.PatientDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class PatientSearchTest {
+
+    private static final Long MAIN_FACILITY_ID = 1L;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Test
+    void searchMatchesNameAndMrnSubstringsCaseInsensitively() {
+        assertThat(search("DOE", false).getContent())
+                .extracting(PatientDTO::getMrn)
+                .containsExactly("MAIN001000");
+
+        assertThat(search("in00100", false).getContent())
+                .extracting(PatientDTO::getMrn)
+                .containsExactlyInAnyOrder("MAIN001000", "MAIN001001");
+    }
+
+    @Test
+    void rankedSearchOrdersLastNamePrefixBeforeWordPrefixBeforeSubstring() {
+        createPatient("Adam", "Blacksmith");
+        createPatient("Smithy", "Alvarez");
+
+        PageResponse<PatientDTO> ranked = search("smith", true);
+
+        assertThat(ranked.getTotalElements()).isEqualTo(3);
+        assertThat(ranked.getContent())
+                .extracting(PatientDTO::getLastName)
+                .containsExactly("Smith", "Alvarez", "Blacksmith");
+    }
+
+    @Test
+    void rankedSearchPutsExactMrnMatchFirst() {
+        PageResponse<PatientDTO> ranked = search("main001001", true);
+
+        assertThat(ranked.getContent()).first()
+                .extracting(PatientDTO::getMrn)
+                .isEqualTo("MAIN001001");
+    }
+
+    @Test
+    void sortedListingReturnsFacilityNameFromTheProjection() {
+        PageResponse<PatientDTO> page = patientManagementService.searchPatients(MAIN_FACILITY_ID, null, false,
+                PageRequest.of(0, 20, Sort.by("lastName").descending()));
+
+        assertThat(page.getContent())
+                .extracting(PatientDTO::getLastName, PatientDTO::getFacilityName)
+                .containsExactly(tuple("Smith", "Main Hospital"), tuple("Doe", "Main Hospital"));
+    }
+
+    @Test
+    void likeWildcardsInSearchTermAreMatchedLiterally() {
+        assertThat(search("%", false).getTotalElements()).isZero();
+        assertThat(search("_", true).getTotalElements()).isZero();
+    }
+
+    private PageResponse<PatientDTO> search(String term, boolean ranked) {
+        return patientManagementService.searchPatients(MAIN_FACILITY_ID, term, ranked, PageRequest.of(0, 20));
+    }
+
+    private void createPatient(String firstName, String lastName) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName(firstName);
+        dto.setLastName(lastName);
+        dto.setGender("MALE");
+        dto.setDateOfBirth(LocalDate.of(1985, 1, 1));
+        dto.setFacilityId(MAIN_FACILITY_ID);
+        patientManagementService.createPatient(dto);
+    }
+}
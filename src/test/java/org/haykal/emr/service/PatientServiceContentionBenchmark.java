@@ -0,0 +1,154 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.BulkStatusTransitionRequest;
+import org.haykal.emr.dto.StatusTransitionRequest;
+import org.haykal.emr.exception.InvalidStatusTransitionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Status transitions under contention, and bulk transitions as one UPDATE against the equivalent
+ * load-modify-save loop.
+ * <p>
+ * Not part of the regular test run. Run with
+ * {@code mvn test -Dtest=PatientServiceContentionBenchmark [-Dbenchmark.threads=16] [-Dbenchmark.rows=5000]}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PatientServiceContentionBenchmark {
+
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final long ID_BASE = 40_000_000L;
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final int BULK_ROWS = Integer.getInteger("benchmark.rows", 5_000);
+    private static final int HOT_SERVICES = 50;
+    private static final int ATTEMPTS_PER_THREAD = 200;
+    private static final String[] TARGETS = {"IN_PROGRESS", "COMPLETED", "CANCELLED"};
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, facility_id) " +
+                "VALUES (?, 'CONTENTION1', 'Cora', 'BenchContention', 'FEMALE', DATE '1970-01-01', ?)", ID_BASE, WEST_FACILITY_ID);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE id = ?", ID_BASE);
+    }
+
+    @Test
+    void contendedTransitions() throws Exception {
+        insertServices(HOT_SERVICES, "2032-05-01");
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        StatusTransitionRequest request = new StatusTransitionRequest();
+                        request.setStatus(TARGETS[random.nextInt(TARGETS.length)]);
+                        try {
+                            patientServiceManagementService.transition(ID_BASE + 1 + random.nextInt(HOT_SERVICES), request);
+                            succeeded.incrementAndGet();
+                        } catch (InvalidStatusTransitionException e) {
+                            refused.incrementAndGet();
+                        } catch (OptimisticLockingFailureException e) {
+                            conflicts.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long nanos = System.nanoTime() - begin;
+        executor.shutdown();
+
+        long versions = jdbcTemplate.queryForObject(
+                "SELECT SUM(version) FROM patient_services WHERE patient_id = ?", Long.class, ID_BASE);
+        int total = THREADS * ATTEMPTS_PER_THREAD;
+        System.out.printf("%nContended transitions (%d threads, %d services, %d requests)%n", THREADS, HOT_SERVICES, total);
+        System.out.printf("  applied          : %6d%n", succeeded.get());
+        System.out.printf("  refused (illegal): %6d%n", refused.get());
+        System.out.printf("  retries exhausted: %6d%n", conflicts.get());
+        System.out.printf("  throughput       : %8.0f requests/s%n%n", total / (nanos / 1e9));
+
+        // Every applied transition is visible exactly once: nothing was silently overwritten
+        assertThat(versions).isEqualTo(succeeded.get());
+    }
+
+    @Test
+    void bulkUpdateAgainstLoadModifySaveLoop() {
+        insertServices(BULK_ROWS, "2032-05-02");
+        insertServices(BULK_ROWS, "2032-05-03");
+
+        long start = System.nanoTime();
+        BulkStatusTransitionRequest request = new BulkStatusTransitionRequest();
+        request.setStatus("COMPLETED");
+        request.setFacilityId(WEST_FACILITY_ID);
+        request.setDate(LocalDate.of(2032, 5, 2));
+        int bulkUpdated = patientServiceManagementService.transitionInBulk(request).getUpdated();
+        long bulkNanos = System.nanoTime() - start;
+
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM patient_services WHERE patient_id = ? " +
+                "AND scheduled_date >= DATE '2032-05-03'", Long.class, ID_BASE);
+        start = System.nanoTime();
+        for (Long id : ids) {
+            StatusTransitionRequest single = new StatusTransitionRequest();
+            single.setStatus("COMPLETED");
+            patientServiceManagementService.transition(id, single);
+        }
+        long loopNanos = System.nanoTime() - start;
+
+        System.out.printf("%nBulk completion of %d services%n", BULK_ROWS);
+        System.out.printf("  set-based UPDATE : %8.1f ms%n", bulkNanos / 1e6);
+        System.out.printf("  per-row loop     : %8.1f ms%n%n", loopNanos / 1e6);
+
+        assertThat(bulkUpdated).isEqualTo(BULK_ROWS);
+        assertThat(ids).hasSize(BULK_ROWS);
+    }
+
+    private void insertServices(int count, String day) {
+        long firstId = ID_BASE + 1 + jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM patient_services WHERE patient_id = ?", Long.class, ID_BASE);
+        jdbcTemplate.update("INSERT INTO patient_services (id, patient_id, service_type_id, facility_id, status, scheduled_date) " +
+                "SELECT ? + n, ?, 1 + MOD(n, 17), ?, 'SCHEDULED', " +
+                "DATEADD('SECOND', MOD(n, 86400), CAST(? AS TIMESTAMP)) FROM SYSTEM_RANGE(0, ?) AS r(n)",
+                firstId, ID_BASE, WEST_FACILITY_ID, day + " 00:00:00", count - 1);
+    }
+}
@@ -0,0 +1,204 @@
+package org.haykal.emr.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The monthly partitioned patient_services table (V13) against an unpartitioned copy of the same
+ * rows with the same indexes: plans and latency of a facility worklist day, a facility month and
+ * a patient timeline, and the cost of retiring the oldest month.
+ * <p>
+ * Needs PostgreSQL, so it is not part of the regular test run. By default it starts a throwaway
+ * container (Docker required) with {@code benchmark.rows} services; point it at a prepared server
+ * for the full-size run, which takes hours to load and roughly 100 GB of disk for both copies:
+ * <pre>
+ * mvn test -Dtest=PatientServicePartitionBenchmark [-Dbenchmark.rows=5000000] [-Dbenchmark.months=36]
+ * mvn test -Dtest=PatientServicePartitionBenchmark -Dbenchmark.rows=300000000 \
+ *     -Dbenchmark.jdbcUrl=jdbc:postgresql://db:5432/bench -Dbenchmark.user=... -Dbenchmark.password=...
+ * </pre>
+ * The database must be empty: the benchmark applies the migrations itself.
+ */
+class PatientServicePartitionBenchmark {
+
+    private static final long ROWS = Long.getLong("benchmark.rows", 5_000_000L);
+    private static final int MONTHS = Integer.getInteger("benchmark.months", 36);
+    private static final int PATIENTS = Integer.getInteger("benchmark.patients", 200_000);
+    private static final long LOAD_CHUNK = 1_000_000L;
+    private static final long ID_BASE = 1_000_000_000L;
+    private static final int ITERATIONS = 50;
+    private static final LocalDate FIRST_MONTH = LocalDate.now().withDayOfMonth(1).minusMonths(MONTHS - 3);
+
+    private static final String WORKLIST_DAY = "SELECT id, patient_id, service_type_id, status, scheduled_date FROM %s " +
+            "WHERE facility_id = ? AND scheduled_date >= ? AND scheduled_date < ? AND status = 'IN_PROGRESS' " +
+            "ORDER BY scheduled_date, id";
+    private static final String FACILITY_MONTH = "SELECT status, COUNT(*) FROM %s " +
+            "WHERE facility_id = ? AND scheduled_date >= ? AND scheduled_date < ? GROUP BY status";
+    private static final String TIMELINE = "SELECT id, service_type_id, status, scheduled_date FROM %s " +
+            "WHERE patient_id = ? ORDER BY scheduled_date DESC, id DESC";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Random random = new Random(42);
+
+    @Test
+    void partitionPruningAndRetention() throws Exception {
+        String url = System.getProperty("benchmark.jdbcUrl");
+        if (url != null) {
+            run(url, System.getProperty("benchmark.user", "emr_user"), System.getProperty("benchmark.password", ""));
+            return;
+        }
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+                .withCommand("postgres", "-c", "shared_buffers=512MB", "-c", "max_wal_size=8GB")) {
+            postgres.start();
+            run(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        }
+    }
+
+    private void run(String url, String user, String password) throws Exception {
+        Flyway.configure().dataSource(url, user, password).locations("classpath:db/migration/postgresql").load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(url, user, password));
+
+        long loadStart = System.nanoTime();
+        load(jdbc);
+        System.out.printf("%nPatient service partition benchmark (%,d services over %d months, %,d patients)%n",
+                ROWS, MONTHS, PATIENTS);
+        System.out.printf("  load both copies : %.0f s%n", (System.nanoTime() - loadStart) / 1e9);
+
+        LocalDate day = FIRST_MONTH.plusMonths(MONTHS / 2).plusDays(10);
+        Object[] dayArgs = {2L, Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay())};
+        Object[] monthArgs = {2L, Timestamp.valueOf(day.withDayOfMonth(1).atStartOfDay()),
+                Timestamp.valueOf(day.withDayOfMonth(1).plusMonths(1).atStartOfDay())};
+
+        Set<String> dayPartitions = scannedPartitions(jdbc, WORKLIST_DAY, dayArgs);
+        Set<String> monthPartitions = scannedPartitions(jdbc, FACILITY_MONTH, monthArgs);
+        Set<String> timelinePartitions = scannedPartitions(jdbc, TIMELINE, new Object[]{ID_BASE + 1});
+        Integer partitions = jdbc.queryForObject("SELECT COUNT(*) FROM pg_inherits " +
+                "WHERE inhparent = 'patient_services'::regclass", Integer.class);
+        System.out.printf("  partitions read  : worklist day %s, facility month %s, timeline %d of %d%n",
+                dayPartitions, monthPartitions, timelinePartitions.size(), partitions);
+        assertThat(dayPartitions).hasSize(1);
+        assertThat(monthPartitions).hasSize(1);
+
+        report(jdbc, "worklist day", WORKLIST_DAY, i -> {
+            LocalDate d = FIRST_MONTH.plusDays(random.nextInt(MONTHS * 28));
+            return new Object[]{1L + random.nextInt(3), Timestamp.valueOf(d.atStartOfDay()),
+                    Timestamp.valueOf(d.plusDays(1).atStartOfDay())};
+        });
+        report(jdbc, "facility month", FACILITY_MONTH, i -> {
+            LocalDate m = FIRST_MONTH.plusMonths(random.nextInt(MONTHS));
+            return new Object[]{1L + random.nextInt(3), Timestamp.valueOf(m.atStartOfDay()),
+                    Timestamp.valueOf(m.plusMonths(1).atStartOfDay())};
+        });
+        report(jdbc, "patient timeline", TIMELINE, i -> new Object[]{ID_BASE + 1 + random.nextInt(PATIENTS)});
+
+        // Retiring the oldest month: one detach against a DELETE of the same rows
+        LocalDate retireBefore = FIRST_MONTH.plusMonths(1);
+        long start = System.nanoTime();
+        List<String> detached = jdbc.queryForList("SELECT * FROM detach_patient_services_partitions(?, true)",
+                String.class, Date.valueOf(retireBefore));
+        long detachNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        int deleted = jdbc.update("DELETE FROM patient_services_heap WHERE scheduled_date < ?",
+                Timestamp.valueOf(retireBefore.atStartOfDay()));
+        long deleteNanos = System.nanoTime() - start;
+        System.out.printf("  retire a month   : detach + drop %s %8.1f ms, heap DELETE of %,d rows %8.1f ms%n%n",
+                detached, detachNanos / 1e6, deleted, deleteNanos / 1e6);
+        assertThat(detached).contains("patient_services_p" + FIRST_MONTH.format(DateTimeFormatter.ofPattern("yyyyMM")));
+    }
+
+    // Same rows in the partitioned table and in an unpartitioned copy with the same indexes
+    private void load(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, facility_id) " +
+                "SELECT ? + n, 'PART' || n, 'First' || n, 'BenchPartition', " +
+                "CASE WHEN n % 2 = 0 THEN 'MALE' ELSE 'FEMALE' END::gender_enum, DATE '1950-01-01' + (n % 25000), " +
+                "1 + n % 3 FROM generate_series(1, ?) AS n", ID_BASE, PATIENTS);
+        jdbc.queryForObject("SELECT ensure_patient_services_partitions(?, ?)", Integer.class,
+                Date.valueOf(FIRST_MONTH), Date.valueOf(FIRST_MONTH.plusMonths(MONTHS - 1)));
+        jdbc.execute("CREATE UNLOGGED TABLE patient_services_heap (LIKE patient_services INCLUDING DEFAULTS)");
+
+        long spanSeconds = (FIRST_MONTH.plusMonths(MONTHS).toEpochDay() - FIRST_MONTH.toEpochDay()) * 86_400L;
+        Timestamp first = Timestamp.valueOf(FIRST_MONTH.atStartOfDay());
+        for (long from = 0; from < ROWS; from += LOAD_CHUNK) {
+            long to = Math.min(from + LOAD_CHUNK, ROWS) - 1;
+            for (String table : List.of("patient_services", "patient_services_heap")) {
+                jdbc.update("INSERT INTO " + table + " (id, patient_id, service_type_id, facility_id, status, " +
+                                "scheduled_date, provider_name) " +
+                                "SELECT ? + n, ? + 1 + (n * 7919) % ?, 1 + n % 17, 1 + n % 3, " +
+                                "(ARRAY['SCHEDULED','IN_PROGRESS','COMPLETED','CANCELLED'])[1 + n % 4]::service_status_enum, " +
+                                "? + make_interval(secs => n * ?::float8 / ?), 'Dr. Bench' " +
+                                "FROM generate_series(?, ?) AS n",
+                        ID_BASE, ID_BASE, PATIENTS, first, spanSeconds, ROWS, from, to);
+            }
+        }
+
+        jdbc.execute("ALTER TABLE patient_services_heap ADD PRIMARY KEY (id)");
+        jdbc.execute("CREATE INDEX ON patient_services_heap(patient_id, scheduled_date DESC, id DESC) " +
+                "INCLUDE (status, service_type_id, version)");
+        jdbc.execute("CREATE INDEX ON patient_services_heap(facility_id, id)");
+        jdbc.execute("CREATE INDEX ON patient_services_heap(facility_id, scheduled_date, status)");
+        jdbc.execute("CREATE INDEX ON patient_services_heap(status)");
+        jdbc.execute("CREATE INDEX ON patient_services_heap(scheduled_date)");
+        jdbc.execute("VACUUM ANALYZE patient_services");
+        jdbc.execute("VACUUM ANALYZE patient_services_heap");
+    }
+
+    // Partitions named in the plan, with the parameters bound as the application binds them
+    private Set<String> scannedPartitions(JdbcTemplate jdbc, String sql, Object[] args) throws Exception {
+        String plan = jdbc.queryForObject("EXPLAIN (FORMAT JSON) " + sql.formatted("patient_services"), String.class, args);
+        Set<String> partitions = new TreeSet<>();
+        collectRelations(objectMapper.readTree(plan), partitions);
+        return partitions;
+    }
+
+    private static void collectRelations(JsonNode node, Set<String> relations) {
+        JsonNode relation = node.get("Relation Name");
+        if (relation != null && relation.asText().startsWith("patient_services_")) {
+            relations.add(relation.asText());
+        }
+        node.forEach(child -> collectRelations(child, relations));
+    }
+
+    private void report(JdbcTemplate jdbc, String label, String sql, IntFunction<Object[]> args) {
+        List<Object[]> samples = new ArrayList<>();
+        for (int i = 0; i < ITERATIONS + 10; i++) {
+            samples.add(args.apply(i));
+        }
+        long[] partitioned = measure(jdbc, sql.formatted("patient_services"), samples);
+        long[] heap = measure(jdbc, sql.formatted("patient_services_heap"), samples);
+        System.out.printf("  %-17s: partitioned p50 %7.2f ms p95 %7.2f ms | heap p50 %7.2f ms p95 %7.2f ms%n", label,
+                partitioned[ITERATIONS / 2] / 1e6, partitioned[(int) (ITERATIONS * 0.95)] / 1e6,
+                heap[ITERATIONS / 2] / 1e6, heap[(int) (ITERATIONS * 0.95)] / 1e6);
+    }
+
+    // The first ten samples warm the cache and the prepared statement and are not timed
+    private static long[] measure(JdbcTemplate jdbc, String sql, List<Object[]> samples) {
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < samples.size(); i++) {
+            long start = System.nanoTime();
+            jdbc.queryForList(sql, samples.get(i));
+            if (i >= 10) {
+                nanos[i - 10] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+}
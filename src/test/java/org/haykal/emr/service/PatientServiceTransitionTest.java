@@ -0,0 +1,179 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.BulkStatusTransitionRequest;
+import org.haykal.emr.dto.BulkTransitionResult;
+import org.haykal.emr.dto.PatientServiceDTO;
+import org.haykal.emr.dto.StatusTransitionRequest;
+import org.haykal.emr.exception.InvalidStatusTransitionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Transitions run in their own transactions, so the fixtures are committed and removed afterwards
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PatientServiceTransitionTest {
+
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final long PATIENT_ID = 30_000_001L;
+    private static final long CBC_LAB = 1L;
+    private static final long XRAY_RADIOLOGY = 6L;
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, facility_id) " +
+                "VALUES (?, 'TRANSITION1', 'Tess', 'Transition', 'FEMALE', DATE '1970-01-01', ?)", PATIENT_ID, WEST_FACILITY_ID);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE id = ?", PATIENT_ID);
+    }
+
+    @Test
+    void legalTransitionsCompleteTheServiceAndTerminalStatusesAreFinal() throws Exception {
+        long id = insertService(30_000_101L, CBC_LAB, "SCHEDULED", "2031-01-10 09:00:00");
+
+        PatientServiceDTO started = patientServiceManagementService.transition(id, request("IN_PROGRESS", null));
+        PatientServiceDTO completed = patientServiceManagementService.transition(id, request("completed", started.getVersion()));
+
+        assertThat(started.getVersion()).isEqualTo(1);
+        assertThat(completed.getStatus()).isEqualTo("COMPLETED");
+        assertThat(completed.getCompletedDate()).isNotNull();
+        assertThat(completed.getVersion()).isEqualTo(2);
+        assertThatThrownBy(() -> patientServiceManagementService.transition(id, request("CANCELLED", null)))
+                .isInstanceOf(InvalidStatusTransitionException.class);
+
+        mockMvc.perform(patch("/patient-services/{id}/status", id)
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_STAFF")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"SCHEDULED\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void staleExpectedVersionIsRejectedWithoutRetry() {
+        long id = insertService(30_000_102L, CBC_LAB, "SCHEDULED", "2031-01-10 09:00:00");
+        patientServiceManagementService.transition(id, request("IN_PROGRESS", null));
+
+        assertThatThrownBy(() -> patientServiceManagementService.transition(id, request("COMPLETED", 0L)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM patient_services WHERE id = ?", String.class, id))
+                .isEqualTo("IN_PROGRESS");
+    }
+
+    @Test
+    void racingCliniciansSettleOnExactlyOneTerminalStatus() throws Exception {
+        long id = insertService(30_000_103L, CBC_LAB, "SCHEDULED", "2031-01-10 09:00:00");
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<PatientServiceDTO>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String target = i % 2 == 0 ? "COMPLETED" : "CANCELLED";
+            results.add(executor.submit(() -> {
+                start.await();
+                return patientServiceManagementService.transition(id, request(target, null));
+            }));
+        }
+        start.countDown();
+
+        int succeeded = 0;
+        for (Future<PatientServiceDTO> result : results) {
+            try {
+                result.get();
+                succeeded++;
+            } catch (Exception e) {
+                // Losers retry, find a terminal status and are refused rather than overwriting it
+                assertThat(e.getCause()).isInstanceOf(InvalidStatusTransitionException.class);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(succeeded).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM patient_services WHERE id = ?", Long.class, id))
+                .isEqualTo(1L);
+    }
+
+    @Test
+    void bulkTransitionCompletesOnlyTheMatchingDaysOrders() {
+        long todaysLab = insertService(30_000_104L, CBC_LAB, "SCHEDULED", "2031-01-10 08:00:00");
+        long runningLab = insertService(30_000_105L, CBC_LAB, "IN_PROGRESS", "2031-01-10 11:30:00");
+        long cancelledLab = insertService(30_000_106L, CBC_LAB, "CANCELLED", "2031-01-10 12:00:00");
+        long todaysXray = insertService(30_000_107L, XRAY_RADIOLOGY, "SCHEDULED", "2031-01-10 09:00:00");
+        long tomorrowsLab = insertService(30_000_108L, CBC_LAB, "SCHEDULED", "2031-01-11 08:00:00");
+
+        BulkStatusTransitionRequest request = new BulkStatusTransitionRequest();
+        request.setStatus("COMPLETED");
+        request.setFacilityId(WEST_FACILITY_ID);
+        request.setDate(LocalDate.of(2031, 1, 10));
+        request.setCategory("lab");
+        BulkTransitionResult result = patientServiceManagementService.transitionInBulk(request);
+
+        assertThat(result.getUpdated()).isEqualTo(2);
+        assertThat(statusOf(todaysLab)).isEqualTo("COMPLETED");
+        assertThat(statusOf(runningLab)).isEqualTo("COMPLETED");
+        assertThat(statusOf(cancelledLab)).isEqualTo("CANCELLED");
+        assertThat(statusOf(todaysXray)).isEqualTo("SCHEDULED");
+        assertThat(statusOf(tomorrowsLab)).isEqualTo("SCHEDULED");
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM patient_services WHERE id = ?", Long.class, todaysLab))
+                .isEqualTo(1L);
+
+        BulkStatusTransitionRequest byIds = new BulkStatusTransitionRequest();
+        byIds.setStatus("CANCELLED");
+        byIds.setIds(List.of(todaysLab, todaysXray, tomorrowsLab));
+        assertThat(patientServiceManagementService.transitionInBulk(byIds).getUpdated()).isEqualTo(2);
+    }
+
+    private long insertService(long id, long serviceTypeId, String status, String scheduledDate) {
+        jdbcTemplate.update("INSERT INTO patient_services (id, patient_id, service_type_id, facility_id, status, scheduled_date) " +
+                "VALUES (?, ?, ?, ?, ?, CAST(? AS TIMESTAMP))", id, PATIENT_ID, serviceTypeId, WEST_FACILITY_ID, status, scheduledDate);
+        return id;
+    }
+
+    private String statusOf(long id) {
+        return jdbcTemplate.queryForObject("SELECT status FROM patient_services WHERE id = ?", String.class, id);
+    }
+
+    private static StatusTransitionRequest request(String status, Long version) {
+        StatusTransitionRequest request = new StatusTransitionRequest();
+        request.setStatus(status);
+        request.setVersion(version);
+        return request;
+    }
+}
@@ -0,0 +1,113 @@
+package org.haykal.emr.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RequestedServicesStatementCountTest {
+
+    private static final long NORTH_FACILITY_ID = 2L;
+
+    // Facility lookup, offered service ids, patient insert, batched service insert, outbox event insert
+    private static final int STATEMENTS_PER_REGISTRATION = 5;
+    // MRN block, patient id block and service id block refills happen at most once each per call
+    private static final int MAX_SEQUENCE_REFILLS = 3;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // Warm the service type catalog
+        patientManagementService.createPatient(patient(1));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'StatementCount'");
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithRequestedServices() {
+        long one = statementsFor(patient(1));
+        long five = statementsFor(patient(5));
+        long fifteen = statementsFor(patient(15));
+
+        assertThat(one).isGreaterThanOrEqualTo(STATEMENTS_PER_REGISTRATION);
+        assertThat(one).isLessThanOrEqualTo(STATEMENTS_PER_REGISTRATION + MAX_SEQUENCE_REFILLS);
+        assertThat(five).isLessThanOrEqualTo(STATEMENTS_PER_REGISTRATION + MAX_SEQUENCE_REFILLS);
+        assertThat(fifteen).isLessThanOrEqualTo(STATEMENTS_PER_REGISTRATION + MAX_SEQUENCE_REFILLS);
+    }
+
+    @Test
+    void serviceNotOfferedByFacilityIsRejected() {
+        jdbcTemplate.update("DELETE FROM facility_services WHERE facility_id = ? AND service_type_id = 17", NORTH_FACILITY_ID);
+        try {
+            PatientDTO dto = patient(0);
+            dto.setRequestedServices(Set.of(request(17L, 0)));
+
+            assertThatThrownBy(() -> patientManagementService.createPatient(dto))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Service type BIOPSY is not offered by facility NORTH");
+        } finally {
+            jdbcTemplate.update("INSERT INTO facility_services (facility_id, service_type_id) VALUES (?, 17)", NORTH_FACILITY_ID);
+        }
+    }
+
+    private long statementsFor(PatientDTO dto) {
+        statistics.clear();
+        patientManagementService.createPatient(dto);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static PatientDTO patient(int services) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Orders" + services);
+        dto.setLastName("StatementCount");
+        dto.setGender("MALE");
+        dto.setDateOfBirth(LocalDate.of(1964, 3, 9));
+        dto.setFacilityId(NORTH_FACILITY_ID);
+
+        Set<ServiceRequestDTO> requests = new HashSet<>();
+        for (int i = 0; i < services; i++) {
+            requests.add(request(1L + i % 17, i));
+        }
+        dto.setRequestedServices(requests);
+        return dto;
+    }
+
+    private static ServiceRequestDTO request(Long serviceTypeId, int offsetDays) {
+        ServiceRequestDTO request = new ServiceRequestDTO();
+        request.setServiceTypeId(serviceTypeId);
+        request.setScheduledDate(LocalDateTime.of(2030, 1, 1, 9, 0).plusDays(offsetDays));
+        return request;
+    }
+}
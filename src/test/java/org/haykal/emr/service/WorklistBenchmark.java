@@ -0,0 +1,102 @@
+package org.haykal.emr.service;
+
+import org.haykal.emr.dto.WorklistDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Worklist latency at a busy facility: {@code benchmark.servicesPerDay} services on each of three
+ * consecutive days, with the worklist read for the middle one.
+ * <p>
+ * Not part of the regular test run. Run with
+ * {@code mvn test -Dtest=WorklistBenchmark [-Dbenchmark.servicesPerDay=100000]}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class WorklistBenchmark {
+
+    private static final long WEST_FACILITY_ID = 3L;
+    private static final long ID_BASE = 20_000_000L;
+    private static final int PATIENTS = 5_000;
+    private static final int SERVICES_PER_DAY = Integer.getInteger("benchmark.servicesPerDay", 100_000);
+    private static final int ITERATIONS = 30;
+    private static final LocalDate DAY = LocalDate.of(2030, 3, 12);
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO patients (id, mrn, first_name, last_name, gender, date_of_birth, facility_id) " +
+                "SELECT ? + n, 'WORKLIST' || n, 'First' || n, 'BenchWorklist', 'FEMALE', DATE '1980-01-01', ? " +
+                "FROM SYSTEM_RANGE(1, ?) AS r(n)", ID_BASE, WEST_FACILITY_ID, PATIENTS);
+        // Spread over the day before, the day itself and the day after; statuses cycle through all four
+        int total = SERVICES_PER_DAY * 3;
+        jdbcTemplate.update("INSERT INTO patient_services (id, patient_id, service_type_id, facility_id, status, " +
+                        "scheduled_date, provider_name) " +
+                        "SELECT ? + n, ? + 1 + MOD(n, ?), 1 + MOD(n, 17), ?, " +
+                        "CASEWHEN(MOD(n, 4) = 0, 'SCHEDULED', CASEWHEN(MOD(n, 4) = 1, 'IN_PROGRESS', " +
+                        "CASEWHEN(MOD(n, 4) = 2, 'COMPLETED', 'CANCELLED'))), " +
+                        "DATEADD('SECOND', CAST(n * 259200 / ? AS INT), TIMESTAMP '2030-03-11 00:00:00'), 'Dr. Bench' " +
+                        "FROM SYSTEM_RANGE(0, ?) AS r(n)",
+                ID_BASE, ID_BASE, PATIENTS, WEST_FACILITY_ID, total, total - 1);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        // patient_services rows go with the ON DELETE CASCADE foreign key
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'BenchWorklist'");
+    }
+
+    @Test
+    void worklistLatency() {
+        for (int i = 0; i < 5; i++) {
+            worklist(null);
+            worklist(List.of("IN_PROGRESS"));
+        }
+
+        long[] all = measure(null);
+        long[] inProgress = measure(List.of("IN_PROGRESS"));
+
+        System.out.printf("%nWorklist benchmark (%d services per day, %d iterations)%n", SERVICES_PER_DAY, ITERATIONS);
+        report("whole day", all);
+        report("IN_PROGRESS only", inProgress);
+        System.out.println();
+    }
+
+    private long[] measure(List<String> statuses) {
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            WorklistDTO worklist = worklist(statuses);
+            nanos[i] = System.nanoTime() - start;
+            assertThat(worklist.getTotal()).isBetween(SERVICES_PER_DAY / 5, SERVICES_PER_DAY + 1);
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private WorklistDTO worklist(List<String> statuses) {
+        return patientServiceManagementService.getWorklist(WEST_FACILITY_ID, DAY, 1, statuses);
+    }
+
+    private static void report(String label, long[] sortedNanos) {
+        System.out.printf("  %-17s: p50 %7.1f ms  p95 %7.1f ms%n", label,
+                sortedNanos[sortedNanos.length / 2] / 1e6,
+                sortedNanos[(int) (sortedNanos.length * 0.95)] / 1e6);
+    }
+}
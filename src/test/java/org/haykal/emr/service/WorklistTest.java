@@ -0,0 +1,73 @@
+package org.haykal.emr.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.haykal.emr.dto.PatientServiceDTO;
+import org.haykal.emr.dto.WorklistDTO;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class WorklistTest {
+
+    private static final long MAIN_FACILITY_ID = 1L;
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void dayWorklistIsGroupedByStatusInOneQuery() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        WorklistDTO worklist = patientServiceManagementService.getWorklist(MAIN_FACILITY_ID, LocalDate.of(2025, 7, 30), 1, null);
+
+        // The facility existence check and the worklist query
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(worklist.getTotal()).isEqualTo(2);
+        assertThat(worklist.getServicesByStatus().keySet())
+                .containsExactly("SCHEDULED", "IN_PROGRESS", "COMPLETED", "CANCELLED");
+        assertThat(worklist.getServicesByStatus().get("SCHEDULED"))
+                .extracting(PatientServiceDTO::getPatientName, PatientServiceDTO::getServiceCategory)
+                .containsExactly(tuple("John Doe", "LAB"), tuple("John Doe", "RADIOLOGY"));
+        assertThat(worklist.getServicesByStatus().get("COMPLETED")).isEmpty();
+    }
+
+    @Test
+    void weekWorklistCanBeFilteredByStatus() {
+        WorklistDTO worklist = patientServiceManagementService.getWorklist(MAIN_FACILITY_ID, LocalDate.of(2025, 7, 28), 7,
+                List.of("completed"));
+
+        assertThat(worklist.getTo()).isEqualTo(LocalDate.of(2025, 8, 4));
+        assertThat(worklist.getServicesByStatus()).containsOnlyKeys("COMPLETED");
+        assertThat(worklist.getServicesByStatus().get("COMPLETED"))
+                .extracting(PatientServiceDTO::getNotes)
+                .containsExactly("Routine lipid check");
+    }
+
+    @Test
+    void invalidSpanOrStatusIsRejected() {
+        assertThatThrownBy(() -> patientServiceManagementService.getWorklist(MAIN_FACILITY_ID, LocalDate.now(), 8, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> patientServiceManagementService.getWorklist(MAIN_FACILITY_ID, LocalDate.now(), 1,
+                List.of("DONE")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid service status: DONE");
+    }
+}
@@ -0,0 +1,195 @@
+package org.haykal.emr.stats;
+
+import org.haykal.emr.dto.BulkStatusTransitionRequest;
+import org.haykal.emr.dto.FacilityStatsDTO;
+import org.haykal.emr.dto.PatientDTO;
+import org.haykal.emr.dto.ServiceRequestDTO;
+import org.haykal.emr.dto.ServiceVolumeDTO;
+import org.haykal.emr.dto.StatusTransitionRequest;
+import org.haykal.emr.service.FacilityStatsService;
+import org.haykal.emr.service.PatientDeletionService;
+import org.haykal.emr.service.PatientManagementService;
+import org.haykal.emr.service.PatientServiceManagementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Writes commit in their own transactions; every test starts from reconciled aggregates and
+// compares the served figures with the same aggregates computed from the base tables
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class FacilityStatsTest {
+
+    private static final long NORTH_FACILITY_ID = 2L;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2032, 3, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2032, 3, 10);
+
+    @Autowired
+    private FacilityStatsService facilityStatsService;
+
+    @Autowired
+    private FacilityStatsRollup facilityStatsRollup;
+
+    @Autowired
+    private PatientManagementService patientManagementService;
+
+    @Autowired
+    private PatientServiceManagementService patientServiceManagementService;
+
+    @Autowired
+    private PatientDeletionService patientDeletionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        facilityStatsRollup.reconcile();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM patient_services_archive WHERE patient_id IN " +
+                "(SELECT id FROM patients_archive WHERE last_name = 'Stats')");
+        jdbcTemplate.update("DELETE FROM patients_archive WHERE last_name = 'Stats'");
+        jdbcTemplate.update("DELETE FROM patients WHERE last_name = 'Stats'");
+        facilityStatsRollup.reconcile();
+    }
+
+    @Test
+    void writesAreVisibleBeforeAndAfterRollup() {
+        Long kept = createPatient(4);
+        Long removed = createPatient(3);
+        List<Long> services = serviceIds(kept);
+
+        patientServiceManagementService.transition(services.get(0), transition("IN_PROGRESS"));
+        BulkStatusTransitionRequest byDay = new BulkStatusTransitionRequest();
+        byDay.setStatus("COMPLETED");
+        byDay.setFacilityId(NORTH_FACILITY_ID);
+        byDay.setDate(FIRST_DAY.plusDays(1));
+        patientServiceManagementService.transitionInBulk(byDay);
+        BulkStatusTransitionRequest byIds = new BulkStatusTransitionRequest();
+        byIds.setStatus("CANCELLED");
+        byIds.setIds(services.subList(2, 4));
+        patientServiceManagementService.transitionInBulk(byIds);
+        patientDeletionService.delete(List.of(removed), PatientDeletionService.Mode.ARCHIVE);
+
+        assertThat(count("facility_stats_deltas")).isPositive();
+        assertMatchesBaseTables();
+
+        assertThat(facilityStatsRollup.rollup()).isPositive();
+
+        assertThat(count("facility_stats_deltas")).isZero();
+        assertMatchesBaseTables();
+    }
+
+    @Test
+    void reconciliationRepairsDrift() {
+        createPatient(2);
+        facilityStatsRollup.rollup();
+        // Bypasses the write paths, so no delta records the change
+        jdbcTemplate.update("UPDATE patient_services SET status = 'CANCELLED' WHERE patient_id IN " +
+                "(SELECT id FROM patients WHERE last_name = 'Stats')");
+
+        FacilityStatsDTO drifted = facilityStatsService.getStats(NORTH_FACILITY_ID, FIRST_DAY, LAST_DAY);
+        assertThat(drifted.getDaily()).isNotEqualTo(expectedDaily());
+
+        facilityStatsRollup.reconcile();
+
+        assertMatchesBaseTables();
+    }
+
+    @Test
+    void endpointServesStatsAndRejectsLongRanges() throws Exception {
+        createPatient(1);
+
+        mockMvc.perform(get("/facilities/{id}/stats", NORTH_FACILITY_ID)
+                        .param("from", FIRST_DAY.toString()).param("to", LAST_DAY.toString())
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_VIEW_ONLY"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.patients").value(countPatients()))
+                .andExpect(jsonPath("$.data.servicesByStatus.SCHEDULED").value(1))
+                .andExpect(jsonPath("$.data.servicesByCategory.OTHER").value(0));
+        mockMvc.perform(get("/facilities/{id}/stats", NORTH_FACILITY_ID)
+                        .param("from", FIRST_DAY.toString()).param("to", FIRST_DAY.plusYears(2).toString())
+                        .with(jwt().authorities(new SimpleGrantedAuthority("ROLE_VIEW_ONLY"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void assertMatchesBaseTables() {
+        FacilityStatsDTO stats = facilityStatsService.getStats(NORTH_FACILITY_ID, FIRST_DAY, LAST_DAY);
+        assertThat(stats.getPatients()).isEqualTo(countPatients());
+        assertThat(stats.getDaily()).isEqualTo(expectedDaily());
+    }
+
+    private long countPatients() {
+        return count("patients WHERE facility_id = " + NORTH_FACILITY_ID);
+    }
+
+    private List<ServiceVolumeDTO> expectedDaily() {
+        return jdbcTemplate.query("SELECT CAST(ps.scheduled_date AS DATE), CAST(st.category AS VARCHAR(20)), " +
+                        "CAST(ps.status AS VARCHAR(20)), COUNT(*) FROM patient_services ps " +
+                        "JOIN service_types st ON st.id = ps.service_type_id " +
+                        "WHERE ps.facility_id = ? AND ps.scheduled_date >= ? AND ps.scheduled_date < ? " +
+                        "GROUP BY CAST(ps.scheduled_date AS DATE), st.category, ps.status ORDER BY 1, 2, 3",
+                (rs, rowNum) -> new ServiceVolumeDTO(rs.getDate(1).toLocalDate(), rs.getString(2), rs.getString(3),
+                        rs.getLong(4)),
+                NORTH_FACILITY_ID, FIRST_DAY.atStartOfDay(), LAST_DAY.plusDays(1).atStartOfDay());
+    }
+
+    private long count(String from) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Long.class);
+    }
+
+    private List<Long> serviceIds(Long patientId) {
+        return jdbcTemplate.queryForList("SELECT id FROM patient_services WHERE patient_id = ? ORDER BY scheduled_date",
+                Long.class, patientId);
+    }
+
+    private Long createPatient(int services) {
+        PatientDTO dto = new PatientDTO();
+        dto.setFirstName("Counted" + services);
+        dto.setLastName("Stats");
+        dto.setGender("MALE");
+        dto.setDateOfBirth(LocalDate.of(1964, 7, 19));
+        dto.setFacilityId(NORTH_FACILITY_ID);
+
+        Set<ServiceRequestDTO> requests = new HashSet<>();
+        for (int i = 0; i < services; i++) {
+            ServiceRequestDTO request = new ServiceRequestDTO();
+            request.setServiceTypeId(1L + i * 5);
+            request.setScheduledDate(FIRST_DAY.atTime(9, 0).plusDays(i));
+            requests.add(request);
+        }
+        dto.setRequestedServices(requests);
+        return patientManagementService.createPatient(dto).getId();
+    }
+
+    private static StatusTransitionRequest transition(String status) {
+        StatusTransitionRequest request = new StatusTransitionRequest();
+        request.setStatus(status);
+        return request;
+    }
+}